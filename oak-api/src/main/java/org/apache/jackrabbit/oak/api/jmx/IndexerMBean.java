@@ -43,4 +43,8 @@ public interface IndexerMBean {
                     " might not be available")
                     boolean ignoreLocalLock
             ) throws IOException, CommitFailedException;
+
+    @Description("Status of the async indexing lanes as JSON: the indexing lag, and whether a lane is " +
+            "catching up with a large change that is indexed in chunks")
+    String getAsyncLaneStats();
 }
@@ -187,6 +187,7 @@ public class BenchmarkRunner {
             new ConcurrentWriteTest(),
             new SimpleSearchTest(),
             new UUIDLookupTest(),
+            new SkewedPropertyIndexQueryTest(),
             new SQL2SearchTest(),
             new DescendantSearchTest(),
             new SQL2DescendantSearchTest(),
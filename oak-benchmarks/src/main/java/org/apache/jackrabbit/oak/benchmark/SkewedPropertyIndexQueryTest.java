@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.benchmark;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.apache.jackrabbit.oak.benchmark.util.OakIndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.property.ValueStatistics;
+
+/**
+ * Runs queries with conditions on two indexed properties, one of them with a
+ * very skewed value distribution (99% of the nodes have status "active"). With
+ * the value statistics of the property index, the index for the more
+ * selective condition is used. Run with -DvalueStatistics=false to compare
+ * with the default cost estimation.
+ */
+public class SkewedPropertyIndexQueryTest extends AbstractTest {
+
+    private static final int NODE_COUNT = Integer.getInteger("nodeCount", 10000);
+
+    private final boolean valueStatistics = 
+            Boolean.parseBoolean(System.getProperty("valueStatistics", "true"));
+
+    private Session session;
+
+    private Node root;
+
+    @Override
+    public void beforeSuite() throws RepositoryException {
+        session = getRepository().login(getCredentials());
+        createIndex("status");
+        createIndex("category");
+
+        root = session.getRootNode().addNode("testroot" + TEST_ID, "nt:unstructured");
+        for (int i = 0; i < NODE_COUNT; i++) {
+            Node node = root.addNode("node" + i, "nt:unstructured");
+            node.setProperty("status", i % 100 == 0 ? "deleted" : "active");
+            node.setProperty("category", "c" + (i % 10));
+            if (i % 1000 == 0) {
+                session.save();
+            }
+        }
+        session.save();
+        System.out.printf("Nodes %d, value statistics %s%n", NODE_COUNT, valueStatistics);
+    }
+
+    private void createIndex(String propertyName) throws RepositoryException {
+        Node index = new OakIndexUtils.PropertyIndex().
+                name(propertyName + "Skewed" + TEST_ID).
+                property(propertyName).
+                create(session);
+        if (index != null && valueStatistics) {
+            index.setProperty(ValueStatistics.VALUE_STATISTICS, true);
+            index.setProperty(ValueStatistics.VALUE_STATISTICS_RESOLUTION, 1);
+            index.setProperty(IndexConstants.REINDEX_PROPERTY_NAME, true);
+            session.save();
+        }
+    }
+
+    @Override
+    public void runTest() throws Exception {
+        QueryManager manager = session.getWorkspace().getQueryManager();
+        for (int i = 0; i < 10; i++) {
+            // status is selective
+            runQuery(manager, "deleted", "c" + i);
+            // category is selective
+            runQuery(manager, "active", "c" + i);
+        }
+    }
+
+    private void runQuery(QueryManager manager, String status, String category) throws RepositoryException {
+        Query query = manager.createQuery("SELECT * FROM [nt:base] WHERE [status] = '" + status + 
+                "' AND [category] = '" + category + "'", Query.JCR_SQL2);
+        NodeIterator iterator = query.execute().getNodes();
+        while (iterator.hasNext()) {
+            iterator.nextNode();
+        }
+    }
+
+    @Override
+    public void afterSuite() throws RepositoryException {
+        root.remove();
+        session.save();
+        session.logout();
+    }
+
+}
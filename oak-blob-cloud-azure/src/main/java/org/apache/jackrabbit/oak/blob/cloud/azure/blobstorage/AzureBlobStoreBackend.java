@@ -53,6 +53,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.RequestOptions;
 import com.microsoft.azure.storage.ResultContinuation;
@@ -317,6 +318,98 @@ public class AzureBlobStoreBackend extends AbstractSharedBackend {
         }
     }
 
+    @Override
+    public boolean isMultipartUploadSupported() {
+        return true;
+    }
+
+    @Override
+    public long getMaxMultipartUploadPartSize() {
+        return MAX_MULTIPART_UPLOAD_PART_SIZE;
+    }
+
+    @Override
+    public int getMaxMultipartUploadParts() {
+        return MAX_ALLOWABLE_UPLOAD_URIS;
+    }
+
+    /**
+     * Block blobs don't need to be initiated: the upload id returned only
+     * makes the ids of the uploaded blocks unique.
+     */
+    @Override
+    public String initiateMultipartUpload(DataIdentifier identifier) {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String uploadPart(DataIdentifier identifier, String uploadId, int partNumber,
+                             File file, long offset, long length) throws DataStoreException {
+        String key = getKeyName(identifier);
+        // block ids need to have the same length within a blob
+        String blockId = Base64.encode(String.format("%s-%06d", uploadId, partNumber));
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+
+            CloudBlockBlob blob = getAzureContainer().getBlockBlobReference(key);
+            try (InputStream in = new FileInputStream(file)) {
+                ByteStreams.skipFully(in, offset);
+                blob.uploadBlock(blockId, in, length);
+            }
+            LOG.debug("Block uploaded. identifier={} part={} length={}", key, partNumber, length);
+            return blockId;
+        }
+        catch (StorageException | URISyntaxException | IOException e) {
+            LOG.debug("Error uploading block. identifier={} part={}", key, partNumber, e);
+            throw new DataStoreException(String.format("Cannot upload block. identifier=%s part=%d", key, partNumber), e);
+        }
+        finally {
+            if (null != contextClassLoader) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(DataIdentifier identifier, String uploadId,
+                                        List<String> partTags) throws DataStoreException {
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+
+            List<BlockEntry> blocks = Lists.newArrayList();
+            for (String blockId : partTags) {
+                blocks.add(new BlockEntry(blockId));
+            }
+            getAzureContainer().getBlockBlobReference(key).commitBlockList(blocks);
+            LOG.debug("Blob created from blocks. identifier={} blocks={}", key, blocks.size());
+            if (LOG_STREAMS_UPLOAD.isDebugEnabled()) {
+                // Log message, with exception so we can get a trace to see where the call came from
+                LOG_STREAMS_UPLOAD.debug("Binary uploaded to Azure Blob Storage in blocks - identifier={}", key, new Exception());
+            }
+        }
+        catch (StorageException | URISyntaxException e) {
+            LOG.debug("Error committing blocks. identifier={}", key, e);
+            throw new DataStoreException(String.format("Cannot commit blocks. identifier=%s", key), e);
+        }
+        finally {
+            if (null != contextClassLoader) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    /**
+     * Uncommitted blocks are garbage collected by the service, so there is
+     * nothing to clean up.
+     */
+    @Override
+    public void abortMultipartUpload(DataIdentifier identifier, String uploadId) {
+        LOG.debug("Blob upload aborted. identifier={} uploadId={}", getKeyName(identifier), uploadId);
+    }
+
     private static boolean waitForCopy(CloudBlob blob) throws StorageException, InterruptedException {
         boolean continueLoop = true;
         CopyStatus status = CopyStatus.PENDING;
@@ -50,6 +50,7 @@ import com.amazonaws.SdkClientException;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.S3ClientOptions;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.BucketAccelerateConfiguration;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
@@ -58,6 +59,7 @@ import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.DeleteObjectsResult;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GetBucketAccelerateConfigurationRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
@@ -71,6 +73,8 @@ import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.Region;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
 import com.amazonaws.services.s3.transfer.Copy;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.Upload;
@@ -129,6 +133,7 @@ public class S3Backend extends AbstractSharedBackend {
     static final long MAX_SINGLE_PUT_UPLOAD_SIZE = 1024L * 1024L * 1024L * 5L; // 5GB, AWS limitation
     static final long MAX_BINARY_UPLOAD_SIZE = 1024L * 1024L * 1024L * 1024L * 5L; // 5TB, AWS limitation
     private static final int MAX_ALLOWABLE_UPLOAD_URIS = 10000; // AWS limitation
+    static final long MIN_UPLOAD_PART_SIZE = 1024 * 1024 * 5; // 5MB, AWS limitation
 
     private AmazonS3Client s3service;
 
@@ -432,6 +437,150 @@ public class S3Backend extends AbstractSharedBackend {
         }
     }
 
+    @Override
+    public InputStream read(DataIdentifier identifier, long offset, long length)
+            throws DataStoreException {
+        long start = System.currentTimeMillis();
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            GetObjectRequest request = new GetObjectRequest(bucket, key)
+                .withRange(offset, offset + length - 1);
+            S3Object object = s3service.getObject(request);
+            InputStream in = object.getObjectContent();
+            LOG.debug("[{}] read of range [{}, {}] took [{}]ms", identifier, offset, length,
+                (System.currentTimeMillis() - start));
+            if (LOG_STREAMS_DOWNLOAD.isDebugEnabled()) {
+                // Log message, with exception so we can get a trace to see where the call came from
+                LOG_STREAMS_DOWNLOAD.debug("Binary range downloaded from S3 - identifier={}, offset={}, length={}",
+                    key, offset, length, new Exception());
+            }
+            return in;
+        } catch (AmazonServiceException e) {
+            throw new DataStoreException("Object not found: " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    @Override
+    public boolean isMultipartUploadSupported() {
+        return true;
+    }
+
+    @Override
+    public long getMinMultipartUploadPartSize() {
+        return MIN_UPLOAD_PART_SIZE;
+    }
+
+    @Override
+    public long getMaxMultipartUploadPartSize() {
+        return MAX_SINGLE_PUT_UPLOAD_SIZE;
+    }
+
+    @Override
+    public int getMaxMultipartUploadParts() {
+        return MAX_ALLOWABLE_UPLOAD_URIS;
+    }
+
+    @Override
+    public String initiateMultipartUpload(DataIdentifier identifier)
+            throws DataStoreException {
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            InitiateMultipartUploadResult res = s3service.initiateMultipartUpload(
+                s3ReqDecorator.decorate(new InitiateMultipartUploadRequest(bucket, key)));
+            LOG.debug("Multipart upload [{}] of [{}] initiated", res.getUploadId(), identifier);
+            return res.getUploadId();
+        } catch (AmazonClientException e) {
+            throw new DataStoreException("Could not initiate upload of " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    /**
+     * Uploads a part of a multipart upload. All parts except the last need
+     * to be at least 5MB.
+     */
+    @Override
+    public String uploadPart(DataIdentifier identifier, String uploadId, int partNumber,
+            File file, long offset, long length) throws DataStoreException {
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            UploadPartRequest req = new UploadPartRequest()
+                .withBucketName(bucket)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withFile(file)
+                .withFileOffset(offset)
+                .withPartSize(length);
+            UploadPartResult res = s3service.uploadPart(req);
+            return res.getPartETag().getETag();
+        } catch (AmazonClientException e) {
+            throw new DataStoreException("Could not upload part " + partNumber + " of " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(DataIdentifier identifier, String uploadId,
+            List<String> partTags) throws DataStoreException {
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            List<PartETag> eTags = Lists.newArrayList();
+            for (int i = 0; i < partTags.size(); i++) {
+                eTags.add(new PartETag(i + 1, partTags.get(i)));
+            }
+            s3service.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(bucket, key, uploadId, eTags));
+            if (LOG_STREAMS_UPLOAD.isDebugEnabled()) {
+                // Log message, with exception so we can get a trace to see where the call came from
+                LOG_STREAMS_UPLOAD.debug("Binary uploaded to S3 in parts - identifier={}", key, new Exception());
+            }
+            LOG.debug("Multipart upload [{}] of [{}] completed with [{}] parts",
+                uploadId, identifier, partTags.size());
+        } catch (AmazonClientException e) {
+            throw new DataStoreException("Could not complete upload of " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(DataIdentifier identifier, String uploadId)
+            throws DataStoreException {
+        String key = getKeyName(identifier);
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+            s3service.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+        } catch (AmazonClientException e) {
+            throw new DataStoreException("Could not abort upload of " + key, e);
+        } finally {
+            if (contextClassLoader != null) {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+        }
+    }
+
     @Override
     public Iterator<DataIdentifier> getAllIdentifiers()
             throws DataStoreException {
@@ -74,6 +74,8 @@ import static org.apache.jackrabbit.oak.spi.blob.BlobOptions.UploadType.SYNCHRON
  *     &lt;param name="{@link #setUploadThreads(int) uploadThreads}" value="10"/&gt;
  *     &lt;param name="{@link #setStagingPurgeInterval(int) stagingPurgeInterval}" value="300"/&gt;
  *     &lt;param name="{@link #setStagingRetryInterval(int) stagingRetryInterval} " value="600"/&gt;
+ *     &lt;param name="{@link #setChunkSize(long) chunkSize}" value="0"/&gt;
+ *     &lt;param name="{@link #setUploadPartSize(long) uploadPartSize}" value="0"/&gt;
  * &lt;/DataStore&gt;
  * </pre>
  */
@@ -114,6 +116,22 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
      */
     private int stagingRetryInterval = 600;
 
+    /**
+     * The size in bytes of the chunks in which larger binaries are cached,
+     * so that reading a range doesn't download the whole binary. The default
+     * value 0 disables the chunk cache.
+     */
+    private long chunkSize = 0;
+
+    /**
+     * The size in bytes of the parts in which larger binaries are uploaded
+     * concurrently from staging, if the backend supports multipart uploads.
+     * The default value 0 disables multipart uploads. The size has to be within
+     * the part size limits of the backend; files that would need more parts
+     * than the backend allows are uploaded in larger parts.
+     */
+    private long uploadPartSize = 0;
+
     /**
      * The root rootDirectory where the files are created.
      */
@@ -152,6 +170,7 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
         path = FilenameUtils.normalizeNoEndSeparator(new File(path).getAbsolutePath());
         checkArgument(stagingSplitPercentage >= 0 && stagingSplitPercentage <= 50,
             "Staging percentage cache should be between 0 and 50");
+        checkArgument(uploadPartSize >= 0, "Upload part size should not be negative");
 
         this.rootDirectory = new File(path);
         this.tmp = new File(rootDirectory, "tmp");
@@ -159,6 +178,7 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
 
         this.backend = createBackend();
         backend.init();
+        checkUploadPartSize();
 
         String home = FilenameUtils.normalizeNoEndSeparator(new File(homeDir).getAbsolutePath());
         this.cache =
@@ -176,12 +196,83 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
                 @Override public void adopt(File f, File moved) throws IOException {
                     FileUtils.moveFile(f, moved);
                 }
+
+                @Override public long getPartSize(long length) {
+                    if (uploadPartSize <= 0 || !backend.isMultipartUploadSupported()) {
+                        return 0;
+                    }
+                    return AbstractSharedCachingDataStore.getPartSize(uploadPartSize, length,
+                        backend.getMaxMultipartUploadPartSize(), backend.getMaxMultipartUploadParts());
+                }
+
+                @Override public String initiateUpload(String id) throws DataStoreException {
+                    DataIdentifier identifier = new DataIdentifier(id);
+                    // an existing record is written in one go, which updates its timestamp
+                    if (backend.exists(identifier)) {
+                        return null;
+                    }
+                    return backend.initiateMultipartUpload(identifier);
+                }
+
+                @Override public String writePart(String id, String uploadId, int partNumber,
+                    File f, long offset, long length) throws DataStoreException {
+                    return backend.uploadPart(new DataIdentifier(id), uploadId, partNumber, f,
+                        offset, length);
+                }
+
+                @Override public void completeUpload(String id, String uploadId,
+                    List<String> partTags) throws DataStoreException {
+                    backend.completeMultipartUpload(new DataIdentifier(id), uploadId, partTags);
+                }
+
+                @Override public void abortUpload(String id, String uploadId)
+                    throws DataStoreException {
+                    backend.abortMultipartUpload(new DataIdentifier(id), uploadId);
+                }
             }, statisticsProvider, listeningExecutor, schedulerExecutor, executor, stagingPurgeInterval,
-                stagingRetryInterval);
+                stagingRetryInterval, chunkSize, new ChunkedFileCache.ChunkLoader() {
+                    @Override public InputStream load(String id, long offset, long length) throws Exception {
+                        return backend.read(new DataIdentifier(id), offset, length);
+                    }
+                });
     }
 
     protected abstract AbstractSharedBackend createBackend();
 
+    /**
+     * Verifies that the configured upload part size is within the limits of
+     * the backend.
+     */
+    private void checkUploadPartSize() {
+        if (uploadPartSize > 0 && backend.isMultipartUploadSupported()) {
+            long min = backend.getMinMultipartUploadPartSize();
+            long max = backend.getMaxMultipartUploadPartSize();
+            checkArgument(uploadPartSize >= min && uploadPartSize <= max,
+                "Upload part size %s should be between %s and %s", uploadPartSize, min, max);
+        }
+    }
+
+    /**
+     * Returns the size of the parts in which a file of the given length is
+     * uploaded. This is the configured part size, unless the file would then
+     * have more than the maximum number of parts, in which case the parts are
+     * made larger. Returns 0 if the file is to be written in one go, because
+     * it fits into a single part or because the parts would be too large.
+     *
+     * @param partSize the configured part size
+     * @param length the length of the file
+     * @param maxPartSize the maximum part size of the backend
+     * @param maxParts the maximum number of parts of the backend
+     * @return the part size, or 0
+     */
+    static long getPartSize(long partSize, long length, long maxPartSize, int maxParts) {
+        long size = Math.max(partSize, (length + maxParts - 1) / maxParts);
+        if (length <= size || size > maxPartSize) {
+            return 0;
+        }
+        return size;
+    }
+
     @Override
     public DataRecord getRecord(DataIdentifier identifier)
         throws DataStoreException {
@@ -321,6 +412,12 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
 
         @Override
         public InputStream getStream() throws DataStoreException {
+            // Large binaries are read in chunks, if configured
+            InputStream chunked = store.cache.getChunkedStream(getIdentifier().toString(), length);
+            if (chunked != null) {
+                return chunked;
+            }
+
             File cached = null;
             // Need a catch as there's a possibility of eviction of this from cache
             try {
@@ -378,6 +475,10 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
     }
 
     public List<DataStoreCacheStatsMBean> getStats() {
+        DataStoreCacheStatsMBean chunkCacheStats = cache.getChunkCacheStats();
+        if (chunkCacheStats != null) {
+            return ImmutableList.of(cache.getCacheStats(), cache.getStagingCacheStats(), chunkCacheStats);
+        }
         return ImmutableList.of(cache.getCacheStats(), cache.getStagingCacheStats());
     }
 
@@ -411,6 +512,14 @@ public abstract class AbstractSharedCachingDataStore extends AbstractDataStore
         this.stagingRetryInterval = stagingRetryInterval;
     }
 
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setUploadPartSize(long uploadPartSize) {
+        this.uploadPartSize = uploadPartSize;
+    }
+
     public void setStatisticsProvider(StatisticsProvider statisticsProvider) {
         this.statisticsProvider = statisticsProvider;
     }
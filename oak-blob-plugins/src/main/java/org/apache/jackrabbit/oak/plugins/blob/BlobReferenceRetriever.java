@@ -19,6 +19,8 @@
 package org.apache.jackrabbit.oak.plugins.blob;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 
@@ -35,5 +37,25 @@ public interface BlobReferenceRetriever {
      * @throws IOException
      */
     void collectReferences(ReferenceCollector collector) throws IOException;
+
+    /**
+     * Collect references using multiple collectors. Implementations may split
+     * the references into partitions (for example by file or by id range),
+     * which are traversed concurrently by tasks submitted to the given
+     * executor. Each collector is only called by one task at a time, so
+     * collectors don't need to be thread safe. The method returns once all
+     * references are collected.
+     * <p>
+     * The default implementation collects all references into the first
+     * collector, in the calling thread.
+     *
+     * @param collectors the collectors, at least one
+     * @param executor the executor used to traverse the partitions
+     * @throws IOException
+     */
+    default void collectReferences(List<? extends ReferenceCollector> collectors, Executor executor)
+            throws IOException {
+        collectReferences(collectors.get(0));
+    }
 }
 
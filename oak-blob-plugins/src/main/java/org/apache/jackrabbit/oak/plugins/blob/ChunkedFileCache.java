@@ -0,0 +1,491 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.RemovalCause;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.commons.io.FilenameUtils.normalizeNoEndSeparator;
+import static org.apache.jackrabbit.oak.commons.FileIOUtils.copyInputStreamToFile;
+
+/**
+ * Caches fixed size chunks of binaries, so that reading a range of a large
+ * binary only downloads the chunks covering that range instead of the whole
+ * binary. Chunks are cached and evicted independently, keyed by the id of the
+ * binary and the index of the chunk. Streams returned by
+ * {@link #getStream(String, long)} fetch the chunks lazily as they are read
+ * (skipping doesn't fetch anything), and prefetch the next chunks in the
+ * background.
+ */
+public class ChunkedFileCache implements Closeable {
+    /**
+     * Logger instance.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkedFileCache.class);
+
+    private static final int SEGMENT_COUNT = Integer.getInteger("oak.blob.fileCache.segmentCount", 1);
+
+    /**
+     * The number of chunks to prefetch ahead of a reader.
+     */
+    private static final int PREFETCH_COUNT = Integer.getInteger("oak.blob.chunkCache.prefetchCount", 2);
+
+    protected static final String CHUNK_DIR = "chunks";
+
+    /**
+     * Loads a range of a binary from the backend.
+     */
+    public interface ChunkLoader {
+        /**
+         * Returns a stream over the given range of the binary.
+         *
+         * @param id the id of the binary
+         * @param offset the offset of the range
+         * @param length the length of the range
+         * @return the stream
+         * @throws Exception
+         */
+        InputStream load(String id, long offset, long length) throws Exception;
+    }
+
+    /**
+     * The root directory of the cached chunks.
+     */
+    private final File cacheRoot;
+
+    private final long chunkSize;
+
+    private final ChunkLoader loader;
+
+    private final CacheLIRS<String, File> cache;
+
+    private final FileCacheStats cacheStats;
+
+    private final ExecutorService executor;
+
+    /**
+     * Chunks currently being prefetched.
+     */
+    private final Map<String, Future<File>> prefetching = new ConcurrentHashMap<>();
+
+    /**
+     * Chunks currently being downloaded, by a reader or by a prefetch.
+     */
+    private final Map<String, FutureTask<File>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong prefetchCount = new AtomicLong();
+
+    public ChunkedFileCache(long maxSize /* bytes */, long chunkSize, File root, ChunkLoader loader,
+        @Nullable ExecutorService executor) {
+        checkArgument(chunkSize > 0, "Chunk size should be positive");
+        this.cacheRoot = new File(root, CHUNK_DIR);
+        this.chunkSize = chunkSize;
+        this.loader = loader;
+
+        // convert to number of 4 KB blocks
+        long size = Math.round(maxSize / (1024L * 4));
+
+        cache = new CacheLIRS.Builder<String, File>()
+            .maximumWeight(size)
+            .recordStats()
+            .weigher(FileCache.weigher)
+            .segmentCount(SEGMENT_COUNT)
+            .evictionCallback(new EvictionCallback<String, File>() {
+                @Override
+                public void evicted(@NotNull String key, @Nullable File cachedFile,
+                    @NotNull RemovalCause cause) {
+                    try {
+                        if (cachedFile != null && cachedFile.exists()
+                            && cause != RemovalCause.REPLACED) {
+                            DataStoreCacheUtils.recursiveDelete(cachedFile, cacheRoot);
+                            LOG.debug("Chunk [{}] evicted with reason [{}]", cachedFile, cause);
+                        }
+                    } catch (IOException e) {
+                        LOG.info("Cached chunk deletion failed after eviction", e);
+                    }
+                }})
+            .build();
+
+        this.cacheStats = new FileCacheStats("DataStore-ChunkCache", cache, FileCache.weigher,
+            FileCache.memWeigher, maxSize);
+
+        if (executor == null) {
+            this.executor = Executors.newSingleThreadExecutor();
+        } else {
+            this.executor = executor;
+        }
+        this.executor.submit(new CacheBuildJob());
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns a stream over the binary with the given id, reading the binary
+     * in chunks.
+     *
+     * @param id the id of the binary
+     * @param length the length of the binary
+     * @return the stream
+     */
+    public InputStream getStream(String id, long length) {
+        return new ChunkedInputStream(id, length);
+    }
+
+    /**
+     * Returns the cached file of the given chunk, downloading it if needed.
+     *
+     * @param id the id of the binary
+     * @param index the index of the chunk
+     * @param length the length of the binary
+     * @return the chunk file
+     * @throws IOException
+     */
+    File getChunk(final String id, final long index, final long length) throws IOException {
+        final String key = getKey(id, index);
+        try {
+            return cache.get(key, loader(id, index, length));
+        } catch (ExecutionException e) {
+            LOG.error("Error loading chunk [{}] from cache", key);
+            throw new IOException(e);
+        }
+    }
+
+    public boolean containsKey(String id, long index) {
+        return cache.containsKey(getKey(id, index));
+    }
+
+    /**
+     * Invalidates all the chunks of the given binary.
+     *
+     * @param id the id of the binary
+     */
+    public void invalidate(String id) {
+        for (String key : cache.keySet()) {
+            if (key.startsWith(id + ".")) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache statistics. Only reads are counted as hits and
+     * misses; prefetches are counted separately (see {@link #getPrefetchCount()}).
+     */
+    public DataStoreCacheStatsMBean getStats() {
+        return cacheStats;
+    }
+
+    /**
+     * Returns the number of chunks that were prefetched.
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    @Override
+    public void close() {
+        LOG.info("Chunk cache stats on close [{}]", cacheStats.cacheInfoAsString());
+        new ExecutorCloser(executor).close();
+    }
+
+    private static String getKey(String id, long index) {
+        return id + "." + index;
+    }
+
+    /**
+     * Returns a loader for the given chunk, used by readers through
+     * {@link CacheLIRS#get(Object, Callable)}.
+     */
+    private Callable<File> loader(final String id, final long index, final long length) {
+        return new Callable<File>() {
+            @Override public File call() throws Exception {
+                return loadOnce(id, index, length);
+            }
+        };
+    }
+
+    /**
+     * Loads the given chunk, or waits for the load that is already running,
+     * so that at most one load per chunk runs at a time, whether it is
+     * triggered by a reader or by a prefetch.
+     */
+    private File loadOnce(final String id, final long index, final long length) throws Exception {
+        String key = getKey(id, index);
+        FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+            @Override public File call() throws Exception {
+                return load(id, index, length);
+            }
+        });
+        FutureTask<File> running = loading.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private File load(String id, long index, long length) throws Exception {
+        File cachedFile = DataStoreCacheUtils.getFile(getKey(id, index), cacheRoot);
+        if (cachedFile.exists()) {
+            return cachedFile;
+        }
+        long offset = index * chunkSize;
+        long chunkLength = Math.min(chunkSize, length - offset);
+
+        // download to a temporary file first, so that readers never see a partial chunk;
+        // the file is unique per load, so concurrent loads never write to the same file
+        File temp = File.createTempFile(cachedFile.getName(), ".tmp", cachedFile.getParentFile());
+        InputStream is = null;
+        boolean threw = true;
+        try {
+            is = loader.load(id, offset, chunkLength);
+            copyInputStreamToFile(is, temp);
+            threw = false;
+        } catch (Exception e) {
+            LOG.warn("Error reading chunk [{}] of id [{}] from backend", index, id, e);
+            FileUtils.deleteQuietly(temp);
+            throw e;
+        } finally {
+            Closeables.close(is, threw);
+        }
+        try {
+            Files.move(temp, cachedFile);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            if (!cachedFile.exists()) {
+                throw e;
+            }
+            // loaded concurrently
+            return cachedFile;
+        }
+        cacheStats.incrementDownloadedBytes(cachedFile.length());
+        return cachedFile;
+    }
+
+    private void prefetch(final String id, long index, final long length) {
+        long count = (length + chunkSize - 1) / chunkSize;
+        for (long i = index; i < Math.min(index + PREFETCH_COUNT, count); i++) {
+            final long chunk = i;
+            final String key = getKey(id, chunk);
+            if (cache.containsKey(key) || prefetching.containsKey(key)) {
+                continue;
+            }
+            FutureTask<File> task = new FutureTask<File>(new Callable<File>() {
+                @Override public File call() throws Exception {
+                    try {
+                        // not through cache.get, which would count a miss
+                        File file = cache.peek(key);
+                        if (file == null) {
+                            file = loadOnce(id, chunk, length);
+                            cache.put(key, file);
+                            prefetchCount.incrementAndGet();
+                        }
+                        return file;
+                    } finally {
+                        prefetching.remove(key);
+                    }
+                }
+            });
+            if (prefetching.putIfAbsent(key, task) == null) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    prefetching.remove(key);
+                    LOG.debug("Prefetch of chunk [{}] rejected", key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream over a binary, reading the chunk at the current position.
+     */
+    private class ChunkedInputStream extends InputStream {
+        private final String id;
+        private final long length;
+        private long position;
+        private InputStream current;
+        private long currentEnd;
+
+        ChunkedInputStream(String id, long length) {
+            this.id = id;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            if (current == null) {
+                openChunk();
+            }
+            int n = current.read(b, off, (int) Math.min(len, currentEnd - position));
+            if (n < 0) {
+                throw new IOException("Unexpected end of chunk at position " + position + " of " + id);
+            }
+            position += n;
+            if (position >= currentEnd) {
+                closeChunk();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, length - position));
+            if (current != null && position + skipped < currentEnd) {
+                skipped = current.skip(skipped);
+            } else {
+                closeChunk();
+            }
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return current == null ? 0 : current.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeChunk();
+            position = length;
+        }
+
+        private void openChunk() throws IOException {
+            long index = position / chunkSize;
+            File chunk = getChunk(id, index, length);
+            FileInputStream in;
+            try {
+                in = new FileInputStream(chunk);
+            } catch (FileNotFoundException e) {
+                // evicted in the meantime
+                cache.invalidate(getKey(id, index));
+                in = new FileInputStream(getChunk(id, index, length));
+            }
+            long offset = position - index * chunkSize;
+            if (in.skip(offset) != offset) {
+                in.close();
+                throw new IOException("Unable to position chunk [" + index + "] of " + id);
+            }
+            current = in;
+            currentEnd = Math.min((index + 1) * chunkSize, length);
+            prefetch(id, index + 1, length);
+        }
+
+        private void closeChunk() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Called to initialize the in-memory cache from the fs folder
+     */
+    private class CacheBuildJob implements Callable<Integer> {
+        @Override
+        public Integer call() {
+            Stopwatch watch = Stopwatch.createStarted();
+            int count = build();
+            LOG.info("Chunk cache built with [{}] chunks from file system in [{}] seconds",
+                count, watch.elapsed(TimeUnit.SECONDS));
+            return count;
+        }
+    }
+
+    /**
+     * Retrieves all the chunks present in the fs cache folder and builds the in-memory cache.
+     */
+    private int build() {
+        int count = 0;
+        Iterator<File> iter = Files.fileTreeTraverser().postOrderTraversal(cacheRoot)
+            .filter(new Predicate<File>() {
+                @Override public boolean apply(File input) {
+                    return input.isFile() && !normalizeNoEndSeparator(input.getParent())
+                        .equals(cacheRoot.getAbsolutePath());
+                }
+            }).iterator();
+        while (iter.hasNext()) {
+            File chunk = iter.next();
+            if (chunk.getName().endsWith(".tmp")) {
+                FileUtils.deleteQuietly(chunk);
+                continue;
+            }
+            cache.put(chunk.getName(), chunk);
+            count++;
+        }
+        return count;
+    }
+}
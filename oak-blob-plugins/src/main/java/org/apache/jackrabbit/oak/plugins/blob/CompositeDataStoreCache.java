@@ -54,6 +54,12 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
      */
     private final UploadStagingCache stagingCache;
 
+    /**
+     * Cache for chunks of large blobs, null if not configured
+     */
+    @Nullable
+    private final ChunkedFileCache chunkCache;
+
     /**
      * The directory where the files are created.
      */
@@ -66,6 +72,22 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
         ExecutorService executor /* File cache executor */,
         int purgeInterval /* async purge interval secs */,
         int stagingRetryInterval /* async retry interval secs */) {
+        this(path, home, size, uploadSplitPercentage, uploadThreads, loader, uploader, statsProvider,
+            listeningExecutor, scheduledExecutor, executor, purgeInterval, stagingRetryInterval, 0, null);
+    }
+
+    /**
+     * Creates the cache. If the chunk size is positive, half of the download
+     * cache size is used to cache chunks of blobs larger than the chunk size.
+     */
+    public CompositeDataStoreCache(String path, File home, long size, int uploadSplitPercentage,
+        int uploadThreads, CacheLoader<String, InputStream> loader, final StagingUploader uploader,
+        StatisticsProvider statsProvider, ListeningExecutorService listeningExecutor,
+        ScheduledExecutorService scheduledExecutor /* purge scheduled executor */,
+        ExecutorService executor /* File cache executor */,
+        int purgeInterval /* async purge interval secs */,
+        int stagingRetryInterval /* async retry interval secs */,
+        long chunkSize, @Nullable ChunkedFileCache.ChunkLoader chunkLoader) {
 
         checkArgument(uploadSplitPercentage >= 0 && uploadSplitPercentage < 100,
             "Upload percentage should be between 0 and 100");
@@ -73,11 +95,19 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
         this.directory = new File(path);
 
         long uploadSize = (size * uploadSplitPercentage) / 100;
+        long downloadSize = size - uploadSize;
 
         this.stagingCache = UploadStagingCache
             .build(directory, home, uploadThreads, uploadSize, uploader, null, statsProvider,
                 listeningExecutor, scheduledExecutor, purgeInterval, stagingRetryInterval);
-        this.downloadCache = FileCache.build((size - uploadSize), directory, loader, executor);
+        if (chunkSize > 0 && chunkLoader != null && downloadSize > 0) {
+            long chunkCacheSize = downloadSize / 2;
+            downloadSize -= chunkCacheSize;
+            this.chunkCache = new ChunkedFileCache(chunkCacheSize, chunkSize, directory, chunkLoader, null);
+        } else {
+            this.chunkCache = null;
+        }
+        this.downloadCache = FileCache.build(downloadSize, directory, loader, executor);
         stagingCache.setDownloadCache(downloadCache);
     }
 
@@ -112,10 +142,33 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
         }
     }
 
+    /**
+     * Returns a stream over the given blob, read in chunks if the chunk cache
+     * is configured and the blob is larger than a chunk and not cached whole.
+     *
+     * @param key the id of the blob
+     * @param length the length of the blob
+     * @return the stream, or null if the blob should be read as a whole
+     */
+    @Nullable
+    public InputStream getChunkedStream(String key, long length) {
+        if (chunkCache == null || length <= chunkCache.getChunkSize()) {
+            return null;
+        }
+        File cached = getIfPresent(key);
+        if (cached != null && cached.exists()) {
+            return null;
+        }
+        return chunkCache.getStream(key, length);
+    }
+
     @Override
     public void invalidate(Object key) {
         stagingCache.invalidate((String) key);
         downloadCache.invalidate(key);
+        if (chunkCache != null) {
+            chunkCache.invalidate((String) key);
+        }
     }
 
     public boolean stage(String key, File file) {
@@ -131,10 +184,18 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
         return downloadCache.getStats();
     }
 
+    @Nullable
+    public DataStoreCacheStatsMBean getChunkCacheStats() {
+        return chunkCache == null ? null : chunkCache.getStats();
+    }
+
     @Override
     public void close() {
         downloadCache.close();
         stagingCache.close();
+        if (chunkCache != null) {
+            chunkCache.close();
+        }
     }
 
     UploadStagingCache getStagingCache() {
@@ -144,4 +205,9 @@ public class CompositeDataStoreCache extends AbstractCache<String, File> impleme
     FileCache getDownloadCache() {
         return downloadCache;
     }
+
+    @Nullable
+    ChunkedFileCache getChunkCache() {
+        return chunkCache;
+    }
 }
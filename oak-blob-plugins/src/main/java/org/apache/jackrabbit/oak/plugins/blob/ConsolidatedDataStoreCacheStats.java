@@ -224,6 +224,8 @@ public class ConsolidatedDataStoreCacheStats implements ConsolidatedDataStoreCac
                 "totalWeight",
                 "totalMemWeight",
                 "maxWeight",
+                "downloadedBytes",
+                "uploadedBytes",
         };
 
         static final String[] FIELD_DESCRIPTIONS = FIELD_NAMES;
@@ -246,6 +248,8 @@ public class ConsolidatedDataStoreCacheStats implements ConsolidatedDataStoreCac
                 SimpleType.STRING,
                 SimpleType.STRING,
                 SimpleType.STRING,
+                SimpleType.STRING,
+                SimpleType.STRING,
         };
 
         static final CompositeType TYPE = createCompositeType();
@@ -287,6 +291,8 @@ public class ConsolidatedDataStoreCacheStats implements ConsolidatedDataStoreCac
                     humanReadableByteCount(stats.estimateCurrentWeight()),
                     humanReadableByteCount(stats.estimateCurrentMemoryWeight()),
                     humanReadableByteCount(stats.getMaxTotalWeight()),
+                    humanReadableByteCount(stats.getDownloadedBytes()),
+                    humanReadableByteCount(stats.getUploadedBytes()),
             };
             try {
                 return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
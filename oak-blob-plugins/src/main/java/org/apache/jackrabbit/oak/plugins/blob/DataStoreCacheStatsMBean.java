@@ -29,4 +29,16 @@ public interface DataStoreCacheStatsMBean extends CacheStatsMBean {
      */
     //Computing weight is costly hence its an operation
     long estimateCurrentMemoryWeight();
+
+    /**
+     * Total number of bytes downloaded from the backend into the cache
+     * @return the number of bytes downloaded
+     */
+    long getDownloadedBytes();
+
+    /**
+     * Total number of bytes uploaded from the cache to the backend
+     * @return the number of bytes uploaded
+     */
+    long getUploadedBytes();
 }
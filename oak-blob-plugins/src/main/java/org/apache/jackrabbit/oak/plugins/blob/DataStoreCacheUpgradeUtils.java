@@ -46,6 +46,7 @@ public class DataStoreCacheUpgradeUtils {
     static final String UPLOAD_MAP = "async-pending-uploads.ser";
     static final String UPLOAD_STAGING_DIR = UploadStagingCache.UPLOAD_STAGING_DIR;
     static final String DOWNLOAD_DIR = FileCache.DOWNLOAD_DIR;
+    static final String CHUNK_DIR = ChunkedFileCache.CHUNK_DIR;
 
     /**
      * De-serialize the pending uploads map from {@link org.apache.jackrabbit.core.data.AsyncUploadCache}.
@@ -104,7 +105,7 @@ public class DataStoreCacheUpgradeUtils {
      * @param path the root of the datastore
      */
     public static void moveDownloadCache(final File path) {
-        final List<String> exceptions = ImmutableList.of("tmp", UPLOAD_STAGING_DIR, DOWNLOAD_DIR);
+        final List<String> exceptions = ImmutableList.of("tmp", UPLOAD_STAGING_DIR, DOWNLOAD_DIR, CHUNK_DIR);
         File newDownloadDir = new File(path, DOWNLOAD_DIR);
 
         Iterator<File> iterator =
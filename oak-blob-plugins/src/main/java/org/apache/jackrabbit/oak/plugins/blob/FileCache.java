@@ -29,6 +29,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Stopwatch;
@@ -86,14 +87,14 @@ public class FileCache extends AbstractCache<String, File> implements Closeable
     /**
      * Convert the size calculation to KB to support max file size of 2 TB
      */
-    private static final Weigher<String, File> weigher = new Weigher<String, File>() {
+    static final Weigher<String, File> weigher = new Weigher<String, File>() {
         @Override public int weigh(String key, File value) {
             // convert to number of 4 KB blocks
             return Math.round(value.length() / (4 * 1024));
         }};
 
     //Rough estimate of the in-memory key, value pair
-    private static final Weigher<String, File> memWeigher = new Weigher<String, File>() {
+    static final Weigher<String, File> memWeigher = new Weigher<String, File>() {
         @Override public int weigh(String key, File value) {
             return (StringUtils.estimateMemoryUsage(key) +
                 StringUtils.estimateMemoryUsage(value.getAbsolutePath()) + 48);
@@ -120,6 +121,7 @@ public class FileCache extends AbstractCache<String, File> implements Closeable
                     try {
                         is = loader.load(key);
                         copyInputStreamToFile(is, cachedFile);
+                        cacheStats.incrementDownloadedBytes(cachedFile.length());
                         threw = false;
                     } catch (Exception e) {
                         LOG.warn("Error reading object for id [{}] from backend", key, e);
@@ -335,6 +337,7 @@ class FileCacheStats extends CacheStats implements DataStoreCacheStatsMBean {
     private final Weigher<Object, Object> memWeigher;
     private final Weigher<Object, Object> weigher;
     private final Cache<Object, Object> cache;
+    private final AtomicLong downloadedBytes = new AtomicLong();
 
     /**
      * Construct the cache stats object.
@@ -344,12 +347,32 @@ class FileCacheStats extends CacheStats implements DataStoreCacheStatsMBean {
      */
     public FileCacheStats(Cache<?, ?> cache, Weigher<?, ?> weigher, Weigher<?, ?> memWeigher,
         long maxWeight) {
-        super(cache, "DataStore-DownloadCache", weigher, maxWeight);
+        this("DataStore-DownloadCache", cache, weigher, memWeigher, maxWeight);
+    }
+
+    public FileCacheStats(String name, Cache<?, ?> cache, Weigher<?, ?> weigher, Weigher<?, ?> memWeigher,
+        long maxWeight) {
+        super(cache, name, weigher, maxWeight);
         this.memWeigher = (Weigher<Object, Object>) memWeigher;
         this.weigher = (Weigher<Object, Object>) weigher;
         this.cache = (Cache<Object, Object>) cache;
     }
 
+    void incrementDownloadedBytes(long bytes) {
+        downloadedBytes.addAndGet(bytes);
+    }
+
+    @Override
+    public long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    @Override
+    public long getUploadedBytes() {
+        // nothing is uploaded from the download cache
+        return 0;
+    }
+
     @Override
     public long estimateCurrentMemoryWeight() {
         if (memWeigher == null) {
@@ -69,6 +69,17 @@ public class GarbageCollectorFileState implements Closeable{
         return markedRefs;
     }
 
+    /**
+     * Gets the file storing a run of marked references, when collecting the
+     * references with multiple threads.
+     *
+     * @param index the index of the run
+     * @return the run of marked references
+     */
+    public File getMarkedRefsRun(int index) {
+        return new File(home, markedRefs.getName() + "-run-" + index);
+    }
+
     /**
      * Gets the file storing the available references.
      * 
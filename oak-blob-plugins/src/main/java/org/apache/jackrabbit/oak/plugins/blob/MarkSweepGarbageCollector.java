@@ -34,6 +34,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.LineNumberReader;
 import java.sql.Timestamp;
 import java.util.ArrayDeque;
@@ -47,6 +48,9 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -55,6 +59,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.StandardSystemProperty;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
@@ -64,6 +69,7 @@ import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.jackrabbit.core.data.DataRecord;
@@ -105,6 +111,8 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
 
     public static final String DELIM = ",";
 
+    private static final int DEFAULT_MARK_THREADS = Integer.getInteger("oak.blob.gc.markThreads", 1);
+
     private static final java.util.function.Function<String, String> transformer = new java.util.function.Function<String, String>() {
         @Nullable
         @Override
@@ -115,6 +123,8 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             return "";
         }};
 
+    private static final Comparator<String> idComparator = comparing(s -> s.split(DELIM)[0]);
+
     /** The last modified time before current time of blobs to consider for garbage collection. */
     private final long maxLastModifiedInterval;
 
@@ -157,6 +167,9 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
 
     private Clock clock;
 
+    /** The number of threads used to collect the references in the mark phase */
+    private int markThreads = DEFAULT_MARK_THREADS;
+
     /**
      * Creates an instance of MarkSweepGarbageCollector
      *
@@ -480,10 +493,14 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         earliestRefAvailTime = (earliestRefAvailTime < markStart ? earliestRefAvailTime : markStart);
 
         // Find all blob references after iterating over the whole repository
+        Stopwatch sw = Stopwatch.createStarted();
         (new BlobIdRetriever(fs, forceBlobRetrieve)).call();
+        statsCollector.updateRetrieveDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
 
         // Calculate the references not used
+        sw.reset().start();
         difference(fs);
+        statsCollector.updateDifferenceDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
         long count = 0;
         long deleted = 0;
 
@@ -605,65 +622,95 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
      * @param logPath whether to log path in the file or not
      */
     protected void iterateNodeTree(GarbageCollectorFileState fs, final boolean logPath) throws IOException {
+        iterateNodeTree(fs, logPath, statsCollector);
+    }
+
+    private void iterateNodeTree(GarbageCollectorFileState fs, boolean logPath,
+            OperationStatsCollector collector) throws IOException {
+        if (markThreads > 1) {
+            iterateNodeTreeInParallel(fs, logPath, collector);
+            return;
+        }
         final BufferedWriter writer = Files.newWriter(fs.getMarkedRefs(), Charsets.UTF_8);
         final AtomicInteger count = new AtomicInteger();
         try {
-            marker.collectReferences(
-                    new ReferenceCollector() {
-                        private final boolean debugMode = LOG.isTraceEnabled();
-
-                        @Override
-                        public void addReference(String blobId, final String nodeId) {
-                            if (debugMode) {
-                                LOG.trace("BlobId : {}, NodeId : {}", blobId, nodeId);
-                            }
-
-                            try {
-                                Iterator<String> idIter = blobStore.resolveChunks(blobId);
-                                final Joiner delimJoiner = Joiner.on(DELIM).skipNulls();
-                                Iterator<List<String>> partitions = Iterators.partition(idIter, getBatchCount());
-                                while (partitions.hasNext()) {
-                                    List<String> idBatch = Lists.transform(partitions.next(), new Function<String,
-                                        String>() {
-                                        @Nullable @Override
-                                        public String apply(@Nullable String id) {
-                                            if (logPath) {
-                                                return delimJoiner.join(id, nodeId);
-                                            }
-                                            return id;
-                                        }
-                                    });
-                                    if (debugMode) {
-                                        LOG.trace("chunkIds : {}", idBatch);
-                                    }
-                                    count.getAndAdd(idBatch.size());
-                                    saveBatchToFile(idBatch, writer);
-                                }
-
-                                if (count.get() % getBatchCount() == 0) {
-                                    LOG.info("Collected ({}) blob references", count.get());
-                                }
-                            } catch (Exception e) {
-                                throw new RuntimeException("Error in retrieving references", e);
-                            }
-                        }
-                    }
-            );
+            Stopwatch sw = Stopwatch.createStarted();
+            marker.collectReferences(new MarkedReferenceCollector(writer, count, logPath));
+            collector.updateMarkCollectDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
             LOG.info("Number of valid blob references marked under mark phase of " +
                     "Blob garbage collection [{}]", count.get());
             // sort the marked references with the first part of the key
-            sort(fs.getMarkedRefs(),
-                new Comparator<String>() {
-                    @Override
-                    public int compare(String s1, String s2) {
-                        return s1.split(DELIM)[0].compareTo(s2.split(DELIM)[0]);
-                    }
-                });
+            sw.reset().start();
+            sort(fs.getMarkedRefs(), idComparator);
+            collector.updateMarkSortDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
         } finally {
             closeQuietly(writer);
         }
     }
 
+    /**
+     * Collects the blob references with one collector per mark thread, using
+     * the partitions of the reference retriever. Every collector writes its own
+     * run of references, the runs are sorted concurrently and then merged into
+     * the marked references, so that no single threaded sort over all the
+     * references is needed.
+     */
+    private void iterateNodeTreeInParallel(GarbageCollectorFileState fs, boolean logPath,
+            OperationStatsCollector collector) throws IOException {
+        ExecutorService markExecutor = Executors.newFixedThreadPool(markThreads,
+            new ThreadFactoryBuilder().setNameFormat("oak-blob-gc-mark-%d").setDaemon(true).build());
+        List<File> runs = newArrayList();
+        List<BufferedWriter> writers = newArrayList();
+        final AtomicInteger count = new AtomicInteger();
+        try {
+            List<MarkedReferenceCollector> collectors = newArrayList();
+            for (int i = 0; i < markThreads; i++) {
+                File run = fs.getMarkedRefsRun(i);
+                BufferedWriter writer = Files.newWriter(run, Charsets.UTF_8);
+                runs.add(run);
+                writers.add(writer);
+                collectors.add(new MarkedReferenceCollector(writer, count, logPath));
+            }
+
+            Stopwatch sw = Stopwatch.createStarted();
+            marker.collectReferences(collectors, markExecutor);
+            for (BufferedWriter writer : writers) {
+                writer.close();
+            }
+            collector.updateMarkCollectDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            LOG.info("Number of valid blob references marked under mark phase of " +
+                    "Blob garbage collection [{}] using {} threads", count.get(), markThreads);
+
+            // sort the runs with the first part of the key and merge them
+            sw.reset().start();
+            List<Future<?>> sorted = newArrayList();
+            for (File run : runs) {
+                sorted.add(markExecutor.submit(() -> {
+                    sort(run, idComparator);
+                    return null;
+                }));
+            }
+            for (Future<?> f : sorted) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while sorting the marked references");
+                } catch (ExecutionException e) {
+                    Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                    throw new IOException("Error sorting the marked references", e.getCause());
+                }
+            }
+            merge(runs, fs.getMarkedRefs(), idComparator);
+            collector.updateMarkSortDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        } finally {
+            for (BufferedWriter writer : writers) {
+                closeQuietly(writer);
+            }
+            markExecutor.shutdownNow();
+        }
+    }
+
     /**
      * Checks for the DataStore consistency and reports the number of missing blobs still referenced.
      *
@@ -688,7 +735,7 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             executor.execute(blobIdRetriever);
 
             // Mark all used blob references
-            iterateNodeTree(fs, true);
+            iterateNodeTree(fs, true, consistencyStatsCollector);
             consistencyStatsCollector.updateMarkDuration(sw.elapsed(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
 
             try {
@@ -714,7 +761,7 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
                         File file = copy(refFile.getStream());
                         files.add(file);
                     }
-                    merge(files, fs.getMarkedRefs(), comparing(s -> s.split(DELIM)[0]));
+                    merge(files, fs.getMarkedRefs(), idComparator);
                 }
             }
 
@@ -760,6 +807,69 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         this.clock = clock;
     }
 
+    /**
+     * Sets the number of threads used to collect the blob references in the
+     * mark phase. With more than one thread, the references are collected
+     * using the partitions of the {@link BlobReferenceRetriever}.
+     *
+     * @param markThreads the number of threads
+     */
+    public void setMarkThreads(int markThreads) {
+        this.markThreads = markThreads;
+    }
+
+    /**
+     * Writes the chunk ids of the collected blob references to a file.
+     */
+    private class MarkedReferenceCollector implements ReferenceCollector {
+        private final boolean debugMode = LOG.isTraceEnabled();
+        private final BufferedWriter writer;
+        private final AtomicInteger count;
+        private final boolean logPath;
+
+        MarkedReferenceCollector(BufferedWriter writer, AtomicInteger count, boolean logPath) {
+            this.writer = writer;
+            this.count = count;
+            this.logPath = logPath;
+        }
+
+        @Override
+        public void addReference(String blobId, final String nodeId) {
+            if (debugMode) {
+                LOG.trace("BlobId : {}, NodeId : {}", blobId, nodeId);
+            }
+
+            try {
+                Iterator<String> idIter = blobStore.resolveChunks(blobId);
+                final Joiner delimJoiner = Joiner.on(DELIM).skipNulls();
+                Iterator<List<String>> partitions = Iterators.partition(idIter, getBatchCount());
+                while (partitions.hasNext()) {
+                    List<String> idBatch = Lists.transform(partitions.next(), new Function<String,
+                        String>() {
+                        @Nullable @Override
+                        public String apply(@Nullable String id) {
+                            if (logPath) {
+                                return delimJoiner.join(id, nodeId);
+                            }
+                            return id;
+                        }
+                    });
+                    if (debugMode) {
+                        LOG.trace("chunkIds : {}", idBatch);
+                    }
+                    int total = count.addAndGet(idBatch.size());
+                    saveBatchToFile(idBatch, writer);
+
+                    if (total % getBatchCount() == 0) {
+                        LOG.info("Collected ({}) blob references", total);
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Error in retrieving references", e);
+            }
+        }
+    }
+
     /**
      * BlobIdRetriever class to retrieve all blob ids.
      */
@@ -980,12 +1090,17 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             public int filter(GarbageCollectableBlobStore blobStore, FileLineDifferenceIterator iter,
                 GarbageCollectorFileState fs) throws IOException {
                 // Write the original candidates
-                FileIOUtils.writeStrings(iter, fs.getGcCandidates(), true);
+                int count = FileIOUtils.writeStrings(iter, fs.getGcCandidates(), true);
 
                 // Filter the ids actively deleted
                 BlobTrackingStore store = (BlobTrackingStore) blobStore;
                 BlobIdTracker tracker = (BlobIdTracker) store.getTracker();
 
+                // Skip the difference if none of the candidates are actively deleted
+                if (!tracker.getDeleteTracker().mightContainAny(fs.getGcCandidates())) {
+                    return count;
+                }
+
                 // Move the candidates identified to a temp file
                 File candTemp = createTempFile("candTemp", null);
                 copyFile(fs.getGcCandidates(), candTemp);
@@ -1150,6 +1265,10 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         static final String DURATION = "ACTIVE_TIMER";
         static final String MARK_DURATION = "MARK_TIMER";
         static final String SWEEP_DURATION = "SWEEP_TIMER";
+        static final String MARK_COLLECT_DURATION = "MARK_COLLECT_TIMER";
+        static final String MARK_SORT_DURATION = "MARK_SORT_TIMER";
+        static final String RETRIEVE_DURATION = "RETRIEVE_TIMER";
+        static final String DIFFERENCE_DURATION = "DIFFERENCE_TIMER";
         static final String NUM_BLOBS_DELETED = "NUM_BLOBS_DELETED";
         static final String TOTAL_SIZE_DELETED = "TOTAL_SIZE_DELETED";
         static final String NUM_CANDIDATES = "NUM_CANDIDATES";
@@ -1164,6 +1283,14 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         private TimerStats duration;
         private final TimerStats markDuration;
         private final TimerStats sweepDuration;
+        private final TimerStats markCollectDuration;
+        private final TimerStats markSortDuration;
+        private final TimerStats retrieveDuration;
+        private final TimerStats differenceDuration;
+        private volatile long lastMarkCollectDuration;
+        private volatile long lastMarkSortDuration;
+        private volatile long lastRetrieveDuration;
+        private volatile long lastDifferenceDuration;
         private final OperationStatsCollector collector;
 
         GarbageCollectionOperationStats(StatisticsProvider sp, String typeName) {
@@ -1177,6 +1304,10 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             this.duration = sp.getTimer(getMetricName(DURATION), StatsOptions.METRICS_ONLY);
             this.markDuration = sp.getTimer(getMetricName(MARK_DURATION), StatsOptions.METRICS_ONLY);
             this.sweepDuration = sp.getTimer(getMetricName(SWEEP_DURATION), StatsOptions.METRICS_ONLY);
+            this.markCollectDuration = sp.getTimer(getMetricName(MARK_COLLECT_DURATION), StatsOptions.METRICS_ONLY);
+            this.markSortDuration = sp.getTimer(getMetricName(MARK_SORT_DURATION), StatsOptions.METRICS_ONLY);
+            this.retrieveDuration = sp.getTimer(getMetricName(RETRIEVE_DURATION), StatsOptions.METRICS_ONLY);
+            this.differenceDuration = sp.getTimer(getMetricName(DIFFERENCE_DURATION), StatsOptions.METRICS_ONLY);
 
             this.collector = new OperationStatsCollector() {
                 @Override
@@ -1216,6 +1347,26 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
                 @Override public void updateSweepDuration(long time, TimeUnit timeUnit) {
                     sweepDuration.update(time, timeUnit);
                 }
+
+                @Override public void updateMarkCollectDuration(long time, TimeUnit timeUnit) {
+                    markCollectDuration.update(time, timeUnit);
+                    lastMarkCollectDuration = timeUnit.toMillis(time);
+                }
+
+                @Override public void updateMarkSortDuration(long time, TimeUnit timeUnit) {
+                    markSortDuration.update(time, timeUnit);
+                    lastMarkSortDuration = timeUnit.toMillis(time);
+                }
+
+                @Override public void updateRetrieveDuration(long time, TimeUnit timeUnit) {
+                    retrieveDuration.update(time, timeUnit);
+                    lastRetrieveDuration = timeUnit.toMillis(time);
+                }
+
+                @Override public void updateDifferenceDuration(long time, TimeUnit timeUnit) {
+                    differenceDuration.update(time, timeUnit);
+                    lastDifferenceDuration = timeUnit.toMillis(time);
+                }
             };
         }
 
@@ -1252,6 +1403,22 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             return markDuration.getCount();
         }
 
+        @Override public long markCollectDuration() {
+            return lastMarkCollectDuration;
+        }
+
+        @Override public long markSortDuration() {
+            return lastMarkSortDuration;
+        }
+
+        @Override public long retrieveDuration() {
+            return lastRetrieveDuration;
+        }
+
+        @Override public long differenceDuration() {
+            return lastDifferenceDuration;
+        }
+
         @Override public long numDeleted() {
             return numDeletedCounter.getCount();
         }
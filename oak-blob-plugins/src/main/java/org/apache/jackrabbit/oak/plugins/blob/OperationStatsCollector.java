@@ -49,6 +49,18 @@ public interface OperationStatsCollector {
 
         @Override public void updateSweepDuration(long time, TimeUnit timeUnit) {
         }
+
+        @Override public void updateMarkCollectDuration(long time, TimeUnit timeUnit) {
+        }
+
+        @Override public void updateMarkSortDuration(long time, TimeUnit timeUnit) {
+        }
+
+        @Override public void updateRetrieveDuration(long time, TimeUnit timeUnit) {
+        }
+
+        @Override public void updateDifferenceDuration(long time, TimeUnit timeUnit) {
+        }
     };
 
     /**
@@ -103,4 +115,38 @@ public interface OperationStatsCollector {
      */
     void updateSweepDuration(long time, TimeUnit timeUnit);
 
+    /**
+     * Increment the timer for collecting the references in the mark phase
+     *
+     * @param time time recorded for the operation
+     * @param timeUnit unit of time
+     */
+    void updateMarkCollectDuration(long time, TimeUnit timeUnit);
+
+    /**
+     * Increment the timer for sorting (or merging the sorted runs of) the
+     * references in the mark phase
+     *
+     * @param time time recorded for the operation
+     * @param timeUnit unit of time
+     */
+    void updateMarkSortDuration(long time, TimeUnit timeUnit);
+
+    /**
+     * Increment the timer for retrieving the available blob ids
+     *
+     * @param time time recorded for the operation
+     * @param timeUnit unit of time
+     */
+    void updateRetrieveDuration(long time, TimeUnit timeUnit);
+
+    /**
+     * Increment the timer for the difference of the marked references and the
+     * available blob ids
+     *
+     * @param time time recorded for the operation
+     * @param timeUnit unit of time
+     */
+    void updateDifferenceDuration(long time, TimeUnit timeUnit);
+
 }
@@ -54,6 +54,34 @@ public interface OperationsStatsMBean {
      */
     long markDuration();
 
+    /**
+     * Returns the time in milliseconds spent collecting the references in the
+     * mark phase of the last run
+     * @return
+     */
+    long markCollectDuration();
+
+    /**
+     * Returns the time in milliseconds spent sorting and merging the references
+     * in the mark phase of the last run
+     * @return
+     */
+    long markSortDuration();
+
+    /**
+     * Returns the time in milliseconds spent retrieving the available blob ids
+     * in the last run
+     * @return
+     */
+    long retrieveDuration();
+
+    /**
+     * Returns the time in milliseconds spent identifying the candidates in the
+     * last run
+     * @return
+     */
+    long differenceDuration();
+
     /**
      * Returns the number deleted.
      * @return
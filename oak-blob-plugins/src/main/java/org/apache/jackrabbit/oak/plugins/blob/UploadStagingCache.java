@@ -83,6 +83,12 @@ public class UploadStagingCache implements Closeable {
 
     protected static final String UPLOAD_STAGING_DIR = "upload";
 
+    /**
+     * The number of times a failed part of a multipart upload is retried,
+     * before the whole upload fails.
+     */
+    static final int PART_RETRIES = Integer.getInteger("oak.blob.staging.partRetries", 3);
+
     //Rough estimate of the in-memory key, value pair
     private final Weigher<String, File> memWeigher = new Weigher<String, File>() {
         @Override public int weigh(String key, File value) {
@@ -105,6 +111,11 @@ public class UploadStagingCache implements Closeable {
      */
     private ListeningExecutorService executor;
 
+    /**
+     * Executor for the parts of multipart uploads
+     */
+    private ListeningExecutorService partExecutor;
+
     /**
      * Scheduled executor for build and remove
      */
@@ -164,6 +175,8 @@ public class UploadStagingCache implements Closeable {
             this.executor = MoreExecutors.listeningDecorator(Executors
                 .newFixedThreadPool(uploadThreads, new NamedThreadFactory("oak-ds-async-upload-thread")));
         }
+        this.partExecutor = MoreExecutors.listeningDecorator(Executors
+            .newFixedThreadPool(uploadThreads, new NamedThreadFactory("oak-ds-async-upload-part-thread")));
 
         this.scheduledExecutor = scheduledExecutor;
         if (scheduledExecutor == null) {
@@ -364,10 +377,16 @@ public class UploadStagingCache implements Closeable {
                     try {
                         final TimerStats.Context uploadContext = cacheStats.startUpLoaderTimer();
 
-                        uploader.write(id, upload);
+                        long partSize = uploader.getPartSize(upload.length());
+                        if (partSize > 0 && upload.length() > partSize) {
+                            writeParts(id, upload, partSize);
+                        } else {
+                            uploader.write(id, upload);
+                        }
                         LOG.debug("File added to backend [{}]", upload);
 
                         uploadContext.stop();
+                        cacheStats.markUploadedBytes(upload.length());
 
                         return 1;
                     } catch (Exception e) {
@@ -415,6 +434,67 @@ public class UploadStagingCache implements Closeable {
         return result;
     }
 
+    /**
+     * Uploads the file in parts of the given size. The parts are written
+     * concurrently by the part executor and committed together once all are
+     * written, so that the record only becomes visible when complete. A failed
+     * part is retried, and if it still fails the whole upload is aborted.
+     *
+     * @param id of the file to be uploaded
+     * @param upload the file to be uploaded
+     * @param partSize the size of the parts
+     * @throws Exception if the upload failed
+     */
+    private void writeParts(final String id, final File upload, long partSize) throws Exception {
+        final String uploadId = uploader.initiateUpload(id);
+        if (uploadId == null) {
+            uploader.write(id, upload);
+            return;
+        }
+
+        long length = upload.length();
+        List<ListenableFuture<String>> parts = Lists.newArrayList();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < length; offset += partSize) {
+                final int number = partNumber++;
+                final long partOffset = offset;
+                final long partLength = Math.min(partSize, length - offset);
+                parts.add(partExecutor.submit(new Callable<String>() {
+                    @Override public String call() throws Exception {
+                        return writePart(id, uploadId, number, upload, partOffset, partLength);
+                    }
+                }));
+            }
+            uploader.completeUpload(id, uploadId, Futures.allAsList(parts).get());
+            LOG.debug("File [{}] uploaded in [{}] parts", upload, parts.size());
+        } catch (Exception e) {
+            for (ListenableFuture<String> part : parts) {
+                part.cancel(true);
+            }
+            try {
+                uploader.abortUpload(id, uploadId);
+            } catch (Exception abortError) {
+                LOG.warn("Error aborting upload [{}] of [{}]", uploadId, id, abortError);
+            }
+            throw e;
+        }
+    }
+
+    private String writePart(String id, String uploadId, int partNumber, File upload,
+        long offset, long length) throws DataStoreException {
+        for (int retry = 0;; retry++) {
+            try {
+                return uploader.writePart(id, uploadId, partNumber, upload, offset, length);
+            } catch (DataStoreException e) {
+                if (retry >= PART_RETRIES) {
+                    throw e;
+                }
+                LOG.info("Retrying upload of part [{}] of [{}]", partNumber, id, e);
+                cacheStats.markPartRetry();
+            }
+        }
+    }
 
     /**
      * Invalidate called externally.
@@ -528,6 +608,7 @@ public class UploadStagingCache implements Closeable {
         LOG.info("Uploads completed but not cleared from cache [{}]", attic.size());
         LOG.info("Staging cache stats on close [{}]", cacheStats.cacheInfoAsString());
         new ExecutorCloser(executor).close();
+        new ExecutorCloser(partExecutor).close();
         new ExecutorCloser(scheduledExecutor).close();
         new ExecutorCloser(statsExecutor).close();
     }
@@ -582,6 +663,8 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
     private static final String CURRENT_SIZE = "CURRENT_SIZE";
     private static final String CURRENT_MEM_SIZE = "CURRENT_MEM_SIZE";
     private static final String COUNT = "COUNT";
+    private static final String UPLOADED_BYTES = "UPLOADED_BYTES";
+    private static final String PART_RETRIES = "PART_RETRIES";
 
     private final String cacheName;
 
@@ -612,6 +695,12 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
     /** Tracking the cache element count **/
     private final CounterStats countMeter;
 
+    /** Tracking the bytes uploaded, for the upload throughput **/
+    private final MeterStats uploadedBytesMeter;
+
+    /** Tracking the number of retried parts of multipart uploads **/
+    private final MeterStats partRetryMeter;
+
     /** Handle to the cache **/
     private final UploadStagingCache cache;
 
@@ -652,6 +741,12 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
 
         statName = getStatName(COUNT, cacheName);
         countMeter = statisticsProvider.getCounterStats(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(UPLOADED_BYTES, cacheName);
+        uploadedBytesMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(PART_RETRIES, cacheName);
+        partRetryMeter = statisticsProvider.getMeter(statName, StatsOptions.METRICS_ONLY);
     }
 
     //~--------------------------------------< stats update methods
@@ -701,6 +796,18 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
         currentMemSizeMeter.dec(size);
     }
 
+    void markUploadedBytes(long bytes) {
+        uploadedBytesMeter.mark(bytes);
+    }
+
+    void markPartRetry() {
+        partRetryMeter.mark(1);
+    }
+
+    long getPartRetryCount() {
+        return partRetryMeter.getCount();
+    }
+
     @Override
     public String getName() {
         return cacheName;
@@ -777,6 +884,17 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
         return currentMemSizeMeter.getCount();
     }
 
+    @Override
+    public long getDownloadedBytes() {
+        // nothing is downloaded into the staging cache
+        return 0;
+    }
+
+    @Override
+    public long getUploadedBytes() {
+        return uploadedBytesMeter.getCount();
+    }
+
     @Override
     public String cacheInfoAsString() {
         return toStringHelper("StagingCacheStats")
@@ -791,6 +909,8 @@ class StagingCacheStats extends AnnotatedStandardMBean implements DataStoreCache
             .add("currentMemSize", estimateCurrentMemoryWeight())
             .add("totalWeight", humanReadableByteCount(estimateCurrentWeight()))
             .add("maxWeight", humanReadableByteCount(getMaxTotalWeight()))
+            .add("uploadedBytes", humanReadableByteCount(getUploadedBytes()))
+            .add("partRetryCount", getPartRetryCount())
             .toString();
     }
 
@@ -828,4 +948,38 @@ interface StagingUploader {
     void write(String id, File f) throws DataStoreException;
 
     void adopt(File f, File moved) throws IOException;
+
+    /**
+     * The size of the parts in which a file of the given length is uploaded,
+     * or 0 if the file is written in one go.
+     */
+    default long getPartSize(long length) {
+        return 0;
+    }
+
+    /**
+     * Starts a multipart upload.
+     *
+     * @return the upload id, or null if the file should be written in one go
+     */
+    @Nullable
+    default String initiateUpload(String id) throws DataStoreException {
+        return null;
+    }
+
+    /**
+     * Writes a part of a multipart upload and returns its tag.
+     */
+    default String writePart(String id, String uploadId, int partNumber, File f, long offset,
+        long length) throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
+    default void completeUpload(String id, String uploadId, List<String> partTags)
+        throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
+    default void abortUpload(String id, String uploadId) throws DataStoreException {
+    }
 }
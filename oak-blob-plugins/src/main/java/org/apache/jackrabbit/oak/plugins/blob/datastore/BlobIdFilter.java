@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob.datastore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.apache.commons.io.LineIterator;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.io.Files.move;
+import static org.apache.commons.io.FileUtils.lineIterator;
+
+/**
+ * A Bloom filter over blob ids, used to skip lookups of ids which are
+ * definitely not part of a set of tracked ids.
+ * <p>
+ * The filter grows with the number of ids added: once the current filter
+ * holds the expected number of ids, another filter with twice the capacity
+ * and half the false positive probability is added. This keeps the false
+ * positive probability of the whole filter below twice the configured one.
+ * Ids can't be removed, so removed ids are still reported as possibly
+ * contained.
+ * <p>
+ * The expected number of ids and the false positive probability are
+ * configured with the system properties {@code oak.blob.tracker.filter.expectedIds}
+ * and {@code oak.blob.tracker.filter.fpp}.
+ */
+class BlobIdFilter {
+    static final int DEFAULT_EXPECTED_IDS = Integer.getInteger("oak.blob.tracker.filter.expectedIds", 1000000);
+
+    static final double DEFAULT_FPP = Double.parseDouble(System.getProperty("oak.blob.tracker.filter.fpp", "0.01"));
+
+    /* Marks the file format, which starts with the saved state */
+    private static final int FORMAT = -1;
+
+    private final List<Stage> stages = newArrayList();
+
+    /* The state saved with the filter, see #writeTo(File, long...) */
+    private long[] savedState = new long[0];
+
+    BlobIdFilter(int expectedIds, double fpp) {
+        stages.add(new Stage(Math.max(1, expectedIds), fpp));
+    }
+
+    private BlobIdFilter() {
+    }
+
+    /**
+     * Creates a filter sized for the ids in the given file.
+     *
+     * @param ids file with one id per line
+     * @param fpp the false positive probability
+     * @return the filter
+     * @throws IOException
+     */
+    static BlobIdFilter build(File ids, double fpp) throws IOException {
+        int count = 0;
+        LineIterator iter = lineIterator(ids, UTF_8.name());
+        try {
+            while (iter.hasNext()) {
+                iter.next();
+                count++;
+            }
+        } finally {
+            LineIterator.closeQuietly(iter);
+        }
+        BlobIdFilter filter = new BlobIdFilter(Math.max(count, 1024), fpp);
+        filter.putAll(ids);
+        return filter;
+    }
+
+    synchronized void put(String id) {
+        Stage last = stages.get(stages.size() - 1);
+        if (last.count >= last.capacity) {
+            long capacity = Math.min(2L * last.capacity, Integer.MAX_VALUE);
+            last = new Stage((int) capacity, last.fpp / 2);
+            stages.add(last);
+        }
+        if (last.filter.put(id)) {
+            last.count++;
+        }
+    }
+
+    /**
+     * Adds the ids of the given file, one per line.
+     *
+     * @param ids the file
+     * @throws IOException
+     */
+    void putAll(File ids) throws IOException {
+        LineIterator iter = lineIterator(ids, UTF_8.name());
+        try {
+            while (iter.hasNext()) {
+                put(iter.next());
+            }
+        } finally {
+            LineIterator.closeQuietly(iter);
+        }
+    }
+
+    /**
+     * Returns whether the id might have been added.
+     *
+     * @param id the id
+     * @return false if the id was definitely not added
+     */
+    synchronized boolean mightContain(String id) {
+        for (Stage stage : stages) {
+            if (stage.filter.mightContain(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the (approximate) number of distinct ids added.
+     */
+    synchronized long getCount() {
+        long count = 0;
+        for (Stage stage : stages) {
+            count += stage.count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the memory used by the bits of the filter, in bytes. This is
+     * computed from the capacity and the false positive probability of the
+     * stages, the same way {@link BloomFilter#create} sizes the bit arrays,
+     * and not measured.
+     */
+    synchronized long getSizeInBytes() {
+        long size = 0;
+        for (Stage stage : stages) {
+            size += stage.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the filter to the given file, replacing it.
+     *
+     * @param file the file
+     * @param state the state of the added ids, which is opaque to the filter
+     *            and returned by {@link #getSavedState()} after reading
+     * @throws IOException
+     */
+    synchronized void writeTo(File file, long... state) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(FORMAT);
+            out.writeInt(state.length);
+            for (long x : state) {
+                out.writeLong(x);
+            }
+            out.writeInt(stages.size());
+            for (Stage stage : stages) {
+                out.writeInt(stage.capacity);
+                out.writeDouble(stage.fpp);
+                out.writeLong(stage.count);
+                out.writeObject(stage.filter);
+            }
+        } finally {
+            out.close();
+        }
+        move(temp, file);
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(File)}.
+     *
+     * @param file the file
+     * @return the filter
+     * @throws IOException
+     */
+    static BlobIdFilter readFrom(File file) throws IOException {
+        BlobIdFilter filter = new BlobIdFilter();
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FORMAT) {
+                throw new IOException("Unsupported format of the filter " + file);
+            }
+            filter.savedState = new long[in.readInt()];
+            for (int i = 0; i < filter.savedState.length; i++) {
+                filter.savedState[i] = in.readLong();
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                int capacity = in.readInt();
+                double fpp = in.readDouble();
+                long count = in.readLong();
+                @SuppressWarnings("unchecked")
+                BloomFilter<CharSequence> bloomFilter = (BloomFilter<CharSequence>) in.readObject();
+                filter.stages.add(new Stage(capacity, fpp, count, bloomFilter));
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to read the filter " + file, e);
+        } finally {
+            in.close();
+        }
+        return filter;
+    }
+
+    /**
+     * Returns the state written together with the filter, if the filter was
+     * read from a file.
+     *
+     * @return the state, empty if none
+     */
+    long[] getSavedState() {
+        return savedState;
+    }
+
+    private static class Stage {
+        private final int capacity;
+        private final double fpp;
+        private final BloomFilter<CharSequence> filter;
+        private long count;
+
+        Stage(int capacity, double fpp) {
+            this(capacity, fpp, 0, BloomFilter.create(Funnels.stringFunnel(UTF_8), capacity, fpp));
+        }
+
+        Stage(int capacity, double fpp, long count, BloomFilter<CharSequence> filter) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.count = count;
+            this.filter = filter;
+        }
+
+        /**
+         * The size of the bit array, as sized by {@link BloomFilter#create}.
+         */
+        long getSizeInBytes() {
+            long bits = (long) (-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            return (bits + 63) / 64 * 8;
+        }
+    }
+}
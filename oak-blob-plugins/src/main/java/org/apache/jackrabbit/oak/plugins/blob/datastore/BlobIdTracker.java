@@ -32,8 +32,10 @@ import java.util.concurrent.locks.ReentrantLock;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import org.apache.commons.io.LineIterator;
 import org.apache.jackrabbit.core.data.DataRecord;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.io.BurnOnCloseFileIterator;
@@ -87,6 +89,7 @@ public class BlobIdTracker implements Closeable, BlobTracker {
     private static final String fileNamePrefix = "blob";
     private static final String mergedFileSuffix = ".refs";
     private static final String snapshotMarkerSuffix = ".snapshot";
+    private static final String filterSuffix = ".bloom";
 
     /* Local instance identifier */
     private String instanceId = randomUUID().toString();
@@ -103,6 +106,15 @@ public class BlobIdTracker implements Closeable, BlobTracker {
 
     private File rootDir;
 
+    /* Bloom filter over the tracked ids */
+    private BlobIdFilter filter;
+
+    /* Whether the filter contains all the tracked ids */
+    private volatile boolean filterReady;
+
+    /* The time before which all ids added by any instance are known to be tracked */
+    private volatile long syncedBefore = Long.MIN_VALUE;
+
     private BlobIdTracker() {}
 
     private BlobIdTracker(String path, String repositoryId, long snapshotIntervalSecs, SharedDataStore datastore)
@@ -122,6 +134,7 @@ public class BlobIdTracker implements Closeable, BlobTracker {
             forceMkdir(rootDir);
             prefix = fileNamePrefix + "-" + repositoryId;
             this.store = new BlobIdStore(rootDir, prefix);
+            initFilter();
             scheduler.scheduleAtFixedRate(new SnapshotJob(), SECONDS.toMillis(snapshotDelaySecs),
                 SECONDS.toMillis(snapshotIntervalSecs), MILLISECONDS);
             this.deleteTracker = new ActiveDeletionTracker(rootDir, prefix);
@@ -158,6 +171,11 @@ public class BlobIdTracker implements Closeable, BlobTracker {
                     public Iterator<String> filter(File recs) {
                         return emptyIterator();
                     }
+
+                    @Override
+                    public boolean mightContainAny(File recs) {
+                        return true;
+                    }
                 };
             }
 
@@ -187,6 +205,10 @@ public class BlobIdTracker implements Closeable, BlobTracker {
                 return new File(path);
             }
 
+            @Override public boolean mightContain(String id) {
+                return true;
+            }
+
             @Override public void close() {
             }
         };
@@ -218,17 +240,51 @@ public class BlobIdTracker implements Closeable, BlobTracker {
     }
 
     @Override public void add(String id) throws IOException {
+        filter.put(id);
         store.addRecord(id);
     }
 
     @Override public void add(Iterator<String> recs) throws IOException {
-        store.addRecords(recs);
+        store.addRecords(Iterators.transform(recs, new Function<String, String>() {
+            @Override public String apply(String input) {
+                filter.put(input);
+                return input;
+            }
+        }));
     }
 
     @Override public void add(File recs) throws IOException {
+        filter.putAll(recs);
         store.addRecords(recs);
     }
 
+    /**
+     * Returns whether the given id might be tracked, using a Bloom filter
+     * over the tracked ids. Until the filter is complete, which is the case
+     * once it has been persisted or the ids from the DataStore have been
+     * merged, all ids are reported as possibly tracked.
+     *
+     * @param id the record id
+     * @return false if the id is not tracked
+     */
+    @Override public boolean mightContain(String id) {
+        return !filterReady || filter.mightContain(id);
+    }
+
+    /**
+     * Returns whether the ids added before the given time are known to be
+     * tracked. Every instance takes a snapshot of its ids within the snapshot
+     * interval, so a complete global merge contains all the ids added up to
+     * one snapshot interval before the merge. Until the first global merge
+     * of this tracker, no ids are known.
+     *
+     * @param timestamp the time in milliseconds
+     * @return true if the ids added before the time are known
+     */
+    @Override public boolean isSyncedBefore(long timestamp) {
+        return filterReady && timestamp <= syncedBefore;
+    }
+
     /**
      * Retrieves all the reference files available in the DataStore and merges
      * them to the local store and then returns an iterator over it.
@@ -263,6 +319,7 @@ public class BlobIdTracker implements Closeable, BlobTracker {
      */
     private void globalMerge() throws IOException {
         try {
+            long mergeStart = System.currentTimeMillis();
             Stopwatch watch = Stopwatch.createStarted();
             LOG.trace("Retrieving all blob id files available form the DataStore");
             // Download all the blob reference records from the data store
@@ -285,11 +342,34 @@ public class BlobIdTracker implements Closeable, BlobTracker {
             }));
             LOG.info("Retrieved all blob id files in [{}]", watch.elapsed(TimeUnit.MILLISECONDS));
 
+            // Add the downloaded ids to the filter, or fill it after the merge if incomplete
+            boolean fillFilter = !filterReady;
+            if (!fillFilter) {
+                for (File refFile : refFiles) {
+                    if (refFile != null) {
+                        filter.putAll(refFile);
+                    }
+                }
+            }
+
             // Merge all the downloaded files in to the local store
             watch = Stopwatch.createStarted();
             store.merge(refFiles, true);
             LOG.info("Merged all retrieved blob id files in [{}]", watch.elapsed(TimeUnit.MILLISECONDS));
 
+            if (fillFilter) {
+                watch = Stopwatch.createStarted();
+                store.addRecordsTo(filter, true, 0);
+                filterReady = true;
+                saveFilter();
+                LOG.info("Filled blob id filter with [{}] ids in [{}]", filter.getCount(),
+                    watch.elapsed(TimeUnit.MILLISECONDS));
+            }
+
+            if (!refFiles.contains(null)) {
+                syncedBefore = Math.max(syncedBefore, mergeStart - snapshotInterval);
+            }
+
             // Remove all the data store records as they have been merged
             watch = Stopwatch.createStarted();
             for (DataRecord rec : refRecords) {
@@ -337,6 +417,8 @@ public class BlobIdTracker implements Closeable, BlobTracker {
             } catch (IOException e) {
                 LOG.debug("Failed to in cleaning up {}", recs, e);
             }
+            // after the references file was uploaded and deleted
+            saveFilter();
         } catch (Exception e) {
             LOG.error("Error taking snapshot", e);
             throw new IOException("Snapshot error", e);
@@ -348,12 +430,69 @@ public class BlobIdTracker implements Closeable, BlobTracker {
         return snapshotMarker;
     }
 
+    private File getFilterFile() {
+        return new File(rootDir, prefix + filterSuffix);
+    }
+
+    /**
+     * Loads the persisted filter and adds the ids tracked locally since it was
+     * persisted. If there is no persisted filter, an empty filter is created
+     * which is filled on the next merge with the ids from the DataStore.
+     * <p>
+     * The filter is saved together with the generation that was current at
+     * that time, and the length and modification time of the references file.
+     * The filter contains all the ids added before, so only the ids of that
+     * and newer generations are added. The references file is only read
+     * again if it changed after the filter was saved, which can happen if the
+     * process stopped before the filter was saved after a merge.
+     *
+     * @throws IOException
+     */
+    private void initFilter() throws IOException {
+        File filterFile = getFilterFile();
+        if (filterFile.exists()) {
+            try {
+                filter = BlobIdFilter.readFrom(filterFile);
+                long[] state = filter.getSavedState();
+                File refs = store.getBlobRecordsFile();
+                boolean refsChanged = state.length < 3
+                    || refs.length() != state[1] || refs.lastModified() != state[2];
+                long generation = state.length < 1 ? 0 : state[0];
+                store.addRecordsTo(filter, refsChanged, generation);
+                filterReady = true;
+                LOG.info("Loaded blob id filter with [{}] ids, added generations since [{}], "
+                    + "references file read again [{}]", filter.getCount(), generation, refsChanged);
+                return;
+            } catch (IOException e) {
+                LOG.warn("Error loading blob id filter {}", filterFile, e);
+            }
+        }
+        filter = new BlobIdFilter(BlobIdFilter.DEFAULT_EXPECTED_IDS, BlobIdFilter.DEFAULT_FPP);
+    }
+
+    private void saveFilter() {
+        if (filterReady) {
+            try {
+                // ids added from now on are in the current or newer generations
+                long generation = store.getGeneration();
+                File refs = store.getBlobRecordsFile();
+                filter.writeTo(getFilterFile(), generation, refs.length(), refs.lastModified());
+                LOG.debug("Saved blob id filter of [{}] bytes", filter.getSizeInBytes());
+            } catch (IOException e) {
+                LOG.warn("Error saving blob id filter", e);
+            }
+        }
+    }
+
     /**
      * Closes the tracker and the underlying store.
      *
      * @throws IOException
      */
     @Override public void close() throws IOException {
+        if (filter != null) {
+            saveFilter();
+        }
         store.close();
         new ExecutorCloser(scheduler).close();
     }
@@ -373,6 +512,9 @@ public class BlobIdTracker implements Closeable, BlobTracker {
         /* Lock for operations on the active deletions file */
         private ReentrantLock lock;
 
+        /* Bloom filter over the tracked deletions, built on first use */
+        private BlobIdFilter filter;
+
         private static final java.util.function.Function<String, String> transformer = new java.util.function.Function<String, String>() {
             @Nullable
             @Override
@@ -398,6 +540,9 @@ public class BlobIdTracker implements Closeable, BlobTracker {
         public void track(File recs) throws IOException {
             lock.lock();
             try {
+                if (filter != null) {
+                    filter.putAll(recs);
+                }
                 append(Lists.newArrayList(recs), delFile, false);
                 sort(delFile);
             } finally {
@@ -453,6 +598,8 @@ public class BlobIdTracker implements Closeable, BlobTracker {
                 }
 
                 move(removed, delFile);
+                // Removed ids can't be removed from the filter, rebuild it on next use
+                filter = null;
                 LOG.trace("removed active delete records");
             } finally {
                 lock.unlock();
@@ -468,6 +615,36 @@ public class BlobIdTracker implements Closeable, BlobTracker {
         public Iterator<String> filter(File recs) throws IOException {
             return new FileLineDifferenceIterator(delFile, recs, transformer);
         }
+
+        /**
+         * Returns whether any of the ids in the file parameter might be in the deletions
+         * being tracked. If not, {@link #filter(File)} would return all the ids.
+         *
+         * @param recs the file to search for ids existing in the deletions here
+         * @return false if none of the ids are in the deletions tracked
+         * @throws IOException
+         */
+        public boolean mightContainAny(File recs) throws IOException {
+            lock.lock();
+            try {
+                if (filter == null) {
+                    filter = BlobIdFilter.build(delFile, BlobIdFilter.DEFAULT_FPP);
+                }
+                LineIterator iter = lineIterator(recs, UTF_8.name());
+                try {
+                    while (iter.hasNext()) {
+                        if (filter.mightContain(transformer.apply(iter.next()))) {
+                            return true;
+                        }
+                    }
+                } finally {
+                    LineIterator.closeQuietly(iter);
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     /**
@@ -489,6 +666,9 @@ public class BlobIdTracker implements Closeable, BlobTracker {
         /* All available generations that need to be merged */
         private final List<File> generations;
 
+        /* The generation of the in-process file */
+        private volatile long generation;
+
         private final File rootDir;
 
         private final String prefix;
@@ -608,6 +788,35 @@ public class BlobIdTracker implements Closeable, BlobTracker {
             }
         }
 
+        /**
+         * Adds the ids in the references file and the generations not yet merged
+         * to the given filter.
+         *
+         * @param filter the filter
+         * @param withRefs whether to add the ids of the references file
+         * @param minGeneration the oldest generation to add
+         * @throws IOException
+         */
+        protected void addRecordsTo(BlobIdFilter filter, boolean withRefs, long minGeneration)
+            throws IOException {
+            refLock.lock();
+            try {
+                File refs = new File(rootDir, prefix + REFS.getFileNameSuffix());
+                if (withRefs && refs.exists()) {
+                    filter.putAll(refs);
+                }
+                synchronized (generations) {
+                    for (File gen : generations) {
+                        if (getGeneration(gen) >= minGeneration) {
+                            filter.putAll(gen);
+                        }
+                    }
+                }
+            } finally {
+                refLock.unlock();
+            }
+        }
+
         /**
          * Removes ids obtained by the given iterator from the tracked references.
          * The iterator has to be closed by the caller.
@@ -674,10 +883,42 @@ public class BlobIdTracker implements Closeable, BlobTracker {
             close();
 
             processFile = new File(rootDir, prefix + IN_PROCESS.getFileNameSuffix());
+            generation = getGeneration(processFile);
             writer = newWriter(processFile, UTF_8);
             LOG.info("Created new process file and writer over {} ", processFile.getAbsolutePath());
         }
 
+        /**
+         * Returns the generation of the in-process file, that is, the time it
+         * was created.
+         *
+         * @return the generation
+         */
+        protected long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the generation of an in-process or generation file, which
+         * is the time in the file name.
+         *
+         * @param file the file
+         * @return the generation, or Long.MAX_VALUE if unknown
+         */
+        static long getGeneration(File file) {
+            String name = file.getName();
+            int end = name.lastIndexOf(genFileNameSuffix);
+            int start = end < 0 ? -1 : name.lastIndexOf('.', end - 1);
+            if (start < 0) {
+                return Long.MAX_VALUE;
+            }
+            try {
+                return Long.parseLong(name.substring(start + 1, end));
+            } catch (NumberFormatException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+
         /**
          * Adds all the ids backed by the iterator into the references.
          * Closing the iterator is the responsibility of the caller.
@@ -89,5 +89,30 @@ public interface BlobTracker extends Closeable {
      */
     File get(String path) throws IOException;
 
+    /**
+     * Returns whether the given id might be tracked. A return value of
+     * {@code false} means the id is definitely not tracked, while
+     * {@code true} means it possibly is.
+     *
+     * @param id the record id
+     * @return false if the id is not tracked
+     */
+    default boolean mightContain(String id) {
+        return true;
+    }
+
+    /**
+     * Returns whether the ids added before the given time, by any of the
+     * instances sharing the DataStore, are known to be tracked. Only for such
+     * ids, a return value of {@code false} of {@link #mightContain(String)}
+     * means the id is not in use.
+     *
+     * @param timestamp the time in milliseconds
+     * @return true if the ids added before the time are known
+     */
+    default boolean isSyncedBefore(long timestamp) {
+        return false;
+    }
+
     enum Options {DEFAULT, ACTIVE_DELETION}
 }
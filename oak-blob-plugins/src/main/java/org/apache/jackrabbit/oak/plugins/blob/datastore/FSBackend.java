@@ -19,19 +19,23 @@
 package org.apache.jackrabbit.oak.plugins.blob.datastore;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.UUID;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
@@ -62,12 +66,20 @@ public class FSBackend extends AbstractSharedBackend {
      */
     private static final int ACCESS_TIME_RESOLUTION = 2000;
 
+    /**
+     * The directory where the parts of multipart uploads are kept until the
+     * upload is completed.
+     */
+    private static final String MULTIPART_DIR = "multipart";
+
     private Properties properties;
 
     private String fsPath;
 
     private File fsPathDir;
 
+    private File multipartDir;
+
     @Override
     public void init() throws DataStoreException {
         fsPath = properties.getProperty(FS_BACKEND_PATH);
@@ -90,6 +102,7 @@ public class FSBackend extends AbstractSharedBackend {
                     "Could not create directory: " + fsPathDir.getAbsolutePath());
             }
         }
+        multipartDir = new File(fsPathDir, MULTIPART_DIR);
     }
 
     @Override
@@ -110,28 +123,15 @@ public class FSBackend extends AbstractSharedBackend {
 
         File dest = getFile(identifier, fsPathDir);
         if (dest.exists()) {
-            long now = System.currentTimeMillis();
-            if (getLastModified(dest) < now + ACCESS_TIME_RESOLUTION) {
-                setLastModified(dest, now + ACCESS_TIME_RESOLUTION);
-            }
+            touch(dest);
         } else {
             try {
                 tmpFile = fileFactory.createTransientFile("fsbackend", null, fsPathDir);
                 FileUtils.copyFile(file, tmpFile);
 
-                File parent = dest.getParentFile();
-                parent.mkdirs();
-                synchronized (this) {
-                    if (tmpFile.renameTo(dest)) {
-                        // no longer need to delete the temporary file
-                        tmpFile = null;
-                    } else {
-                        throw new IOException(
-                                "Can not rename " + tmpFile.getAbsolutePath()
-                                + " to " + dest.getAbsolutePath()
-                                + " (media read only?)");
-                    }
-                }
+                rename(tmpFile, dest);
+                // no longer need to delete the temporary file
+                tmpFile = null;
             }  catch (IOException e) {
                 throw new DataStoreException("Could not add record", e);
             } finally {
@@ -142,6 +142,75 @@ public class FSBackend extends AbstractSharedBackend {
         }
     }
 
+    @Override
+    public boolean isMultipartUploadSupported() {
+        return true;
+    }
+
+    @Override
+    public String initiateMultipartUpload(DataIdentifier identifier) throws DataStoreException {
+        String uploadId = UUID.randomUUID().toString();
+        File uploadDir = new File(multipartDir, uploadId);
+        if (!uploadDir.mkdirs()) {
+            throw new DataStoreException(
+                "Could not create directory: " + uploadDir.getAbsolutePath());
+        }
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(DataIdentifier identifier, String uploadId, int partNumber,
+        File file, long offset, long length) throws DataStoreException {
+        File part = new File(new File(multipartDir, uploadId), String.valueOf(partNumber));
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new FileOutputStream(part)) {
+            ByteStreams.skipFully(in, offset);
+            ByteStreams.copy(ByteStreams.limit(in, length), out);
+        } catch (IOException e) {
+            throw new DataStoreException(
+                "Could not upload part " + partNumber + " of " + identifier, e);
+        }
+        return part.getName();
+    }
+
+    @Override
+    public void completeMultipartUpload(DataIdentifier identifier, String uploadId,
+        List<String> partTags) throws DataStoreException {
+        TransientFileFactory fileFactory = TransientFileFactory.getInstance();
+        File tmpFile = null;
+
+        File uploadDir = new File(multipartDir, uploadId);
+        File dest = getFile(identifier, fsPathDir);
+        if (dest.exists()) {
+            touch(dest);
+        } else {
+            try {
+                tmpFile = fileFactory.createTransientFile("fsbackend", null, fsPathDir);
+                try (OutputStream out = new FileOutputStream(tmpFile)) {
+                    for (String tag : partTags) {
+                        Files.copy(new File(uploadDir, tag), out);
+                    }
+                }
+
+                rename(tmpFile, dest);
+                // no longer need to delete the temporary file
+                tmpFile = null;
+            } catch (IOException e) {
+                throw new DataStoreException("Could not complete upload of " + identifier, e);
+            } finally {
+                if (tmpFile != null) {
+                    tmpFile.delete();
+                }
+            }
+        }
+        FileUtils.deleteQuietly(uploadDir);
+    }
+
+    @Override
+    public void abortMultipartUpload(DataIdentifier identifier, String uploadId) {
+        FileUtils.deleteQuietly(new File(multipartDir, uploadId));
+    }
+
     @Override
     public DataRecord getRecord(DataIdentifier identifier) throws DataStoreException {
         long start = System.currentTimeMillis();
@@ -160,8 +229,7 @@ public class FSBackend extends AbstractSharedBackend {
         return Files.fileTreeTraverser().postOrderTraversal(fsPathDir)
             .filter(new Predicate<File>() {
                 @Override public boolean apply(File input) {
-                    return input.isFile() && !normalizeNoEndSeparator(input.getParent())
-                        .equals(fsPath);
+                    return isRecord(input);
                 }
             }).transform(new Function<File, DataIdentifier>() {
                 @Override public DataIdentifier apply(File input) {
@@ -310,8 +378,7 @@ public class FSBackend extends AbstractSharedBackend {
         return Files.fileTreeTraverser().postOrderTraversal(fsPathDir)
             .filter(new Predicate<File>() {
                 @Override public boolean apply(File input) {
-                    return input.isFile() && !normalizeNoEndSeparator(input.getParent())
-                        .equals(fsPath);
+                    return isRecord(input);
                 }
             }).transform(new Function<File, DataRecord>() {
                 @Override public DataRecord apply(File input) {
@@ -415,6 +482,35 @@ public class FSBackend extends AbstractSharedBackend {
         }
     }
 
+    private static void touch(File dest) throws DataStoreException {
+        long now = System.currentTimeMillis();
+        if (getLastModified(dest) < now + ACCESS_TIME_RESOLUTION) {
+            setLastModified(dest, now + ACCESS_TIME_RESOLUTION);
+        }
+    }
+
+    private synchronized void rename(File tmpFile, File dest) throws IOException {
+        dest.getParentFile().mkdirs();
+        if (!tmpFile.renameTo(dest)) {
+            throw new IOException(
+                    "Can not rename " + tmpFile.getAbsolutePath()
+                    + " to " + dest.getAbsolutePath()
+                    + " (media read only?)");
+        }
+    }
+
+    /**
+     * Returns whether the file is a record, as opposed to a metadata record
+     * or a part of a pending multipart upload.
+     *
+     * @param file the file
+     * @return whether the file is a record
+     */
+    private boolean isRecord(File file) {
+        return file.isFile() && !normalizeNoEndSeparator(file.getParent()).equals(fsPath)
+            && !file.getParentFile().getParentFile().equals(multipartDir);
+    }
+
     private void deleteEmptyParentDirs(File file) {
         File parent = file.getParentFile();
         try {
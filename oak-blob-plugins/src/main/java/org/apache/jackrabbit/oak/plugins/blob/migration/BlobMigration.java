@@ -25,6 +25,7 @@ import static org.apache.jackrabbit.oak.commons.jmx.ManagementOperation.newManag
 import static org.apache.jackrabbit.oak.commons.jmx.ManagementOperation.Status.formatTime;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -41,10 +42,13 @@ import javax.management.openmbean.SimpleType;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.jackrabbit.oak.api.jmx.RepositoryManagementMBean.StatusCode;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
+import org.apache.jackrabbit.oak.commons.PropertiesUtil;
 import org.apache.jackrabbit.oak.commons.jmx.ManagementOperation;
+import org.apache.jackrabbit.oak.osgi.OsgiUtil;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.split.SplitBlobStore;
@@ -71,9 +75,14 @@ public class BlobMigration extends AnnotatedStandardMBean implements BlobMigrati
         CompositeType type;
         try {
             type = new CompositeType("BlobMigrationStatus", "Status of the blob migraiton",
-                    new String[] { "isRunning", "migratedNodes", "lastProcessedPath", "operationStatus" },
-                    new String[] { "Migration in progress", "Total number of migrated nodes", "Last processed path", "Status of the operation" },
-                    new OpenType[] { SimpleType.BOOLEAN, SimpleType.INTEGER, SimpleType.STRING, ManagementOperation.Status.ITEM_TYPES });
+                    new String[] { "isRunning", "migratedNodes", "lastProcessedPath", "migratedBlobs", "migratedBytes",
+                            "bytesPerSecond", "pendingProperties", "operationStatus" },
+                    new String[] { "Migration in progress", "Total number of migrated nodes", "Last processed path",
+                            "Total number of copied blobs", "Total number of copied bytes",
+                            "Bytes copied per second in the current run",
+                            "Binary properties being copied or waiting to be committed", "Status of the operation" },
+                    new OpenType[] { SimpleType.BOOLEAN, SimpleType.INTEGER, SimpleType.STRING, SimpleType.LONG,
+                            SimpleType.LONG, SimpleType.LONG, SimpleType.INTEGER, ManagementOperation.Status.ITEM_TYPES });
         } catch (OpenDataException e) {
             type = null;
             log.error("Can't create a CompositeType", e);
@@ -81,6 +90,21 @@ public class BlobMigration extends AnnotatedStandardMBean implements BlobMigrati
         TYPE = type;
     }
 
+    @Property(intValue = 1, label = "Workers", description = "Number of threads copying the blobs")
+    private static final String PROP_WORKERS = "workers";
+
+    @Property(longValue = 0, label = "Max bytes per second",
+            description = "Maximum number of bytes read from the old blob store per second (0 for no limit)")
+    private static final String PROP_MAX_BYTES_PER_SECOND = "maxBytesPerSecond";
+
+    @Property(boolValue = false, label = "Verify",
+            description = "Verify the hash of each copied blob against the source")
+    private static final String PROP_VERIFY = "verify";
+
+    private static final String PROP_HOME = "repository.home";
+
+    private static final String CHECKPOINT_FILE = "blob_migration_checkpoint.txt";
+
     @Reference(target = "(service.pid=org.apache.jackrabbit.oak.spi.blob.split.SplitBlobStore)")
     private BlobStore splitBlobStore;
 
@@ -98,9 +122,16 @@ public class BlobMigration extends AnnotatedStandardMBean implements BlobMigrati
     }
 
     @Activate
-    private void activate(BundleContext ctx) {
+    private void activate(BundleContext ctx, Map<String, ?> config) {
         Whiteboard wb = new OsgiWhiteboard(ctx);
         migrator = new BlobMigrator((SplitBlobStore) splitBlobStore, nodeStore);
+        migrator.setWorkers(PropertiesUtil.toInteger(config.get(PROP_WORKERS), 1));
+        migrator.setMaxBytesPerSecond(PropertiesUtil.toLong(config.get(PROP_MAX_BYTES_PER_SECOND), 0));
+        migrator.setVerify(PropertiesUtil.toBoolean(config.get(PROP_VERIFY), false));
+        String homeDir = OsgiUtil.lookup(ctx, PROP_HOME);
+        if (homeDir != null) {
+            migrator.setCheckpointFile(new File(homeDir, CHECKPOINT_FILE));
+        }
         mbeanReg = registerMBean(wb, BlobMigrationMBean.class, this, BlobMigrationMBean.TYPE, OP_NAME);
     }
 
@@ -159,6 +190,10 @@ public class BlobMigration extends AnnotatedStandardMBean implements BlobMigrati
         status.put("isRunning", migrationOp.getStatus().getCode() == StatusCode.RUNNING);
         status.put("migratedNodes", migrator.getTotalMigratedNodes());
         status.put("lastProcessedPath", migrator.getLastProcessedPath());
+        status.put("migratedBlobs", migrator.getMigratedBlobs());
+        status.put("migratedBytes", migrator.getMigratedBytes());
+        status.put("bytesPerSecond", migrator.getBytesPerSecond());
+        status.put("pendingProperties", migrator.getPendingProperties());
         status.put("operationStatus", migrationOp.getStatus().toCompositeData());
         return new CompositeDataSupport(TYPE, status);
     }
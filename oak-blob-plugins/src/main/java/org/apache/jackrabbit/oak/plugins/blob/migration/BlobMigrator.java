@@ -19,16 +19,34 @@
 
 package org.apache.jackrabbit.oak.plugins.blob.migration;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyBuilder;
 import org.apache.jackrabbit.oak.spi.blob.split.SplitBlobStore;
@@ -41,6 +59,29 @@ import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Migrates the binary properties from the old to the new blob store of a
+ * {@link SplitBlobStore}.
+ * <p>
+ * The repository is traversed and committed by a single thread, while the
+ * blobs can be copied by a pool of workers (see {@link #setWorkers(int)}).
+ * Commits don't wait for the copies in progress: each commit applies the
+ * copied properties in traversal order, up to the first copy that is still
+ * running.
+ * The copy can be throttled to a maximum number of bytes per second, and the
+ * copied blobs can be verified by comparing the content hash of the source
+ * with the hash of the blob read back from the split blob store.
+ * <p>
+ * If a checkpoint file is set, the path of the last node whose properties
+ * are all committed is stored there, so that a migration resumed after a
+ * restart continues after that node. Blobs that are already migrated are
+ * skipped in any case.
+ */
 public class BlobMigrator {
 
     private static final Logger log = LoggerFactory.getLogger(BlobMigrator.class);
@@ -55,6 +96,20 @@ public class BlobMigrator {
 
     private final AtomicBoolean stopMigration = new AtomicBoolean(false);
 
+    private final List<PendingProperty> pendingProperties = new ArrayList<PendingProperty>();
+
+    private final AtomicLong migratedBlobs = new AtomicLong();
+
+    private final AtomicLong migratedBytes = new AtomicLong();
+
+    private int workers = 1;
+
+    private RateLimiter rateLimiter;
+
+    private boolean verify;
+
+    private File checkpointFile;
+
     private DepthFirstNodeIterator nodeIterator;
 
     private NodeBuilder rootBuilder;
@@ -63,55 +118,157 @@ public class BlobMigrator {
 
     private int migratedNodes;
 
+    private String lastMigratedPath;
+
+    private String lastAppliedPath;
+
     private volatile String lastPath;
 
     private volatile int totalMigratedNodes;
 
+    private volatile int pendingCount;
+
+    private volatile long runStart;
+
+    private volatile long runEnd;
+
+    private volatile long runStartBytes;
+
     public BlobMigrator(SplitBlobStore blobStore, NodeStore nodeStore) {
         this.blobStore = blobStore;
         this.nodeStore = nodeStore;
     }
 
+    /**
+     * Set the number of threads copying the blobs. The default is 1, in which
+     * case the blobs are copied by the thread traversing the repository.
+     *
+     * @param workers the number of threads
+     */
+    public void setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Limit the number of bytes read from the old blob store per second,
+     * over all workers.
+     *
+     * @param maxBytesPerSecond the limit, or 0 for no limit
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.rateLimiter = maxBytesPerSecond > 0 ? RateLimiter.create(maxBytesPerSecond) : null;
+    }
+
+    /**
+     * Verify each copied blob, by reading it back and comparing its SHA-256
+     * hash with the hash of the source. A mismatch fails the migration.
+     *
+     * @param verify whether to verify the copied blobs
+     */
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    /**
+     * Set the file to store the path of the last committed node in.
+     *
+     * @param checkpointFile the checkpoint file, or null to not store the
+     *            progress
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
     public boolean start() throws IOException {
         totalMigratedNodes = 0;
+        migratedBlobs.set(0);
+        migratedBytes.set(0);
+        deleteCheckpoint();
         refreshAndReset(nodeStore.getRoot());
         return migrate();
     }
 
     public boolean migrate() throws IOException {
         if (nodeIterator == null) {
-            refreshAndReset(nodeStore.getRoot());
+            NodeState root = nodeStore.getRoot();
+            refreshAndReset(root);
+            String checkpoint = readCheckpoint();
+            if (checkpoint != null) {
+                log.info("Resuming the migration after {}", checkpoint);
+                nodeIterator = DepthFirstNodeIterator.startAfter(root, checkpoint);
+            }
         }
 
-        do {
-            while (nodeIterator.hasNext()) {
-                lastPath = nodeIterator.getPath();
-                if (stopMigration.getAndSet(false)) {
-                    if (migratedNodes > 0) {
-                        tryCommit();
+        runStart = System.currentTimeMillis();
+        runEnd = 0;
+        runStartBytes = migratedBytes.get();
+        ExecutorService executor = createExecutor();
+        try {
+            do {
+                while (nodeIterator.hasNext()) {
+                    lastPath = nodeIterator.getPath();
+                    if (stopMigration.getAndSet(false)) {
+                        if (hasChanges()) {
+                            tryCommit(false);
+                        }
+                        return false;
+                    }
+                    if (pendingProperties.size() >= workers * MERGE_LIMIT) {
+                        // too many copies in progress: wait for the oldest one
+                        pendingProperties.get(0).get();
+                        tryCommit(false);
+                    }
+                    migrateNode(executor, nodeIterator);
+                    if (timeToCommit()) {
+                        tryCommit(false);
                     }
-                    return false;
-                }
-                migrateNode(rootBuilder, nodeIterator);
-                if (timeToCommit()) {
-                    tryCommit();
                 }
+                // at this point we iterated over the whole repository
+                // the last thing to do is to check if we don't have
+                // any nodes waiting to be migrated. if the operation
+                // fails we have to start from the beginning
+            } while (hasChanges() && !tryCommit(true));
+            deleteCheckpoint();
+            return true;
+        } finally {
+            if (!pendingProperties.isEmpty()) {
+                // stopped, or copying a blob failed: continue from the checkpoint
+                cancelPendingProperties();
+                nodeIterator = null;
             }
-            // at this point we iterated over the whole repository
-            // the last thing to do is to check if we don't have
-            // any nodes waiting to be migrated. if the operation
-            // fails we have to start from the beginning
-        } while (migratedNodes > 0 && !tryCommit());
-        return true;
+            executor.shutdownNow();
+            runEnd = System.currentTimeMillis();
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        if (workers == 1) {
+            return MoreExecutors.sameThreadExecutor();
+        }
+        return Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("oak-blob-migration-%d").setDaemon(true).build());
+    }
+
+    private boolean hasChanges() {
+        return migratedNodes > 0 || !pendingProperties.isEmpty();
     }
 
-    private boolean tryCommit() {
+    /**
+     * Commit the copied properties.
+     *
+     * @param all whether to wait for all copies in progress, or to only
+     *            commit the properties up to the first copy still running
+     * @return whether the commit succeeded
+     */
+    private boolean tryCommit(boolean all) throws IOException {
+        String checkpoint = applyPendingProperties(all);
         try {
             NodeState newRoot = nodeStore.merge(rootBuilder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
             totalMigratedNodes += migratedNodes;
             log.info("{} nodes merged succesfully. Nodes migrated in this session: {}", migratedNodes, totalMigratedNodes);
             lastCommit = System.currentTimeMillis();
             migratedNodes = 0;
+            saveCheckpoint(checkpoint);
 
             rootBuilder = newRoot.builder();
             nodeIterator = nodeIterator.switchRoot(newRoot);
@@ -126,11 +283,12 @@ public class BlobMigrator {
 
     private boolean timeToCommit() {
         long changesMerged = (System.currentTimeMillis() - lastCommit) / 1000;
-        if (migratedNodes >= MERGE_LIMIT) {
-            log.info("Migrated nodes count: {}. Merging changes.", migratedNodes);
+        int changes = migratedNodes + getCompletedCount();
+        if (changes >= MERGE_LIMIT) {
+            log.info("Migrated nodes count: {}. Merging changes.", changes);
             return true;
-        } else if (migratedNodes > 0 && changesMerged >= MERGE_TIMEOUT) {
-            log.info("Changes have been merged {}s ago. Merging {} nodes.", changesMerged, migratedNodes);
+        } else if (changes > 0 && changesMerged >= MERGE_TIMEOUT) {
+            log.info("Changes have been merged {}s ago. Merging {} nodes.", changesMerged, changes);
             return true;
         }
         return false;
@@ -148,37 +306,143 @@ public class BlobMigrator {
         return totalMigratedNodes;
     }
 
+    /**
+     * @return the number of blobs copied to the new blob store since the
+     *         migration was started
+     */
+    public long getMigratedBlobs() {
+        return migratedBlobs.get();
+    }
+
+    /**
+     * @return the number of bytes copied to the new blob store since the
+     *         migration was started
+     */
+    public long getMigratedBytes() {
+        return migratedBytes.get();
+    }
+
+    /**
+     * @return the average number of bytes copied per second in the current
+     *         (or the last) run
+     */
+    public long getBytesPerSecond() {
+        long start = runStart;
+        if (start == 0) {
+            return 0;
+        }
+        long end = runEnd == 0 ? System.currentTimeMillis() : runEnd;
+        return (migratedBytes.get() - runStartBytes) * 1000 / Math.max(1, end - start);
+    }
+
+    /**
+     * @return the number of binary properties that are being copied or wait
+     *         to be committed
+     */
+    public int getPendingProperties() {
+        return pendingCount;
+    }
+
     private void refreshAndReset(NodeState rootState) {
+        cancelPendingProperties();
         rootBuilder = rootState.builder();
         nodeIterator = new DepthFirstNodeIterator(rootState);
         lastPath = null;
+        lastMigratedPath = null;
+        lastAppliedPath = null;
         lastCommit = System.currentTimeMillis();
         migratedNodes = 0;
     }
 
-    private void migrateNode(NodeBuilder rootBuilder, DepthFirstNodeIterator iterator) throws IOException {
+    private void migrateNode(ExecutorService executor, DepthFirstNodeIterator iterator) {
         ChildNodeEntry node = iterator.next();
         NodeState state = node.getNodeState();
-        for (PropertyState property : state.getProperties()) {
-            PropertyState newProperty;
+        for (final PropertyState property : state.getProperties()) {
+            Callable<PropertyState> migration;
             if (property.getType() == Type.BINARY) {
-                newProperty = migrateProperty(property);
+                migration = new Callable<PropertyState>() {
+                    @Override
+                    public PropertyState call() throws IOException {
+                        return migrateProperty(property);
+                    }
+                };
             } else if (property.getType() == Type.BINARIES) {
-                newProperty = migrateMultiProperty(property);
+                migration = new Callable<PropertyState>() {
+                    @Override
+                    public PropertyState call() throws IOException {
+                        return migrateMultiProperty(property);
+                    }
+                };
             } else {
-                newProperty = null;
+                migration = null;
+            }
+            if (migration != null) {
+                pendingProperties.add(new PendingProperty(lastPath, property.getName(), lastMigratedPath,
+                        executor.submit(migration)));
+                pendingCount = pendingProperties.size();
             }
+        }
+        lastMigratedPath = lastPath;
+    }
+
+    /**
+     * Get the number of properties, in traversal order, whose copy completed,
+     * up to the first copy still running.
+     */
+    private int getCompletedCount() {
+        int count = 0;
+        for (PendingProperty pending : pendingProperties) {
+            if (!pending.future.isDone()) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Apply the copied properties to the root builder, in traversal order.
+     *
+     * @param all whether to wait for all copies in progress, or to stop at
+     *            the first copy still running
+     * @return the path of the last node whose properties are all applied
+     */
+    private String applyPendingProperties(boolean all) throws IOException {
+        int count = all ? pendingProperties.size() : getCompletedCount();
+        String checkpoint = count < pendingProperties.size()
+                ? pendingProperties.get(count).previousPath : lastMigratedPath;
+        List<PendingProperty> applied = pendingProperties.subList(0, count);
+        for (PendingProperty pending : applied) {
+            PropertyState newProperty = pending.get();
             if (newProperty != null) {
-                NodeBuilder builder = iterator.getBuilder(rootBuilder);
+                NodeBuilder builder = rootBuilder;
+                for (String name : PathUtils.elements(pending.path)) {
+                    builder = builder.getChildNode(name);
+                }
                 if (builder.exists()) {
                     builder.setProperty(newProperty);
-                    migratedNodes++;
-                    log.debug("Migrated property {}/{}", lastPath, property.getName());
+                    // the properties of a node are adjacent
+                    if (!pending.path.equals(lastAppliedPath)) {
+                        migratedNodes++;
+                        lastAppliedPath = pending.path;
+                    }
+                    log.debug("Migrated property {}/{}", pending.path, pending.name);
                 } else {
-                    log.warn("Can't migrate blobs for a non-existing node: {}", lastPath);
+                    log.warn("Can't migrate blobs for a non-existing node: {}", pending.path);
                 }
             }
         }
+        applied.clear();
+        pendingCount = pendingProperties.size();
+        return checkpoint;
+    }
+
+    private void cancelPendingProperties() {
+        for (PendingProperty pending : pendingProperties) {
+            pending.future.cancel(true);
+        }
+        pendingProperties.clear();
+        pendingCount = 0;
     }
 
     private PropertyState migrateProperty(PropertyState propertyState) throws IOException {
@@ -188,7 +452,7 @@ public class BlobMigrator {
             return null;
         }
 
-        String newBlobId = blobStore.writeBlob(oldBlob.getNewStream());
+        String newBlobId = copyBlob(oldBlob);
         Blob newBlob = new BlobStoreBlob(blobStore, newBlobId);
         PropertyBuilder<Blob> builder = new PropertyBuilder<Blob>(Type.BINARY);
         builder.assignFrom(propertyState);
@@ -207,7 +471,7 @@ public class BlobMigrator {
             if (blobStore.isMigrated(blobId)) {
                 newBlobs.add(new BlobStoreBlob(blobStore, blobId));
             } else {
-                String newBlobId = blobStore.writeBlob(oldBlob.getNewStream());
+                String newBlobId = copyBlob(oldBlob);
                 Blob newBlob = new BlobStoreBlob(blobStore, newBlobId);
                 newBlobs.add(newBlob);
                 blobUpdated = true;
@@ -221,6 +485,45 @@ public class BlobMigrator {
         }
     }
 
+    private String copyBlob(Blob oldBlob) throws IOException {
+        InputStream in = oldBlob.getNewStream();
+        if (rateLimiter != null) {
+            in = new ThrottledInputStream(in, rateLimiter);
+        }
+        CountingInputStream counting = new CountingInputStream(in);
+        in = counting;
+        MessageDigest digest = null;
+        if (verify) {
+            digest = DigestUtils.getSha256Digest();
+            in = new DigestInputStream(in, digest);
+        }
+        String newBlobId;
+        try {
+            newBlobId = blobStore.writeBlob(in);
+        } finally {
+            in.close();
+        }
+        if (digest != null) {
+            verifyBlob(newBlobId, digest.digest());
+        }
+        migratedBlobs.incrementAndGet();
+        migratedBytes.addAndGet(counting.getCount());
+        return newBlobId;
+    }
+
+    private void verifyBlob(String blobId, byte[] expected) throws IOException {
+        byte[] actual;
+        InputStream in = blobStore.getInputStream(blobId);
+        try {
+            actual = DigestUtils.sha256(in);
+        } finally {
+            in.close();
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IOException("The migrated blob " + blobId + " doesn't match the source");
+        }
+    }
+
     private String getIdentity(Blob blob) throws IOException {
         String id = blob.getContentIdentity();
         if (id == null) {
@@ -228,4 +531,99 @@ public class BlobMigrator {
         }
         return id;
     }
-}
\ No newline at end of file
+
+    private String readCheckpoint() {
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return null;
+        }
+        try {
+            String path = FileUtils.readFileToString(checkpointFile, UTF_8).trim();
+            return path.isEmpty() ? null : path;
+        } catch (IOException e) {
+            log.warn("Can't read the migration checkpoint {}", checkpointFile, e);
+            return null;
+        }
+    }
+
+    private void saveCheckpoint(String path) {
+        if (checkpointFile == null || path == null) {
+            return;
+        }
+        try {
+            File tmp = new File(checkpointFile.getPath() + ".tmp");
+            FileUtils.writeStringToFile(tmp, path, UTF_8);
+            Files.move(tmp.toPath(), checkpointFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Can't save the migration checkpoint {}", checkpointFile, e);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpointFile != null) {
+            FileUtils.deleteQuietly(checkpointFile);
+        }
+    }
+
+    private static class PendingProperty {
+
+        private final String path;
+
+        private final String name;
+
+        /**
+         * The path of the node traversed before this one.
+         */
+        private final String previousPath;
+
+        private final Future<PropertyState> future;
+
+        PendingProperty(String path, String name, String previousPath, Future<PropertyState> future) {
+            this.path = path;
+            this.name = name;
+            this.previousPath = previousPath;
+            this.future = future;
+        }
+
+        PropertyState get() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while migrating " + path + "/" + name, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Can't migrate " + path + "/" + name, e.getCause());
+            }
+        }
+    }
+
+    private static class ThrottledInputStream extends FilterInputStream {
+
+        private final RateLimiter rateLimiter;
+
+        ThrottledInputStream(InputStream in, RateLimiter rateLimiter) {
+            super(in);
+            this.rateLimiter = rateLimiter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                rateLimiter.acquire();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                rateLimiter.acquire(n);
+            }
+            return n;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
 
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -55,6 +56,23 @@ public class DepthFirstNodeIterator extends AbstractIterator<ChildNodeEntry> {
         this.nameQueue = nameQueue;
     }
 
+    /**
+     * Create an iterator that continues after the node with the given path,
+     * starting with its first child. If the node doesn't exist anymore, the
+     * iterator starts from the root.
+     *
+     * @param root the root state
+     * @param path the path of the last processed node
+     * @return the positioned iterator
+     */
+    public static DepthFirstNodeIterator startAfter(NodeState root, String path) {
+        Deque<String> names = new ArrayDeque<>();
+        for (String name : PathUtils.elements(path)) {
+            names.add(name);
+        }
+        return new DepthFirstNodeIterator(root, new ArrayDeque<Iterator<? extends ChildNodeEntry>>(), names).switchRoot(root);
+    }
+
     public void reset() {
         itQueue.clear();
         nameQueue.clear();
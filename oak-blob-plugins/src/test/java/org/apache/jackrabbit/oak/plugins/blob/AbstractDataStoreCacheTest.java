@@ -32,6 +32,7 @@ import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -55,6 +56,7 @@ import org.apache.jackrabbit.core.data.DataRecord;
 import org.apache.jackrabbit.core.data.DataStoreException;
 import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
 import org.apache.jackrabbit.oak.commons.FileIOUtils;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.FSBackend;
 import org.apache.jackrabbit.oak.spi.blob.AbstractDataRecord;
 import org.apache.jackrabbit.oak.spi.blob.AbstractSharedBackend;
 import org.jetbrains.annotations.NotNull;
@@ -110,6 +112,62 @@ public class AbstractDataStoreCacheTest {
         }
     }
 
+    /**
+     * Uploader which writes to a {@link FSBackend}, in parts for files larger
+     * than the part size.
+     */
+    static class TestMultipartStagingUploader extends TestStagingUploader {
+        final FSBackend backend;
+        private final File root;
+        private final long partSize;
+
+        public TestMultipartStagingUploader(File dir, long partSize) throws DataStoreException {
+            super(dir);
+            this.root = new File(dir, "datastore");
+            this.partSize = partSize;
+            Properties props = new Properties();
+            props.setProperty(FSBackend.FS_BACKEND_PATH, root.getAbsolutePath());
+            backend = new FSBackend();
+            backend.setProperties(props);
+            backend.init();
+        }
+
+        @Override public void write(String id, File f) throws DataStoreException {
+            backend.write(new DataIdentifier(id), f);
+        }
+
+        @Override public long getPartSize(long length) {
+            return partSize;
+        }
+
+        @Override public String initiateUpload(String id) throws DataStoreException {
+            return backend.initiateMultipartUpload(new DataIdentifier(id));
+        }
+
+        @Override public String writePart(String id, String uploadId, int partNumber, File f,
+            long offset, long length) throws DataStoreException {
+            return backend.uploadPart(new DataIdentifier(id), uploadId, partNumber, f, offset,
+                length);
+        }
+
+        @Override public void completeUpload(String id, String uploadId, List<String> partTags)
+            throws DataStoreException {
+            backend.completeMultipartUpload(new DataIdentifier(id), uploadId, partTags);
+        }
+
+        @Override public void abortUpload(String id, String uploadId) throws DataStoreException {
+            backend.abortMultipartUpload(new DataIdentifier(id), uploadId);
+        }
+
+        @Override public File read(String id) {
+            // the directory layout of the FSBackend
+            File file = new File(root, id.substring(0, 2));
+            file = new File(file, id.substring(2, 4));
+            file = new File(file, id.substring(4, 6));
+            return new File(file, id);
+        }
+    }
+
 
     static class TestCacheLoader<S, I> extends CacheLoader<String, FileInputStream> {
         protected File root;
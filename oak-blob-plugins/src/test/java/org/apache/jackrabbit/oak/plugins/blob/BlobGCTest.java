@@ -20,10 +20,14 @@
 package org.apache.jackrabbit.oak.plugins.blob;
 
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.CONSISTENCY_NAME;
+import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.DIFFERENCE_DURATION;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.FINISH_FAILURE;
+import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.MARK_COLLECT_DURATION;
+import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.MARK_SORT_DURATION;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.NAME;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.NUM_BLOBS_DELETED;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.NUM_CANDIDATES;
+import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.RETRIEVE_DURATION;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.START;
 import static org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector.GarbageCollectionOperationStats.TOTAL_SIZE_DELETED;
 import static org.apache.jackrabbit.oak.plugins.blob.OperationsStatsMBean.TYPE;
@@ -327,6 +331,37 @@ public class BlobGCTest {
             cluster.blobStoreState.blobsAdded.size() - cluster.blobStoreState.blobsPresent.size(), NAME);
     }
 
+    @Test
+    public void gcParallelMark() throws Exception {
+        log.info("Starting gcParallelMark()");
+
+        MarkSweepGarbageCollector collector = cluster.getCollector(0);
+        collector.setMarkThreads(3);
+        Set<String> existingAfterGC = executeGarbageCollection(cluster, collector, false);
+        assertTrue(Sets.symmetricDifference(cluster.blobStoreState.blobsPresent, existingAfterGC).isEmpty());
+        assertStats(cluster.statsProvider, 1, 0,
+            cluster.blobStoreState.blobsAdded.size() - cluster.blobStoreState.blobsPresent.size(),
+            cluster.blobStoreState.blobsAdded.size() - cluster.blobStoreState.blobsPresent.size(), NAME);
+        assertEquals(1, getTimerCount(cluster.statsProvider, NAME, MARK_COLLECT_DURATION));
+        assertEquals(1, getTimerCount(cluster.statsProvider, NAME, MARK_SORT_DURATION));
+        assertEquals(1, getTimerCount(cluster.statsProvider, NAME, RETRIEVE_DURATION));
+        assertEquals(1, getTimerCount(cluster.statsProvider, NAME, DIFFERENCE_DURATION));
+    }
+
+    @Test
+    public void checkConsistencyParallelMark() throws Exception {
+        log.info("Starting checkConsistencyParallelMark()");
+
+        ((MemoryBlobStoreNodeStore) cluster.nodeStore).getReferencedBlobs().add("SPURIOUS");
+        MarkSweepGarbageCollector collector = cluster.getCollector(0);
+        collector.setMarkThreads(4);
+        long missing = collector.checkConsistency();
+
+        assertEquals(1, missing);
+        assertStatsBean(collector.getConsistencyOperationStats(), 1, 1, 1);
+        assertEquals(1, getTimerCount(cluster.statsProvider, CONSISTENCY_NAME, MARK_COLLECT_DURATION));
+    }
+
     @Test
     public void gcWithConsistencyCheck() throws Exception {
         log.info("Starting gcWithConsistencyCheck()");
@@ -544,6 +579,11 @@ public class BlobGCTest {
             TYPE + "." + typeName + "." + name, METRICS_ONLY).getCount();
     }
 
+    private long getTimerCount(StatisticsProvider statsProvider, String typeName, String name) {
+        return statsProvider.getTimer(
+            TYPE + "." + typeName + "." + name, METRICS_ONLY).getCount();
+    }
+
     protected Set<String> iterate(GarbageCollectableBlobStore blobStore) throws Exception {
         Iterator<String> cur = blobStore.getAllChunkIds(0);
 
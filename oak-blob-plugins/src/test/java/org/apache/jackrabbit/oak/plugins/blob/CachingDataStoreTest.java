@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -64,6 +65,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link AbstractSharedCachingDataStore}
@@ -99,6 +101,15 @@ public class CachingDataStoreTest extends AbstractDataStoreCacheTest {
     }
 
     private void init(int i, int cacheSize, int uploadSplit) throws Exception {
+        init(i, cacheSize, uploadSplit, 0);
+    }
+
+    private void init(int i, int cacheSize, int uploadSplit, long chunkSize) throws Exception {
+        init(i, cacheSize, uploadSplit, chunkSize, 0);
+    }
+
+    private void init(int i, int cacheSize, int uploadSplit, long chunkSize, long uploadPartSize)
+        throws Exception {
         LOG.info("Starting init");
 
         // create executor
@@ -131,6 +142,8 @@ public class CachingDataStoreTest extends AbstractDataStoreCacheTest {
         dataStore.setStatisticsProvider(statsProvider);
         dataStore.setCacheSize(cacheSize);
         dataStore.setStagingSplitPercentage(uploadSplit);
+        dataStore.setChunkSize(chunkSize);
+        dataStore.setUploadPartSize(uploadPartSize);
         dataStore.listeningExecutor = listeningExecutor;
         dataStore.schedulerExecutor = scheduledExecutor;
         dataStore.executor = sameThreadExecutor();
@@ -300,6 +313,75 @@ public class CachingDataStoreTest extends AbstractDataStoreCacheTest {
         LOG.info("Finished syncAddGetDelete");
     }
 
+    @Test
+    public void invalidUploadPartSize() throws Exception {
+        dataStore.close();
+        try {
+            init(1, 64 * 1024 * 1024, 10, 0, -1);
+            fail("Expected an invalid upload part size to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        init(1, 64 * 1024 * 1024, 10);
+    }
+
+    @Test
+    public void uploadPartSize() {
+        long mb = 1024 * 1024;
+        // fits into a single part
+        assertEquals(0, AbstractSharedCachingDataStore.getPartSize(10 * mb, 10 * mb, 100 * mb, 100));
+        assertEquals(10 * mb, AbstractSharedCachingDataStore.getPartSize(10 * mb, 25 * mb, 100 * mb, 100));
+        // larger parts, to stay within the maximum number of parts
+        assertEquals(20 * mb, AbstractSharedCachingDataStore.getPartSize(10 * mb, 2000 * mb, 100 * mb, 100));
+        assertEquals(20 * mb + 1, AbstractSharedCachingDataStore.getPartSize(10 * mb, 2000 * mb + 1, 100 * mb, 100));
+        // the parts would be too large
+        assertEquals(0, AbstractSharedCachingDataStore.getPartSize(10 * mb, 20000 * mb, 100 * mb, 100));
+    }
+
+    /**
+     * Read a range of a binary not in the download cache, with the chunk cache configured.
+     * @throws Exception
+     */
+    @Test
+    public void syncAddGetRangeChunked() throws Exception {
+        LOG.info("Starting syncAddGetRangeChunked");
+        dataStore.close();
+        init(1, 64 * 1024 * 1024, 10, 16 * 1024);
+        assertEquals(3, dataStore.getStats().size());
+
+        File f = copyToFile(randomStream(0, 64 * 1024), folder.newFile());
+        String id = getIdForInputStream(f);
+        FileInputStream fin = new FileInputStream(f);
+        closer.register(fin);
+
+        DataRecord rec = dataStore.addRecord(fin, new BlobOptions().setUpload(SYNCHRONOUS));
+        assertEquals(id, rec.getIdentifier().toString());
+
+        // Invalidate from the local cache
+        dataStore.getCache().invalidate(id);
+
+        InputStream in = dataStore.getRecord(new DataIdentifier(id)).getStream();
+        assertEquals(40 * 1024, in.skip(40 * 1024));
+        byte[] range = new byte[1024];
+        IOUtils.readFully(in, range);
+        in.close();
+
+        byte[] expected = new byte[1024];
+        InputStream fileIn = new FileInputStream(f);
+        IOUtils.skipFully(fileIn, 40 * 1024);
+        IOUtils.readFully(fileIn, expected);
+        fileIn.close();
+        assertTrue(Arrays.equals(expected, range));
+
+        // Only the chunk read and the prefetched one are downloaded
+        assertNull(dataStore.getCache().getDownloadCache().getIfPresent(id));
+        DataStoreCacheStatsMBean chunkStats = dataStore.getCache().getChunkCacheStats();
+        assertTrue(chunkStats.getDownloadedBytes() <= 32 * 1024);
+        assertEquals(0, dataStore.getCache().getCacheStats().getDownloadedBytes());
+
+        LOG.info("Finished syncAddGetRangeChunked");
+    }
+
     /**
      * Add, get forcing load in cache.
      * @throws Exception
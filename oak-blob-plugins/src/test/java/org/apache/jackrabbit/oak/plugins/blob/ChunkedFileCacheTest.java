@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ChunkedFileCache}
+ */
+public class ChunkedFileCacheTest extends AbstractDataStoreCacheTest {
+    private static final String ID = "12345678";
+    private static final int CHUNK_SIZE = 4 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final Closer closer = Closer.create();
+    private byte[] data;
+    private TestChunkLoader loader;
+    private ChunkedFileCache cache;
+
+    @Before
+    public void setup() throws Exception {
+        // 10 chunks, the last one partial
+        data = new byte[9 * CHUNK_SIZE + 100];
+        new Random(1).nextBytes(data);
+        loader = new TestChunkLoader();
+        // prefetch in the calling thread, to make the downloads deterministic
+        cache = new ChunkedFileCache(64 * 1024, CHUNK_SIZE, folder.newFolder(), loader, sameThreadExecutor());
+        closer.register(cache);
+    }
+
+    @After
+    public void tear() {
+        closeQuietly(closer);
+    }
+
+    @Test
+    public void readRange() throws Exception {
+        InputStream in = cache.getStream(ID, data.length);
+        long offset = 5 * CHUNK_SIZE + 100;
+        assertEquals(offset, in.skip(offset));
+        byte[] read = new byte[200];
+        ByteStreams.readFully(in, read);
+        in.close();
+
+        assertArrayEquals(Arrays.copyOfRange(data, (int) offset, (int) offset + 200), read);
+        // the chunk read and the prefetched chunks only
+        assertEquals(Lists.newArrayList(5L, 6L, 7L), loader.loaded);
+        assertEquals(3 * CHUNK_SIZE, cache.getStats().getDownloadedBytes());
+        assertFalse(cache.containsKey(ID, 0));
+        assertTrue(cache.containsKey(ID, 7));
+    }
+
+    @Test
+    public void readFully() throws Exception {
+        assertArrayEquals(data, ByteStreams.toByteArray(cache.getStream(ID, data.length)));
+        assertEquals(data.length, cache.getStats().getDownloadedBytes());
+        assertEquals(10, loader.loaded.size());
+        // only the first chunk was not prefetched
+        assertEquals(1, cache.getStats().getMissCount());
+        assertEquals(9, cache.getStats().getHitCount());
+        assertEquals(9, cache.getPrefetchCount());
+
+        // served from the cache
+        assertArrayEquals(data, ByteStreams.toByteArray(cache.getStream(ID, data.length)));
+        assertEquals(data.length, cache.getStats().getDownloadedBytes());
+        assertEquals(19, cache.getStats().getHitCount());
+        assertEquals(0.95, cache.getStats().getHitRate(), 0.001);
+    }
+
+    @Test
+    public void readSingleBytes() throws Exception {
+        InputStream in = cache.getStream(ID, data.length);
+        assertEquals(CHUNK_SIZE - 1, in.skip(CHUNK_SIZE - 1));
+        assertEquals(data[CHUNK_SIZE - 1] & 0xff, in.read());
+        assertEquals(data[CHUNK_SIZE] & 0xff, in.read());
+        assertEquals(data.length - CHUNK_SIZE - 1, in.skip(data.length));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void evictChunks() throws Exception {
+        cache.close();
+        // room for 3 chunks
+        cache = new ChunkedFileCache(3 * CHUNK_SIZE, CHUNK_SIZE, folder.newFolder(), loader, sameThreadExecutor());
+        closer.register(cache);
+
+        assertArrayEquals(data, ByteStreams.toByteArray(cache.getStream(ID, data.length)));
+        assertTrue(cache.getStats().getEvictionCount() > 0);
+        assertFalse(cache.containsKey(ID, 0));
+        assertTrue(cache.getStats().estimateCurrentWeight() <= 3 * CHUNK_SIZE);
+
+        // evicted chunks are downloaded again
+        InputStream in = cache.getStream(ID, data.length);
+        byte[] read = new byte[10];
+        ByteStreams.readFully(in, read);
+        in.close();
+        assertArrayEquals(Arrays.copyOf(data, 10), read);
+        assertTrue(cache.getStats().getDownloadedBytes() > data.length);
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        ByteStreams.toByteArray(cache.getStream(ID, data.length));
+        cache.invalidate(ID);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(cache.containsKey(ID, i));
+        }
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+        cache.close();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        closer.register(new ExecutorCloser(executor));
+        cache = new ChunkedFileCache(64 * 1024, CHUNK_SIZE, folder.newFolder(), loader, executor);
+        closer.register(cache);
+
+        List<Future<byte[]>> reads = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            reads.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return ByteStreams.toByteArray(cache.getStream(ID, data.length));
+                }
+            }));
+        }
+        for (Future<byte[]> read : reads) {
+            assertArrayEquals(data, read.get());
+        }
+        // each chunk was loaded once, by a reader or by a prefetch
+        assertEquals(10, Sets.newHashSet(loader.loaded).size());
+        assertEquals(10, loader.loaded.size());
+        assertEquals(data.length, cache.getStats().getDownloadedBytes());
+    }
+
+    private class TestChunkLoader implements ChunkedFileCache.ChunkLoader {
+        private final List<Long> loaded = Collections.synchronizedList(Lists.<Long>newArrayList());
+
+        @Override
+        public InputStream load(String id, long offset, long length) throws IOException {
+            assertEquals(ID, id);
+            assertEquals(0, offset % CHUNK_SIZE);
+            loaded.add(offset / CHUNK_SIZE);
+            // give concurrent readers the chance to request the same chunk
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new ByteArrayInputStream(data, (int) offset, (int) length);
+        }
+    }
+}
@@ -20,8 +20,13 @@ package org.apache.jackrabbit.oak.plugins.blob;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.google.common.collect.Lists;
 
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
@@ -65,13 +70,33 @@ public class MemoryBlobStoreNodeStore extends MemoryNodeStore {
     }
 
     public BlobReferenceRetriever getBlobReferenceRetriever() {
-        return collector -> {
-            for (String id : referencedBlobs) {
-                collector.addReference(id, (fakePath ? UUID.randomUUID().toString() : null));
+        return new BlobReferenceRetriever() {
+            @Override
+            public void collectReferences(ReferenceCollector collector) {
+                collect(referencedBlobs, collector);
+            }
+
+            @Override
+            public void collectReferences(List<? extends ReferenceCollector> collectors, Executor executor) {
+                List<String> ids = Lists.newArrayList(referencedBlobs);
+                int n = collectors.size();
+                CompletableFuture<?>[] partitions = new CompletableFuture<?>[n];
+                for (int i = 0; i < n; i++) {
+                    List<String> partition = ids.subList(i * ids.size() / n, (i + 1) * ids.size() / n);
+                    ReferenceCollector collector = collectors.get(i);
+                    partitions[i] = CompletableFuture.runAsync(() -> collect(partition, collector), executor);
+                }
+                CompletableFuture.allOf(partitions).join();
             }
         };
     }
 
+    private void collect(Iterable<String> ids, ReferenceCollector collector) {
+        for (String id : ids) {
+            collector.addReference(id, (fakePath ? UUID.randomUUID().toString() : null));
+        }
+    }
+
     static class TestBlob extends ArrayBasedBlob {
         private String id;
         private BlobStore blobStore;
@@ -48,6 +48,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataStoreException;
 import org.apache.jackrabbit.oak.commons.FileIOUtils;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
@@ -230,6 +231,89 @@ public class UploadStagingCacheTest extends AbstractDataStoreCacheTest {
             secondTimeUploader.read(ID_PREFIX + 0)));
     }
 
+    /**
+     * Stage file and upload it in parts, with a part failing once.
+     * @throws Exception
+     */
+    @Test
+    public void testAddMultipart() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(1);
+        TestMultipartStagingUploader partUploader =
+            new TestMultipartStagingUploader(folder.newFolder(), 1000) {
+                @Override public String writePart(String id, String uploadId, int partNumber,
+                    File f, long offset, long length) throws DataStoreException {
+                    if (partNumber == 2 && failures.getAndDecrement() > 0) {
+                        throw new DataStoreException("Error in writing part");
+                    }
+                    return super.writePart(id, uploadId, partNumber, f, offset, length);
+                }
+            };
+        init(1, partUploader, null);
+
+        // add load
+        List<ListenableFuture<Integer>> futures = put(folder);
+
+        //start
+        taskLatch.countDown();
+        callbackLatch.countDown();
+
+        assertFuture(futures, 0);
+        assertCacheStats(stagingCache, 0, 0, 1, 1);
+
+        StagingCacheStats stats = (StagingCacheStats) stagingCache.getStats();
+        assertEquals(4 * 1024, stats.getUploadedBytes());
+        assertEquals(1, stats.getPartRetryCount());
+        assertEquals(1, Iterators.size(partUploader.backend.getAllIdentifiers()));
+    }
+
+    /**
+     * Stage file and fail to upload a part, which aborts the upload.
+     * @throws Exception
+     */
+    @Test
+    public void testAddMultipartUploadException() throws Exception {
+        final AtomicInteger count = new AtomicInteger(0);
+        TestMultipartStagingUploader partUploader =
+            new TestMultipartStagingUploader(folder.newFolder(), 1000) {
+                @Override public String writePart(String id, String uploadId, int partNumber,
+                    File f, long offset, long length) throws DataStoreException {
+                    if (partNumber == 3 && count.get() == 0) {
+                        throw new DataStoreException("Error in writing part");
+                    }
+                    return super.writePart(id, uploadId, partNumber, f, offset, length);
+                }
+            };
+        init(2, partUploader, null);
+
+        // Add load
+        List<ListenableFuture<Integer>> futures = put(folder);
+
+        //start
+        taskLatch.countDown();
+        callbackLatch.countDown();
+        waitFinish(futures);
+
+        // upload aborted, file still staged
+        assertFalse(partUploader.backend.exists(new DataIdentifier(ID_PREFIX + 0)));
+        assertEquals(0, Iterators.size(partUploader.backend.getAllIdentifiers()));
+        assertNotNull(stagingCache.getIfPresent(ID_PREFIX + 0));
+        StagingCacheStats stats = (StagingCacheStats) stagingCache.getStats();
+        assertEquals(0, stats.getUploadedBytes());
+        assertEquals(UploadStagingCache.PART_RETRIES, stats.getPartRetryCount());
+
+        // Retry upload and wait for finish
+        count.incrementAndGet();
+        ScheduledFuture<?> scheduledFuture =
+            removeExecutor.schedule(stagingCache.new RetryJob(), 0, TimeUnit.MILLISECONDS);
+        scheduledFuture.get();
+        afterExecuteLatch.await();
+
+        // Now uploaded
+        assertNull(stagingCache.getIfPresent(ID_PREFIX + 0));
+        assertFile(partUploader.read(ID_PREFIX + 0), 0, folder);
+        assertEquals(4 * 1024, stats.getUploadedBytes());
+    }
+
     /**
      * Retrieve without adding.
      * @throws Exception
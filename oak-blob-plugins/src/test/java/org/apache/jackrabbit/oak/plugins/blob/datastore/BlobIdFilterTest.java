@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob.datastore;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.UUID.randomUUID;
+import static org.apache.jackrabbit.oak.commons.FileIOUtils.writeStrings;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the false positive rate and the size of {@link BlobIdFilter}.
+ */
+public class BlobIdFilterTest {
+    private static final Logger LOG = LoggerFactory.getLogger(BlobIdFilterTest.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void falsePositiveRate() throws Exception {
+        List<String> ids = ids(10000);
+        List<String> others = ids(100000);
+        for (double fpp : new double[] {0.1, 0.01, 0.001}) {
+            BlobIdFilter filter = new BlobIdFilter(ids.size(), fpp);
+            for (String id : ids) {
+                filter.put(id);
+            }
+            for (String id : ids) {
+                assertTrue(filter.mightContain(id));
+            }
+            double rate = (double) countFalsePositives(filter, others) / others.size();
+            LOG.info("Configured fpp {}, measured {}, size {} bytes", fpp, rate, filter.getSizeInBytes());
+            assertTrue("Measured fpp " + rate + " for configured " + fpp, rate < 2 * fpp);
+        }
+    }
+
+    @Test
+    public void sizeInBytes() throws Exception {
+        long previous = 0;
+        for (double fpp : new double[] {0.1, 0.01, 0.001}) {
+            BlobIdFilter filter = new BlobIdFilter(100000, fpp);
+            long size = filter.getSizeInBytes();
+            assertTrue(size > previous);
+            previous = size;
+
+            // about 1.44 * log2(1 / fpp) bits per id
+            double bitsPerId = 8.0 * size / 100000;
+            double expected = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+            assertEquals(expected, bitsPerId, 0.1);
+
+            // the computed size matches the actual bit arrays, which are
+            // serialized with a small overhead
+            File file = folder.newFile();
+            filter.writeTo(file);
+            assertEquals(size, file.length(), 1024);
+        }
+    }
+
+    @Test
+    public void growBeyondExpected() throws Exception {
+        List<String> ids = ids(10000);
+        BlobIdFilter filter = new BlobIdFilter(1000, 0.01);
+        long initialSize = filter.getSizeInBytes();
+        for (String id : ids) {
+            filter.put(id);
+        }
+        assertEquals(ids.size(), filter.getCount(), ids.size() / 100);
+        assertTrue(filter.getSizeInBytes() > 10 * initialSize);
+        for (String id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+
+        List<String> others = ids(100000);
+        double rate = (double) countFalsePositives(filter, others) / others.size();
+        LOG.info("Measured fpp {} after growing to {} bytes", rate, filter.getSizeInBytes());
+        assertTrue("Measured fpp " + rate, rate < 0.02);
+    }
+
+    @Test
+    public void persist() throws Exception {
+        List<String> ids = ids(5000);
+        File idsFile = folder.newFile();
+        writeStrings(ids.iterator(), idsFile, false);
+
+        BlobIdFilter filter = BlobIdFilter.build(idsFile, 0.01);
+        assertEquals(ids.size(), filter.getCount(), ids.size() / 100);
+        filter.put("added");
+
+        File file = new File(folder.getRoot(), "filter");
+        filter.writeTo(file, 1, 2);
+        BlobIdFilter read = BlobIdFilter.readFrom(file);
+        assertArrayEquals(new long[] {1, 2}, read.getSavedState());
+
+        assertEquals(filter.getCount(), read.getCount());
+        assertEquals(filter.getSizeInBytes(), read.getSizeInBytes());
+        for (String id : ids) {
+            assertTrue(read.mightContain(id));
+        }
+        assertTrue(read.mightContain("added"));
+        assertFalse(read.mightContain("unknown"));
+    }
+
+    private static int countFalsePositives(BlobIdFilter filter, List<String> ids) {
+        int count = 0;
+        for (String id : ids) {
+            if (filter.mightContain(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = newArrayList();
+        for (int i = 0; i < count; i++) {
+            ids.add(randomUUID().toString());
+        }
+        return ids;
+    }
+}
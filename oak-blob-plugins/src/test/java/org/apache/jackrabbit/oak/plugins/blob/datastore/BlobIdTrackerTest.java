@@ -60,6 +60,7 @@ import static org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUt
     .SharedStoreRecordType.BLOBREFERENCES;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeNoException;
 import static org.junit.Assume.assumeThat;
@@ -263,6 +264,102 @@ public class BlobIdTrackerTest {
         assertTrue(read(dataStore.getAllMetadataRecords(BLOBREFERENCES.getType())).isEmpty());
     }
 
+    @Test
+    public void mightContain() throws Exception {
+        LOG.info("In mightContain");
+
+        Set<String> initAdd = add(tracker, range(0, 1000));
+        ScheduledFuture<?> scheduledFuture =
+            scheduler.schedule(tracker.new SnapshotJob(), 0, TimeUnit.MILLISECONDS);
+        scheduledFuture.get();
+        // Not filled until merged with the datastore
+        assertTrue(tracker.mightContain("unknown"));
+        assertFalse(tracker.isSyncedBefore(0));
+
+        long mergeStart = System.currentTimeMillis();
+        assertEquals("Extra elements after add", initAdd, retrieve(tracker));
+        // ids of other instances are known up to one snapshot interval before the merge
+        assertTrue(tracker.isSyncedBefore(mergeStart - TimeUnit.MINUTES.toMillis(100)));
+        assertFalse(tracker.isSyncedBefore(mergeStart));
+        Set<String> added = add(tracker, range(1001, 1005));
+        initAdd.addAll(added);
+        for (String id : initAdd) {
+            assertTrue(tracker.mightContain(id));
+        }
+        assertFalse(tracker.mightContain("unknown"));
+        assertEquals(0, countFalsePositives(tracker, range(2000, 12000)));
+
+        // Filter persisted on close and loaded on start
+        closer.close();
+        this.tracker = BlobIdTracker.build(root.getAbsolutePath(), repoId, 100 * 60, dataStore);
+        this.scheduler = newSingleThreadScheduledExecutor();
+        closer.register(tracker);
+        closer.register(new ExecutorCloser(scheduler));
+
+        initAdd.addAll(add(tracker, range(1006, 1010)));
+        for (String id : initAdd) {
+            assertTrue(tracker.mightContain(id));
+        }
+        assertFalse(tracker.mightContain("unknown"));
+        // not known to be synced until merged again
+        assertFalse(tracker.isSyncedBefore(0));
+    }
+
+    @Test
+    public void loadFilterReadsOnlyNewGenerations() throws Exception {
+        LOG.info("In loadFilterReadsOnlyNewGenerations");
+
+        Set<String> initAdd = add(tracker, range(0, 100));
+        scheduler.schedule(tracker.new SnapshotJob(), 0, TimeUnit.MILLISECONDS).get();
+        // merged into the references file, and the filter filled and saved
+        assertEquals("Extra elements after add", initAdd, retrieve(tracker));
+        // in the current generation
+        initAdd.addAll(add(tracker, range(101, 110)));
+        closer.close();
+
+        // the references file is not read again if it did not change:
+        // replace an id, keeping the length and modification time
+        File refs = new File(new File(root, "blobids"), "blob-" + repoId + ".refs");
+        Set<String> refIds = readStringsAsSet(new FileInputStream(refs), false);
+        assertTrue(refIds.remove("100"));
+        refIds.add("x00");
+        long lastModified = refs.lastModified();
+        writeStrings(refIds.iterator(), refs, false);
+        assertTrue(refs.setLastModified(lastModified));
+        reopen();
+        for (String id : initAdd) {
+            assertTrue(tracker.mightContain(id));
+        }
+        assertFalse(tracker.mightContain("x00"));
+        closer.close();
+
+        // but if it changed, for example because the filter was not saved
+        // after a merge
+        refIds.add("x01");
+        writeStrings(refIds.iterator(), refs, false);
+        reopen();
+        assertTrue(tracker.mightContain("x00"));
+        assertTrue(tracker.mightContain("x01"));
+    }
+
+    private void reopen() throws IOException {
+        this.closer = Closer.create();
+        this.tracker = BlobIdTracker.build(root.getAbsolutePath(), repoId, 100 * 60, dataStore);
+        this.scheduler = newSingleThreadScheduledExecutor();
+        closer.register(tracker);
+        closer.register(new ExecutorCloser(scheduler));
+    }
+
+    private static int countFalsePositives(BlobTracker tracker, List<String> ids) {
+        int count = 0;
+        for (String id : ids) {
+            if (tracker.mightContain(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private static Set<String> read(List<DataRecord> recs)
         throws IOException, DataStoreException {
         Set<String> ids = newHashSet();
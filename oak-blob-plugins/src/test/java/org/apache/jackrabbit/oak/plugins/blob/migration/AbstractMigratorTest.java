@@ -19,7 +19,10 @@
 
 package org.apache.jackrabbit.oak.plugins.blob.migration;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -117,6 +120,39 @@ public abstract class AbstractMigratorTest {
         }
     }
 
+    @Test
+    public void parallelMigrationWithVerification() throws IOException, CommitFailedException {
+        migrator.setWorkers(4);
+        migrator.setVerify(true);
+        migrator.setMaxBytesPerSecond(100 * LENGTH);
+        migrator.migrate();
+        NodeState root = nodeStore.getRoot();
+        for (int i = 1; i <= 3; i++) {
+            assertPropertyOnTheNewStore(root.getChildNode("node" + i).getProperty("prop"));
+        }
+        assertEquals(5, migrator.getMigratedBlobs());
+        assertEquals(5 * LENGTH, migrator.getMigratedBytes());
+        assertEquals(0, migrator.getPendingProperties());
+        assertEquals(3, migrator.getTotalMigratedNodes());
+    }
+
+    @Test
+    public void migrationResumesAfterCheckpoint() throws IOException, CommitFailedException {
+        File checkpoint = new File(repository, "checkpoint.txt");
+        FileUtils.writeStringToFile(checkpoint, "/node1", UTF_8);
+        migrator.setCheckpointFile(checkpoint);
+        assertTrue(migrator.migrate());
+        assertFalse(checkpoint.exists());
+        // the blob of /node1 was skipped
+        assertTrue(migrator.getMigratedBlobs() <= 4);
+
+        assertTrue(migrator.start());
+        NodeState root = nodeStore.getRoot();
+        for (int i = 1; i <= 3; i++) {
+            assertPropertyOnTheNewStore(root.getChildNode("node" + i).getProperty("prop"));
+        }
+    }
+
     private void assertPropertyExists(PropertyState property) {
         if (property.isArray()) {
             for (Blob blob : property.getValue(Type.BINARIES)) {
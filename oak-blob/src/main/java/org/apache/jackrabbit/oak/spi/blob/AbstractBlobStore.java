@@ -83,6 +83,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * hash), level (variable size int, nesting level), total size (variable size
  * long), size of data store id (variable size long), hash code length (variable
  * size int), hash code.
+ * <p>
+ * By default, binaries are split in blocks of a fixed size. With
+ * content-defined chunking, the block boundaries depend on the content
+ * instead, so that binaries that only differ in a few bytes (for example
+ * versions of a document) share most of their blocks. The format of the ids
+ * is the same in both cases.
  */
 public abstract class AbstractBlobStore implements GarbageCollectableBlobStore,
         Cache.Backend<AbstractBlobStore.BlockId, AbstractBlobStore.Data> {
@@ -119,6 +125,14 @@ public abstract class AbstractBlobStore implements GarbageCollectableBlobStore,
      */
     private int blockSize = 2 * 1024 * 1024;
 
+    /**
+     * The average size of a block with content-defined chunking, or 0 to use
+     * fixed-size blocks. Blocks are then at least a quarter of the average
+     * size (and at least the minimum block size, so that they are not
+     * inlined), and at most the block size.
+     */
+    private int averageBlockSize;
+
     /**
      * The byte array is re-used if possible, to avoid having to create a new,
      * large byte array each time a (potentially very small) binary is stored.
@@ -155,6 +169,24 @@ public abstract class AbstractBlobStore implements GarbageCollectableBlobStore,
         this.blockSize = x;
     }
 
+    /**
+     * Set the average size of a block with content-defined chunking. It is
+     * limited to half the block size. The default value 0 disables
+     * content-defined chunking.
+     *
+     * @param x the average block size, or 0
+     */
+    public void setAverageBlockSize(int x) {
+        if (x > 0) {
+            validateBlockSize(x);
+        }
+        this.averageBlockSize = x;
+    }
+
+    public int getAverageBlockSize() {
+        return averageBlockSize;
+    }
+
     public void setStatsCollector(BlobStatsCollector stats) {
         this.statsCollector = stats;
     }
@@ -348,8 +380,16 @@ public abstract class AbstractBlobStore implements GarbageCollectableBlobStore,
             // create a new one
             block = new byte[blockSize];
         }
+        // only the data is split at content-defined boundaries,
+        // the ids of the indirection levels use fixed-size blocks
+        ContentDefinedChunker chunker = null;
+        if (level == 0 && averageBlockSize > 0) {
+            int average = Math.min(averageBlockSize, blockSize / 2);
+            int min = Math.min(Math.max(average / 4, blockSizeMin), average);
+            chunker = new ContentDefinedChunker(in, block, min, average);
+        }
         while (true) {
-            int blockLen = IOUtils.readFully(in, block, 0, block.length);
+            int blockLen = chunker != null ? chunker.next() : IOUtils.readFully(in, block, 0, block.length);
             count++;
             if (blockLen == 0) {
                 break;
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.commons.IOUtils;
+
+/**
+ * Splits a stream into chunks at content-defined boundaries, so that inserting
+ * or removing a few bytes only changes the chunks around the change, while
+ * the other chunks (and so their content hash) stay the same.
+ * <p>
+ * The boundaries are found with a Gear rolling hash, which is updated with
+ * each byte and only depends on the last 64 bytes. A chunk ends where the top
+ * bits of the hash are all zero. As in FastCDC, more bits are checked before
+ * the chunk reaches the average size and fewer bits after, which narrows the
+ * distribution of the chunk sizes. Chunks are at least the minimum size
+ * (except for the last one) and at most the size of the buffer.
+ */
+class ContentDefinedChunker {
+
+    /**
+     * The random value per byte value. It must never change, as it defines
+     * where the chunk boundaries are.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random r = new Random(1);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = r.nextLong();
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private final int minSize;
+    private final int averageSize;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int length;
+
+    /**
+     * The length of the current chunk, at the start of the buffer.
+     */
+    private int chunkLength;
+
+    /**
+     * Create a chunker.
+     *
+     * @param in the stream
+     * @param buffer the buffer, which also defines the maximum chunk size
+     * @param minSize the minimum chunk size
+     * @param averageSize the average chunk size
+     */
+    ContentDefinedChunker(InputStream in, byte[] buffer, int minSize, int averageSize) {
+        this.in = in;
+        this.buffer = buffer;
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.maskSmall = -1L << (64 - bits - 1);
+        this.maskLarge = -1L << (64 - bits + 1);
+    }
+
+    /**
+     * Read the next chunk into the start of the buffer. The remaining bytes
+     * of the buffer are kept for the next chunk.
+     *
+     * @return the length of the chunk, 0 at the end of the stream
+     */
+    int next() throws IOException {
+        if (chunkLength > 0) {
+            length -= chunkLength;
+            System.arraycopy(buffer, chunkLength, buffer, 0, length);
+        }
+        length += IOUtils.readFully(in, buffer, length, buffer.length - length);
+        chunkLength = findBoundary(buffer, length);
+        return chunkLength;
+    }
+
+    /**
+     * Find the end of the chunk that starts at the beginning of the data.
+     *
+     * @param data the data
+     * @param len the number of bytes of data
+     * @return the length of the chunk
+     */
+    int findBoundary(byte[] data, int len) {
+        if (len <= minSize) {
+            return len;
+        }
+        int normal = Math.min(averageSize, len);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < len; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return len;
+    }
+
+}
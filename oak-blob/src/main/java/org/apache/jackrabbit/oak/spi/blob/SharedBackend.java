@@ -19,10 +19,13 @@
 package org.apache.jackrabbit.oak.spi.blob;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
 
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.core.data.DataIdentifier;
 import org.apache.jackrabbit.core.data.DataRecord;
 import org.apache.jackrabbit.core.data.DataStoreException;
@@ -41,6 +44,33 @@ public interface SharedBackend {
      */
     InputStream read(DataIdentifier identifier) throws DataStoreException;
 
+    /**
+     * Return inputstream over a range of the record identified by identifier.
+     * The default implementation skips to the offset of a stream over the
+     * whole record; backends supporting range reads should override it.
+     *
+     * @param identifier
+     *            identifier of record.
+     * @param offset
+     *            the offset of the range.
+     * @param length
+     *            the length of the range.
+     * @return inputstream over the range of the record.
+     * @throws DataStoreException
+     *             if record not found or any error.
+     */
+    default InputStream read(DataIdentifier identifier, long offset, long length)
+        throws DataStoreException {
+        InputStream in = read(identifier);
+        try {
+            ByteStreams.skipFully(in, offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            throw new DataStoreException("Error skipping to offset " + offset + " of " + identifier, e);
+        }
+        return ByteStreams.limit(in, length);
+    }
+
     /**
      * Stores file to backend with identifier used as key. If key pre-exists, it
      * updates the timestamp of the key.
@@ -54,6 +84,121 @@ public interface SharedBackend {
      */
     void write(DataIdentifier identifier, File file) throws DataStoreException;
 
+    /**
+     * Returns whether the backend supports uploading a record in parts with
+     * {@link #initiateMultipartUpload(DataIdentifier)}. The default
+     * implementation returns false.
+     *
+     * @return true if multipart uploads are supported
+     */
+    default boolean isMultipartUploadSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the minimum size of a part of a multipart upload, except for
+     * the last part. The default implementation returns 1.
+     *
+     * @return the minimum part size in bytes
+     */
+    default long getMinMultipartUploadPartSize() {
+        return 1;
+    }
+
+    /**
+     * Returns the maximum size of a part of a multipart upload. The default
+     * implementation returns {@link Long#MAX_VALUE}.
+     *
+     * @return the maximum part size in bytes
+     */
+    default long getMaxMultipartUploadPartSize() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the maximum number of parts of a multipart upload. The default
+     * implementation returns {@link Integer#MAX_VALUE}.
+     *
+     * @return the maximum number of parts
+     */
+    default int getMaxMultipartUploadParts() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Starts a multipart upload of the record identified by identifier. The
+     * parts can be uploaded concurrently, and the record only becomes visible
+     * once the upload is completed.
+     *
+     * @param identifier
+     *            key of the record
+     * @return the id of the upload
+     * @throws DataStoreException
+     *             for any error.
+     */
+    default String initiateMultipartUpload(DataIdentifier identifier)
+        throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
+    /**
+     * Uploads a part of a multipart upload, read from a range of the file.
+     * Uploading the same part again replaces it.
+     *
+     * @param identifier
+     *            key of the record
+     * @param uploadId
+     *            the id of the upload
+     * @param partNumber
+     *            the number of the part, starting with 1
+     * @param file
+     *            the file containing the part
+     * @param offset
+     *            the offset of the part in the file
+     * @param length
+     *            the length of the part
+     * @return the tag of the uploaded part
+     * @throws DataStoreException
+     *             for any error.
+     */
+    default String uploadPart(DataIdentifier identifier, String uploadId, int partNumber,
+        File file, long offset, long length) throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
+    /**
+     * Completes a multipart upload, making the record visible. If the record
+     * already exists, its timestamp is updated.
+     *
+     * @param identifier
+     *            key of the record
+     * @param uploadId
+     *            the id of the upload
+     * @param partTags
+     *            the tags of all parts, in the order of the part numbers
+     * @throws DataStoreException
+     *             for any error.
+     */
+    default void completeMultipartUpload(DataIdentifier identifier, String uploadId,
+        List<String> partTags) throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
+    /**
+     * Aborts a multipart upload, discarding the parts uploaded so far.
+     *
+     * @param identifier
+     *            key of the record
+     * @param uploadId
+     *            the id of the upload
+     * @throws DataStoreException
+     *             for any error.
+     */
+    default void abortMultipartUpload(DataIdentifier identifier, String uploadId)
+        throws DataStoreException {
+        throw new UnsupportedOperationException("Multipart upload not supported");
+    }
+
     /**
      * Gets the record with the specified identifier
      *
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Compares fixed-size blocks with content-defined chunking, by writing a
+ * number of versions of a binary, where each version differs from the previous
+ * one by a few small inserts, deletes, and overwrites. Prints the number of
+ * bytes stored and the write throughput.
+ */
+public class ContentDefinedChunkingBenchmark {
+
+    private static final int SIZE = 16 * 1024 * 1024;
+    private static final int VERSIONS = 20;
+    private static final int CHANGES = 5;
+
+    public static void main(String... args) throws Exception {
+        byte[][] versions = createVersions(new Random(1));
+        for (int i = 0; i < 3; i++) {
+            test("fixed", versions, 0);
+            test("content-defined 256 KB", versions, 256 * 1024);
+            test("content-defined 64 KB", versions, 64 * 1024);
+        }
+    }
+
+    private static void test(String name, byte[][] versions, int averageBlockSize)
+            throws Exception {
+        CountingBlobStore store = new CountingBlobStore();
+        store.setAverageBlockSize(averageBlockSize);
+        long total = 0;
+        long time = System.nanoTime();
+        for (byte[] v : versions) {
+            store.writeBlob(new ByteArrayInputStream(v));
+            total += v.length;
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%s: stored %d MB of %d MB (%d%%), %d MB/s%n", name,
+                store.stored >> 20, total >> 20, 100 * store.stored / total,
+                (total >> 20) * 1000000000L / time);
+    }
+
+    private static byte[][] createVersions(Random r) {
+        byte[][] versions = new byte[VERSIONS][];
+        byte[] data = new byte[SIZE];
+        r.nextBytes(data);
+        versions[0] = data;
+        for (int i = 1; i < versions.length; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 1024);
+            int pos = 0;
+            for (int c = 0; c < CHANGES; c++) {
+                int next = pos + r.nextInt((data.length - pos) / (CHANGES - c));
+                out.write(data, pos, next - pos);
+                byte[] change = new byte[1 + r.nextInt(100)];
+                r.nextBytes(change);
+                switch (r.nextInt(3)) {
+                case 0:
+                    // insert
+                    out.write(change, 0, change.length);
+                    pos = next;
+                    break;
+                case 1:
+                    // delete
+                    pos = Math.min(data.length, next + change.length);
+                    break;
+                default:
+                    // overwrite
+                    out.write(change, 0, change.length);
+                    pos = Math.min(data.length, next + change.length);
+                }
+            }
+            out.write(data, pos, data.length - pos);
+            data = out.toByteArray();
+            versions[i] = data;
+        }
+        return versions;
+    }
+
+    /**
+     * A memory blob store that counts the bytes of the new blocks.
+     */
+    static class CountingBlobStore extends MemoryBlobStore {
+
+        long stored;
+
+        @Override
+        protected synchronized void storeBlock(byte[] digest, int level, byte[] data) {
+            if (readBlockFromBackend(new BlockId(digest, 0)) == null) {
+                stored += data.length;
+            }
+            super.storeBlock(digest, level, data);
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import com.google.common.collect.Iterators;
+import com.google.common.primitives.Bytes;
+import org.junit.Test;
+
+/**
+ * Tests the MemoryBlobStore implementation with content-defined chunking.
+ */
+public class ContentDefinedChunkingTest extends AbstractBlobStoreTest {
+
+    @Override
+    public void setUp() throws Exception {
+        store = new MemoryBlobStore();
+        store.setBlockSize(128);
+        ((MemoryBlobStore) store).setBlockSizeMin(48);
+        ((MemoryBlobStore) store).setAverageBlockSize(48);
+    }
+
+    @Test
+    public void chunkSizes() throws Exception {
+        byte[] data = randomBytes(1, 1024 * 1024);
+        ContentDefinedChunker chunker = new ContentDefinedChunker(
+                new ByteArrayInputStream(data), new byte[8 * 1024], 512, 2 * 1024);
+        int total = 0;
+        int count = 0;
+        int last = 0;
+        while (true) {
+            int len = chunker.next();
+            if (len == 0) {
+                break;
+            }
+            assertTrue("chunk of " + last + " bytes before the last one", count == 0 || last >= 512);
+            assertTrue(len <= 8 * 1024);
+            total += len;
+            count++;
+            last = len;
+        }
+        assertEquals(data.length, total);
+        int average = total / count;
+        assertTrue("average chunk size " + average, average > 1024 && average < 4 * 1024);
+    }
+
+    @Test
+    public void insertedBytesKeepOtherBlocks() throws Exception {
+        byte[] data = randomBytes(2, 256 * 1024);
+        byte[] changed = Bytes.concat(new byte[] {1, 2, 3, 4, 5, 6, 7}, data);
+
+        long fixed = storedBlocks(0, data, changed);
+        long contentDefined = storedBlocks(2 * 1024, data, changed);
+        // with fixed-size blocks, all 32 blocks change
+        assertTrue("fixed: " + fixed, fixed >= 32);
+        // with content-defined chunking, only the first block changes
+        assertTrue("content-defined: " + contentDefined, contentDefined < 5);
+    }
+
+    /**
+     * Write both binaries and return the number of blocks written for the
+     * second one only.
+     */
+    private static long storedBlocks(int averageBlockSize, byte[] data, byte[] changed)
+            throws Exception {
+        MemoryBlobStore s = new MemoryBlobStore();
+        s.setBlockSize(8 * 1024);
+        s.setBlockSizeMin(512);
+        s.setAverageBlockSize(averageBlockSize);
+        String id = s.writeBlob(new ByteArrayInputStream(data));
+        int before = Iterators.size(s.getAllChunkIds(0));
+        String changedId = s.writeBlob(new ByteArrayInputStream(changed));
+        assertArrayEquals(data, BlobStoreInputStream.readFully(s, id));
+        assertArrayEquals(changed, BlobStoreInputStream.readFully(s, changedId));
+        Iterator<String> chunks = s.getAllChunkIds(0);
+        return Iterators.size(chunks) - before;
+    }
+
+    private static byte[] randomBytes(int seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+}
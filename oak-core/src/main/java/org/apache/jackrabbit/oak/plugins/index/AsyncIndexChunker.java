@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getDepth;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
+import org.apache.jackrabbit.oak.spi.state.DefaultNodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * Splits the diff between two states into chunks, so that a large change can
+ * be indexed in multiple steps, each with a bounded number of nodes.
+ * <p>
+ * The diff is split into units: changed subtrees, whose size is estimated
+ * using the node counter index. Changed and added subtrees that are larger
+ * than the chunk size are split further into their changed (or added) child
+ * nodes. A chunk is a list of units that together are about as large as the
+ * chunk size. Deleted subtrees are all part of the first chunk, so that
+ * queries don't return deleted nodes until the last chunk is indexed.
+ * Deletions are not counted against the chunk size: removing the entries of a
+ * deleted subtree is cheap for fulltext indexes (one delete by path), and
+ * property indexes would have to remove them in one run anyway. Indexing
+ * a chunk means indexing the diff between two intermediate states: the
+ * "before" state where the units of all previous chunks are replaced with the
+ * "after" state, and the same state where also the units of the current chunk
+ * are replaced. The last chunk is indexed up to the "after" state, so that
+ * changes that are not part of any unit (for example properties of the root
+ * node) are indexed as well.
+ */
+class AsyncIndexChunker {
+
+    /**
+     * The maximum depth of units.
+     */
+    private static final int MAX_DEPTH = 6;
+
+    private final NodeState before;
+    private final NodeState after;
+    private final long chunkSize;
+
+    AsyncIndexChunker(NodeState before, NodeState after, long chunkSize) {
+        this.before = before;
+        this.after = after;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the units: first the deleted subtrees, then the others, each
+     * sorted by path.
+     *
+     * @return the list of paths of the changed subtrees
+     */
+    List<String> getUnits() {
+        List<String> units = newArrayList();
+        collectUnits("/", before, after, units);
+        Collections.sort(units, Comparator.comparing((String p) -> !isDeleted(p))
+                .thenComparing(Comparator.naturalOrder()));
+        return units;
+    }
+
+    /**
+     * Get the next chunk.
+     *
+     * @param units all units
+     * @param done the number of units that were already indexed
+     * @return the units of the next chunk (at least one unit, if there are
+     *         any units left)
+     */
+    List<String> getNextChunk(List<String> units, int done) {
+        List<String> chunk = newArrayList();
+        long size = 0;
+        for (int i = done; i < units.size(); i++) {
+            if (isDeleted(units.get(i))) {
+                chunk.add(units.get(i));
+                continue;
+            }
+            long s = getEstimatedSize(units.get(i));
+            if (!chunk.isEmpty() && size + s > chunkSize) {
+                break;
+            }
+            chunk.add(units.get(i));
+            size += s;
+        }
+        return chunk;
+    }
+
+    /**
+     * Replace the given units in the base state with the "after" state.
+     *
+     * @param base the base state
+     * @param units the paths of the units
+     * @return the resulting state
+     */
+    NodeState apply(NodeState base, List<String> units) {
+        if (units.isEmpty()) {
+            return base;
+        }
+        NodeBuilder builder = base.builder();
+        for (String path : units) {
+            NodeBuilder parent = builder;
+            String parentPath = "/";
+            for (String name : elements(getParentPath(path))) {
+                parentPath = concat(parentPath, name);
+                if (!parent.hasChildNode(name)) {
+                    // a unit within an added subtree: add the ancestors
+                    // with their properties, but without the other units
+                    NodeBuilder child = parent.child(name);
+                    for (PropertyState p : NodeStateUtils.getNode(after, parentPath).getProperties()) {
+                        child.setProperty(p);
+                    }
+                }
+                parent = parent.getChildNode(name);
+            }
+            NodeState target = NodeStateUtils.getNode(after, path);
+            String name = getName(path);
+            if (target.exists()) {
+                parent.setChildNode(name, target);
+            } else if (parent.hasChildNode(name)) {
+                parent.getChildNode(name).remove();
+            }
+        }
+        return builder.getNodeState();
+    }
+
+    private boolean isDeleted(String path) {
+        return !NodeStateUtils.getNode(after, path).exists();
+    }
+
+    private long getEstimatedSize(String path) {
+        long size = NodeCounter.getEstimatedNodeCount(after, path, false);
+        if (size <= 0) {
+            size = NodeCounter.getEstimatedNodeCount(before, path, false);
+        }
+        // unknown: assume it is small
+        return Math.max(1, size);
+    }
+
+    private void collectUnits(final String path, NodeState b, NodeState a, final List<String> units) {
+        a.compareAgainstBaseState(b, new DefaultNodeStateDiff() {
+
+            @Override
+            public boolean childNodeAdded(String name, NodeState after) {
+                return childNodeChanged(name, EmptyNodeState.EMPTY_NODE, after);
+            }
+
+            @Override
+            public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+                if (NodeStateUtils.isHidden(name)) {
+                    return true;
+                }
+                String p = concat(path, name);
+                if (getDepth(p) < MAX_DEPTH && getEstimatedSize(p) > chunkSize) {
+                    collectUnits(p, before, after, units);
+                } else {
+                    units.add(p);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean childNodeDeleted(String name, NodeState before) {
+                if (!NodeStateUtils.isHidden(name)) {
+                    units.add(concat(path, name));
+                }
+                return true;
+            }
+
+        });
+    }
+
+}
@@ -30,13 +30,22 @@ public class AsyncIndexInfo {
     private final long leaseExpiryTime;
     private final boolean running;
     private final IndexStatsMBean statsMBean;
+    private final boolean catchingUp;
+    private final long chunkUnitsDone;
 
     public AsyncIndexInfo(String name, long lastIndexedTo, long leaseExpiryTime, boolean running, @Nullable IndexStatsMBean statsMBean) {
+        this(name, lastIndexedTo, leaseExpiryTime, running, statsMBean, false, 0);
+    }
+
+    public AsyncIndexInfo(String name, long lastIndexedTo, long leaseExpiryTime, boolean running,
+                          @Nullable IndexStatsMBean statsMBean, boolean catchingUp, long chunkUnitsDone) {
         this.name = checkNotNull(name);
         this.lastIndexedTo = lastIndexedTo;
         this.leaseExpiryTime = leaseExpiryTime;
         this.running = running;
         this.statsMBean = statsMBean;
+        this.catchingUp = catchingUp;
+        this.chunkUnitsDone = chunkUnitsDone;
     }
 
     public String getName() {
@@ -67,6 +76,33 @@ public class AsyncIndexInfo {
         return running;
     }
 
+    /**
+     * Returns true if the async indexer is indexing a large change in
+     * multiple chunks, that is, it only indexed part of the changes
+     * after the {@link #getLastIndexedTo()} time
+     */
+    public boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    /**
+     * Number of changed subtrees of the large change that are already
+     * indexed, if the async indexer is catching up
+     */
+    public long getChunkUnitsDone() {
+        return chunkUnitsDone;
+    }
+
+    /**
+     * Time in millis since the time upto which the repository state is
+     * indexed, or -1 if nothing is indexed yet
+     *
+     * @param now the current time in millis
+     */
+    public long getLag(long now) {
+        return lastIndexedTo < 0 ? -1 : Math.max(0, now - lastIndexedTo);
+    }
+
     /**
      * IndexStatsMBean for current indexer. The MBean would be
      * returning valid values only for that cluster node where
@@ -80,7 +116,7 @@ public class AsyncIndexInfo {
 
     @Override
     public String toString() {
-        return String.format("%s : lastIndexedTo :%tc, leaseExpiryTime :%tc, running :%s",
-                name, lastIndexedTo, leaseExpiryTime, running);
+        return String.format("%s : lastIndexedTo :%tc, leaseExpiryTime :%tc, running :%s, catchingUp :%s",
+                name, lastIndexedTo, leaseExpiryTime, running, catchingUp);
     }
 }
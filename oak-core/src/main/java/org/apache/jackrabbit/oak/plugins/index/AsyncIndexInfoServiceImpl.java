@@ -89,7 +89,13 @@ public class AsyncIndexInfoServiceImpl implements AsyncIndexInfoService {
                 leaseEnd = async.getLong(AsyncIndexUpdate.leasify(name));
             }
             IndexStatsMBean mbean = statsMBeans.get(name);
-            return new AsyncIndexInfo(name, lastIndexedTo, leaseEnd, running, mbean);
+            boolean catchingUp = async.hasProperty(AsyncIndexUpdate.chunkTarget(name));
+            long chunkUnitsDone = 0;
+            PropertyState done = async.getProperty(AsyncIndexUpdate.chunkUnitsDone(name));
+            if (catchingUp && done != null) {
+                chunkUnitsDone = done.count();
+            }
+            return new AsyncIndexInfo(name, lastIndexedTo, leaseEnd, running, mbean, catchingUp, chunkUnitsDone);
         }
         return null;
     }
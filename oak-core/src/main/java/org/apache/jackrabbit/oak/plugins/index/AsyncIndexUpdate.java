@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.getStackTraceAsString;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.oak.api.jmx.IndexStatsMBean.STATUS_DONE;
 import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
@@ -126,6 +127,15 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
     private static final long DEFAULT_ASYNC_TIMEOUT = TimeUnit.MINUTES.toMillis(
             Integer.getInteger("oak.async.lease.timeout", 15));
 
+    /**
+     * The maximum (estimated) number of changed nodes that are indexed in one
+     * run. Larger changes are indexed in multiple chunks, one chunk per run,
+     * so that a large change (for example an import) does not block indexing
+     * for a long time. 0 (the default) disables chunking. See
+     * {@link AsyncIndexChunker}.
+     */
+    private static final long DEFAULT_CHUNK_SIZE = Long.getLong("oak.async.chunkSize", 0);
+
     private final String name;
 
     private final NodeStore store;
@@ -205,6 +215,15 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
 
     private final StatisticsProvider statisticsProvider;
 
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private AsyncLaneScheduler laneScheduler = AsyncLaneScheduler.NOOP;
+
+    /**
+     * Whether the last run only indexed a chunk of the changes.
+     */
+    private boolean chunkPending;
+
     public AsyncIndexUpdate(@NotNull String name, @NotNull NodeStore store,
                             @NotNull IndexEditorProvider provider, boolean switchOnSync) {
         this(name, store, provider, StatisticsProvider.NOOP, switchOnSync);
@@ -352,7 +371,9 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             // try to drop temp cps, add 'currentCp' to the temp cps list
             Set<String> temps = newHashSet();
             for (String cp : getStrings(async, tempCpName)) {
-                if (cp.equals(checkpoint)) {
+                if (cp.equals(checkpoint) || cp.equals(afterCheckpoint)) {
+                    // the checkpoint is still in use, for example if a large
+                    // change is indexed in multiple chunks
                     temps.add(cp);
                     continue;
                 }
@@ -429,7 +450,15 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         try{
             if (runPermit.tryAcquire()){
                 permitAcquired = true;
-                runWhenPermitted();
+                if (laneScheduler.tryStart(name, isCatchingUp())) {
+                    try {
+                        runWhenPermitted();
+                    } finally {
+                        laneScheduler.done(name);
+                    }
+                } else {
+                    indexStats.deferred();
+                }
             } else {
                 log.warn("[{}] Could not acquire run permit. Stop flag set to [{}] Skipping the run", name, forcedStopFlag);
             }
@@ -502,6 +531,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         // find the last indexed state, and check if there are recent changes
         NodeState before;
         String beforeCheckpoint = async.getString(name);
+        // the target checkpoint, if a large change is indexed in chunks
+        String pendingTarget = getPendingChunkTarget(async, beforeCheckpoint);
         AsyncUpdateCallback callback = newAsyncUpdateCallback(store,
                 name, leaseTimeOut, beforeCheckpoint, indexStats,
                 forcedStopFlag);
@@ -531,7 +562,7 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 beforeCheckpoint = null;
                 callback.setCheckpoint(beforeCheckpoint);
                 before = MISSING_NODE;
-            } else if (noVisibleChanges(state, root) && !switchOnSync) {
+            } else if (noVisibleChanges(state, root) && !switchOnSync && pendingTarget == null) {
                 log.debug(
                         "[{}] No changes since last checkpoint; skipping the index update",
                         name);
@@ -545,25 +576,45 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             before = MISSING_NODE;
         }
 
-        // there are some recent changes, so let's create a new checkpoint
-        String afterTime = now();
         String oldThreadName = Thread.currentThread().getName();
         boolean threadNameChanged = false;
-        String afterCheckpoint = store.checkpoint(lifetime, ImmutableMap.of(
-                "creator", AsyncIndexUpdate.class.getSimpleName(),
-                "created", afterTime,
-                "thread", oldThreadName,
-                "name", name));
-        NodeState after = store.retrieve(afterCheckpoint);
-        if (after == null) {
-            log.debug(
-                    "[{}] Unable to retrieve newly created checkpoint {}, skipping the index update",
-                    name, afterCheckpoint);
-            //Do not update the status as technically the run is not complete
-            return;
+        String afterTime = null;
+        String afterCheckpoint = null;
+        NodeState after = null;
+        if (pendingTarget != null && before != MISSING_NODE) {
+            // continue indexing the large change, up to the same checkpoint
+            after = store.retrieve(pendingTarget);
+            afterTime = store.checkpointInfo(pendingTarget).get("created");
+            if (after != null && afterTime != null) {
+                afterCheckpoint = pendingTarget;
+            } else {
+                log.warn("[{}] Failed to retrieve the checkpoint {} of the chunked index update; " +
+                        "indexing the remaining changes up to a new checkpoint", name, pendingTarget);
+                after = null;
+            }
+        }
+        boolean continueChunks = afterCheckpoint != null;
+        if (!continueChunks) {
+            // there are some recent changes, so let's create a new checkpoint
+            afterTime = now();
+            afterCheckpoint = store.checkpoint(lifetime, ImmutableMap.of(
+                    "creator", AsyncIndexUpdate.class.getSimpleName(),
+                    "created", afterTime,
+                    "thread", oldThreadName,
+                    "name", name));
+            after = store.retrieve(afterCheckpoint);
+            if (after == null) {
+                log.debug(
+                        "[{}] Unable to retrieve newly created checkpoint {}, skipping the index update",
+                        name, afterCheckpoint);
+                //Do not update the status as technically the run is not complete
+                return;
+            }
         }
 
-        String checkpointToRelease = afterCheckpoint;
+        // the target checkpoint of a chunked update is kept if the update
+        // fails, so that the next run can continue
+        String checkpointToRelease = continueChunks ? null : afterCheckpoint;
         boolean updatePostRunStatus = false;
         try {
             String newThreadName = "async-index-update-" + name;
@@ -578,13 +629,19 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 indexStats.fixed();
             }
 
-            // the update succeeded, so we can release the earlier checkpoint
-            // otherwise the new checkpoint associated with the failed update
-            // will get released in the finally block
-            checkpointToRelease = beforeCheckpoint;
-            indexStats.setReferenceCheckpoint(afterCheckpoint);
-            indexStats.setProcessedCheckpoint("");
-            indexStats.releaseTempCheckpoint(afterCheckpoint);
+            if (chunkPending) {
+                // only a chunk of the changes was indexed: keep both
+                // checkpoints until the last chunk is indexed
+                checkpointToRelease = null;
+            } else {
+                // the update succeeded, so we can release the earlier checkpoint
+                // otherwise the new checkpoint associated with the failed update
+                // will get released in the finally block
+                checkpointToRelease = beforeCheckpoint;
+                indexStats.setReferenceCheckpoint(afterCheckpoint);
+                indexStats.setProcessedCheckpoint("");
+                indexStats.releaseTempCheckpoint(afterCheckpoint);
+            }
 
         } catch (Exception e) {
             indexStats.failed(e);
@@ -729,18 +786,64 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
 
             markFailingIndexesAsCorrupt(builder);
 
+            // for large changes, only index the next chunk
+            chunkPending = false;
+            NodeState from = before;
+            NodeState to = after;
+            List<String> chunksDone = null;
+            int pendingUnits = 0;
+            if (isChunkingEnabled(before)) {
+                AsyncIndexChunker chunker = new AsyncIndexChunker(before, after, chunkSize);
+                List<String> done = getChunkUnitsDone(builder.getNodeState().getChildNode(ASYNC),
+                        beforeCheckpoint, afterCheckpoint);
+                List<String> remaining = newArrayList(chunker.getUnits());
+                remaining.removeAll(newHashSet(done));
+                List<String> chunk = chunker.getNextChunk(remaining, 0);
+                from = chunker.apply(before, done);
+                if (chunk.size() < remaining.size()) {
+                    to = chunker.apply(from, chunk);
+                    chunksDone = newArrayList(done);
+                    chunksDone.addAll(chunk);
+                }
+                pendingUnits = remaining.size() - chunk.size();
+            }
+
             CommitInfo info = new CommitInfo(CommitInfo.OAK_UNKNOWN, CommitInfo.OAK_UNKNOWN,
                     ImmutableMap.of(IndexConstants.CHECKPOINT_CREATION_TIME, afterTime));
             indexUpdate =
-                    new IndexUpdate(provider, name, after, builder, callback, callback, info, corruptIndexHandler)
+                    new IndexUpdate(provider, name, to, builder, callback, callback, info, corruptIndexHandler)
                     .withMissingProviderStrategy(missingStrategy);
             configureRateEstimator(indexUpdate);
             CommitFailedException exception =
-                    EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
+                    EditorDiff.process(VisibleEditor.wrap(indexUpdate), from, to);
             if (exception != null) {
                 throw exception;
             }
 
+            NodeBuilder asyncBuilder = builder.child(ASYNC);
+            if (chunksDone != null) {
+                // not all changes are indexed yet: keep the reference
+                // checkpoint, and continue with the next chunk in the next run
+                asyncBuilder.setProperty(chunkBase(name), beforeCheckpoint);
+                asyncBuilder.setProperty(chunkTarget(name), afterCheckpoint);
+                asyncBuilder.setProperty(chunkUnitsDone(name), chunksDone, Type.STRINGS);
+                mergeWithConcurrencyCheck(store, validatorProviders, builder, beforeCheckpoint,
+                        callback.lease, name);
+                indexingFailed = false;
+                chunkPending = true;
+                indexStats.chunkIndexed(pendingUnits);
+                corruptIndexHandler.markWorkingIndexes(indexUpdate.getUpdatedIndexPaths());
+                log.info("[{}] Indexed a chunk of a large change in {}: {} nodes, {} of the changed subtrees done",
+                        name, watch, indexStats.getUpdates(), chunksDone.size());
+                return true;
+            }
+            if (asyncBuilder.hasProperty(chunkTarget(name))) {
+                indexStats.chunkIndexed(0);
+            }
+            asyncBuilder.removeProperty(chunkBase(name));
+            asyncBuilder.removeProperty(chunkTarget(name));
+            asyncBuilder.removeProperty(chunkUnitsDone(name));
+
             builder.child(ASYNC).setProperty(name, afterCheckpoint);
             builder.child(ASYNC).setProperty(PropertyStates.createProperty(lastIndexedTo, afterTime, Type.DATE));
             if (callback.isDirty() || before == MISSING_NODE) {
@@ -828,6 +931,51 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         return name + "-lease";
     }
 
+    static String chunkBase(String name) {
+        return name + "-chunkBase";
+    }
+
+    static String chunkTarget(String name) {
+        return name + "-chunkTarget";
+    }
+
+    static String chunkUnitsDone(String name) {
+        return name + "-chunkDone";
+    }
+
+    private boolean isChunkingEnabled(NodeState before) {
+        // the initial index update and the async reindex lane are not
+        // chunked, as they reindex anyway
+        return chunkSize > 0 && before != MISSING_NODE && !switchOnSync;
+    }
+
+    /**
+     * Whether this lane is indexing a large change in multiple chunks.
+     */
+    private boolean isCatchingUp() {
+        return chunkSize > 0 && store.getRoot().getChildNode(ASYNC).hasProperty(chunkTarget(name));
+    }
+
+    @Nullable
+    private String getPendingChunkTarget(NodeState async, @Nullable String beforeCheckpoint) {
+        if (chunkSize <= 0 || switchOnSync || beforeCheckpoint == null) {
+            return null;
+        }
+        if (!beforeCheckpoint.equals(async.getString(chunkBase(name)))) {
+            return null;
+        }
+        return async.getString(chunkTarget(name));
+    }
+
+    private List<String> getChunkUnitsDone(NodeState async, @Nullable String beforeCheckpoint,
+            String afterCheckpoint) {
+        if (afterCheckpoint.equals(async.getString(chunkTarget(name)))
+                && Objects.equal(beforeCheckpoint, async.getString(chunkBase(name)))) {
+            return newArrayList(async.getStrings(chunkUnitsDone(name)));
+        }
+        return newArrayList();
+    }
+
     static String lastIndexedTo(String name) {
         return name + "-LastIndexedTo";
     }
@@ -909,6 +1057,19 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         this.corruptIndexHandler = checkNotNull(corruptIndexHandler);
     }
 
+    /**
+     * Set the maximum (estimated) number of changed nodes indexed in one run.
+     *
+     * @param chunkSize the chunk size, 0 to disable chunking
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public void setLaneScheduler(AsyncLaneScheduler laneScheduler) {
+        this.laneScheduler = checkNotNull(laneScheduler);
+    }
+
     TrackingCorruptIndexHandler getCorruptIndexHandler() {
         return corruptIndexHandler;
     }
@@ -958,6 +1119,9 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         private volatile boolean isPaused;
         private volatile long updates;
         private volatile long nodesRead;
+        private volatile long chunkCount;
+        private volatile long pendingChunkUnits;
+        private volatile long deferredRuns;
         private final Stopwatch watch = Stopwatch.createUnstarted();
         private final ExecutionStats execStats;
 
@@ -992,9 +1156,68 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 watch.stop();
             }
             execStats.doneOneCycle(watch.elapsed(TimeUnit.MILLISECONDS), updates);
+            long lag = getLagMillis();
+            if (lag >= 0) {
+                execStats.updateLag(lag);
+            }
             watch.reset();
         }
 
+        /**
+         * A chunk of a large change was indexed.
+         *
+         * @param pendingUnits the number of changed subtrees that are not
+         *            indexed yet
+         */
+        void chunkIndexed(long pendingUnits) {
+            chunkCount++;
+            pendingChunkUnits = pendingUnits;
+            execStats.chunkIndexed();
+        }
+
+        /**
+         * A run was skipped to give priority to other lanes.
+         */
+        void deferred() {
+            deferredRuns++;
+        }
+
+        /**
+         * The number of chunks of large changes that were indexed.
+         */
+        public long getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * The number of changed subtrees of a large change that are not
+         * indexed yet.
+         */
+        public long getPendingChunkUnits() {
+            return pendingChunkUnits;
+        }
+
+        /**
+         * The number of runs that were skipped to give priority to other
+         * lanes.
+         */
+        public long getDeferredRuns() {
+            return deferredRuns;
+        }
+
+        /**
+         * The time since the repository state that is indexed by this lane.
+         *
+         * @return the lag in milliseconds, or -1 if not indexed yet
+         */
+        public long getLagMillis() {
+            String lastIndexed = getLastIndexedTime();
+            if (lastIndexed == null) {
+                return -1;
+            }
+            return Math.max(0, System.currentTimeMillis() - ISO8601.parse(lastIndexed).getTimeInMillis());
+        }
+
         public void failed(Exception e) {
             if (e == INTERRUPTED){
                 status = STATUS_INTERRUPTED;
@@ -1202,7 +1425,9 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                     + ", consecutiveFailures=" + consecutiveFailures
                     + ", updates=" + updates + ", referenceCheckpoint="
                     + referenceCp + ", processedCheckpoint=" + processedCp
-                    + " ,tempCheckpoints=" + tempCps + ", latestErrorTime="
+                    + " ,tempCheckpoints=" + tempCps + ", chunkCount=" + chunkCount
+                    + ", pendingChunkUnits=" + pendingChunkUnits + ", deferredRuns=" + deferredRuns
+                    + ", latestErrorTime="
                     + latestErrorTime + ", latestError=" + latestError + " ]";
         }
 
@@ -1217,6 +1442,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             private final MeterStats indexedNodeCountMeter;
             private final TimerStats indexerTimer;
             private final HistogramStats indexedNodePerCycleHisto;
+            private final MeterStats chunkCountMeter;
+            private final HistogramStats lagHisto;
             private StatisticsProvider statisticsProvider;
 
             private final String[] names = {"Executions", "Nodes"};
@@ -1231,6 +1458,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 indexerTimer = statsProvider.getTimer(stats("INDEXER_TIME"), StatsOptions.METRICS_ONLY);
                 indexedNodePerCycleHisto = statsProvider.getHistogram(stats("INDEXER_NODE_COUNT_HISTO"), StatsOptions
                         .METRICS_ONLY);
+                chunkCountMeter = statsProvider.getMeter(stats("INDEXER_CHUNK_COUNT"), StatsOptions.METRICS_ONLY);
+                lagHisto = statsProvider.getHistogram(stats("INDEXER_LAG_SECONDS"), StatsOptions.METRICS_ONLY);
                 try {
                     consolidatedType = new CompositeType("ConsolidatedStats",
                         "Consolidated stats", names,
@@ -1248,6 +1477,14 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 indexedNodePerCycleHisto.update(updates);
             }
 
+            void chunkIndexed() {
+                chunkCountMeter.mark();
+            }
+
+            void updateLag(long lagMillis) {
+                lagHisto.update(TimeUnit.MILLISECONDS.toSeconds(lagMillis));
+            }
+
             public Counting getExecutionCounter() {
                 return indexerExecutionCountMeter;
             }
@@ -134,6 +134,9 @@ public class AsyncIndexerService {
         }
 
         TrackingCorruptIndexHandler corruptIndexHandler = createCorruptIndexHandler(config);
+        // gives priority to lanes with small changes over lanes that index a
+        // large change in chunks
+        AsyncLaneScheduler laneScheduler = new AsyncLaneScheduler();
 
         for (AsyncConfig c : asyncIndexerConfig) {
             AsyncIndexUpdate task = new AsyncIndexUpdate(c.name, nodeStore, indexEditorProvider,
@@ -141,6 +144,7 @@ public class AsyncIndexerService {
             task.setCorruptIndexHandler(corruptIndexHandler);
             task.setValidatorProviders(Collections.singletonList(validatorProvider));
             task.setLeaseTimeOut(TimeUnit.MINUTES.toMillis(leaseTimeOutMin));
+            task.setLaneScheduler(laneScheduler);
 
             indexRegistration.registerAsyncIndexer(task, c.timeIntervalInSecs);
             closer.register(task);
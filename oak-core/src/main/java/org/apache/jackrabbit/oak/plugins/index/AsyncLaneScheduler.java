@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coordinates the runs of multiple async indexing lanes, giving priority to
+ * lanes with small pending changes. A lane that is catching up with a large
+ * change (that is, it indexes the change in multiple chunks) defers its next
+ * chunk while another lane, that is not catching up, is running. To avoid
+ * starvation, a lane defers at most a given number of consecutive runs.
+ */
+public class AsyncLaneScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncLaneScheduler.class);
+
+    /**
+     * The default maximum number of consecutive runs a lane can defer.
+     */
+    public static final int DEFAULT_MAX_DEFERRALS = 3;
+
+    /**
+     * A scheduler where lanes never defer.
+     */
+    public static final AsyncLaneScheduler NOOP = new AsyncLaneScheduler(0);
+
+    private final int maxDeferrals;
+
+    /**
+     * The running lanes, and whether they are catching up.
+     */
+    private final Map<String, Boolean> running = new HashMap<>();
+
+    /**
+     * The number of consecutive deferred runs per lane.
+     */
+    private final Map<String, Integer> deferrals = new HashMap<>();
+
+    public AsyncLaneScheduler() {
+        this(DEFAULT_MAX_DEFERRALS);
+    }
+
+    public AsyncLaneScheduler(int maxDeferrals) {
+        this.maxDeferrals = maxDeferrals;
+    }
+
+    /**
+     * Try to start a run of the given lane.
+     *
+     * @param lane the lane name
+     * @param catchingUp whether the lane is catching up with a large change
+     * @return true if the lane may run (in which case {@link #done(String)}
+     *         needs to be called afterwards), false if the run should be
+     *         skipped
+     */
+    public synchronized boolean tryStart(String lane, boolean catchingUp) {
+        if (catchingUp && isOtherLaneRunning(lane)) {
+            int count = deferrals.getOrDefault(lane, 0);
+            if (count < maxDeferrals) {
+                deferrals.put(lane, count + 1);
+                log.debug("[{}] Deferring the next chunk, as other lanes are running: {}", lane, running.keySet());
+                return false;
+            }
+        }
+        deferrals.remove(lane);
+        running.put(lane, catchingUp);
+        return true;
+    }
+
+    /**
+     * Mark the run of the given lane as done.
+     *
+     * @param lane the lane name
+     */
+    public synchronized void done(String lane) {
+        running.remove(lane);
+    }
+
+    private boolean isOtherLaneRunning(String lane) {
+        for (Map.Entry<String, Boolean> e : running.entrySet()) {
+            if (!e.getKey().equals(lane) && !e.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -94,6 +94,16 @@ public class IndexUpdate implements Editor, PathSource {
     static final boolean IGNORE_REINDEX_FLAGS = Boolean
             .getBoolean("oak.indexUpdate.ignoreReindexFlags");
 
+    /**
+     * The number of threads used to reindex property and reference indexes.
+     * The default is 1, meaning the content is traversed in the current
+     * thread. If larger, the content is partitioned and each partition is
+     * traversed in a separate thread (see {@link ParallelReindexer}). Other
+     * index types are always reindexed in the current thread.
+     */
+    static final int PARALLEL_REINDEX_THREADS = Integer
+            .getInteger("oak.indexUpdate.parallelReindexThreads", 1);
+
     static {
         if (IGNORE_REINDEX_FLAGS) {
             log.warn("Reindexing is disabled by configuration. This value is configurable via the 'oak.indexUpdate.ignoreReindexFlags' system property.");
@@ -123,6 +133,12 @@ public class IndexUpdate implements Editor, PathSource {
      */
     private final Map<String, Editor> reindex = new HashMap<String, Editor>();
 
+    /**
+     * Indexes that need to be re-indexed, and support parallel reindexing.
+     * Only used if parallel reindexing is enabled.
+     */
+    private final List<ParallelReindexer.Index> parallelReindex = newArrayList();
+
 
     public IndexUpdate(
             IndexEditorProvider provider, String async,
@@ -163,12 +179,18 @@ public class IndexUpdate implements Editor, PathSource {
         rootState.nodeRead(this);
         collectIndexEditors(builder.getChildNode(INDEX_DEFINITIONS_NAME), before);
 
-        if (!reindex.isEmpty()) {
+        if (!reindex.isEmpty() || !parallelReindex.isEmpty()) {
             log.info("Reindexing will be performed for following indexes: {}",
-                    reindex.keySet());
+                    getReindexPaths());
             rootState.progressReporter.reindexingTraversalStart(getPath());
         }
 
+        if (!parallelReindex.isEmpty()) {
+            new ParallelReindexer(rootState.provider, rootState.root,
+                    rootState.progressReporter, rootState.parallelReindexThreads)
+                    .reindex(getPath(), after, parallelReindex);
+        }
+
         // no-op when reindex is empty
         CommitFailedException exception = process(
                 wrap(wrapProgress(compose(reindex.values()))), MISSING_NODE, after);
@@ -182,6 +204,14 @@ public class IndexUpdate implements Editor, PathSource {
         }
     }
 
+    private List<String> getReindexPaths() {
+        List<String> paths = newArrayList(reindex.keySet());
+        for (ParallelReindexer.Index index : parallelReindex) {
+            paths.add(index.path);
+        }
+        return paths;
+    }
+
     public boolean isReindexingPerformed(){
         return !getReindexStats().isEmpty();
     }
@@ -210,6 +240,16 @@ public class IndexUpdate implements Editor, PathSource {
         rootState.setIgnoreReindexFlags(ignoreReindexFlag);
     }
 
+    /**
+     * Set the number of threads used to reindex property and reference
+     * indexes.
+     *
+     * @param threads the number of threads (1 to disable parallel reindexing)
+     */
+    public void setParallelReindexThreads(int threads){
+        rootState.setParallelReindexThreads(threads);
+    }
+
     private boolean shouldReindex(NodeBuilder definition, NodeState before,
             String name) {
         //Async indexes are not considered for reindexing for sync indexing
@@ -278,9 +318,10 @@ public class IndexUpdate implements Editor, PathSource {
                 }
 
                 Editor editor = null;
+                IndexUpdateCallback callback = null;
                 try {
-                    editor = rootState.provider.getIndexEditor(type, definition, rootState.root,
-                            rootState.newCallback(indexPath, shouldReindex, getEstimatedCount(definition)));
+                    callback = rootState.newCallback(indexPath, shouldReindex, getEstimatedCount(definition));
+                    editor = rootState.provider.getIndexEditor(type, definition, rootState.root, callback);
                 } catch (IllegalStateException e) {
                     // This will be caught here in case there is any config related error in the index definition
                     // where multiple values are assigned to a property that is supposed to be single valued
@@ -312,7 +353,11 @@ public class IndexUpdate implements Editor, PathSource {
                         removeIndexState(definition);
 
                         clearCorruptFlag(definition, indexPath);
-                        reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name), editor);
+                        if (rootState.parallelReindexThreads > 1 && ParallelReindexer.isSupported(type)) {
+                            parallelReindex.add(new ParallelReindexer.Index(indexPath, type, definition, callback));
+                        } else {
+                            reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name), editor);
+                        }
                     }
 
                     rootState.indexDisabler.markDisableFlagIfRequired(indexPath, definition);
@@ -575,6 +620,7 @@ public class IndexUpdate implements Editor, PathSource {
         final CommitInfo commitInfo;
         final IndexDisabler indexDisabler;
         private boolean ignoreReindexFlags = IGNORE_REINDEX_FLAGS;
+        private int parallelReindexThreads = PARALLEL_REINDEX_THREADS;
         final Set<IndexCommitCallback> indexCommitCallbacks = newIdentityHashSet();
         final CorruptIndexHandler corruptIndexHandler;
         final IndexingProgressReporter progressReporter;
@@ -626,6 +672,10 @@ public class IndexUpdate implements Editor, PathSource {
             this.ignoreReindexFlags = ignoreReindexFlags;
         }
 
+        void setParallelReindexThreads(int parallelReindexThreads) {
+            this.parallelReindexThreads = parallelReindexThreads;
+        }
+
         void registerIndexCommitCallbackInternal(IndexCommitCallback callback) {
             indexCommitCallbacks.add(callback);
         }
@@ -23,7 +23,9 @@ import java.io.File;
 import java.io.IOException;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.jmx.IndexStatsMBean;
 import org.apache.jackrabbit.oak.api.jmx.IndexerMBean;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.index.importer.AbortingIndexerLock;
@@ -84,6 +86,35 @@ public class IndexerMBeanImpl extends AnnotatedStandardMBean implements IndexerM
         return true;
     }
 
+    @Override
+    public String getAsyncLaneStats() {
+        long now = System.currentTimeMillis();
+        JsopBuilder json = new JsopBuilder();
+        json.array();
+        for (String lane : asyncIndexInfoService.getAsyncLanes()) {
+            AsyncIndexInfo info = asyncIndexInfoService.getInfo(lane);
+            if (info == null) {
+                continue;
+            }
+            json.object().
+                key("name").value(lane).
+                key("lagMillis").value(info.getLag(now)).
+                key("running").value(info.isRunning()).
+                key("catchingUp").value(info.isCatchingUp()).
+                key("chunkUnitsDone").value(info.getChunkUnitsDone());
+            IndexStatsMBean stats = info.getStatsMBean();
+            if (stats instanceof AsyncIndexUpdate.AsyncIndexStats) {
+                AsyncIndexUpdate.AsyncIndexStats s = (AsyncIndexUpdate.AsyncIndexStats) stats;
+                json.key("chunkCount").value(s.getChunkCount()).
+                    key("pendingChunkUnits").value(s.getPendingChunkUnits()).
+                    key("deferredRuns").value(s.getDeferredRuns());
+            }
+            json.endObject();
+        }
+        json.endArray();
+        return JsopBuilder.prettyPrint(json.toString());
+    }
+
     private AsyncIndexerLock createLock(boolean ignoreLocalLock) {
         if (nodeStore instanceof Clusterable) {
             return new ClusterNodeStoreLock(nodeStore);
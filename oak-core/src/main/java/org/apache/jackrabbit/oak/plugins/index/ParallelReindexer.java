@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.api.CommitFailedException.CONSTRAINT;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.spi.commit.CompositeEditor.compose;
+import static org.apache.jackrabbit.oak.spi.commit.EditorDiff.process;
+import static org.apache.jackrabbit.oak.spi.commit.VisibleEditor.wrap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.index.progress.IndexingProgressReporter;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.ValueStatistics;
+import org.apache.jackrabbit.oak.plugins.index.reference.NodeReferenceConstants;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reindexes property and reference indexes using multiple threads. The child
+ * nodes of the node to be indexed are partitioned into groups of about the
+ * same size (using the estimates of the node counter index). Child nodes that
+ * are too large for the partitions to be balanced are split further into their
+ * own child nodes, up to a limited depth. Each group is traversed by its own
+ * thread, with its own editor instances that write to a private copy of the
+ * index definition. The properties of the node to be indexed and of the split
+ * nodes are only indexed by the first group. Afterwards, the index data of all
+ * partitions is merged into the index definition. This works because the
+ * index data of these indexes mirrors the content structure, so that the data
+ * of different subtrees is disjoint.
+ */
+class ParallelReindexer {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelReindexer.class);
+
+    /**
+     * The index types that support parallel reindexing.
+     */
+    private static final List<String> SUPPORTED_TYPES = Collections.unmodifiableList(
+            newArrayList(PropertyIndexEditorProvider.TYPE, NodeReferenceConstants.TYPE));
+
+    /**
+     * The maximum depth (relative to the node to be indexed) of the subtrees
+     * that are partitioned.
+     */
+    private static final int MAX_SPLIT_DEPTH = 4;
+
+    /**
+     * Subtrees with fewer (estimated) nodes are not split. This is about the
+     * resolution of the node counter index.
+     */
+    private static final long MIN_SPLIT_SIZE = 1000;
+
+    /**
+     * An index to be reindexed.
+     */
+    static class Index {
+        final String path;
+        final String type;
+        final NodeBuilder definition;
+        final IndexUpdateCallback callback;
+
+        Index(String path, String type, NodeBuilder definition, IndexUpdateCallback callback) {
+            this.path = path;
+            this.type = type;
+            this.definition = definition;
+            this.callback = callback;
+        }
+    }
+
+    private final IndexEditorProvider provider;
+    private final NodeState root;
+    private final IndexingProgressReporter progressReporter;
+    private final int threads;
+
+    ParallelReindexer(IndexEditorProvider provider, NodeState root,
+            IndexingProgressReporter progressReporter, int threads) {
+        this.provider = provider;
+        this.root = root;
+        this.progressReporter = progressReporter;
+        this.threads = threads;
+    }
+
+    static boolean isSupported(String type) {
+        return SUPPORTED_TYPES.contains(type);
+    }
+
+    /**
+     * Reindex the given indexes.
+     *
+     * @param path the path of the node to index
+     * @param after the node to index
+     * @param indexes the indexes
+     */
+    void reindex(String path, NodeState after, List<Index> indexes) throws CommitFailedException {
+        List<List<String>> partitions = partition(path, after, threads);
+        log.info("Reindexing {} using {} threads, partitions {}",
+                indexes.size(), partitions.size(), partitions);
+        // the definitions are builders, which must not be used concurrently
+        List<NodeState> definitions = newArrayList();
+        for (Index index : indexes) {
+            definitions.add(index.definition.getNodeState());
+        }
+        Set<String> splitPaths = getSplitPaths(partitions);
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size(),
+                new ThreadFactoryBuilder().setNameFormat("oak-parallel-reindex-%d").setDaemon(true).build());
+        try {
+            List<Future<List<NodeState>>> futures = newArrayList();
+            for (int i = 0; i < partitions.size(); i++) {
+                final NodeState partition = getPartition(after, newHashSet(partitions.get(i)), splitPaths, i == 0);
+                futures.add(executor.submit(() -> reindexPartition(partition, indexes, definitions)));
+            }
+            List<List<NodeState>> results = newArrayList();
+            for (Future<List<NodeState>> f : futures) {
+                results.add(f.get());
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                Index index = indexes.get(i);
+                for (List<NodeState> r : results) {
+                    merge(index.path, index.definition, r.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommitFailedException("IndexUpdate", 6, "Parallel reindexing interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CommitFailedException) {
+                throw (CommitFailedException) cause;
+            }
+            throw new CommitFailedException("IndexUpdate", 7, "Parallel reindexing failed", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reindex one partition, using new editors that write to a private copy
+     * of the index definitions.
+     *
+     * @param partition the partition
+     * @param indexes the indexes
+     * @param indexDefinitions the index definitions (in the same order)
+     * @return the index definitions, including the index data
+     */
+    private List<NodeState> reindexPartition(NodeState partition, List<Index> indexes,
+            List<NodeState> indexDefinitions) throws CommitFailedException {
+        List<NodeBuilder> definitions = newArrayList();
+        List<Editor> editors = newArrayList();
+        for (int i = 0; i < indexes.size(); i++) {
+            Index index = indexes.get(i);
+            NodeBuilder definition = indexDefinitions.get(i).builder();
+            Editor editor = provider.getIndexEditor(index.type, definition, root, index.callback);
+            definitions.add(definition);
+            editors.add(editor);
+        }
+        CommitFailedException exception = process(
+                wrap(progressReporter.wrapProgress(compose(editors))), MISSING_NODE, partition);
+        if (exception != null) {
+            throw exception;
+        }
+        List<NodeState> result = newArrayList();
+        for (NodeBuilder d : definitions) {
+            result.add(d.getNodeState());
+        }
+        return result;
+    }
+
+    /**
+     * Partition the descendant nodes of the given node, so that the
+     * partitions have roughly the same (estimated) number of nodes. A
+     * partition is a list of subtrees, relative to the given node. Child
+     * nodes that are larger than the average partition are split into their
+     * own child nodes.
+     *
+     * @param path the path of the node
+     * @param node the node
+     * @param count the maximum number of partitions
+     * @return the partitions (at least one)
+     */
+    List<List<String>> partition(String path, NodeState node, int count) {
+        final List<String> names = newArrayList();
+        final List<Long> sizes = newArrayList();
+        addChildNodes(path, "", node, names, sizes);
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        while (true) {
+            int largest = -1;
+            for (int i = 0; i < names.size(); i++) {
+                if (largest < 0 || sizes.get(i) > sizes.get(largest)) {
+                    largest = i;
+                }
+            }
+            if (largest < 0 || sizes.get(largest) < MIN_SPLIT_SIZE
+                    || sizes.get(largest) <= total / count) {
+                break;
+            }
+            String relPath = names.get(largest);
+            NodeState n = NodeStateUtils.getNode(node, "/" + relPath);
+            if (PathUtils.getDepth(relPath) >= MAX_SPLIT_DEPTH
+                    || !addChildNodes(path, relPath, n, names, sizes)) {
+                break;
+            }
+            names.remove(largest);
+            sizes.remove(largest);
+        }
+        List<Integer> order = newArrayList();
+        for (int i = 0; i < names.size(); i++) {
+            order.add(i);
+        }
+        // largest first, then assign each to the smallest partition
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return -Long.compare(sizes.get(o1), sizes.get(o2));
+            }
+        });
+        int partitionCount = Math.max(1, Math.min(count, names.size()));
+        List<List<String>> partitions = newArrayList();
+        long[] partitionSizes = new long[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<String>());
+        }
+        for (int i : order) {
+            int smallest = 0;
+            for (int j = 1; j < partitionCount; j++) {
+                if (partitionSizes[j] < partitionSizes[smallest]) {
+                    smallest = j;
+                }
+            }
+            partitions.get(smallest).add(names.get(i));
+            partitionSizes[smallest] += sizes.get(i);
+        }
+        return partitions;
+    }
+
+    /**
+     * Add the (non-hidden) child nodes of a node, with their estimated size.
+     *
+     * @param path the path of the node to be indexed
+     * @param relPath the path of the node, relative to the node to be indexed
+     * @param node the node
+     * @param names the list of relative paths to add to
+     * @param sizes the list of sizes to add to
+     * @return whether any child nodes were added
+     */
+    private boolean addChildNodes(String path, String relPath, NodeState node,
+            List<String> names, List<Long> sizes) {
+        boolean added = false;
+        for (String name : node.getChildNodeNames()) {
+            if (NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            String p = relPath.isEmpty() ? name : PathUtils.concat(relPath, name);
+            long size = NodeCounter.getEstimatedNodeCount(root, PathUtils.concat(path, p), false);
+            names.add(p);
+            // unknown size: assume it is small
+            sizes.add(Math.max(1, size));
+            added = true;
+        }
+        return added;
+    }
+
+    /**
+     * Get the relative paths of the nodes that were split, that is, the
+     * ancestors of the subtrees of the partitions.
+     */
+    private static Set<String> getSplitPaths(List<List<String>> partitions) {
+        Set<String> split = newHashSet();
+        for (List<String> partition : partitions) {
+            for (String p : partition) {
+                for (p = PathUtils.getParentPath(p); !p.isEmpty(); p = PathUtils.getParentPath(p)) {
+                    split.add(p);
+                }
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Get a view of the node that only contains the given subtrees, the
+     * split nodes, and (only for the first partition) the properties of the
+     * node and of the split nodes.
+     */
+    private static NodeState getPartition(NodeState node, Set<String> subtrees,
+            Set<String> splitPaths, boolean withProperties) {
+        NodeBuilder builder = node.builder();
+        prune(builder, node, "", subtrees, splitPaths, withProperties);
+        return builder.getNodeState();
+    }
+
+    private static void prune(NodeBuilder builder, NodeState node, String relPath,
+            Set<String> subtrees, Set<String> splitPaths, boolean withProperties) {
+        for (String name : node.getChildNodeNames()) {
+            String p = relPath.isEmpty() ? name : PathUtils.concat(relPath, name);
+            if (splitPaths.contains(p)) {
+                prune(builder.getChildNode(name), node.getChildNode(name), p,
+                        subtrees, splitPaths, withProperties);
+            } else if (!subtrees.contains(p)) {
+                builder.getChildNode(name).remove();
+            }
+        }
+        if (!withProperties) {
+            for (PropertyState p : node.getProperties()) {
+                builder.removeProperty(p.getName());
+            }
+        }
+    }
+
+    /**
+     * Merge the hidden index data of a partition into the index definition.
+     *
+     * @param indexPath the index path
+     * @param definition the index definition
+     * @param partition the index definition of the partition
+     */
+    static void merge(String indexPath, NodeBuilder definition, NodeState partition) throws CommitFailedException {
+        for (ChildNodeEntry e : partition.getChildNodeEntries()) {
+            String name = e.getName();
+            if (!NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            if (ValueStatistics.STATS_NODE_NAME.equals(name)) {
+                ValueStatistics.merge(definition, e.getNodeState());
+            } else if (!definition.hasChildNode(name)) {
+                definition.setChildNode(name, e.getNodeState());
+            } else {
+                mergeTree(indexPath, name, definition.getChildNode(name), e.getNodeState());
+            }
+        }
+    }
+
+    private static void mergeTree(String indexPath, String path, NodeBuilder target, NodeState source)
+            throws CommitFailedException {
+        for (PropertyState p : source.getProperties()) {
+            PropertyState old = target.getProperty(p.getName());
+            if (old == null) {
+                target.setProperty(p);
+            } else if (!old.equals(p)) {
+                // for example, a unique index where two partitions
+                // contain the same key
+                String msg = String.format(
+                        "Uniqueness constraint violated for index %s: conflicting entries %s and %s at %s",
+                        indexPath, old, p, path);
+                throw new CommitFailedException(CONSTRAINT, 30, msg);
+            }
+        }
+        for (ChildNodeEntry e : source.getChildNodeEntries()) {
+            String name = e.getName();
+            if (!target.hasChildNode(name)) {
+                target.setChildNode(name, e.getNodeState());
+            } else {
+                mergeTree(indexPath, PathUtils.concat(path, name), target.getChildNode(name), e.getNodeState());
+            }
+        }
+    }
+
+}
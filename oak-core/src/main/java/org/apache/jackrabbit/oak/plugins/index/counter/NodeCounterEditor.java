@@ -32,7 +32,9 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,6 +49,12 @@ public class NodeCounterEditor implements Editor {
     
     // the property that is used with the "new" (hash of the path based) method
     public static final String COUNT_HASH_PROPERTY_NAME = ":cnt";
+
+    // the property that contains the descendant depth histogram (only with the "new" method)
+    public static final String DEPTH_HISTOGRAM_PROPERTY_NAME = ":depth";
+
+    // the number of entries of the depth histogram (the last entry also counts deeper nodes)
+    public static final int DEPTH_HISTOGRAM_SIZE = 8;
     
     public static final int DEFAULT_RESOLUTION = 1000;
     
@@ -55,6 +63,7 @@ public class NodeCounterEditor implements Editor {
     private final String name;
     private final MountInfoProvider mountInfoProvider;
     private final Map<Mount, Integer> countOffsets;
+    private final Map<Mount, long[]> depthOffsets;
     private final Mount currentMount;
     private final boolean mountCanChange;
     private SipHash hash;
@@ -68,6 +77,7 @@ public class NodeCounterEditor implements Editor {
         this.currentMount = mountInfoProvider.getDefaultMount();
         this.mountCanChange = true;
         this.countOffsets = new HashMap<>();
+        this.depthOffsets = new HashMap<>();
     }
 
     private NodeCounterEditor(NodeCounterRoot root, NodeCounterEditor parent, String name, SipHash hash, MountInfoProvider mountInfoProvider) {
@@ -77,6 +87,7 @@ public class NodeCounterEditor implements Editor {
         this.hash = hash;
         this.mountInfoProvider = mountInfoProvider;
         this.countOffsets = new HashMap<>();
+        this.depthOffsets = new HashMap<>();
         if (parent.mountCanChange) {
             String path = getPath();
             this.currentMount = mountInfoProvider.getMountByPath(path);
@@ -172,15 +183,47 @@ public class NodeCounterEditor implements Editor {
             if (count <= 0) {
                 if (builder.getChildNodeCount(1) >= 0) {
                     builder.removeProperty(COUNT_HASH_PROPERTY_NAME);
+                    builder.removeProperty(DEPTH_HISTOGRAM_PROPERTY_NAME);
                 } else {
                     builder.remove();
                 }
-            } else {
-                builder.setProperty(COUNT_HASH_PROPERTY_NAME, count);
+                continue;
+            }
+            builder.setProperty(COUNT_HASH_PROPERTY_NAME, count);
+            long[] depthOffset = depthOffsets.get(mount);
+            if (depthOffset != null) {
+                updateDepthHistogram(builder, depthOffset);
             }
         }
     }
 
+    private static void updateDepthHistogram(NodeBuilder builder, long[] depthOffset) {
+        long[] histogram = new long[DEPTH_HISTOGRAM_SIZE];
+        PropertyState p = builder.getProperty(DEPTH_HISTOGRAM_PROPERTY_NAME);
+        if (p != null) {
+            int i = 0;
+            for (long x : p.getValue(Type.LONGS)) {
+                if (i < histogram.length) {
+                    histogram[i++] = x;
+                }
+            }
+        }
+        boolean empty = true;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = Math.max(0, histogram[i] + depthOffset[i]);
+            empty &= histogram[i] == 0;
+        }
+        if (empty) {
+            builder.removeProperty(DEPTH_HISTOGRAM_PROPERTY_NAME);
+        } else {
+            List<Long> list = new ArrayList<>(histogram.length);
+            for (long x : histogram) {
+                list.add(x);
+            }
+            builder.setProperty(DEPTH_HISTOGRAM_PROPERTY_NAME, list, Type.LONGS);
+        }
+    }
+
     private NodeBuilder getBuilder(Mount mount) {
         if (parent == null) {
             return root.definition.child(Multiplexers.getNodeForMount(mount, DATA_NODE_NAME));
@@ -230,11 +273,11 @@ public class NodeCounterEditor implements Editor {
             // with bitMask=1024: with a probability of 1:1024,
             if ((h.hashCode() & root.bitMask) == 0) {
                 // add 1024
-                count(root.bitMask + 1, currentMount);
+                count(root.bitMask + 1, currentMount, 1);
             }
             return getChildIndexEditor(name, h);
         }
-        count(1, currentMount);
+        count(1, currentMount, 1);
         return getChildIndexEditor(name, null);
     }
 
@@ -247,18 +290,30 @@ public class NodeCounterEditor implements Editor {
             // with bitMask=1024: with a probability of 1:1024,
             if ((h.hashCode() & root.bitMask) == 0) {
                 // subtract 1024
-                count(-(root.bitMask + 1), currentMount);
+                count(-(root.bitMask + 1), currentMount, 1);
             }
             return getChildIndexEditor(name, h);
         }
-        count(-1, currentMount);
+        count(-1, currentMount, 1);
         return getChildIndexEditor(name, null);
     }
     
-    private void count(int offset, Mount mount) {
+    /**
+     * Count an added or removed node.
+     *
+     * @param offset the offset
+     * @param mount the mount
+     * @param depth the depth of the node, relative to this node (1 for a
+     *            child node)
+     */
+    private void count(int offset, Mount mount, int depth) {
         countOffsets.compute(mount, (m, v) -> v == null ? offset : v + offset);
+        if (root.depthHistogram) {
+            long[] d = depthOffsets.computeIfAbsent(mount, m -> new long[DEPTH_HISTOGRAM_SIZE]);
+            d[Math.min(depth, DEPTH_HISTOGRAM_SIZE) - 1] += offset;
+        }
         if (parent != null) {
-            parent.count(offset, mount);
+            parent.count(offset, mount, depth + 1);
         }
     }
     
@@ -280,8 +335,14 @@ public class NodeCounterEditor implements Editor {
         final NodeBuilder definition;
         final NodeState root;
         final IndexUpdateCallback callback;
+        final boolean depthHistogram;
         
         NodeCounterRoot(int resolution, long seed, NodeBuilder definition, NodeState root, IndexUpdateCallback callback) {
+            this(resolution, seed, definition, root, callback, false);
+        }
+
+        NodeCounterRoot(int resolution, long seed, NodeBuilder definition, NodeState root, IndexUpdateCallback callback,
+                boolean depthHistogram) {
             this.resolution = resolution;
             this.seed = seed;
             // if resolution is 1000, then the bitMask is 1023 (bits 0..9 set)
@@ -289,6 +350,8 @@ public class NodeCounterEditor implements Editor {
             this.definition = definition;
             this.root = root;
             this.callback = callback;
+            // only supported with the hash based method
+            this.depthHistogram = depthHistogram && NodeCounter.COUNT_HASH;
         }
     }
 
@@ -45,6 +45,12 @@ public class NodeCounterEditorProvider implements IndexEditorProvider {
 
     public static final String SEED = "seed";
 
+    /**
+     * Whether to maintain a histogram of the depth of descendant nodes (in
+     * addition to the count). Only supported with the hash based counter.
+     */
+    public static final String DEPTH_HISTOGRAM = "depthHistogram";
+
     @Reference
     private MountInfoProvider mountInfoProvider = Mounts.defaultMountInfoProvider();
 
@@ -81,8 +87,9 @@ public class NodeCounterEditorProvider implements IndexEditorProvider {
                     resolution, seed, definition, root, callback);
             return new NodeCounterEditorOld(rootData, null, "/", null);
         } else {
+            boolean depthHistogram = definition.getBoolean(DEPTH_HISTOGRAM);
             NodeCounterEditor.NodeCounterRoot rootData = new NodeCounterEditor.NodeCounterRoot(
-                    resolution, seed, definition, root, callback);
+                    resolution, seed, definition, root, callback, depthHistogram);
             return new NodeCounterEditor(rootData, mountInfoProvider);
         }
     }
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index.counter.jmx;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -36,6 +37,7 @@ import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A mechanism to retrieve node counter data.
@@ -51,6 +53,22 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
     
     public static final boolean USE_OLD_COUNTER = Boolean.getBoolean("oak.index.useCounterOld");
 
+    /**
+     * The path pattern element that matches any node name.
+     */
+    public static final String WILDCARD = "*";
+
+    /**
+     * The maximum number of child nodes that are read to estimate the number
+     * of matches of a path pattern.
+     */
+    private static final int PATTERN_SAMPLE_SIZE = 32;
+
+    /**
+     * The assumed maximum number of child nodes, if there is no estimate.
+     */
+    private static final long MAX_CHILD_NODE_COUNT = 100000;
+
     private final NodeStore store;
     
     public NodeCounter(NodeStore store) {
@@ -79,6 +97,27 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
         return getEstimatedNodeCount(store.getRoot(), path, false);
     }
 
+    @Override
+    public String getEstimatedNodeCountByDepth(String path) {
+        long[] counts = getEstimatedNodeCountByDepth(store.getRoot(), path);
+        if (counts == null) {
+            return "";
+        }
+        StringBuilder buff = new StringBuilder();
+        for (long x : counts) {
+            if (buff.length() > 0) {
+                buff.append(", ");
+            }
+            buff.append(x);
+        }
+        return buff.toString();
+    }
+
+    @Override
+    public long getEstimatedMatchCount(String pattern) {
+        return getEstimatedMatchCount(store.getRoot(), pattern);
+    }
+
     /**
      * Get the estimated number of nodes for a given path.
      * 
@@ -98,6 +137,140 @@ public class NodeCounter extends AnnotatedStandardMBean implements NodeCounterMB
         }
     }
 
+    /**
+     * Get the estimated number of descendant nodes of a given path, per depth.
+     * This requires the depth histogram to be enabled in the counter index
+     * definition. The histogram is scaled to the estimated number of nodes, so
+     * that a histogram that is only maintained for part of the nodes (for
+     * example, because it was enabled recently) still gives a useful
+     * estimate.
+     *
+     * @param root the root
+     * @param path the path
+     * @return null if unknown, or an array where the entry at index i is the
+     *         estimated number of descendant nodes at depth i + 1 (the last
+     *         entry also includes deeper nodes)
+     */
+    @Nullable
+    public static long[] getEstimatedNodeCountByDepth(NodeState root, String path) {
+        if (USE_OLD_COUNTER || !COUNT_HASH) {
+            return null;
+        }
+        NodeState s = child(root,
+                IndexConstants.INDEX_DEFINITIONS_NAME,
+                "counter");
+        if (s == null || !s.exists() || !dataNodeExists(s)) {
+            return null;
+        }
+        long[] histogram = new long[NodeCounterEditor.DEPTH_HISTOGRAM_SIZE];
+        getIndexingData(s, path)
+                .map(n -> n.getProperty(NodeCounterEditor.DEPTH_HISTOGRAM_PROPERTY_NAME))
+                .filter(Objects::nonNull)
+                .forEach(p -> {
+                    int i = 0;
+                    for (long x : p.getValue(Type.LONGS)) {
+                        if (i < histogram.length) {
+                            histogram[i++] += x;
+                        }
+                    }
+                });
+        long sum = 0;
+        for (long x : histogram) {
+            sum += x;
+        }
+        if (sum <= 0) {
+            return null;
+        }
+        long count = getEstimatedNodeCount(root, path, false);
+        if (count > 0 && count != sum) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = Math.round((double) histogram[i] * count / sum);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the estimated number of child nodes of a given path. This requires
+     * the depth histogram to be enabled in the counter index definition.
+     *
+     * @param root the root
+     * @param path the path
+     * @param max whether to get the maximum expected number of nodes (the
+     *            estimated value plus the resolution)
+     * @return -1 if unknown, or the (maximum) estimated number of child nodes
+     */
+    public static long getEstimatedChildNodeCount(NodeState root, String path, boolean max) {
+        long[] counts = getEstimatedNodeCountByDepth(root, path);
+        if (counts == null) {
+            return -1;
+        }
+        return counts[0] + (max ? ApproximateCounter.COUNT_RESOLUTION : 0);
+    }
+
+    /**
+     * Get the estimated number of nodes that match a path pattern. Each
+     * element of the pattern is either a node name, or "*", which matches any
+     * node name. For example, "/content/*&#47;jcr:content" matches the node
+     * "jcr:content" of all child nodes of "/content". If the pattern ends with
+     * wildcards, the depth histogram is used if available. Otherwise, a
+     * number of child nodes is read, and the result is extrapolated.
+     *
+     * @param root the root
+     * @param pattern the path pattern
+     * @return the estimated number of matching nodes
+     */
+    public static long getEstimatedMatchCount(NodeState root, String pattern) {
+        ArrayList<String> elements = new ArrayList<String>();
+        for (String e : PathUtils.elements(pattern)) {
+            elements.add(e);
+        }
+        return Math.round(getEstimatedMatchCount(root, "/", root, elements, 0));
+    }
+
+    private static double getEstimatedMatchCount(NodeState root, String path, NodeState node,
+            List<String> elements, int index) {
+        if (index == elements.size()) {
+            return 1;
+        }
+        String e = elements.get(index);
+        if (!WILDCARD.equals(e)) {
+            NodeState c = node.getChildNode(e);
+            if (!c.exists()) {
+                return 0;
+            }
+            return getEstimatedMatchCount(root, PathUtils.concat(path, e), c, elements, index + 1);
+        }
+        int depth = elements.size() - index;
+        boolean fewChildNodes = node.getChildNodeCount(PATTERN_SAMPLE_SIZE) < PATTERN_SAMPLE_SIZE;
+        if (!fewChildNodes && depth < NodeCounterEditor.DEPTH_HISTOGRAM_SIZE
+                && elements.subList(index, elements.size()).stream().allMatch(WILDCARD::equals)) {
+            long[] counts = getEstimatedNodeCountByDepth(root, path);
+            if (counts != null) {
+                return counts[depth - 1];
+            }
+        }
+        double sum = 0;
+        int sampled = 0;
+        for (ChildNodeEntry c : node.getChildNodeEntries()) {
+            if (sampled >= PATTERN_SAMPLE_SIZE) {
+                break;
+            }
+            sampled++;
+            sum += getEstimatedMatchCount(root, PathUtils.concat(path, c.getName()),
+                    c.getNodeState(), elements, index + 1);
+        }
+        if (fewChildNodes) {
+            // all child nodes were read
+            return sum;
+        }
+        long childCount = getEstimatedChildNodeCount(root, path, false);
+        if (childCount < sampled) {
+            childCount = node.getChildNodeCount(MAX_CHILD_NODE_COUNT);
+        }
+        return sum * Math.min(childCount, MAX_CHILD_NODE_COUNT) / sampled;
+    }
+
     private static long doGetEstimatedNodeCount(NodeState root, String path, boolean max) {
         // check if there is a property in the node itself
         // (for property index nodes)
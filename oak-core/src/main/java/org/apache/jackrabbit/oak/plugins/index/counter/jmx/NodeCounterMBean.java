@@ -57,5 +57,32 @@ public interface NodeCounterMBean {
             @Description("the depth of the child nodes to list (the higher the number, the slower)")
             @Name("level")
             int level);
-    
+
+    /**
+     * Get the estimated number of descendant nodes of a given path, per depth.
+     *
+     * @param path the path
+     * @return a comma separated list of estimated counts, starting with the
+     *         child nodes (the last entry also includes deeper nodes), or an
+     *         empty string if unknown
+     */
+    @Description("Get the estimated number of descendant nodes of a given path, per depth.")
+    String getEstimatedNodeCountByDepth(
+            @Description("the path")
+            @Name("path")
+            String path);
+
+    /**
+     * Get the estimated number of nodes that match a path pattern.
+     *
+     * @param pattern the pattern, where "*" matches any node name, for example
+     *            "/content/*&#47;jcr:content"
+     * @return the estimated number of matching nodes
+     */
+    @Description("Get the estimated number of nodes that match a path pattern, where '*' matches any node name.")
+    long getEstimatedMatchCount(
+            @Description("the path pattern, for example /content/*/jcr:content")
+            @Name("pattern")
+            String pattern);
+
 }
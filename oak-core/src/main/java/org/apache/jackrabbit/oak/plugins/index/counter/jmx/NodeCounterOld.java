@@ -202,6 +202,17 @@ public class NodeCounterOld extends AnnotatedStandardMBean implements NodeCounte
         return found ? x : null;
     }
 
+    @Override
+    public String getEstimatedNodeCountByDepth(String path) {
+        // not supported by the old counter
+        return "";
+    }
+
+    @Override
+    public long getEstimatedMatchCount(String pattern) {
+        return NodeCounter.getEstimatedMatchCount(store.getRoot(), pattern);
+    }
+
     @Override
     public String getEstimatedChildNodeCounts(String path, int level) {
         StringBuilder buff = new StringBuilder();
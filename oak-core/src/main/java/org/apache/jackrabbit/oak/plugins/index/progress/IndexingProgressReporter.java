@@ -52,6 +52,13 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
     private TraversalRateEstimator traversalRateEstimator = new SimpleRateEstimator();
     private NodeCountEstimator nodeCountEstimator = NodeCountEstimator.NOOP;
     private long estimatedCount;
+    private boolean reindexTraversal;
+
+    /**
+     * The difference between the number of nodes traversed and the estimated
+     * number of nodes, for the top-level subtrees that were fully traversed.
+     */
+    private long estimateCorrection;
 
     public IndexingProgressReporter(IndexUpdateCallback updateCallback,
                                     NodeTraversalCallback traversalCallback) {
@@ -74,6 +81,8 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
             log.info("Estimated node count to be traversed for reindexing under {} is [{}]", path, estimatedCount);
         }
         messagePrefix = REINDEX_MSG;
+        reindexTraversal = true;
+        estimateCorrection = 0;
     }
 
     /**
@@ -82,13 +91,18 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
      */
     public void reindexingTraversalEnd() {
         messagePrefix = INDEX_MSG;
+        reindexTraversal = false;
     }
 
     public void setMessagePrefix(String messagePrefix) {
         this.messagePrefix = messagePrefix;
     }
 
-    public void traversedNode(PathSource pathSource) throws CommitFailedException {
+    /**
+     * Invoked when a node was traversed. This method is synchronized, as
+     * nodes might be traversed concurrently when reindexing in parallel.
+     */
+    public synchronized void traversedNode(PathSource pathSource) throws CommitFailedException {
         if (++traversalCount % 10000 == 0) {
             double rate = traversalRateEstimator.getNodesTraversedPerSecond();
             String formattedRate = String.format("%1.2f nodes/s, %1.2f nodes/hr", rate, rate * 3600);
@@ -99,6 +113,40 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
         traversalRateEstimator.traversedNode();
     }
 
+    /**
+     * Invoked when the traversal of a top-level subtree is complete. When
+     * reindexing, the estimated node count of the subtree is replaced with the
+     * number of nodes that were actually traversed, which improves the
+     * estimate of the pending traversal.
+     *
+     * @param path the path of the subtree
+     * @param traversedCount the number of nodes traversed in the subtree
+     */
+    void subtreeTraversed(String path, long traversedCount) {
+        if (!reindexTraversal || estimatedCount < 0) {
+            return;
+        }
+        long estimate = nodeCountEstimator.getEstimatedNodeCount(path, getReindexedIndexPaths());
+        if (estimate >= 0) {
+            synchronized (this) {
+                estimateCorrection += traversedCount - estimate;
+            }
+        }
+    }
+
+    /**
+     * Get the estimated number of nodes to be traversed, corrected with the
+     * number of nodes of the subtrees that were already traversed.
+     *
+     * @return the estimated count, or -1 if unknown
+     */
+    synchronized long getEstimatedCount() {
+        if (estimatedCount < 0) {
+            return estimatedCount;
+        }
+        return Math.max(traversalCount, estimatedCount + estimateCorrection);
+    }
+
     /**
      * Registers the index for progress tracking
      *
@@ -114,7 +162,7 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
     /**
      * Callback to indicate that index at give path has got an update
      */
-    public void indexUpdate(String indexPath) throws CommitFailedException {
+    public synchronized void indexUpdate(String indexPath) throws CommitFailedException {
         indexUpdateStates.get(indexPath).indexUpdate();
     }
 
@@ -183,6 +231,7 @@ public class IndexingProgressReporter implements NodeTraversalCallback {
     }
 
     private String estimatePendingTraversal(double nodesPerSecond) {
+        long estimatedCount = getEstimatedCount();
         if (estimatedCount >= 0) {
             if (estimatedCount > traversalCount){
                 long pending = estimatedCount - traversalCount;
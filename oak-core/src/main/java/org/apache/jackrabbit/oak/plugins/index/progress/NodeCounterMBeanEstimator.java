@@ -100,9 +100,27 @@ public class NodeCounterMBeanEstimator implements NodeCountEstimator {
                 includes.add(basePath);
             }
 
+            clip(basePath);
             PathUtils.unifyInExcludes(includes, excludes);
         }
 
+        /**
+         * Restrict the included paths to the subtree at the given base path, so
+         * that estimates can also be made for subtrees of the included paths.
+         */
+        private void clip(String basePath) {
+            Set<String> clippedIncludes = new HashSet<>();
+            for (String path : includes) {
+                if (PathUtils.isAncestor(basePath, path)) {
+                    clippedIncludes.add(path);
+                } else if (path.equals(basePath) || PathUtils.isAncestor(path, basePath)) {
+                    clippedIncludes.add(basePath);
+                }
+            }
+            includes.clear();
+            includes.addAll(clippedIncludes);
+        }
+
         @Override
         public String toString() {
             return String.format("includedPath : %s, excludedPaths : %s", includes, excludes);
@@ -30,31 +30,46 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Editor to track traversal and notify the callback for each node traversed.
- * The editor also ensures that path is lazily constructed
+ * The editor also ensures that path is lazily constructed. The number of
+ * nodes traversed in each top-level subtree is counted, and the reporter is
+ * notified when the traversal of such a subtree is complete.
  */
 class ProgressTrackingEditor implements Editor, NodeTraversalCallback.PathSource {
     private final Editor editor;
-    private final NodeTraversalCallback traversalCallback;
+    private final IndexingProgressReporter traversalCallback;
     private final ProgressTrackingEditor parent;
     private final String name;
 
-    public ProgressTrackingEditor(Editor editor, String name, NodeTraversalCallback traversalCallback) {
+    /**
+     * The editor of the top-level subtree this node belongs to (null for the
+     * root).
+     */
+    private final ProgressTrackingEditor subtree;
+
+    /**
+     * The number of nodes traversed (only for top-level subtrees).
+     */
+    private long traversedCount;
+
+    public ProgressTrackingEditor(Editor editor, String name, IndexingProgressReporter traversalCallback) {
         this.editor = editor;
         this.name = name;
         this.traversalCallback = traversalCallback;
         this.parent = null;
+        this.subtree = null;
     }
 
-    private ProgressTrackingEditor(Editor editor, String name, NodeTraversalCallback callback,
+    private ProgressTrackingEditor(Editor editor, String name, IndexingProgressReporter callback,
                                    ProgressTrackingEditor parent) {
         this.editor = editor;
         this.name = name;
         this.traversalCallback = callback;
         this.parent = parent;
+        this.subtree = parent.parent == null ? this : parent.subtree;
     }
 
     @Nullable
-    public static Editor wrap(@Nullable Editor editor, NodeTraversalCallback onProgress) {
+    public static Editor wrap(@Nullable Editor editor, IndexingProgressReporter onProgress) {
         if (editor != null && !(editor instanceof ProgressTrackingEditor)) {
             return new ProgressTrackingEditor(editor, "/", onProgress);
         }
@@ -64,12 +79,18 @@ class ProgressTrackingEditor implements Editor, NodeTraversalCallback.PathSource
     @Override
     public void enter(NodeState before, NodeState after) throws CommitFailedException {
         traversalCallback.traversedNode(this);
+        if (subtree != null) {
+            subtree.traversedCount++;
+        }
         editor.enter(before, after);
     }
 
     @Override
     public void leave(NodeState before, NodeState after) throws CommitFailedException {
         editor.leave(before, after);
+        if (subtree == this) {
+            traversalCallback.subtreeTraversed(getPath(), traversedCount);
+        }
     }
 
     @Override
@@ -90,6 +90,12 @@ class PropertyIndexEditor implements IndexEditor {
      */
     private final Set<String> keysToCheckForUniqueness;
 
+    /**
+     * The added and removed entries per key, if value statistics are enabled
+     * for this index. Otherwise it is null.
+     */
+    private final ValueStatistics.Update valueStatisticsUpdate;
+
     /**
      * Flag to indicate whether the type of this node may have changed.
      */
@@ -150,6 +156,11 @@ class PropertyIndexEditor implements IndexEditor {
         } else {
             this.keysToCheckForUniqueness = null;
         }
+        if (ValueStatistics.isEnabled(definition)) {
+            this.valueStatisticsUpdate = new ValueStatistics.Update(definition);
+        } else {
+            this.valueStatisticsUpdate = null;
+        }
         this.updateCallback = updateCallback;
         this.mountInfoProvider = mountInfoProvider;
     }
@@ -164,6 +175,7 @@ class PropertyIndexEditor implements IndexEditor {
         this.valuePattern = parent.valuePattern;
         this.typePredicate = parent.typePredicate;
         this.keysToCheckForUniqueness = parent.keysToCheckForUniqueness;
+        this.valueStatisticsUpdate = parent.valueStatisticsUpdate;
         this.updateCallback = parent.updateCallback;
         this.pathFilter = parent.pathFilter;
         this.pathFilterResult = pathFilterResult;
@@ -235,6 +247,11 @@ class PropertyIndexEditor implements IndexEditor {
         
         beforeKeys = null;
         afterKeys = null;
+
+        if (parent == null && valueStatisticsUpdate != null) {
+            // the statistics are only created when reindexing
+            valueStatisticsUpdate.setReindex(!before.exists());
+        }
     }
 
     @Override
@@ -246,7 +263,9 @@ class PropertyIndexEditor implements IndexEditor {
             updateIndex(before, after);
         }
         checkUniquenessConstraints();
-        
+        if (parent == null && valueStatisticsUpdate != null) {
+            valueStatisticsUpdate.write();
+        }
     }
     
     private void applyTypeRestrictions(NodeState before, NodeState after) {
@@ -306,12 +325,22 @@ class PropertyIndexEditor implements IndexEditor {
                     strategy.update(index, getPath(), properties, definition,
                             beforeKeys, afterKeys);
                 }
+                if (valueStatisticsUpdate != null) {
+                    addValueStatisticsChanges(beforeKeys, -1);
+                    addValueStatisticsChanges(afterKeys, 1);
+                }
             }
         }
 
         checkUniquenessConstraints();
     }
 
+    private void addValueStatisticsChanges(Set<String> keys, long offset) {
+        for (String key : keys) {
+            valueStatisticsUpdate.add(key, offset);
+        }
+    }
+
     private void checkUniquenessConstraints() throws CommitFailedException {
         if (parent == null) {
             // make sure that the index node exist, even with no content
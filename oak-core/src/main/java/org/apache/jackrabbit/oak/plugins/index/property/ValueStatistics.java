@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Statistics about the values of a property index: the number of entries,
+ * the approximate number of distinct values (using a HyperLogLog sketch), the
+ * approximate number of entries per value (using a count-min sketch), and the
+ * most frequent values (heavy hitters).
+ * <p>
+ * The statistics are enabled by setting the property "valueStatistics" to
+ * true in the index definition, and are stored in the hidden child node
+ * ":valueStats" of the index definition. Like the {@link ApproximateCounter},
+ * changes of the counts are sampled to reduce the number of writes (and
+ * therefore conflicts): by default, on average only every 100th change is
+ * written, with a weight of 100. The resolution can be changed with the
+ * property "valueStatisticsResolution" in the index definition. When
+ * reindexing, the counts are exact, as they are written only once.
+ * <p>
+ * Outside of reindexing, the HyperLogLog sketch is only updated when the
+ * sampled counts are written, or when a register is set for the first time
+ * (which happens at most once per register). That way, the distinct count is
+ * sampled as well, and can underestimate the number of values added after
+ * reindexing.
+ * <p>
+ * The statistics are created when the index is reindexed, so after enabling
+ * them, the index needs to be reindexed.
+ * <p>
+ * The HyperLogLog sketch does not support removal, so that the distinct count
+ * is an upper bound if values were removed. Reindexing resets the statistics.
+ */
+public class ValueStatistics {
+
+    /**
+     * The property in the index definition to enable the statistics.
+     */
+    public static final String VALUE_STATISTICS = "valueStatistics";
+
+    /**
+     * The property in the index definition to set the resolution.
+     */
+    public static final String VALUE_STATISTICS_RESOLUTION = "valueStatisticsResolution";
+
+    /**
+     * The name of the child node of the index definition that contains the
+     * statistics.
+     */
+    public static final String STATS_NODE_NAME = ":valueStats";
+
+    static final int DEFAULT_RESOLUTION = ApproximateCounter.COUNT_RESOLUTION;
+
+    /**
+     * The number of bits used to select the HyperLogLog register.
+     */
+    private static final int HLL_BITS = 10;
+    private static final int HLL_REGISTERS = 1 << HLL_BITS;
+
+    private static final int CMS_DEPTH = 4;
+    private static final int CMS_WIDTH = 256;
+
+    /**
+     * The maximum number of heavy hitters that are kept.
+     */
+    static final int TOP_N = 16;
+
+    /**
+     * The maximum number of values for which changes are kept in memory
+     * before they are applied to the statistics.
+     */
+    static final int MAX_PENDING_CHANGES = Integer.getInteger(
+            "oak.valueStatistics.maxPendingChanges", 10000);
+
+    private static final String ENTRY_COUNT = "entryCount";
+    private static final String HLL = "hll";
+    private static final String CMS = "cms";
+    private static final String TOP_VALUES = "topValues";
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private long entryCount;
+    private final byte[] hll;
+    private final long[] cms;
+    private final List<String> topValues;
+    private boolean countsChanged;
+    private boolean hllChanged;
+
+    ValueStatistics() {
+        this(0, new byte[HLL_REGISTERS], new long[CMS_DEPTH * CMS_WIDTH],
+                new ArrayList<String>());
+    }
+
+    private ValueStatistics(long entryCount, byte[] hll, long[] cms, List<String> topValues) {
+        this.entryCount = entryCount;
+        this.hll = hll;
+        this.cms = cms;
+        this.topValues = topValues;
+    }
+
+    /**
+     * Whether the statistics are enabled for this index.
+     *
+     * @param definition the index definition
+     * @return true if enabled
+     */
+    public static boolean isEnabled(NodeBuilder definition) {
+        return definition.getBoolean(VALUE_STATISTICS);
+    }
+
+    static int getResolution(NodeBuilder definition) {
+        PropertyState p = definition.getProperty(VALUE_STATISTICS_RESOLUTION);
+        if (p == null) {
+            return DEFAULT_RESOLUTION;
+        }
+        return (int) Math.max(1, p.getValue(Type.LONG));
+    }
+
+    /**
+     * Read the statistics of an index.
+     *
+     * @param indexMeta the index definition
+     * @return the statistics, or null if not available
+     */
+    public static ValueStatistics read(NodeState indexMeta) {
+        return readStats(indexMeta.getChildNode(STATS_NODE_NAME));
+    }
+
+    private static ValueStatistics readStats(NodeState stats) {
+        if (!stats.exists()) {
+            return null;
+        }
+        PropertyState count = stats.getProperty(ENTRY_COUNT);
+        PropertyState h = stats.getProperty(HLL);
+        PropertyState c = stats.getProperty(CMS);
+        PropertyState t = stats.getProperty(TOP_VALUES);
+        if (count == null || h == null || c == null || c.count() != CMS_DEPTH * CMS_WIDTH) {
+            return null;
+        }
+        byte[] hll = StringUtils.convertHexToBytes(h.getValue(Type.STRING));
+        if (hll.length != HLL_REGISTERS) {
+            return null;
+        }
+        long[] cms = new long[CMS_DEPTH * CMS_WIDTH];
+        for (int i = 0; i < cms.length; i++) {
+            cms[i] = c.getValue(Type.LONG, i);
+        }
+        List<String> top = new ArrayList<String>();
+        if (t != null) {
+            for (String v : t.getValue(Type.STRINGS)) {
+                top.add(v);
+            }
+        }
+        return new ValueStatistics(count.getValue(Type.LONG), hll, cms, top);
+    }
+
+    /**
+     * Apply the changes, with all changes of the distinct count.
+     *
+     * @param changes the number of added or removed entries per value
+     * @param resolution the resolution of the counts (1 for exact counts)
+     * @return whether the statistics changed
+     */
+    boolean apply(Map<String, Long> changes, int resolution) {
+        return apply(changes, resolution, true);
+    }
+
+    /**
+     * Apply the changes. The changes of the counts are sampled according to
+     * the resolution. Unless all changes of the distinct count are applied,
+     * the HyperLogLog sketch is only updated if the counts changed, or if a
+     * register is set for the first time.
+     *
+     * @param changes the number of added or removed entries per value
+     * @param resolution the resolution of the counts (1 for exact counts)
+     * @param allDistinct whether to apply all changes of the distinct count
+     * @return whether the statistics changed
+     */
+    boolean apply(Map<String, Long> changes, int resolution, boolean allDistinct) {
+        boolean counts = false;
+        ArrayList<String> added = new ArrayList<String>();
+        ArrayList<String> candidates = new ArrayList<String>();
+        for (Entry<String, Long> e : changes.entrySet()) {
+            String value = e.getKey();
+            long count = e.getValue();
+            if (count > 0) {
+                candidates.add(value);
+            }
+            long offset = ApproximateCounter.calculateOffset(count, resolution);
+            if (offset != 0) {
+                addCount(value, offset);
+                counts = true;
+                if (offset > 0) {
+                    added.add(value);
+                }
+            }
+        }
+        boolean hllUpdated = false;
+        for (String value : candidates) {
+            hllUpdated |= addDistinct(value, allDistinct || counts);
+        }
+        if (counts) {
+            // the added values are candidates for the top values; the counts
+            // of the existing top values might have changed as well
+            updateTopValues(added);
+        }
+        countsChanged |= counts;
+        hllChanged |= hllUpdated;
+        return counts || hllUpdated;
+    }
+
+    /**
+     * Add a value to the HyperLogLog sketch.
+     *
+     * @param value the value
+     * @param any whether to update any register, or only empty registers
+     * @return whether the sketch changed
+     */
+    private boolean addDistinct(String value, boolean any) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - HLL_BITS));
+        // the position of the first 1 bit in the remaining bits
+        long rest = hash << HLL_BITS;
+        int rank = Math.min(Long.numberOfLeadingZeros(rest), 64 - HLL_BITS) + 1;
+        if (rank > hll[register] && (any || hll[register] == 0)) {
+            hll[register] = (byte) rank;
+            return true;
+        }
+        return false;
+    }
+
+    private void addCount(String value, long count) {
+        long hash = hash(value);
+        entryCount = Math.max(0, entryCount + count);
+        for (int i = 0; i < CMS_DEPTH; i++) {
+            int x = getCmsIndex(hash, i);
+            cms[x] = Math.max(0, cms[x] + count);
+        }
+    }
+
+    private void updateTopValues(List<String> candidates) {
+        for (String c : candidates) {
+            if (!topValues.contains(c)) {
+                topValues.add(c);
+            }
+        }
+        final HashMap<String, Long> estimates = new HashMap<String, Long>();
+        for (String v : topValues) {
+            estimates.put(v, getCmsEstimate(v));
+        }
+        Collections.sort(topValues, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return -Long.compare(estimates.get(o1), estimates.get(o2));
+            }
+        });
+        while (topValues.size() > TOP_N) {
+            topValues.remove(topValues.size() - 1);
+        }
+        while (!topValues.isEmpty() && estimates.get(topValues.get(topValues.size() - 1)) == 0) {
+            topValues.remove(topValues.size() - 1);
+        }
+    }
+
+    /**
+     * Merge the statistics of a disjoint part of the content (for example,
+     * when reindexing in parallel) into the statistics of the index.
+     *
+     * @param definition the index definition
+     * @param other the statistics node of the other part
+     */
+    public static void merge(NodeBuilder definition, NodeState other) {
+        ValueStatistics o = readStats(other);
+        if (o == null) {
+            return;
+        }
+        ValueStatistics stats = read(definition.getNodeState());
+        if (stats == null) {
+            o.write(definition.child(STATS_NODE_NAME));
+            return;
+        }
+        stats.entryCount += o.entryCount;
+        for (int i = 0; i < stats.hll.length; i++) {
+            stats.hll[i] = (byte) Math.max(stats.hll[i], o.hll[i]);
+        }
+        for (int i = 0; i < stats.cms.length; i++) {
+            stats.cms[i] += o.cms[i];
+        }
+        stats.updateTopValues(o.topValues);
+        stats.write(definition.child(STATS_NODE_NAME));
+    }
+
+    void write(NodeBuilder builder) {
+        writeHll(builder);
+        writeCounts(builder);
+    }
+
+    /**
+     * Write the parts of the statistics that were changed by applying
+     * changes.
+     *
+     * @param builder the statistics node
+     */
+    private void writeChanges(NodeBuilder builder) {
+        if (hllChanged) {
+            writeHll(builder);
+        }
+        if (countsChanged) {
+            writeCounts(builder);
+        }
+    }
+
+    private void writeHll(NodeBuilder builder) {
+        builder.setProperty(HLL, StringUtils.convertBytesToHex(hll));
+    }
+
+    private void writeCounts(NodeBuilder builder) {
+        builder.setProperty(ENTRY_COUNT, entryCount);
+        ArrayList<Long> list = new ArrayList<Long>(cms.length);
+        for (long x : cms) {
+            list.add(x);
+        }
+        builder.setProperty(CMS, list, Type.LONGS);
+        builder.setProperty(TOP_VALUES, topValues, Type.STRINGS);
+    }
+
+    /**
+     * The (approximate) number of entries in the index.
+     *
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * The approximate number of distinct values, using the HyperLogLog
+     * algorithm (with linear counting for small cardinalities).
+     *
+     * @return the estimated number of distinct values
+     */
+    public long getDistinctCount() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte b : hll) {
+            sum += 1.0 / (1L << b);
+            if (b == 0) {
+                zeros++;
+            }
+        }
+        double m = HLL_REGISTERS;
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log(m / zeros);
+        }
+        return Math.min(Math.round(estimate), Math.max(entryCount, 1));
+    }
+
+    /**
+     * The most frequent values, the most frequent first.
+     *
+     * @return the values (encoded)
+     */
+    public List<String> getTopValues() {
+        return Collections.unmodifiableList(topValues);
+    }
+
+    /**
+     * Estimate the number of entries for the given (encoded) value. The
+     * count-min sketch never underestimates, but for rare values the error can
+     * be large; therefore, for values that are not among the most frequent
+     * values, the estimate is at most the count of the least frequent of the
+     * top values.
+     *
+     * @param value the encoded value
+     * @return the estimated number of entries
+     */
+    public long estimateCount(String value) {
+        long estimate = Math.min(getCmsEstimate(value), entryCount);
+        if (topValues.size() < TOP_N || topValues.contains(value)) {
+            return estimate;
+        }
+        long minTop = getCmsEstimate(topValues.get(topValues.size() - 1));
+        return Math.min(estimate, minTop);
+    }
+
+    private long getCmsEstimate(String value) {
+        long hash = hash(value);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < CMS_DEPTH; i++) {
+            min = Math.min(min, cms[getCmsIndex(hash, i)]);
+        }
+        return min;
+    }
+
+    private static int getCmsIndex(long hash, int row) {
+        // double hashing (Kirsch and Mitzenmacher)
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int h = h1 + row * h2;
+        return row * CMS_WIDTH + ((h & Integer.MAX_VALUE) % CMS_WIDTH);
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, UTF_8).asLong();
+    }
+
+    /**
+     * The changes of a commit, or of reindexing. The changes are applied to
+     * the statistics in batches, so that the memory usage doesn't grow with
+     * the number of distinct values.
+     * <p>
+     * The statistics are only created when reindexing (otherwise, they would
+     * not cover the existing content); if they don't exist yet, they are not
+     * updated.
+     */
+    static class Update {
+
+        private final NodeBuilder definition;
+        private final Map<String, Long> changes = new HashMap<String, Long>();
+        private boolean reindex;
+        private boolean loaded;
+        private boolean create;
+        private ValueStatistics stats;
+
+        Update(NodeBuilder definition) {
+            this.definition = definition;
+        }
+
+        /**
+         * Set whether the changes are from reindexing. This needs to be set
+         * before changes are added.
+         *
+         * @param reindex whether the index is reindexed
+         */
+        void setReindex(boolean reindex) {
+            this.reindex = reindex;
+        }
+
+        /**
+         * Add the given number of added (positive) or removed (negative)
+         * entries of the given value.
+         *
+         * @param value the encoded value
+         * @param offset the number of entries
+         */
+        void add(String value, long offset) {
+            Long old = changes.get(value);
+            changes.put(value, old == null ? offset : old + offset);
+            if (changes.size() >= MAX_PENDING_CHANGES) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!loaded) {
+                loaded = true;
+                stats = read(definition.getNodeState());
+                if (stats == null && reindex) {
+                    stats = new ValueStatistics();
+                    create = true;
+                }
+            }
+            if (stats != null && !changes.isEmpty()) {
+                // when reindexing, the statistics are written once, so that
+                // the counts don't need to be sampled
+                stats.apply(changes, reindex ? 1 : getResolution(definition), reindex);
+            }
+            changes.clear();
+        }
+
+        /**
+         * Apply the remaining changes, and write the statistics if they
+         * changed.
+         */
+        void write() {
+            flush();
+            if (stats == null) {
+                return;
+            }
+            NodeBuilder builder = definition.child(STATS_NODE_NAME);
+            if (create) {
+                stats.write(builder);
+            } else {
+                stats.writeChanges(builder);
+            }
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "entries: " + entryCount + " distinct: " + getDistinctCount() +
+                " top: " + topValues;
+    }
+
+}
@@ -31,6 +31,7 @@ import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
 import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor;
 import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.index.property.ValueStatistics;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryChildNodeEntry;
 import org.apache.jackrabbit.oak.query.FilterIterators;
 import org.apache.jackrabbit.oak.spi.query.Filter;
@@ -212,12 +213,18 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
             Set<String> values, int max) {
         NodeState index = indexMeta.getChildNode(indexStorageNodeName);
         long count = -1;
+        // the value statistics are for the whole index, so only use them
+        // for the default mount
+        ValueStatistics stats = INDEX_CONTENT_NODE_NAME.equals(indexStorageNodeName) ?
+                ValueStatistics.read(indexMeta) : null;
         if (values == null) {
             // property is not null
             PropertyState ec = indexMeta.getProperty(ENTRY_COUNT_PROPERTY_NAME);
             if (ec != null) {
                 // negative value implies fall-back to counting
                 count = ec.getValue(Type.LONG);
+            } else if (stats != null) {
+                count = stats.getEntryCount();
             } else {
                 // negative value means that approximation isn't available
                 count = ApproximateCounter.getCountSync(index);
@@ -255,6 +262,13 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
                     keyCount = Math.max(1, keyCount);
                     count = (long) ((double) count / keyCount) + size;
                 }
+            } else if (stats != null) {
+                // value statistics are available: use the estimated
+                // number of entries per value (at least 1 per value)
+                count = 0;
+                for (String p : values) {
+                    count += Math.max(1, stats.estimateCount(p));
+                }
             } else {
                 // for this index, property "entryCount" is not set
                 long approxMax = 0;
@@ -527,6 +527,28 @@ public class QueryImpl implements Query {
         return buff == null ? null : buff.toString();
     }
     
+    /**
+     * Get the names of the index plans used by the selectors, separated by
+     * comma (for joins), or "traverse" if no index is used.
+     *
+     * @return the names
+     */
+    private String getIndexPlanNames() {
+        StringBuilder buff = new StringBuilder();
+        for (SelectorImpl s : selectors) {
+            if (buff.length() > 0) {
+                buff.append(", ");
+            }
+            SelectorExecutionPlan p = s.getExecutionPlan();
+            if (p == null || p.getIndex() == null) {
+                buff.append("traverse");
+            } else {
+                buff.append(p.getIndexPlanName());
+            }
+        }
+        return buff.toString();
+    }
+
     @Override
     public Iterator<ResultRowImpl> getRows() {
         prepare();
@@ -569,6 +591,7 @@ public class QueryImpl implements Query {
         }
         Iterator<ResultRowImpl> it =
                 FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings);
+        it = new StatsIterator(it, stats);
         if (orderBy != null) {
             // this will force the rows to be read, so that the size is known
             it.hasNext();
@@ -844,6 +867,42 @@ public class QueryImpl implements Query {
         }
     }
 
+    /**
+     * An iterator that records the pending query statistics when the
+     * iteration ends, also if not all rows were read (for example because a
+     * limit was reached).
+     */
+    static class StatsIterator implements Iterator<ResultRowImpl> {
+
+        private final Iterator<ResultRowImpl> source;
+        private final QueryExecutionStats stats;
+
+        StatsIterator(Iterator<ResultRowImpl> source, QueryExecutionStats stats) {
+            this.source = source;
+            this.stats = stats;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (source.hasNext()) {
+                return true;
+            }
+            stats.done();
+            return false;
+        }
+
+        @Override
+        public ResultRowImpl next() {
+            return source.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
     /**
      * An iterator over result rows.
      */
@@ -869,6 +928,7 @@ public class QueryImpl implements Query {
             long nanos = System.nanoTime();
             long oldIndex = rowIndex;
             if (!started) {
+                stats.start(getIndexPlanNames());
                 source.execute(rootState);
                 started = true;
             }
@@ -892,6 +952,9 @@ public class QueryImpl implements Query {
             }
             nanos = System.nanoTime() - nanos;
             stats.read(rowIndex - oldIndex, rowIndex, nanos);
+            if (end) {
+                stats.done(getIndexPlanNames());
+            }
         }
 
         @Override
@@ -1011,6 +1074,21 @@ public class QueryImpl implements Query {
         this.queryOptions = options;
     }
 
+    /**
+     * Get the maximum number of entries the query is expected to read from
+     * the index of the (only) selector, that is, the limit plus the offset.
+     * This is only known for queries with one selector and without "order by"
+     * (which could require to read all entries).
+     *
+     * @return the maximum number of entries, or Long.MAX_VALUE if unknown
+     */
+    public long getMaxEntryCount() {
+        if (selectors.size() != 1 || orderings != null) {
+            return Long.MAX_VALUE;
+        }
+        return saturatedAdd(limit, offset);
+    }
+
     public SelectorExecutionPlan getBestSelectorExecutionPlan(FilterImpl filter) {
         return getBestSelectorExecutionPlan(context.getBaseState(), filter,
                 context.getIndexProvider(), traversalEnabled);
@@ -330,6 +330,7 @@ public class UnionQueryImpl implements Query {
         }
 
         it = FilterIterators.newCombinedFilter(it, distinct, limit, offset, null, settings);
+        it = new QueryImpl.StatsIterator(it, getQueryExecutionStats());
 
         if (measure) {
             // return the measuring iterator for the union
@@ -356,7 +356,9 @@ public class SelectorImpl extends SourceImpl {
         IndexPlan p = plan.getIndexPlan();
         if (p != null) {
             planIndexName = p.getPlanName();
-            p.setFilter(createFilter(false));
+            FilterImpl f = createFilter(false);
+            f.setMaxEntryCount(query.getMaxEntryCount());
+            p.setFilter(f);
             AdvancedQueryIndex adv = (AdvancedQueryIndex) index;
             cursor = adv.query(p, rootState);
         } else {
@@ -42,6 +42,7 @@ import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextExpression;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.ReadAccessPrincipals;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -110,6 +111,8 @@ public class FilterImpl implements Filter {
      */
     private boolean preparing;
 
+    private long maxEntryCount = Long.MAX_VALUE;
+
     // TODO support "order by"
 
     /**
@@ -178,6 +181,7 @@ public class FilterImpl implements Filter {
         this.matchesAllTypes = selector != null ? selector.matchesAllTypes()
                 : false;
         this.settings = filter.getQueryLimits();
+        this.maxEntryCount = filter.getMaxEntryCount();
     }
 
     public void setPreparing(boolean preparing) {
@@ -629,10 +633,52 @@ public class FilterImpl implements Filter {
         return settings;
     }
 
+    @Override
+    public long getMaxEntryCount() {
+        return maxEntryCount;
+    }
+
+    public void setMaxEntryCount(long maxEntryCount) {
+        this.maxEntryCount = maxEntryCount;
+    }
+
     @Override
     public boolean isAccessible(String path) {
         PermissionProvider permissionProvider = selector.getQuery().getExecutionContext().getPermissionProvider();
         return permissionProvider != null && permissionProvider.isGranted(path, Session.ACTION_READ);
     }
 
+    @Override
+    @Nullable
+    public Set<String> getPrincipalNames() {
+        ReadAccessPrincipals readAccess = getReadAccessPrincipals();
+        if (readAccess == null) {
+            return null;
+        }
+        Set<String> names = readAccess.getPrincipalNames();
+        // without principals, the permissions are not based on principals
+        return names == null || names.isEmpty() ? null : names;
+    }
+
+    @Override
+    public Set<String> getReadPaths() {
+        ReadAccessPrincipals readAccess = getReadAccessPrincipals();
+        return readAccess == null ? Collections.<String>emptySet() : readAccess.getReadPaths();
+    }
+
+    /**
+     * Get the read access of the principals of the query session, if the
+     * permission provider supports it. Other authorization models (such as
+     * closed user groups or principal based authorization) can grant access
+     * that is not based on the access control entries of the principals.
+     */
+    @Nullable
+    private ReadAccessPrincipals getReadAccessPrincipals() {
+        if (selector == null) {
+            return null;
+        }
+        PermissionProvider permissionProvider = selector.getQuery().getExecutionContext().getPermissionProvider();
+        return permissionProvider instanceof ReadAccessPrincipals ? (ReadAccessPrincipals) permissionProvider : null;
+    }
+
 }
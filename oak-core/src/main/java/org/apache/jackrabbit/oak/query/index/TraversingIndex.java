@@ -115,6 +115,13 @@ public class TraversingIndex implements QueryIndex {
             if (restriction == PathRestriction.NO_RESTRICTION) {
                 testPath = "/";
             }
+            if (restriction == PathRestriction.DIRECT_CHILDREN) {
+                // use the depth histogram, if available
+                long count = NodeCounter.getEstimatedChildNodeCount(rootState, testPath, true);
+                if (count >= 0) {
+                    return count;
+                }
+            }
             long count = NodeCounter.getEstimatedNodeCount(rootState, testPath, true);
             if (count >= 0) {
                 if (restriction == PathRestriction.DIRECT_CHILDREN) {
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.stats;
+
+import java.util.Locale;
+
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+
+/**
+ * The statistics of the executions of one query (or a group of queries) with
+ * a given index: histograms of the planning time, the execution time, the
+ * number of rows scanned (returned by the index), and the number of rows read
+ * (returned to the caller).
+ */
+public class QueryIndexUsageStats {
+
+    private final String indexName;
+    private final QueryStatsHistogram planNanos = new QueryStatsHistogram();
+    private final QueryStatsHistogram executeNanos = new QueryStatsHistogram();
+    private final QueryStatsHistogram rowsScanned = new QueryStatsHistogram();
+    private final QueryStatsHistogram rowsRead = new QueryStatsHistogram();
+    private volatile long firstUsedMillis;
+    private volatile long lastUsedMillis;
+
+    public QueryIndexUsageStats(String indexName) {
+        this.indexName = indexName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void record(long plan, long execute, long scanned, long read) {
+        planNanos.update(plan);
+        executeNanos.update(execute);
+        rowsScanned.update(scanned);
+        rowsRead.update(read);
+        long now = System.currentTimeMillis();
+        if (firstUsedMillis == 0) {
+            firstUsedMillis = now;
+        }
+        lastUsedMillis = now;
+    }
+
+    public void add(QueryIndexUsageStats other) {
+        planNanos.add(other.planNanos);
+        executeNanos.add(other.executeNanos);
+        rowsScanned.add(other.rowsScanned);
+        rowsRead.add(other.rowsRead);
+        if (firstUsedMillis == 0 ||
+                (other.firstUsedMillis != 0 && other.firstUsedMillis < firstUsedMillis)) {
+            firstUsedMillis = other.firstUsedMillis;
+        }
+        lastUsedMillis = Math.max(lastUsedMillis, other.lastUsedMillis);
+    }
+
+    public long getExecuteCount() {
+        return rowsScanned.getCount();
+    }
+
+    /**
+     * The total time spent in planning and executing the query.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getTotalTimeNanos() {
+        return planNanos.getSum() + executeNanos.getSum();
+    }
+
+    public QueryStatsHistogram getPlanNanos() {
+        return planNanos;
+    }
+
+    public QueryStatsHistogram getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public QueryStatsHistogram getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public QueryStatsHistogram getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * The ratio of rows scanned to rows read. A high value means the index
+     * returns many rows that are then filtered out.
+     *
+     * @return the ratio, or the number of rows scanned if no rows were read
+     */
+    public double getScannedPerReadRatio() {
+        long read = rowsRead.getSum();
+        return read == 0 ? rowsScanned.getSum() : (double) rowsScanned.getSum() / read;
+    }
+
+    public void toJson(JsopBuilder buff) {
+        buff.object().
+            key("index").value(indexName).
+            key("executeCount").value(getExecuteCount()).
+            key("totalTimeNanos").value(getTotalTimeNanos()).
+            key("scannedPerRead").encodedValue(String.format(Locale.ENGLISH, "%.2f", getScannedPerReadRatio())).
+            key("firstUsed").value(QueryStatsData.getTimeString(firstUsedMillis)).
+            key("lastUsed").value(QueryStatsData.getTimeString(lastUsedMillis)).
+            key("planNanos");
+        planNanos.toJson(buff);
+        buff.key("executeNanos");
+        executeNanos.toJson(buff);
+        buff.key("rowsScanned");
+        rowsScanned.toJson(buff);
+        buff.key("rowsRead");
+        rowsRead.toJson(buff);
+        buff.endObject();
+    }
+
+}
@@ -16,7 +16,13 @@
  */
 package org.apache.jackrabbit.oak.query.stats;
 
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
 
 public class QueryStatsData {
     
@@ -43,6 +49,13 @@ public class QueryStatsData {
     private long readNanos;
     private long maxTimeNanos;
     private boolean captureStackTraces;
+    private StatisticsProvider statisticsProvider = StatisticsProvider.NOOP;
+
+    /**
+     * The statistics per index (or combination of indexes, for joins).
+     */
+    private final ConcurrentHashMap<String, QueryIndexUsageStats> indexStats =
+            new ConcurrentHashMap<String, QueryIndexUsageStats>();
 
     public QueryStatsData(String query, String language) {
         this.query = query;
@@ -74,6 +87,10 @@ public class QueryStatsData {
         this.captureStackTraces = captureStackTraces;
     }
     
+    public void setStatisticsProvider(StatisticsProvider statisticsProvider) {
+        this.statisticsProvider = statisticsProvider;
+    }
+
     public long getCreatedMillis() {
         return createdMillis;
     }
@@ -110,10 +127,20 @@ public class QueryStatsData {
     public long getLastExecutedMillis() {
         return lastExecutedMillis;
     }
+
+    /**
+     * Get the statistics per index that was used to run this query.
+     *
+     * @return the statistics
+     */
+    public Collection<QueryIndexUsageStats> getIndexStats() {
+        return indexStats.values();
+    }
     
     @Override
     public String toString() {
-        return new JsopBuilder().object().
+        JsopBuilder buff = new JsopBuilder();
+        buff.object().
             key("createdMillis").value(getTimeString(createdMillis)).
             key("lastExecutedMillis").value(getTimeString(lastExecutedMillis)).
             key("executeCount").value(executeCount).
@@ -128,7 +155,11 @@ public class QueryStatsData {
             key("query").value(query).
             key("language").value(language).
             key("lastThreadName").value(lastThreadName).
-        endObject().toString();
+            key("indexes").array();
+        for (QueryIndexUsageStats s : indexStats.values()) {
+            s.toJson(buff);
+        }
+        return buff.endArray().endObject().toString();
     }
     
     public static final String getTimeString(long timeMillis) {
@@ -138,6 +169,16 @@ public class QueryStatsData {
     public class QueryExecutionStats {
         
         long time;
+        private long pendingPlanNanos;
+        private long pendingReadNanos;
+        private long pendingRowsRead;
+        private long pendingRowsScanned;
+
+        /**
+         * The index (or indexes, for joins) the pending statistics belong
+         * to, or null if there are none.
+         */
+        private String pendingIndexName;
         private final long SLOW_QUERY_HISTOGRAM = 1;
         private final long TOTAL_QUERY_HISTOGRAM = 0;
         private final String SLOW_QUERY_PERCENTILE_METRICS_NAME = "SLOW_QUERY_PERCENTILE_METRICS";
@@ -151,6 +192,7 @@ public class QueryStatsData {
             lastExecutedMillis = System.currentTimeMillis();
             time += nanos;
             planNanos += nanos;
+            pendingPlanNanos += nanos;
             maxTimeNanos = Math.max(maxTimeNanos, time);
         }
 
@@ -169,18 +211,77 @@ public class QueryStatsData {
             lastThreadName = name;
         }
 
-        public void read(long count, long max, long nanos) {
+        /**
+         * Start reading rows of the given index (or indexes, for joins).
+         *
+         * @param indexName the name of the index
+         */
+        public synchronized void start(String indexName) {
+            pendingIndexName = indexName;
+        }
+
+        public synchronized void read(long count, long max, long nanos) {
             totalRowsRead += count;
             maxRowsRead = Math.max(maxRowsRead, max);
             time += nanos;
             readNanos += nanos;
+            pendingRowsRead += count;
+            pendingReadNanos += nanos;
             maxTimeNanos = Math.max(maxTimeNanos, time);
         }
 
-        public void scan(long count, long max) {
+        public synchronized void scan(long count, long max) {
             totalRowsScanned += count;
+            pendingRowsScanned += count;
             maxRowsScanned = Math.max(maxRowsScanned, max);
         }
+
+        /**
+         * Record the pending statistics, if any. This is called when the
+         * iteration over the result ended, also if not all rows were read,
+         * for example because a limit was reached. The per-index statistics
+         * of results that are abandoned before the iteration ended are not
+         * recorded.
+         */
+        public synchronized void done() {
+            if (pendingIndexName != null) {
+                done(pendingIndexName);
+            }
+        }
+
+        /**
+         * Record the planning time, execution time, and rows scanned and
+         * read since the last call, for the given index. This is called once
+         * all rows of a query (or of one branch of a union) were read.
+         *
+         * @param indexName the name of the index (or indexes, for joins)
+         */
+        public synchronized void done(String indexName) {
+            QueryIndexUsageStats s = indexStats.get(indexName);
+            if (s == null) {
+                s = new QueryIndexUsageStats(indexName);
+                QueryIndexUsageStats s2 = indexStats.putIfAbsent(indexName, s);
+                if (s2 != null) {
+                    s = s2;
+                }
+            }
+            s.record(pendingPlanNanos, pendingReadNanos, pendingRowsScanned, pendingRowsRead);
+            if (!internal) {
+                statisticsProvider.getTimer("QUERY_PLAN_DURATION_" + indexName,
+                        StatsOptions.METRICS_ONLY).update(pendingPlanNanos, TimeUnit.NANOSECONDS);
+                statisticsProvider.getTimer("QUERY_EXECUTION_DURATION_" + indexName,
+                        StatsOptions.METRICS_ONLY).update(pendingReadNanos, TimeUnit.NANOSECONDS);
+                statisticsProvider.getHistogram("QUERY_ROWS_SCANNED_" + indexName,
+                        StatsOptions.METRICS_ONLY).update(pendingRowsScanned);
+                statisticsProvider.getHistogram("QUERY_ROWS_READ_" + indexName,
+                        StatsOptions.METRICS_ONLY).update(pendingRowsRead);
+            }
+            pendingPlanNanos = 0;
+            pendingReadNanos = 0;
+            pendingRowsRead = 0;
+            pendingRowsScanned = 0;
+            pendingIndexName = null;
+        }
     }
 
 }
\ No newline at end of file
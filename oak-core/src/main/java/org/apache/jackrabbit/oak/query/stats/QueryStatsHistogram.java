@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+
+/**
+ * A histogram with exponentially growing buckets, similar to a HDR histogram
+ * with a precision of one binary digit. Bucket 0 contains the value 0, and
+ * bucket i contains the values from 2^(i-1) to 2^i - 1. The memory usage is
+ * constant, and histograms can be merged by adding the buckets.
+ */
+public class QueryStatsHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int getBucket(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    static long getUpperBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public void update(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        updateMax(value);
+    }
+
+    private void updateMax(long value) {
+        while (true) {
+            long old = max.get();
+            if (value <= old || max.compareAndSet(old, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add all values of the given histogram to this histogram.
+     *
+     * @param other the other histogram
+     */
+    public void add(QueryStatsHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long x = other.buckets.get(i);
+            if (x != 0) {
+                buckets.addAndGet(i, x);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        updateMax(other.max.get());
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : sum.get() / c;
+    }
+
+    /**
+     * Get the (approximate) value at the given quantile. The returned value is
+     * the upper bound of the bucket that contains the quantile, but at most
+     * the largest recorded value.
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the value
+     */
+    public long getValueAtQuantile(double quantile) {
+        long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * c));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void toJson(JsopBuilder buff) {
+        buff.object().
+            key("count").value(getCount()).
+            key("mean").value(getMean()).
+            key("p50").value(getValueAtQuantile(0.5)).
+            key("p90").value(getValueAtQuantile(0.9)).
+            key("p99").value(getValueAtQuantile(0.99)).
+            key("max").value(getMax()).
+        endObject();
+    }
+
+    @Override
+    public String toString() {
+        JsopBuilder buff = new JsopBuilder();
+        toJson(buff);
+        return buff.toString();
+    }
+
+}
@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.query.stats;
 import javax.management.openmbean.TabularData;
 
 import org.apache.jackrabbit.oak.api.jmx.Description;
+import org.apache.jackrabbit.oak.api.jmx.Name;
 
 public interface QueryStatsMBean {
 
@@ -41,6 +42,21 @@ public interface QueryStatsMBean {
     @Description("Get all data as Json.")
     String asJson();
    
+    /**
+     * Get the queries that take most of the time, grouped by simplified
+     * statement (where literals and paths are replaced) and by index, with
+     * histograms of the planning time, execution time, rows scanned, and rows
+     * read.
+     *
+     * @param max the maximum number of entries
+     * @return the Json array
+     */
+    @Description("Get the queries that take most of the time, per index, with latency and row count histograms, as Json.")
+    String getTopOffendersAsJson(
+            @Name("max")
+            @Description("the maximum number of entries")
+            int max);
+
     @Description("Reset the statistics (clear the list of queries).")
     void resetStats();
 
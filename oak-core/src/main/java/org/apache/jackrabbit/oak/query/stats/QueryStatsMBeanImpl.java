@@ -19,6 +19,8 @@ package org.apache.jackrabbit.oak.query.stats;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentSkipListMap;
 
 import javax.management.openmbean.CompositeDataSupport;
@@ -31,6 +33,7 @@ import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 import org.slf4j.Logger;
@@ -126,6 +129,46 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         return buff.append("\n]\n").toString();
     }
 
+    @Override
+    public String getTopOffendersAsJson(int max) {
+        // group by simplified statement (literals and paths removed) and index
+        HashMap<String, QueryIndexUsageStats> grouped = new HashMap<String, QueryIndexUsageStats>();
+        HashMap<String, String> statements = new HashMap<String, String>();
+        for (QueryStatsData s : statistics.values()) {
+            if (s.isInternal()) {
+                continue;
+            }
+            String statement = QueryRecorder.simplify(s.getQuery().replace('\n', ' ').replace('\t', ' '));
+            for (QueryIndexUsageStats u : s.getIndexStats()) {
+                String key = statement + "/" + s.getLanguage() + "/" + u.getIndexName();
+                QueryIndexUsageStats g = grouped.get(key);
+                if (g == null) {
+                    g = new QueryIndexUsageStats(u.getIndexName());
+                    grouped.put(key, g);
+                    statements.put(key, statement);
+                }
+                g.add(u);
+            }
+        }
+        ArrayList<Entry<String, QueryIndexUsageStats>> list = 
+                new ArrayList<Entry<String, QueryIndexUsageStats>>(grouped.entrySet());
+        Collections.sort(list, new Comparator<Entry<String, QueryIndexUsageStats>>() {
+            @Override
+            public int compare(Entry<String, QueryIndexUsageStats> o1, Entry<String, QueryIndexUsageStats> o2) {
+                return -Long.compare(o1.getValue().getTotalTimeNanos(), o2.getValue().getTotalTimeNanos());
+            }
+        });
+        JsopBuilder buff = new JsopBuilder();
+        buff.array();
+        for (int i = 0; i < list.size() && i < max; i++) {
+            Entry<String, QueryIndexUsageStats> e = list.get(i);
+            buff.object().key("statement").value(statements.get(e.getKey())).key("stats");
+            e.getValue().toJson(buff);
+            buff.endObject();
+        }
+        return buff.endArray().toString();
+    }
+
     @Override
     public QueryExecutionStats getQueryExecution(String statement, String language) {
         if (log.isTraceEnabled()) {
@@ -140,6 +183,7 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
             stats = s2;
         }
         stats.setCaptureStackTraces(captureStackTraces);
+        stats.setStatisticsProvider(settings.getStatisticsProvider());
         return stats.new QueryExecutionStats();
     }
 
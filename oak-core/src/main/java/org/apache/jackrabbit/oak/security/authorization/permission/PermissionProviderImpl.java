@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.security.authorization.permission;
 
 import java.security.Principal;
+import java.util.HashSet;
 import java.util.Set;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Root;
@@ -31,6 +32,7 @@ import org.apache.jackrabbit.oak.spi.security.authorization.permission.Aggregate
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionConstants;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.Permissions;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.ReadAccessPrincipals;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.RepositoryPermission;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
 import org.apache.jackrabbit.oak.spi.security.authorization.restriction.RestrictionProvider;
@@ -41,7 +43,7 @@ import org.apache.jackrabbit.oak.spi.version.VersionConstants;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class PermissionProviderImpl implements PermissionProvider, AccessControlConstants, PermissionConstants, AggregatedPermissionProvider {
+public class PermissionProviderImpl implements PermissionProvider, AccessControlConstants, PermissionConstants, AggregatedPermissionProvider, ReadAccessPrincipals {
 
     private final Root root;
 
@@ -155,6 +157,26 @@ public class PermissionProviderImpl implements PermissionProvider, AccessControl
         return getCompiledPermissions().getTreePermission(PermissionUtil.getReadOnlyTree(tree, immutableRoot), type, parentPermission);
     }
 
+    //-----------------------------------------------< ReadAccessPrincipals >---
+    @Nullable
+    @Override
+    public Set<String> getPrincipalNames() {
+        if (PermissionUtil.isAdminOrSystem(principals, options)) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (Principal principal : principals) {
+            names.add(principal.getName());
+        }
+        return names;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getReadPaths() {
+        return options.getConfigValue(PARAM_READ_PATHS, DEFAULT_READ_PATHS);
+    }
+
     //--------------------------------------------------------------------------
 
     private CompiledPermissions getCompiledPermissions() {
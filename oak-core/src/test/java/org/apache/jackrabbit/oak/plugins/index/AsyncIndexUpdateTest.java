@@ -66,6 +66,7 @@ import org.apache.jackrabbit.oak.commons.junit.LogCustomizer;
 import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate.AsyncIndexStats;
 import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate.IndexTaskSpliter;
 import org.apache.jackrabbit.oak.plugins.index.TrackingCorruptIndexHandler.CorruptIndexInfo;
+import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexLookup;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
@@ -99,6 +100,7 @@ import org.junit.Test;
 import ch.qos.logback.classic.Level;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -167,6 +169,121 @@ public class AsyncIndexUpdateTest {
         assertEquals(ImmutableSet.of("testRoot"), find(lookup, "foo", "abc"));
     }
 
+    @Test
+    public void chunkedUpdate() throws Exception {
+        NodeStore store = new MemoryNodeStore();
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+
+        NodeBuilder builder = store.getRoot().builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+        builder.child("testRoot").setProperty("foo", "abc");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        AsyncIndexUpdate async = new AsyncIndexUpdate("async", store, provider);
+        async.setChunkSize(2);
+        async.run();
+        PropertyState lastIndexedTo = store.getRoot().getChildNode(ASYNC).getProperty(AsyncIndexUpdate.lastIndexedTo("async"));
+        assertNotNull(lastIndexedTo);
+
+        // a large change: 7 changed subtrees (including the index
+        // definitions), without node counter estimates
+        builder = store.getRoot().builder();
+        for (int i = 0; i < 5; i++) {
+            builder.child("c" + i).setProperty("foo", "abc");
+        }
+        builder.child("testRoot").remove();
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        // the first chunk contains the deletion
+        async.run();
+        NodeState root = store.getRoot();
+        assertEquals(ImmutableSet.of("c0", "c1"), find(new PropertyIndexLookup(root), "foo", "abc"));
+        assertTrue(root.getChildNode(ASYNC).hasProperty(AsyncIndexUpdate.chunkTarget("async")));
+        assertEquals(lastIndexedTo, root.getChildNode(ASYNC).getProperty(AsyncIndexUpdate.lastIndexedTo("async")));
+        assertEquals(4, async.getIndexStats().getPendingChunkUnits());
+
+        // changes after the target checkpoint are indexed later
+        builder = store.getRoot().builder();
+        builder.child("c5").setProperty("foo", "abc");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        async.run();
+        assertEquals(ImmutableSet.of("c0", "c1", "c2", "c3"),
+                find(new PropertyIndexLookup(store.getRoot()), "foo", "abc"));
+
+        async.run();
+        root = store.getRoot();
+        assertEquals(ImmutableSet.of("c0", "c1", "c2", "c3", "c4"), find(new PropertyIndexLookup(root), "foo", "abc"));
+        assertFalse(root.getChildNode(ASYNC).hasProperty(AsyncIndexUpdate.chunkTarget("async")));
+        assertNotEquals(lastIndexedTo, root.getChildNode(ASYNC).getProperty(AsyncIndexUpdate.lastIndexedTo("async")));
+        assertEquals(3, async.getIndexStats().getChunkCount());
+        assertEquals(0, async.getIndexStats().getPendingChunkUnits());
+
+        async.run();
+        root = store.getRoot();
+        assertEquals(ImmutableSet.of("c0", "c1", "c2", "c3", "c4", "c5"), find(new PropertyIndexLookup(root), "foo", "abc"));
+        // only the reference checkpoint is left
+        assertEquals(1, Iterables.size(store.checkpoints()));
+    }
+
+    @Test
+    public void chunkedUpdateOfAddedSubtree() throws Exception {
+        NodeStore store = new MemoryNodeStore();
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+
+        NodeBuilder builder = store.getRoot().builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        AsyncIndexUpdate async = new AsyncIndexUpdate("async", store, provider);
+        async.setChunkSize(2);
+        async.run();
+
+        // a large added subtree is split into its child nodes
+        builder = store.getRoot().builder();
+        NodeBuilder big = builder.child("big");
+        big.setProperty("foo", "abc");
+        big.setProperty(ApproximateCounter.COUNT_PROPERTY_PREFIX + "1", 100L);
+        for (int i = 0; i < 5; i++) {
+            big.child("c" + i).setProperty("foo", "abc");
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        async.run();
+        assertEquals(ImmutableSet.of("big", "big/c0", "big/c1"),
+                find(new PropertyIndexLookup(store.getRoot()), "foo", "abc"));
+
+        async.run();
+        assertEquals(ImmutableSet.of("big", "big/c0", "big/c1", "big/c2", "big/c3"),
+                find(new PropertyIndexLookup(store.getRoot()), "foo", "abc"));
+
+        async.run();
+        NodeState root = store.getRoot();
+        assertEquals(ImmutableSet.of("big", "big/c0", "big/c1", "big/c2", "big/c3", "big/c4"),
+                find(new PropertyIndexLookup(root), "foo", "abc"));
+        assertFalse(root.getChildNode(ASYNC).hasProperty(AsyncIndexUpdate.chunkTarget("async")));
+    }
+
+    @Test
+    public void laneScheduler() throws Exception {
+        AsyncLaneScheduler scheduler = new AsyncLaneScheduler(2);
+        assertTrue(scheduler.tryStart("async", false));
+        // a lane that is catching up defers while other lanes run
+        assertFalse(scheduler.tryStart("fulltext-async", true));
+        assertFalse(scheduler.tryStart("fulltext-async", true));
+        // but only up to the maximum number of deferrals
+        assertTrue(scheduler.tryStart("fulltext-async", true));
+        scheduler.done("fulltext-async");
+        scheduler.done("async");
+        assertTrue(scheduler.tryStart("fulltext-async", true));
+        // a lane with small changes never defers
+        assertTrue(scheduler.tryStart("async", false));
+    }
+
     /**
      * Async Index Test with 2 index defs at the same location
      * <ul>
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback.NOOP;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter.COUNT_PROPERTY_PREFIX;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.spi.commit.EditorDiff.process;
+import static org.apache.jackrabbit.oak.spi.commit.VisibleEditor.wrap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexLookup;
+import org.apache.jackrabbit.oak.plugins.index.property.ValueStatistics;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+public class ParallelReindexerTest {
+
+    @Test
+    public void sameResultAsSequential() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "foo", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ValueStatistics.VALUE_STATISTICS, true)
+                .setProperty(ValueStatistics.VALUE_STATISTICS_RESOLUTION, 1);
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "bar", true, false, ImmutableSet.of("bar"), null);
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder c = builder.child("content" + i);
+            for (int j = 0; j < 10 * (i % 3 + 1); j++) {
+                c.child("n" + j).setProperty("foo", "v" + (j % 4));
+            }
+            c.setProperty("bar", "b" + i);
+        }
+        // a large node (according to the node counter), that is split
+        NodeBuilder big = builder.child("big");
+        big.setProperty(COUNT_PROPERTY_PREFIX + "1", 100000L);
+        big.setProperty("foo", "big");
+        for (int i = 0; i < 3; i++) {
+            NodeBuilder c = big.child("b" + i);
+            c.setProperty(COUNT_PROPERTY_PREFIX + "1", 30000L);
+            c.child("n").setProperty("foo", "v" + i);
+        }
+        builder.setProperty("foo", "root");
+        NodeState before = builder.getNodeState();
+
+        NodeState sequential = reindex(before, 1);
+        NodeState parallel = reindex(before, 4);
+
+        for (String value : new String[] {"v0", "v1", "v2", "v3", "root", "big"}) {
+            assertEquals(find(sequential, "foo", value), find(parallel, "foo", value));
+        }
+        assertEquals(ImmutableSet.of(""), find(parallel, "foo", "root"));
+        assertEquals(ImmutableSet.of("content7"), find(parallel, "bar", "b7"));
+
+        NodeState fooIndex = parallel.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo");
+        assertTrue(fooIndex.getChildNode(IndexConstants.INDEX_CONTENT_NODE_NAME).exists());
+        ValueStatistics stats = ValueStatistics.read(fooIndex);
+        assertNotNull(stats);
+        ValueStatistics expected = ValueStatistics.read(
+                sequential.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("foo"));
+        assertEquals(expected.getEntryCount(), stats.getEntryCount());
+        assertEquals(expected.getDistinctCount(), stats.getDistinctCount());
+        assertEquals(Sets.newHashSet(expected.getTopValues()), Sets.newHashSet(stats.getTopValues()));
+        assertEquals(expected.estimateCount("v0"), stats.estimateCount("v0"));
+    }
+
+    @Test(expected = CommitFailedException.class)
+    public void uniqueConflictAcrossPartitions() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "unique", true, true, ImmutableSet.of("id"), null);
+        builder.child("a").setProperty("id", "x");
+        builder.child("b").setProperty("id", "x");
+        reindex(builder.getNodeState(), 2);
+    }
+
+    @Test
+    public void partition() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("c" + i);
+        }
+        builder.child(":hidden");
+        NodeState root = builder.getNodeState();
+        ParallelReindexer reindexer = new ParallelReindexer(
+                new PropertyIndexEditorProvider(), root, null, 3);
+        List<List<String>> partitions = reindexer.partition("/", root, 3);
+        assertEquals(3, partitions.size());
+        Set<String> all = Sets.newHashSet();
+        for (List<String> p : partitions) {
+            assertTrue(p.size() >= 3);
+            all.addAll(p);
+        }
+        assertEquals(10, all.size());
+        assertEquals(10, reindexer.partition("/", root, 100).size());
+        assertEquals(1, reindexer.partition("/c0", root.getChildNode("c0"), 4).size());
+    }
+
+    @Test
+    public void partitionLargeChildNodes() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("c" + i);
+        }
+        NodeBuilder big = builder.child("big");
+        big.setProperty(COUNT_PROPERTY_PREFIX + "1", 10000L);
+        for (int i = 0; i < 4; i++) {
+            big.child("b" + i).setProperty(COUNT_PROPERTY_PREFIX + "1", 2500L);
+        }
+        NodeState root = builder.getNodeState();
+        ParallelReindexer reindexer = new ParallelReindexer(
+                new PropertyIndexEditorProvider(), root, null, 3);
+        List<List<String>> partitions = reindexer.partition("/", root, 3);
+        assertEquals(3, partitions.size());
+        Set<String> all = Sets.newHashSet();
+        for (List<String> p : partitions) {
+            all.addAll(p);
+        }
+        assertEquals(14, all.size());
+        assertFalse(all.contains("big"));
+        assertTrue(all.contains("big/b0"));
+    }
+
+    private static NodeState reindex(NodeState before, int threads) throws CommitFailedException {
+        NodeBuilder builder = before.builder();
+        IndexUpdate update = new IndexUpdate(new PropertyIndexEditorProvider(),
+                null, before, builder, NOOP);
+        update.setParallelReindexThreads(threads);
+        CommitFailedException e = process(wrap(update), before, before);
+        if (e != null) {
+            throw e;
+        }
+        return builder.getNodeState();
+    }
+
+    private static Set<String> find(NodeState root, String name, String value) {
+        PropertyIndexLookup lookup = new PropertyIndexLookup(root);
+        FilterImpl f = FilterImpl.newTestInstance();
+        return Sets.newHashSet(lookup.query(f, name, PropertyValues.newString(value)));
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.counter;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the depth histogram of the node counter, and the estimates that are
+ * based on it.
+ */
+public class NodeCounterEstimateTest {
+
+    private static final EditorHook HOOK = new EditorHook(
+            new IndexUpdateProvider(new NodeCounterEditorProvider()));
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(NodeCounter.COUNT_HASH && !NodeCounter.USE_OLD_COUNTER);
+    }
+
+    @Test
+    public void depthHistogram() throws Exception {
+        NodeState root = createContent(true);
+
+        long[] counts = NodeCounter.getEstimatedNodeCountByDepth(root, "/content");
+        assertNotNull(counts);
+        assertEquals(NodeCounterEditor.DEPTH_HISTOGRAM_SIZE, counts.length);
+        assertApproximately(200, counts[0]);
+        assertApproximately(2000, counts[1]);
+        assertEquals(0, counts[2]);
+        assertApproximately(200, NodeCounter.getEstimatedChildNodeCount(root, "/content", false));
+        assertEquals(counts[0] + ApproximateCounter.COUNT_RESOLUTION,
+                NodeCounter.getEstimatedChildNodeCount(root, "/content", true));
+
+        // nodes below depth 2 are counted in the histogram of the root node
+        counts = NodeCounter.getEstimatedNodeCountByDepth(root, "/");
+        assertNotNull(counts);
+        assertApproximately(2000, counts[2]);
+    }
+
+    @Test
+    public void depthHistogramDisabled() throws Exception {
+        NodeState root = createContent(false);
+        assertTrue(NodeCounter.getEstimatedNodeCount(root, "/content", false) > 0);
+        assertNull(NodeCounter.getEstimatedNodeCountByDepth(root, "/content"));
+        assertEquals(-1, NodeCounter.getEstimatedChildNodeCount(root, "/content", false));
+    }
+
+    @Test
+    public void removeNodes() throws Exception {
+        NodeState before = createContent(true);
+        NodeBuilder builder = before.builder();
+        builder.getChildNode("content").remove();
+        NodeState root = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        NodeState data = root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("counter")
+                .getChildNode(NodeCounterEditor.DATA_NODE_NAME);
+        // the counter is deterministic, so all counts go back to zero
+        assertFalse(data.hasProperty(NodeCounterEditor.DEPTH_HISTOGRAM_PROPERTY_NAME));
+        assertFalse(data.getChildNode("content").hasProperty(NodeCounterEditor.DEPTH_HISTOGRAM_PROPERTY_NAME));
+        assertNull(NodeCounter.getEstimatedNodeCountByDepth(root, "/"));
+    }
+
+    @Test
+    public void matchCount() throws Exception {
+        NodeState root = createContent(true);
+        assertEquals(1, NodeCounter.getEstimatedMatchCount(root, "/content/n1/jcr:content"));
+        assertEquals(0, NodeCounter.getEstimatedMatchCount(root, "/content/n1/missing"));
+        assertEquals(0, NodeCounter.getEstimatedMatchCount(root, "/missing/*"));
+        // exact, as all child nodes are read
+        assertEquals(10, NodeCounter.getEstimatedMatchCount(root, "/content/n1/*"));
+        assertApproximately(200, NodeCounter.getEstimatedMatchCount(root, "/content/*"));
+        assertApproximately(2000, NodeCounter.getEstimatedMatchCount(root, "/content/*/*"));
+        assertApproximately(200, NodeCounter.getEstimatedMatchCount(root, "/content/*/jcr:content"));
+
+        // without histogram, the child nodes are counted
+        root = createContent(false);
+        assertEquals(200, NodeCounter.getEstimatedMatchCount(root, "/content/*/jcr:content"));
+    }
+
+    private static NodeState createContent(boolean depthHistogram) throws CommitFailedException {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder def = builder.child(INDEX_DEFINITIONS_NAME).child("counter");
+        def.setProperty(TYPE_PROPERTY_NAME, NodeCounterEditorProvider.TYPE);
+        def.setProperty(NodeCounterEditorProvider.RESOLUTION, 8);
+        def.setProperty(NodeCounterEditorProvider.SEED, 1L);
+        def.setProperty(NodeCounterEditorProvider.DEPTH_HISTOGRAM, depthHistogram);
+        NodeState before = builder.getNodeState();
+        NodeBuilder content = builder.child("content");
+        for (int i = 0; i < 200; i++) {
+            NodeBuilder n = content.child("n" + i);
+            n.child("jcr:content");
+            for (int j = 0; j < 9; j++) {
+                n.child("c" + j);
+            }
+        }
+        return HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+    }
+
+    private static void assertApproximately(long expected, long actual) {
+        assertTrue("expected about " + expected + ", got " + actual,
+                actual > expected * 0.7 && actual < expected * 1.3);
+    }
+
+}
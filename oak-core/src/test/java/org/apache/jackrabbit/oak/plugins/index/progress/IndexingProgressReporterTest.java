@@ -21,8 +21,14 @@ package org.apache.jackrabbit.oak.plugins.index.progress;
 
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.NodeTraversalCallback;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
 
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.hamcrest.Matchers.hasItems;
 import static org.junit.Assert.*;
 
@@ -48,4 +54,30 @@ public class IndexingProgressReporterTest {
         assertTrue(reporter.somethingIndexed());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void correctEstimateWithTraversedSubtrees() throws Exception {
+        reporter.registerIndex("foo", true, -1);
+        reporter.setNodeCountEstimator((basePath, indexPaths) -> "/".equals(basePath) ? 100 : 50);
+        reporter.reindexingTraversalStart("/");
+        assertEquals(100, reporter.getEstimatedCount());
+
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder a = builder.child("a");
+        for (int i = 0; i < 9; i++) {
+            a.child("c" + i);
+        }
+        EditorDiff.process(reporter.wrapProgress(new TraversingEditor()), EMPTY_NODE, builder.getNodeState());
+
+        // the subtree /a has 10 nodes, instead of the estimated 50
+        assertEquals(60, reporter.getEstimatedCount());
+        reporter.reindexingTraversalEnd();
+    }
+
+    private static class TraversingEditor extends DefaultEditor {
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) {
+            return this;
+        }
+    }
+
+}
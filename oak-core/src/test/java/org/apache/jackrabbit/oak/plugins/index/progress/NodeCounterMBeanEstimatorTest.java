@@ -88,6 +88,12 @@ public class NodeCounterMBeanEstimatorTest {
 
         assertEquals(50, estimator.getEstimatedNodeCount("/content", of("/content/idx-f")));
         assertEquals(40, estimator.getEstimatedNodeCount("/content", of("/content/idx-e")));
+
+        // included paths are restricted to the subtree
+        assertEquals(40, estimator.getEstimatedNodeCount("/content", of("/idx-b")));
+        assertEquals(30, estimator.getEstimatedNodeCount("/libs", of("/idx-c")));
+        assertEquals(0, estimator.getEstimatedNodeCount("/content", of("/idx-c")));
+        assertEquals(0, estimator.getEstimatedNodeCount("/content/old", of("/idx-b")));
     }
 
 }
\ No newline at end of file
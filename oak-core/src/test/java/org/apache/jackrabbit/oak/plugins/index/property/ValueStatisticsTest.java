@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.property;
+
+import static org.apache.jackrabbit.JcrConstants.NT_BASE;
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.NodeStateNodeTypeInfoProvider;
+import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.ast.NodeTypeInfo;
+import org.apache.jackrabbit.oak.query.ast.NodeTypeInfoProvider;
+import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
+import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ValueStatisticsTest {
+
+    private static final EditorHook HOOK = new EditorHook(
+            new IndexUpdateProvider(new PropertyIndexEditorProvider()));
+
+    @Test
+    public void accuracy() {
+        ValueStatistics stats = new ValueStatistics();
+        Map<String, Long> changes = new HashMap<String, Long>();
+        // one very frequent value, a few frequent values, and many rare values
+        changes.put("active", 90000L);
+        for (int i = 0; i < 10; i++) {
+            changes.put("frequent" + i, 1000L);
+        }
+        for (int i = 0; i < 5000; i++) {
+            changes.put("rare" + i, 1L);
+        }
+        assertTrue(stats.apply(changes, 1));
+        assertEquals(105000, stats.getEntryCount());
+
+        long distinct = stats.getDistinctCount();
+        assertTrue("distinct: " + distinct, Math.abs(distinct - 5011) < 5011 * 0.1);
+
+        assertEquals("active", stats.getTopValues().get(0));
+        assertEquals(ValueStatistics.TOP_N, stats.getTopValues().size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(stats.getTopValues().subList(0, 11).contains("frequent" + i));
+        }
+        long active = stats.estimateCount("active");
+        assertTrue("active: " + active, active >= 90000 && active < 91000);
+        for (int i = 0; i < 10; i++) {
+            long frequent = stats.estimateCount("frequent" + i);
+            assertTrue("frequent: " + frequent, frequent >= 1000 && frequent < 2000);
+        }
+        // the count-min sketch never underestimates
+        long rare = stats.estimateCount("rare1");
+        assertTrue("rare: " + rare, rare >= 1);
+
+        // remove most of the "active" entries
+        changes.clear();
+        changes.put("active", -89990L);
+        assertTrue(stats.apply(changes, 1));
+        assertEquals(15010, stats.getEntryCount());
+        active = stats.estimateCount("active");
+        assertTrue("active: " + active, active >= 10 && active < 1000);
+        assertFalse(stats.getTopValues().get(0).equals("active"));
+        // adding existing values doesn't change the distinct count
+        changes.clear();
+        changes.put("rare1", 1L);
+        stats.apply(changes, 1);
+        assertEquals(distinct, stats.getDistinctCount());
+    }
+
+    @Test
+    public void estimateRareValues() {
+        ValueStatistics stats = new ValueStatistics();
+        Map<String, Long> changes = new HashMap<String, Long>();
+        for (int i = 0; i < ValueStatistics.TOP_N; i++) {
+            changes.put("top" + i, 100000L);
+        }
+        for (int i = 0; i < 10000; i++) {
+            changes.put("rare" + i, 1L);
+        }
+        stats.apply(changes, 1);
+        // for values that are not in the top list, the estimate
+        // is at most the estimate of the least frequent top value
+        for (int i = 0; i < 100; i++) {
+            long rare = stats.estimateCount("rare" + i);
+            assertTrue("rare: " + rare, rare >= 1 && rare <= 100000 + 10000);
+        }
+    }
+
+    @Test
+    public void distinctCountSampled() {
+        ValueStatistics stats = new ValueStatistics();
+        Map<String, Long> changes = new HashMap<String, Long>();
+        for (int i = 0; i < 50000; i++) {
+            changes.put("v" + i, 1L);
+        }
+        stats.apply(changes, 1);
+        long distinct = stats.getDistinctCount();
+
+        // all registers are set; without a change of the (sampled) counts,
+        // new values don't change the statistics
+        for (int i = 0; i < 1000; i++) {
+            changes.clear();
+            changes.put("new" + i, 1L);
+            assertFalse(stats.apply(changes, Integer.MAX_VALUE, false));
+        }
+        assertEquals(distinct, stats.getDistinctCount());
+
+        // unless all changes of the distinct count are applied
+        boolean changed = false;
+        for (int i = 0; i < 1000; i++) {
+            changes.clear();
+            changes.put("new" + i, 1L);
+            changed |= stats.apply(changes, Integer.MAX_VALUE, true);
+        }
+        assertTrue(changed);
+    }
+
+    @Test
+    public void updateInBatches() {
+        NodeBuilder definition = INITIAL_CONTENT.builder();
+        definition.setProperty(ValueStatistics.VALUE_STATISTICS_RESOLUTION, 1);
+        ValueStatistics.Update update = new ValueStatistics.Update(definition);
+        update.setReindex(true);
+        int count = ValueStatistics.MAX_PENDING_CHANGES * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            update.add("v" + i, 1);
+        }
+        update.add("frequent", 1000);
+        update.write();
+
+        ValueStatistics stats = ValueStatistics.read(definition.getNodeState());
+        assertNotNull(stats);
+        assertEquals(count + 1000, stats.getEntryCount());
+        long distinct = stats.getDistinctCount();
+        assertTrue("distinct: " + distinct, Math.abs(distinct - count) < count * 0.1);
+        assertEquals("frequent", stats.getTopValues().get(0));
+    }
+
+    @Test
+    public void exactCountsWhenReindexing() {
+        // default resolution
+        NodeBuilder definition = INITIAL_CONTENT.builder();
+        ValueStatistics.Update update = new ValueStatistics.Update(definition);
+        update.setReindex(true);
+        for (int i = 0; i < 10; i++) {
+            update.add("v" + i, 1);
+        }
+        update.add("frequent", 7);
+        update.write();
+
+        ValueStatistics stats = ValueStatistics.read(definition.getNodeState());
+        assertNotNull(stats);
+        assertEquals(17, stats.getEntryCount());
+        assertEquals(7, stats.estimateCount("frequent"));
+        assertEquals("frequent", stats.getTopValues().get(0));
+    }
+
+    @Test
+    public void skewedCostEstimation() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        NodeBuilder index = createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "status",
+                true, false, ImmutableSet.of("status"), null);
+        index.setProperty(ValueStatistics.VALUE_STATISTICS, true);
+        index.setProperty(ValueStatistics.VALUE_STATISTICS_RESOLUTION, 1);
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 1000; i++) {
+            builder.child("n" + i).setProperty("status", i % 100 == 0 ? "deleted" : "active");
+        }
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        ValueStatistics stats = ValueStatistics.read(
+                indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("status"));
+        assertNotNull(stats);
+        assertEquals(1000, stats.getEntryCount());
+        assertEquals(2, stats.getDistinctCount());
+
+        FilterImpl f = createFilter(indexed, NT_BASE);
+        PropertyIndexLookup lookup = new PropertyIndexLookup(indexed);
+        double deleted = lookup.getCost(f, "status", PropertyValues.newString("deleted"));
+        double active = lookup.getCost(f, "status", PropertyValues.newString("active"));
+        assertEquals(PropertyIndexPlan.COST_OVERHEAD + 10, deleted, 0.5);
+        assertEquals(PropertyIndexPlan.COST_OVERHEAD + 990, active, 0.5);
+        double notNull = lookup.getCost(f, "status", null);
+        assertEquals(PropertyIndexPlan.COST_OVERHEAD + 1000, notNull, 0.5);
+
+        // incremental update
+        before = indexed;
+        builder = indexed.builder();
+        for (int i = 0; i < 500; i++) {
+            builder.child("n" + i).setProperty("status", "deleted");
+        }
+        indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        lookup = new PropertyIndexLookup(indexed);
+        deleted = lookup.getCost(f, "status", PropertyValues.newString("deleted"));
+        assertEquals(PropertyIndexPlan.COST_OVERHEAD + 505, deleted, 0.5);
+    }
+
+    @Test
+    public void notCreatedWithoutReindex() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "status",
+                true, false, ImmutableSet.of("status"), null);
+        NodeState before = builder.getNodeState();
+        builder.child("n").setProperty("status", "active");
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        // enable the statistics without reindexing
+        builder = indexed.builder();
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME).child("status");
+        index.setProperty(ValueStatistics.VALUE_STATISTICS, true);
+        index.setProperty(ValueStatistics.VALUE_STATISTICS_RESOLUTION, 1);
+        before = builder.getNodeState();
+        builder.child("n2").setProperty("status", "active");
+        indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        assertNull(ValueStatistics.read(
+                indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("status")));
+    }
+
+    private static FilterImpl createFilter(NodeState root, String nodeTypeName) {
+        NodeTypeInfoProvider nodeTypes = new NodeStateNodeTypeInfoProvider(root);
+        NodeTypeInfo type = nodeTypes.getNodeTypeInfo(nodeTypeName);
+        SelectorImpl selector = new SelectorImpl(type, nodeTypeName);
+        return new FilterImpl(selector, "SELECT * FROM [" + nodeTypeName + "]", new QueryEngineSettings());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QueryStatsHistogramTest {
+
+    @Test
+    public void buckets() {
+        assertEquals(0, QueryStatsHistogram.getBucket(0));
+        assertEquals(0, QueryStatsHistogram.getBucket(-1));
+        assertEquals(1, QueryStatsHistogram.getBucket(1));
+        assertEquals(2, QueryStatsHistogram.getBucket(2));
+        assertEquals(2, QueryStatsHistogram.getBucket(3));
+        assertEquals(3, QueryStatsHistogram.getBucket(4));
+        assertEquals(63, QueryStatsHistogram.getBucket(Long.MAX_VALUE));
+        assertEquals(3, QueryStatsHistogram.getUpperBound(2));
+    }
+
+    @Test
+    public void quantiles() {
+        QueryStatsHistogram h = new QueryStatsHistogram();
+        assertEquals(0, h.getValueAtQuantile(0.5));
+        for (int i = 1; i <= 1000; i++) {
+            h.update(i);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMax());
+        assertEquals(500, h.getMean());
+        // within a factor of 2 of the real value
+        long p50 = h.getValueAtQuantile(0.5);
+        assertTrue("p50 " + p50, p50 >= 500 && p50 < 1000);
+        long p99 = h.getValueAtQuantile(0.99);
+        assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1000);
+    }
+
+    @Test
+    public void merge() {
+        QueryStatsHistogram a = new QueryStatsHistogram();
+        QueryStatsHistogram b = new QueryStatsHistogram();
+        a.update(10);
+        b.update(100000);
+        b.update(20);
+        a.add(b);
+        assertEquals(3, a.getCount());
+        assertEquals(100030, a.getSum());
+        assertEquals(100000, a.getMax());
+        assertEquals("{\"count\":3,\"mean\":33343,\"p50\":31,\"p90\":100000,\"p99\":100000,\"max\":100000}",
+                a.toString());
+    }
+
+}
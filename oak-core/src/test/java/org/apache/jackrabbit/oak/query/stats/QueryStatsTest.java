@@ -17,9 +17,11 @@
 package org.apache.jackrabbit.oak.query.stats;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 import org.junit.Test;
 
 public class QueryStatsTest {
@@ -56,4 +58,62 @@ public class QueryStatsTest {
         }
         assertTrue(json.indexOf("old") < 0);
     }
+
+    @Test
+    public void topOffenders() {
+        QueryStatsMBeanImpl bean = new QueryStatsMBeanImpl(new QueryEngineSettings());
+        for (int i = 0; i < 10; i++) {
+            QueryExecutionStats s = bean.getQueryExecution(
+                    "select * from [nt:base] where [a] = 'x" + i + "'", "JCR-SQL2");
+            s.execute(1000);
+            s.scan(100, 100);
+            s.read(2, 2, 5000);
+            s.done("property:a");
+        }
+        QueryExecutionStats s = bean.getQueryExecution("select * from [nt:base]", "JCR-SQL2");
+        s.execute(10);
+        s.done("traverse");
+
+        String json = bean.getTopOffendersAsJson(1);
+        // literals are removed, so the 10 queries are grouped
+        assertTrue(json, json.contains("\"statement\":\"select * from [nt:base] where [a] = 'x'\""));
+        assertTrue(json, json.contains("\"index\":\"property:a\""));
+        assertTrue(json, json.contains("\"executeCount\":10"));
+        assertTrue(json, json.contains("\"scannedPerRead\":50.00"));
+        assertFalse(json, json.contains("traverse"));
+        assertTrue(bean.getTopOffendersAsJson(10).contains("traverse"));
+    }
+
+    @Test
+    public void unfinishedExecutions() {
+        QueryStatsMBeanImpl bean = new QueryStatsMBeanImpl(new QueryEngineSettings());
+        String statement = "select * from [nt:base] where [a] = 'x'";
+
+        // the iteration ended early, for example because of a limit
+        QueryExecutionStats s = bean.getQueryExecution(statement, "JCR-SQL2");
+        s.execute(1000);
+        s.start("property:a");
+        s.read(1, 1, 5000);
+        s.done();
+        assertTrue(bean.getTopOffendersAsJson(1).contains("\"executeCount\":1"));
+        // nothing pending any longer
+        s.done();
+        assertTrue(bean.getTopOffendersAsJson(1).contains("\"executeCount\":1"));
+
+        // concurrent executions are recorded independently, each once
+        QueryExecutionStats s1 = bean.getQueryExecution(statement, "JCR-SQL2");
+        s1.execute(1000);
+        s1.start("property:a");
+        s1.read(1, 1, 5000);
+        QueryExecutionStats s2 = bean.getQueryExecution(statement, "JCR-SQL2");
+        s2.execute(1000);
+        s2.start("property:a");
+        assertTrue(bean.getTopOffendersAsJson(1).contains("\"executeCount\":1"));
+        s2.read(2, 2, 5000);
+        s2.done("property:a");
+        s2.done();
+        assertTrue(bean.getTopOffendersAsJson(1).contains("\"executeCount\":2"));
+        s1.done();
+        assertTrue(bean.getTopOffendersAsJson(1).contains("\"executeCount\":3"));
+    }
 }
@@ -80,4 +80,10 @@ public interface CopyOnReadStatsMBean {
     String getGarbageCollectedSize();
 
     String getSkippedFromUploadSize();
+
+    int getWarmupCount();
+
+    long getWarmupTime();
+
+    long getWarmupPageFaultCount();
 }
@@ -161,6 +161,10 @@ public final class FieldFactory {
         return new TextField(FieldNames.ANCESTORS, path, NO);
     }
 
+    public static Field newReadersField(String principalName){
+        return new StringField(FieldNames.READERS, principalName, NO);
+    }
+
     public static Field newDepthField(String path){
         return new IntField(FieldNames.PATH_DEPTH, PathUtils.getDepth(path), NO);
     }
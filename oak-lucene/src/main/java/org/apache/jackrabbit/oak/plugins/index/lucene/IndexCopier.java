@@ -99,6 +99,9 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
     private final AtomicLong skippedFromUploadSize = new AtomicLong();
     private final AtomicLong downloadTime = new AtomicLong();
     private final AtomicLong uploadTime = new AtomicLong();
+    private final AtomicInteger warmupCount = new AtomicInteger();
+    private final AtomicLong warmupTime = new AtomicLong();
+    private final AtomicLong warmupPageFaultCount = new AtomicLong();
 
     private final Monitor copyCompletionMonitor = new Monitor();
 
@@ -488,6 +491,12 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
         skippedFromUploadSize.addAndGet(skippedFilesSize);
     }
 
+    public void warmupDone(long timeInMillis, long pageFaultCount) {
+        warmupCount.incrementAndGet();
+        warmupTime.addAndGet(timeInMillis);
+        warmupPageFaultCount.addAndGet(pageFaultCount);
+    }
+
     public void scheduledForCopy() {
         updateMaxScheduled(scheduledForCopyCount.incrementAndGet());
     }
@@ -678,6 +687,21 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
         return humanReadableByteCount(garbageCollectedSize.get());
     }
 
+    @Override
+    public int getWarmupCount() {
+        return warmupCount.get();
+    }
+
+    @Override
+    public long getWarmupTime() {
+        return warmupTime.get();
+    }
+
+    @Override
+    public long getWarmupPageFaultCount() {
+        return warmupPageFaultCount.get();
+    }
+
     private static class IndexMappingData {
         static final String[] FIELD_NAMES = new String[]{
                 "jcrPath",
@@ -17,10 +17,12 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -32,6 +34,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.NRTIndexFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.DefaultIndexReaderFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReaderFactory;
 import org.apache.jackrabbit.oak.plugins.index.search.BadIndexTracker;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.ReadAccessTokenUpdates;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
 import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
@@ -42,6 +45,7 @@ import org.apache.jackrabbit.oak.spi.mount.Mounts;
 import org.apache.jackrabbit.oak.spi.state.EqualsDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,11 +57,13 @@ import static com.google.common.base.Predicates.notNull;
 import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Maps.newHashMap;
 import static java.util.Collections.emptyMap;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.isLuceneIndexNode;
 import static org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition.INDEX_DEFINITION_NODE;
 import static org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition.STATUS_NODE;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionConstants.PERMISSIONS_STORE_PATH;
 
 /**
  * Keeps track of all Lucene indexes in a repository (all readers, writers, and
@@ -78,10 +84,27 @@ public class IndexTracker {
 
     private AsyncIndexInfoService asyncIndexInfoService;
 
+    @Nullable
+    private NodeStore nodeStore;
+
     private volatile Map<String, LuceneIndexNodeManager> indices = emptyMap();
 
     private volatile boolean refresh;
 
+    private LuceneIndexWarmer warmer = new LuceneIndexWarmer(null);
+
+    /**
+     * New versions of indexes that are being warmed up. Until the warmup is
+     * done, queries use the previous version.
+     */
+    private final Map<String, LuceneIndexNodeManager> warming = newHashMap();
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
     public IndexTracker() {
         this((IndexCopier)null);
     }
@@ -106,6 +129,8 @@ public class IndexTracker {
     public synchronized void close() {
         Map<String, LuceneIndexNodeManager> indices = this.indices;
         this.indices = emptyMap();
+        // the versions being warmed up are closed once the warmup is done
+        warming.clear();
 
         for (Map.Entry<String, LuceneIndexNodeManager> entry : indices.entrySet()) {
             try {
@@ -127,6 +152,21 @@ public class IndexTracker {
         }
     }
 
+    public void setIndexWarmer(LuceneIndexWarmer warmer) {
+        this.warmer = warmer;
+    }
+
+    /**
+     * Set the node store, so that the read access tokens of indexes can be
+     * checked against the checkpoint the index is up to date with. Without a
+     * node store, queries don't use read access tokens.
+     *
+     * @param nodeStore the node store
+     */
+    public void setNodeStore(@Nullable NodeStore nodeStore) {
+        this.nodeStore = nodeStore;
+    }
+
     public void setAsyncIndexInfoService(AsyncIndexInfoService asyncIndexInfoService) {
         this.asyncIndexInfoService = asyncIndexInfoService;
     }
@@ -142,6 +182,7 @@ public class IndexTracker {
             return;
         }
 
+        NodeState previousRoot = this.root;
         Map<String, LuceneIndexNodeManager> original = indices;
         final Map<String, LuceneIndexNodeManager> updates = newHashMap();
 
@@ -155,9 +196,13 @@ public class IndexTracker {
                 @Override
                 public void leave(NodeState before, NodeState after) {
                     try {
-                        if (isStatusChanged(before, after) || isIndexDefinitionChanged(before, after)) {
+                        if (isStatusChanged(before, after) || isIndexDefinitionChanged(before, after)
+                                || isReadAccessTokensChanged(before, after)) {
                             long start = PERF_LOGGER.start();
                             LuceneIndexNodeManager index = LuceneIndexNodeManager.open(path, root, after, readerFactory, nrtFactory);
+                            if (index != null) {
+                                updateIndexedPermissionStore(index, path, root, after);
+                            }
                             PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopening the LuceneIndexNode", path);
                             updates.put(path, index); // index can be null
                         }
@@ -171,10 +216,38 @@ public class IndexTracker {
         EditorDiff.process(CompositeEditor.compose(editors), this.root, root);
         this.root = root;
 
+        // indexes that did not change are up to date with the new checkpoint
+        for (Map.Entry<String, LuceneIndexNodeManager> e : original.entrySet()) {
+            String path = e.getKey();
+            LuceneIndexNodeManager index = e.getValue();
+            if (!updates.containsKey(path) && index.getDefinition().indexAccessTokens()) {
+                NodeState definition = NodeStateUtils.getNode(root, path);
+                if (!Objects.equal(getCheckpoint(previousRoot, path, definition), getCheckpoint(root, path, definition))) {
+                    updateIndexedPermissionStore(index, path, root, definition);
+                }
+            }
+        }
+
         if (!updates.isEmpty()) {
+            // new versions of existing indexes are warmed up before they are
+            // used; new indexes are used right away
+            Map<String, LuceneIndexNodeManager> toWarmup = newHashMap();
+            Map<String, LuceneIndexNodeManager> toPublish = newHashMap();
+            for (Map.Entry<String, LuceneIndexNodeManager> e : updates.entrySet()) {
+                String path = e.getKey();
+                LuceneIndexNodeManager index = e.getValue();
+                // a version being warmed up is superseded by this one
+                warming.remove(path);
+                if (index != null && original.containsKey(path) && warmer.isAsync(index)) {
+                    toWarmup.put(path, index);
+                } else {
+                    toPublish.put(path, index);
+                }
+            }
+
             indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
-                    .putAll(Maps.filterKeys(original, not(in(updates.keySet()))))
-                    .putAll(Maps.filterValues(updates, notNull()))
+                    .putAll(Maps.filterKeys(original, not(in(toPublish.keySet()))))
+                    .putAll(Maps.filterValues(toPublish, notNull()))
                     .build();
 
             badIndexTracker.markGoodIndexes(updates.keySet());
@@ -183,16 +256,57 @@ public class IndexTracker {
             //write lock which might be held by current running searches
             //Given that Tracker is now invoked from a BackgroundObserver
             //not a high concern
-            for (String path : updates.keySet()) {
-                LuceneIndexNodeManager index = original.get(path);
-                try {
-                    if (index != null) {
-                        index.close();
-                    }
-                } catch (IOException e) {
-                    log.error("Failed to close Lucene index at " + path, e);
+            for (String path : toPublish.keySet()) {
+                closeQuietly(path, original.get(path));
+            }
+            for (Map.Entry<String, LuceneIndexNodeManager> e : toPublish.entrySet()) {
+                if (e.getValue() != null) {
+                    warmer.warmup(e.getValue(), NOOP);
                 }
             }
+            for (Map.Entry<String, LuceneIndexNodeManager> e : toWarmup.entrySet()) {
+                final String path = e.getKey();
+                final LuceneIndexNodeManager index = e.getValue();
+                warming.put(path, index);
+                warmer.warmup(index, new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(path, index);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Use the given version of an index, once it is warmed up, unless it was
+     * superseded by a newer version (or the tracker was closed) in the
+     * meantime. The previous version is closed.
+     *
+     * @param path the index path
+     * @param index the warmed up version of the index
+     */
+    private synchronized void publish(String path, LuceneIndexNodeManager index) {
+        if (warming.get(path) != index) {
+            closeQuietly(path, index);
+            return;
+        }
+        warming.remove(path);
+        LuceneIndexNodeManager previous = indices.get(path);
+        indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
+                .putAll(Maps.filterKeys(indices, not(in(Collections.singleton(path)))))
+                .put(path, index)
+                .build();
+        closeQuietly(path, previous);
+    }
+
+    private static void closeQuietly(String path, @Nullable LuceneIndexNodeManager index) {
+        try {
+            if (index != null) {
+                index.close();
+            }
+        } catch (IOException e) {
+            log.error("Failed to close Lucene index at " + path, e);
         }
     }
 
@@ -247,6 +361,9 @@ public class IndexTracker {
             if (isLuceneIndexNode(node)) {
                 index = LuceneIndexNodeManager.open(path, root, node, readerFactory, nrtFactory);
                 if (index != null) {
+                    updateIndexedPermissionStore(index, path, root, node);
+                    // used right away, as there is no previous version
+                    warmer.warmup(index, NOOP);
                     LuceneIndexNode indexNode = index.acquire();
                     checkNotNull(indexNode);
                     indices = ImmutableMap.<String, LuceneIndexNodeManager>builder()
@@ -306,6 +423,39 @@ public class IndexTracker {
         return !EqualsDiff.equals(before.getChildNode(STATUS_NODE), after.getChildNode(STATUS_NODE));
     }
 
+    private static boolean isReadAccessTokensChanged(NodeState before, NodeState after) {
+        return !EqualsDiff.equals(before.getChildNode(ReadAccessTokenUpdates.NODE_NAME),
+                after.getChildNode(ReadAccessTokenUpdates.NODE_NAME));
+    }
+
+    /**
+     * Set the permission store of the checkpoint the async index is up to date
+     * with, and the subtrees with stale tokens, if read access tokens are
+     * indexed. If the checkpoint is not known, queries don't use the read
+     * access tokens of the index.
+     */
+    private void updateIndexedPermissionStore(LuceneIndexNodeManager index, String path,
+                                              NodeState root, NodeState definition) {
+        if (!index.getDefinition().indexAccessTokens()) {
+            return;
+        }
+        NodeState permissionStore = null;
+        String checkpoint = getCheckpoint(root, path, definition);
+        if (nodeStore != null && checkpoint != null) {
+            NodeState indexed = nodeStore.retrieve(checkpoint);
+            if (indexed != null) {
+                permissionStore = NodeStateUtils.getNode(indexed, PERMISSIONS_STORE_PATH);
+            }
+        }
+        index.setIndexedReadAccess(permissionStore, ReadAccessTokenUpdates.getStalePaths(definition));
+    }
+
+    @Nullable
+    private static String getCheckpoint(NodeState root, String path, NodeState definition) {
+        String lane = getAsyncLaneName(definition, path);
+        return lane == null ? null : root.getChildNode(LuceneIndexNodeManager.ASYNC).getString(lane);
+    }
+
     private static boolean isIndexDefinitionChanged(NodeState before, NodeState after) {
         return !EqualsDiff.equals(before.getChildNode(INDEX_DEFINITION_NODE), after.getChildNode(INDEX_DEFINITION_NODE));
     }
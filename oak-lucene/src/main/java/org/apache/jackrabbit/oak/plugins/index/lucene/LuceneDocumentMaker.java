@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
@@ -36,6 +37,7 @@ import org.apache.jackrabbit.oak.plugins.index.search.IndexFormatVersion;
 import org.apache.jackrabbit.oak.plugins.index.search.PropertyDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.binary.FulltextBinaryTextExtractor;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextDocumentMaker;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.ReadAccessTokens;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.lucene.document.*;
 import org.apache.lucene.facet.FacetsConfig;
@@ -51,6 +53,7 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newDep
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newFulltextField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPropertyField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newReadersField;
 
 public class LuceneDocumentMaker extends FulltextDocumentMaker<Document> {
     private static final Logger log = LoggerFactory.getLogger(LuceneDocumentMaker.class);
@@ -106,6 +109,14 @@ public class LuceneDocumentMaker extends FulltextDocumentMaker<Document> {
         doc.add(newDepthField(path));
     }
 
+    @Override
+    protected void indexReaders(Document doc, Set<String> readers) {
+        doc.add(newReadersField(ReadAccessTokens.INDEXED));
+        for (String principalName : readers) {
+            doc.add(newReadersField(principalName));
+        }
+    }
+
     @Override
     protected void indexTypedProperty(Document doc, PropertyState property, String pname, PropertyDefinition pd, int i) {
         int tag = property.getType().tag();
@@ -172,6 +172,29 @@ public interface LuceneIndexConstants extends FulltextIndexConstants {
      */
     String SAVE_DIR_LISTING = "saveDirectoryListing";
 
+    /**
+     * Optional multi value property listing the data structures of the index
+     * that are read when a new version of the index is opened, before it is
+     * used by queries: "terms", "norms" and "docValues". By default, there
+     * is no warmup.
+     */
+    String WARMUP = "warmup";
+
+    /**
+     * Optional long property: the maximum memory, in bytes, used to cache the
+     * results of the searches done by queries. The cache is cleared when the
+     * index is updated. By default (0), results are not cached.
+     */
+    String RESULT_CACHE_SIZE = "resultCacheSize";
+
+    /**
+     * Optional integer property: the size in bytes of the blobs that large
+     * index files (stored fields, postings, payloads and term vectors) are
+     * split into, if larger than {@link FulltextIndexConstants#BLOB_SIZE}.
+     * By default (0), all files use the same blob size.
+     */
+    String LARGE_BLOB_SIZE = "largeBlobSize";
+
     /**
      * Optional  Property to store the path of index in the repository. Path at which index
      * definition is defined is not known to IndexEditor. To make use of CopyOnWrite
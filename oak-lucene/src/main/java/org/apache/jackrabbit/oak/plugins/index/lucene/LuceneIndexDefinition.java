@@ -21,8 +21,12 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.CompressingCodec;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.TokenizerChain;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.CommitMitigatingTieredMergePolicy;
@@ -64,6 +68,12 @@ public class LuceneIndexDefinition extends IndexDefinition {
 
     private final int maxFieldLength;
 
+    private final Set<String> warmup;
+
+    private final long resultCacheSize;
+
+    private final int largeBlobSize;
+
     public LuceneIndexDefinition(NodeState root, NodeState defn, String indexPath) {
         this(root, getIndexDefinitionState(defn), determineIndexFormatVersion(defn), determineUniqueId(defn), indexPath);
     }
@@ -76,6 +86,11 @@ public class LuceneIndexDefinition extends IndexDefinition {
         this.analyzers = collectAnalyzers(defn);
         this.analyzer = createAnalyzer();
         this.codec = createCodec();
+        PropertyState warmupProperty = defn.getProperty(LuceneIndexConstants.WARMUP);
+        this.warmup = warmupProperty == null ? Collections.<String>emptySet()
+                : ImmutableSet.copyOf(warmupProperty.getValue(Type.STRINGS));
+        this.resultCacheSize = getOptionalValue(defn, LuceneIndexConstants.RESULT_CACHE_SIZE, 0L);
+        this.largeBlobSize = getOptionalValue(defn, LuceneIndexConstants.LARGE_BLOB_SIZE, 0);
     }
 
     public static Builder newBuilder(NodeState root, NodeState defn, String indexPath){
@@ -134,6 +149,36 @@ public class LuceneIndexDefinition extends IndexDefinition {
         return analyzer;
     }
 
+    /**
+     * The data structures to read when a new version of the index is opened.
+     *
+     * @return the set of data structures (see {@link LuceneIndexConstants#WARMUP}),
+     *         empty if there is no warmup
+     */
+    public Set<String> getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * The maximum memory used to cache query results.
+     *
+     * @return the size in bytes (see {@link LuceneIndexConstants#RESULT_CACHE_SIZE}),
+     *         0 if results are not cached
+     */
+    public long getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * The size of the blobs that large index files are split into.
+     *
+     * @return the size in bytes (see {@link LuceneIndexConstants#LARGE_BLOB_SIZE}),
+     *         0 if large files use the default blob size
+     */
+    public int getLargeBlobSize() {
+        return largeBlobSize;
+    }
+
     //~---------------------------------------------------< Analyzer >
 
     private Analyzer createAnalyzer() {
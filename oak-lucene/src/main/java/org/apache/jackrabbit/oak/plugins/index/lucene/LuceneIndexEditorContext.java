@@ -27,6 +27,7 @@ import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextIndexEditorContext;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextIndexWriterFactory;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.ReadAccessTokens;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.stats.Clock;
@@ -59,8 +60,13 @@ public class LuceneIndexEditorContext extends FulltextIndexEditorContext impleme
     public LuceneDocumentMaker newDocumentMaker(IndexDefinition.IndexingRule rule, String path){
         //Faceting is only enabled for async mode
         FacetsConfigProvider facetsConfigProvider = isAsyncIndexing() ? this : null;
-        return new LuceneDocumentMaker(getTextExtractor(), facetsConfigProvider, augmentorFactory,
-            definition, rule, path);
+        LuceneDocumentMaker documentMaker = new LuceneDocumentMaker(getTextExtractor(), facetsConfigProvider,
+            augmentorFactory, definition, rule, path);
+        ReadAccessTokens readAccessTokens = getReadAccessTokens();
+        if (readAccessTokens != null) {
+            documentMaker.setReaders(readAccessTokens.getReaders(path));
+        }
+        return documentMaker;
     }
 
     @Override
@@ -33,6 +33,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.LuceneDocumentHolde
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.LuceneIndexPropertyQuery;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyQuery;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.BackgroundMerger;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.DefaultIndexWriterFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterConfig;
 import org.apache.jackrabbit.oak.plugins.index.search.CompositePropertyUpdateCallback;
@@ -58,6 +59,7 @@ import java.io.File;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -83,6 +85,8 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
     private IndexingQueue indexingQueue;
     private boolean nrtIndexingEnabled;
     private LuceneIndexWriterConfig writerConfig = new LuceneIndexWriterConfig();
+    private Executor writerExecutor;
+    private BackgroundMerger backgroundMerger;
 
     private final LuceneIndexMBean mbean;
     private final StatisticsProvider statisticsProvider;
@@ -228,9 +232,18 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
                 COWDirectoryCleanupCallback cowDirectoryCleanupCallback = new COWDirectoryCleanupCallback();
                 indexingContext.registerIndexCommitCallback(cowDirectoryCleanupCallback);
 
-                writerFactory = new DefaultIndexWriterFactory(mountInfoProvider,
+                // documents of async indexes can be written concurrently
+                Executor executor = indexingContext.isAsync() ? writerExecutor : null;
+                DefaultIndexWriterFactory defaultWriterFactory = new DefaultIndexWriterFactory(mountInfoProvider,
                         newDirectoryFactory(blobDeletionCallback, cowDirectoryCleanupCallback),
-                        writerConfig);
+                        writerConfig, executor);
+                if (executor != null) {
+                    indexingContext.registerIndexCommitCallback(defaultWriterFactory);
+                }
+                if (indexingContext.isAsync()) {
+                    defaultWriterFactory.setBackgroundMerger(backgroundMerger);
+                }
+                writerFactory = defaultWriterFactory;
             }
 
             LuceneIndexEditorContext context = new LuceneIndexEditorContext(root, definition, indexDefinition, callback,
@@ -264,6 +277,10 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         return indexingQueue;
     }
 
+    Executor getWriterExecutor() {
+        return writerExecutor;
+    }
+
     public ExtractedTextCache getExtractedTextCache() {
         return extractedTextCache;
     }
@@ -299,6 +316,29 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         this.writerConfig = writerConfig;
     }
 
+    /**
+     * Set the executor used to write the documents of async indexes
+     * concurrently, so that the documents of multiple indexes are analyzed
+     * and flushed in parallel.
+     *
+     * @param writerExecutor the executor, or null to write the documents in
+     *            the indexing thread
+     */
+    public void setWriterExecutor(@Nullable Executor writerExecutor) {
+        this.writerExecutor = writerExecutor;
+    }
+
+    /**
+     * Set the background merger, which runs large merges of async indexes
+     * outside of the indexing cycle.
+     *
+     * @param backgroundMerger the background merger, or null to run all
+     *            merges in the indexing thread
+     */
+    public void setBackgroundMerger(@Nullable BackgroundMerger backgroundMerger) {
+        this.backgroundMerger = backgroundMerger;
+    }
+
     GarbageCollectableBlobStore getBlobStore() {
         return blobStore;
     }
@@ -38,6 +38,17 @@ public interface LuceneIndexMBean {
 
     boolean isFailing();
 
+    @Description("Number of documents which were not added to the local (hybrid) indexes, " +
+            "because the queue was full")
+    long getHybridQueueDroppedCount();
+
+    @Description("Number of documents which were added to the queue of the local (hybrid) indexes " +
+            "only after waiting, because the queue was full")
+    long getHybridQueueDelayedCount();
+
+    @Description("Number of documents in the queue of the local (hybrid) indexes")
+    int getHybridQueueSize();
+
     @Description("Determines the set of index paths upto given maxLevel. This can be used to determine the value for" +
             "[includedPaths]. For this to work you should have [evaluatePathRestrictions] set to true in your index " +
             "definition")
@@ -46,6 +46,7 @@ import org.apache.jackrabbit.oak.json.JsopDiff;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexPathService;
 import org.apache.jackrabbit.oak.plugins.index.search.BadIndexTracker.BadIndexInfo;
+import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.DocumentQueue;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.HybridPropertyIndexInfo;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexCleaner;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.PathStoredFieldVisitor;
@@ -101,6 +102,7 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
     private final IndexPathService indexPathService;
     private final File workDir;
     private final PropertyIndexCleaner propertyIndexCleaner;
+    private volatile DocumentQueue documentQueue;
 
     public LuceneIndexMBeanImpl(IndexTracker indexTracker, NodeStore nodeStore, IndexPathService indexPathService, File workDir, @Nullable PropertyIndexCleaner cleaner) {
         super(LuceneIndexMBean.class);
@@ -201,6 +203,28 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         return indexTracker.getBadIndexTracker().hasBadIndexes();
     }
 
+    public void setDocumentQueue(@Nullable DocumentQueue documentQueue) {
+        this.documentQueue = documentQueue;
+    }
+
+    @Override
+    public long getHybridQueueDroppedCount() {
+        DocumentQueue queue = documentQueue;
+        return queue == null ? 0 : queue.getDroppedCount();
+    }
+
+    @Override
+    public long getHybridQueueDelayedCount() {
+        DocumentQueue queue = documentQueue;
+        return queue == null ? 0 : queue.getDelayedCount();
+    }
+
+    @Override
+    public int getHybridQueueSize() {
+        DocumentQueue queue = documentQueue;
+        return queue == null ? 0 : queue.getQueueSize();
+    }
+
     @Override
     public String[] getIndexedPaths(String indexPath, int maxLevel, int maxPathCount) throws IOException {
         LuceneIndexNode indexNode = null;
@@ -661,7 +685,10 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
                 "numDeletedDocs",
                 "nrtIndexSize",
                 "nrtIndexSizeStr",
-                "nrtNumDocs"
+                "nrtNumDocs",
+                "resultCacheHitCount",
+                "resultCacheMissCount",
+                "resultCacheMemory"
         };
 
         static final String[] FIELD_DESCRIPTIONS = new String[]{
@@ -675,7 +702,10 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
                 "Number of deleted documents",
                 "NRT Index Size in bytes",
                 "NRT Index Size in human readable format",
-                "Number of documents in NRT index"
+                "Number of documents in NRT index",
+                "Number of query result cache hits",
+                "Number of query result cache misses",
+                "Estimated memory used by the query result cache in bytes"
         };
 
         @SuppressWarnings("rawtypes")
@@ -690,7 +720,10 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
                 SimpleType.INTEGER,
                 SimpleType.LONG,
                 SimpleType.STRING,
-                SimpleType.INTEGER
+                SimpleType.INTEGER,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG
         };
 
         static final CompositeType TYPE = createCompositeType();
@@ -719,6 +752,9 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         private final long nrtIndexSize;
         private final String nrtIndexSizeStr;
         private final int numDocsNRT;
+        private final long resultCacheHitCount;
+        private final long resultCacheMissCount;
+        private final long resultCacheMemory;
 
         public IndexStats(String path, LuceneIndexNode indexNode) throws IOException {
             this.path = path;
@@ -732,6 +768,10 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
             nrtIndexSize = getIndexSize(indexNode.getNRTReaders());
             numDocsNRT = getNumDocs(indexNode.getNRTReaders());
             nrtIndexSizeStr = humanReadableByteCount(nrtIndexSize);
+            LuceneResultCache resultCache = indexNode.getResultCache();
+            resultCacheHitCount = resultCache == null ? 0 : resultCache.getHitCount();
+            resultCacheMissCount = resultCache == null ? 0 : resultCache.getMissCount();
+            resultCacheMemory = resultCache == null ? 0 : resultCache.getMemory();
         }
 
         CompositeDataSupport toCompositeData() {
@@ -746,7 +786,10 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
                     numDeletedDocs,
                     nrtIndexSize,
                     nrtIndexSizeStr,
-                    numDocsNRT
+                    numDocsNRT,
+                    resultCacheHitCount,
+                    resultCacheMissCount,
+                    resultCacheMemory
             };
             try {
                 return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
@@ -21,10 +21,12 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReader;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexNode;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.store.Directory;
@@ -56,4 +58,19 @@ public interface LuceneIndexNode extends IndexNode {
     LuceneIndexWriter getLocalWriter() throws IOException;
 
     void refreshReadersOnWriteIfRequired();
+
+    @Nullable
+    LuceneResultCache getResultCache();
+
+    /**
+     * Get the roots of the subtrees whose read access tokens may be stale, for
+     * a query that reads the given revision. The tokens can only be used if
+     * the access control entries of the revision are the ones that were
+     * indexed.
+     *
+     * @param root the root of the revision the query reads
+     * @return the paths, or null if the read access tokens can not be used
+     */
+    @Nullable
+    Set<String> getStaleReadAccessPaths(NodeState root);
 }
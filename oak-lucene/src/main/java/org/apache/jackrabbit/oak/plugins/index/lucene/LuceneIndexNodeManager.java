@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -34,7 +35,9 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReader;
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.LuceneIndexReaderFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.index.search.update.ReaderRefreshPolicy;
+import org.apache.jackrabbit.oak.spi.state.EqualsDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
@@ -48,6 +51,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
+import static org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionConstants.PERMISSIONS_STORE_PATH;
 
 /**
  * Keeps track of the open read sessions for an index.
@@ -110,8 +114,14 @@ public class LuceneIndexNodeManager {
 
     private final ReaderRefreshPolicy refreshPolicy;
 
+    @Nullable
+    private final LuceneResultCache resultCache;
+
     private final Semaphore refreshLock = new Semaphore(1);
 
+    @Nullable
+    private volatile IndexedReadAccess indexedReadAccess;
+
     private final Runnable refreshCallback = new Runnable() {
         @Override
         public void run() {
@@ -138,6 +148,11 @@ public class LuceneIndexNodeManager {
         this.nrtIndex = nrtIndex;
         this.searcherHolder = createHolder(getNRTReaders());
         this.refreshPolicy = nrtIndex != null ? nrtIndex.getRefreshPolicy() : ReaderRefreshPolicy.NEVER;
+        long resultCacheSize = definition.getResultCacheSize();
+        this.resultCache = resultCacheSize > 0 ? new LuceneResultCache(resultCacheSize) : null;
+        if (resultCache != null) {
+            resultCache.setGeneration(searcherHolder.searcherId);
+        }
     }
 
     private String getName() {
@@ -148,6 +163,29 @@ public class LuceneIndexNodeManager {
         return definition;
     }
 
+    /**
+     * Set the permission store of the revision the index is up to date with,
+     * so that queries can check whether the read access tokens are current,
+     * and the roots of the subtrees whose tokens are not yet updated.
+     *
+     * @param permissionStore the permission store, or null if unknown
+     * @param stalePaths the roots of the subtrees with stale tokens
+     */
+    void setIndexedReadAccess(@Nullable NodeState permissionStore, Set<String> stalePaths) {
+        this.indexedReadAccess = permissionStore == null ? null
+                : new IndexedReadAccess(permissionStore, stalePaths);
+    }
+
+    @Nullable
+    private Set<String> getStaleReadAccessPaths(NodeState root) {
+        IndexedReadAccess indexed = indexedReadAccess;
+        if (indexed == null) {
+            return null;
+        }
+        NodeState permissionStore = NodeStateUtils.getNode(root, PERMISSIONS_STORE_PATH);
+        return EqualsDiff.equals(indexed.permissionStore, permissionStore) ? indexed.stalePaths : null;
+    }
+
     @Nullable
     private Directory getSuggestDirectory() {
         return readers.isEmpty() ? null : getDefaultReader().getSuggestDirectory();
@@ -224,6 +262,9 @@ public class LuceneIndexNodeManager {
         if (newNRTReaders != searcherHolder.nrtReaders) {
             SearcherHolder old = searcherHolder;
             searcherHolder = createHolder(newNRTReaders);
+            if (resultCache != null) {
+                resultCache.setGeneration(searcherHolder.searcherId);
+            }
             releaseHolder(old);
             PERF_LOGGER.end(start, 0, "Refreshed reader for index [{}]", definition);
         }
@@ -306,6 +347,16 @@ public class LuceneIndexNodeManager {
         }
     }
 
+    private static class IndexedReadAccess {
+        final NodeState permissionStore;
+        final Set<String> stalePaths;
+
+        IndexedReadAccess(NodeState permissionStore, Set<String> stalePaths) {
+            this.permissionStore = permissionStore;
+            this.stalePaths = stalePaths;
+        }
+    }
+
     private class IndexNodeImpl implements LuceneIndexNode {
         private final SearcherHolder holder;
         private final AtomicBoolean released = new AtomicBoolean();
@@ -371,6 +422,16 @@ public class LuceneIndexNodeManager {
             return LuceneIndexNodeManager.this.getLocalWriter();
         }
 
+        @Override
+        public LuceneResultCache getResultCache() {
+            return resultCache;
+        }
+
+        @Override
+        public Set<String> getStaleReadAccessPaths(NodeState root) {
+            return LuceneIndexNodeManager.this.getStaleReadAccessPaths(root);
+        }
+
         @Override
         public void refreshReadersOnWriteIfRequired() {
             LuceneIndexNodeManager.this.refreshReadersOnWriteIfRequired();
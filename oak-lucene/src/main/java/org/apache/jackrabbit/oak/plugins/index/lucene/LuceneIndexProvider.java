@@ -26,6 +26,7 @@ import org.apache.jackrabbit.oak.spi.commit.Observer;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -41,6 +42,8 @@ public class LuceneIndexProvider implements QueryIndexProvider, Observer, Closea
 
     IndexAugmentorFactory augmentorFactory;
 
+    private LuceneQueryStats queryStats = LuceneQueryStats.NOOP;
+
     public LuceneIndexProvider() {
         this(new IndexTracker());
     }
@@ -81,7 +84,16 @@ public class LuceneIndexProvider implements QueryIndexProvider, Observer, Closea
     }
 
     protected LucenePropertyIndex newLucenePropertyIndex() {
-        return new LucenePropertyIndex(tracker, augmentorFactory);
+        return new LucenePropertyIndex(tracker, augmentorFactory, queryStats);
+    }
+
+    /**
+     * Sets the statistics provider used to record query statistics
+     *
+     * @param statisticsProvider the statistics provider
+     */
+    public void setStatisticsProvider(StatisticsProvider statisticsProvider) {
+        this.queryStats = new LuceneQueryStats(statisticsProvider);
     }
 
     /**
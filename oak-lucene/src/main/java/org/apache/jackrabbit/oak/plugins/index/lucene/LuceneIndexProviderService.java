@@ -25,6 +25,7 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -35,6 +36,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -67,7 +69,9 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.LuceneJournalProper
 import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.NRTIndexFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexCleaner;
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.DefaultIndexReaderFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.BackgroundMerger;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
+import org.apache.jackrabbit.oak.plugins.index.search.PersistentExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.TextExtractionStatsMBean;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
@@ -177,6 +181,26 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_THREAD_POOL_SIZE = "threadPoolSize";
 
+    private static final int PROP_WRITER_THREADS_DEFAULT = 0;
+    @Property(
+            intValue = PROP_WRITER_THREADS_DEFAULT,
+            label = "Index writer threads",
+            description = "Number of threads used to write the documents of async indexes concurrently, so that " +
+                    "multiple indexes are updated in parallel. Requires CopyOnWrite. " +
+                    "When set to 0 then documents are written in the indexing thread"
+    )
+    private static final String PROP_WRITER_THREADS = "writerThreads";
+
+    private static final int PROP_BACKGROUND_MERGE_MIN_SIZE_MB_DEFAULT = 0;
+    @Property(
+            intValue = PROP_BACKGROUND_MERGE_MIN_SIZE_MB_DEFAULT,
+            label = "Background merge minimum size (in MB)",
+            description = "Merges of async indexes where the merged segments are at least this large are run " +
+                    "in a background thread, and the merged segment is added to the index in a later indexing " +
+                    "cycle. Requires CopyOnWrite. When set to 0 then all merges are run in the indexing cycle"
+    )
+    private static final String PROP_BACKGROUND_MERGE_MIN_SIZE_MB = "backgroundMergeMinSizeMB";
+
     private static final boolean PROP_PREFETCH_INDEX_FILES_DEFAULT = true;
     @Property(
             boolValue = PROP_PREFETCH_INDEX_FILES_DEFAULT,
@@ -212,6 +236,16 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PRE_EXTRACTED_TEXT_ALWAYS_USE = "alwaysUsePreExtractedCache";
 
+    private static final int PROP_EXTRACTED_TEXT_STORE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_EXTRACTED_TEXT_STORE_SIZE_DEFAULT,
+            label = "Extracted text store size (MB)",
+            description = "Size in MB of the persistent store for extracted text, which is kept in the local " +
+                    "index directory and shared by all indexes, so that text is not extracted again on reindexing. " +
+                    "When set to 0 then the store would be disabled"
+    )
+    private static final String PROP_EXTRACTED_TEXT_STORE_SIZE = "extractedTextStoreSizeInMB";
+
     private static final int PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT = 1024;
     @Property(
             intValue = PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT,
@@ -237,6 +271,20 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_HYBRID_QUEUE_SIZE = "hybridQueueSize";
 
+    /**
+     * The maximum number of index readers waiting to be warmed up.
+     */
+    private static final int WARMUP_QUEUE_SIZE = 16;
+
+    private static final int PROP_HYBRID_QUEUE_WORKERS_DEFAULT = 1;
+    @Property(
+            intValue = PROP_HYBRID_QUEUE_WORKERS_DEFAULT,
+            label = "Queue workers",
+            description = "Maximum number of threads used to add the queued Lucene Documents of different " +
+                    "indexes to the local indexes in parallel"
+    )
+    private static final String PROP_HYBRID_QUEUE_WORKERS = "hybridQueueWorkers";
+
     private static final boolean PROP_DISABLE_DEFN_STORAGE_DEFAULT = false;
     @Property(
             boolValue = PROP_DISABLE_DEFN_STORAGE_DEFAULT,
@@ -342,6 +390,14 @@ public class LuceneIndexProviderService {
 
     private ExecutorService executorService;
 
+    private ExecutorService writerExecutorService;
+
+    private ExecutorService mergeExecutorService;
+
+    private ExecutorService warmupExecutorService;
+
+    private BackgroundMerger backgroundMerger;
+
     private int threadPoolSize;
 
     private ExtractedTextCache extractedTextCache;
@@ -389,6 +445,7 @@ public class LuceneIndexProviderService {
         initializeExtractedTextCache(bundleContext, config, statisticsProvider);
         tracker = createTracker(bundleContext, config);
         indexProvider = new LuceneIndexProvider(tracker, augmentorFactory);
+        indexProvider.setStatisticsProvider(statisticsProvider);
         initializeActiveBlobCollector(whiteboard, config);
         initializeLogging(config);
         initialize();
@@ -402,6 +459,7 @@ public class LuceneIndexProviderService {
         registerPropertyIndexCleaner(config, bundleContext);
 
         LuceneIndexMBeanImpl mBean = new LuceneIndexMBeanImpl(tracker, nodeStore, indexPathService, getIndexCheckDir(), cleaner);
+        mBean.setDocumentQueue(documentQueue);
         oakRegs.add(registerMBean(whiteboard,
                 LuceneIndexMBean.class,
                 mBean,
@@ -460,6 +518,25 @@ public class LuceneIndexProviderService {
             executorService.awaitTermination(1, TimeUnit.MINUTES);
         }
 
+        if (writerExecutorService != null){
+            writerExecutorService.shutdown();
+            writerExecutorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (warmupExecutorService != null){
+            warmupExecutorService.shutdown();
+            warmupExecutorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (backgroundMerger != null) {
+            backgroundMerger.close();
+        }
+
+        if (mergeExecutorService != null){
+            mergeExecutorService.shutdown();
+            mergeExecutorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
         if (extractedTextCache != null) {
             extractedTextCache.close();
         }
@@ -518,6 +595,21 @@ public class LuceneIndexProviderService {
             editorProvider = new LuceneIndexEditorProvider(indexCopier, tracker, extractedTextCache,
                     augmentorFactory,  mountInfoProvider, activeDeletedBlobCollector, mBean, statisticsProvider);
             log.info("Enabling CopyOnWrite support. Index files would be copied under {}", indexDir.getAbsolutePath());
+            int writerThreads = PropertiesUtil.toInteger(config.get(PROP_WRITER_THREADS), PROP_WRITER_THREADS_DEFAULT);
+            if (writerThreads > 0) {
+                writerExecutorService = createExecutor(writerThreads, "oak-lucene-writer-");
+                editorProvider.setWriterExecutor(writerExecutorService);
+                log.info("Writing documents of async indexes concurrently using {} threads", writerThreads);
+            }
+            int mergeMinSizeMB = PropertiesUtil.toInteger(config.get(PROP_BACKGROUND_MERGE_MIN_SIZE_MB),
+                    PROP_BACKGROUND_MERGE_MIN_SIZE_MB_DEFAULT);
+            if (mergeMinSizeMB > 0) {
+                mergeExecutorService = createExecutor(1, "oak-lucene-merge-");
+                backgroundMerger = new BackgroundMerger(new File(indexDir, "merge"), mergeExecutorService,
+                        statisticsProvider, mergeMinSizeMB * FileUtils.ONE_MB);
+                editorProvider.setBackgroundMerger(backgroundMerger);
+                log.info("Running merges of async indexes of at least {} MB in the background", mergeMinSizeMB);
+            }
         } else {
             editorProvider = new LuceneIndexEditorProvider(null, tracker, extractedTextCache, augmentorFactory,
                     mountInfoProvider, activeDeletedBlobCollector, mBean, statisticsProvider);
@@ -549,11 +641,14 @@ public class LuceneIndexProviderService {
                 nrtIndexFactory = new NRTIndexFactory(indexCopier, statisticsProvider);
             }
             tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, indexCopier), nrtIndexFactory);
+            warmupExecutorService = createWarmupExecutor();
+            tracker.setIndexWarmer(new LuceneIndexWarmer(indexCopier, warmupExecutorService));
         } else {
             tracker = new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, null));
         }
 
         tracker.setAsyncIndexInfoService(asyncIndexInfoService);
+        tracker.setNodeStore(nodeStore);
         return tracker;
     }
 
@@ -608,6 +703,40 @@ public class LuceneIndexProviderService {
         return executor;
     }
 
+    private static ExecutorService createExecutor(int threads, final String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, threadNamePrefix + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The executor used to warm up index readers: a single thread, with a
+     * bounded queue. If the queue is full, indexes are not warmed up.
+     */
+    private static ExecutorService createWarmupExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(WARMUP_QUEUE_SIZE), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, "oak-lucene-warmup");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void registerObserver(BundleContext bundleContext, Map<String, ?> config) {
         boolean enableAsyncIndexOpen = PropertiesUtil.toBoolean(config.get(PROP_ASYNC_INDEX_OPEN), true);
         Observer observer = indexProvider;
@@ -631,7 +760,8 @@ public class LuceneIndexProviderService {
         }
 
         int queueSize = PropertiesUtil.toInteger(config.get(PROP_HYBRID_QUEUE_SIZE), PROP_HYBRID_QUEUE_SIZE_DEFAULT);
-        documentQueue = new DocumentQueue(queueSize, tracker, getExecutorService(), statisticsProvider);
+        int queueWorkers = PropertiesUtil.toInteger(config.get(PROP_HYBRID_QUEUE_WORKERS), PROP_HYBRID_QUEUE_WORKERS_DEFAULT);
+        documentQueue = new DocumentQueue(queueSize, tracker, getExecutorService(), statisticsProvider, queueWorkers);
         LocalIndexObserver localIndexObserver = new LocalIndexObserver(documentQueue, statisticsProvider);
         regs.add(bundleContext.registerService(Observer.class.getName(), localIndexObserver, null));
 
@@ -652,7 +782,8 @@ public class LuceneIndexProviderService {
                 externalIndexObserver.getMBean(),
                 BackgroundObserverMBean.TYPE,
                 "LuceneExternalIndexObserver queue stats"));
-        log.info("Hybrid indexing enabled for configured indexes with queue size of {}", queueSize);
+        log.info("Hybrid indexing enabled for configured indexes with queue size of {} and {} workers",
+                queueSize, queueWorkers);
     }
 
     private void initializeFactoryClassLoaders(ClassLoader classLoader) {
@@ -707,6 +838,17 @@ public class LuceneIndexProviderService {
         if (extractedTextProvider != null){
             registerExtractedTextProvider(extractedTextProvider);
         }
+        int storeSizeInMB = PropertiesUtil.toInteger(config.get(PROP_EXTRACTED_TEXT_STORE_SIZE),
+                PROP_EXTRACTED_TEXT_STORE_SIZE_DEFAULT);
+        if (storeSizeInMB > 0) {
+            File storeDir = new File(indexDir, "extracted-text");
+            try {
+                extractedTextCache.setPersistentStore(
+                        new PersistentExtractedTextStore(storeDir, storeSizeInMB * ONE_MB));
+            } catch (IOException e) {
+                log.warn("Could not create the extracted text store at {}", storeDir.getAbsolutePath(), e);
+            }
+        }
         CacheStats stats = extractedTextCache.getCacheStats();
         if (stats != null){
             oakRegs.add(registerMBean(whiteboard,
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.io.Files;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms up newly opened index readers, before they are used by queries, by
+ * reading the term dictionaries, norms and doc values (as configured in the
+ * index definition, see {@link LuceneIndexConstants#WARMUP}). For a local copy
+ * of the index, which is memory mapped, this loads the relevant pages into the
+ * page cache, so that the first queries don't need to read them from disk.
+ * <p>
+ * Indexes are warmed up in the background, using the given executor, which
+ * should be dedicated to the warmup and bounded. Without an executor, indexes
+ * are not warmed up, so that this never delays the thread that updates the
+ * index tracker.
+ */
+public class LuceneIndexWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(LuceneIndexWarmer.class);
+
+    public static final String WARMUP_TERMS = "terms";
+    public static final String WARMUP_NORMS = "norms";
+    public static final String WARMUP_DOC_VALUES = "docValues";
+
+    /**
+     * The maximum time spent warming up one index.
+     */
+    private static final long MAX_WARMUP_MILLIS = Long.getLong("oak.lucene.warmupMaxMillis", 10000);
+
+    private static final File PROC_SELF_STAT = new File("/proc/self/stat");
+
+    /**
+     * Whether the page fault count can be read (only on Linux).
+     */
+    private static final boolean PAGE_FAULTS_AVAILABLE =
+            System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH).startsWith("linux")
+            && PROC_SELF_STAT.canRead();
+
+    @Nullable
+    private final IndexCopier stats;
+
+    private final long maxWarmupMillis;
+
+    @Nullable
+    private final Executor executor;
+
+    public LuceneIndexWarmer(@Nullable IndexCopier stats) {
+        this(stats, null);
+    }
+
+    public LuceneIndexWarmer(@Nullable IndexCopier stats, @Nullable Executor executor) {
+        this(stats, executor, MAX_WARMUP_MILLIS);
+    }
+
+    LuceneIndexWarmer(@Nullable IndexCopier stats, @Nullable Executor executor, long maxWarmupMillis) {
+        this.stats = stats;
+        this.executor = executor;
+        this.maxWarmupMillis = maxWarmupMillis;
+    }
+
+    /**
+     * Whether the index is warmed up in the background.
+     *
+     * @param index the index
+     * @return true if warmup is configured, and an executor is set
+     */
+    boolean isAsync(LuceneIndexNodeManager index) {
+        return executor != null && !index.getDefinition().getWarmup().isEmpty();
+    }
+
+    /**
+     * Warm up the index in the background, and then run the given callback.
+     * If no executor is set, or the executor rejects the task, the index is
+     * not warmed up, and the callback is run right away.
+     *
+     * @param index the index
+     * @param done the callback, run once the warmup is done
+     */
+    void warmup(final LuceneIndexNodeManager index, final Runnable done) {
+        if (executor == null || index.getDefinition().getWarmup().isEmpty()) {
+            done.run();
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        warmup(index);
+                    } finally {
+                        done.run();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("[{}] Warmup rejected", index.getDefinition().getIndexPath(), e);
+            done.run();
+        }
+    }
+
+    /**
+     * Warm up the index, if configured in the index definition.
+     *
+     * @param index the index
+     */
+    void warmup(LuceneIndexNodeManager index) {
+        LuceneIndexNode node = index.acquire();
+        if (node == null) {
+            return;
+        }
+        try {
+            warmup(node.getDefinition(), node.getSearcher().getIndexReader());
+        } finally {
+            node.release();
+        }
+    }
+
+    void warmup(LuceneIndexDefinition definition, IndexReader reader) {
+        Set<String> warmup = definition.getWarmup();
+        if (warmup.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + maxWarmupMillis;
+        long pageFaults = getMajorPageFaults();
+        long count = 0;
+        try {
+            for (AtomicReaderContext context : reader.leaves()) {
+                AtomicReader r = context.reader();
+                for (FieldInfo info : r.getFieldInfos()) {
+                    if (isExpired(deadline)) {
+                        break;
+                    }
+                    if (warmup.contains(WARMUP_TERMS) && info.isIndexed()) {
+                        count += warmupTerms(r.terms(info.name), deadline);
+                    }
+                    if (warmup.contains(WARMUP_NORMS) && info.hasNorms()) {
+                        count += warmupNumeric(r.getNormValues(info.name), r.maxDoc(), deadline);
+                    }
+                    if (warmup.contains(WARMUP_DOC_VALUES) && info.hasDocValues()) {
+                        count += warmupDocValues(r, info, deadline);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("[{}] Failed to warm up the index", definition.getIndexPath(), e);
+        }
+        long time = System.currentTimeMillis() - start;
+        if (pageFaults >= 0) {
+            pageFaults = Math.max(0, getMajorPageFaults() - pageFaults);
+        }
+        if (time > maxWarmupMillis) {
+            log.info("[{}] Warmup stopped after {} ms, read {} entries", definition.getIndexPath(), time, count);
+        } else {
+            log.debug("[{}] Warmup took {} ms, read {} entries, {} page faults",
+                    definition.getIndexPath(), time, count, pageFaults);
+        }
+        if (stats != null) {
+            stats.warmupDone(time, Math.max(0, pageFaults));
+        }
+    }
+
+    private static long warmupTerms(@Nullable Terms terms, long deadline) throws IOException {
+        if (terms == null) {
+            return 0;
+        }
+        TermsEnum te = terms.iterator(null);
+        long count = 0;
+        while (te.next() != null) {
+            if ((++count & 0xfff) == 0 && isExpired(deadline)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static long warmupDocValues(AtomicReader r, FieldInfo info, long deadline) throws IOException {
+        int maxDoc = r.maxDoc();
+        switch (info.getDocValuesType()) {
+        case NUMERIC:
+            return warmupNumeric(r.getNumericDocValues(info.name), maxDoc, deadline);
+        case BINARY:
+            BinaryDocValues binary = r.getBinaryDocValues(info.name);
+            if (binary == null) {
+                return 0;
+            }
+            BytesRef scratch = new BytesRef();
+            for (int doc = 0; doc < maxDoc; doc++) {
+                binary.get(doc, scratch);
+                if ((doc & 0xfff) == 0 && isExpired(deadline)) {
+                    return doc;
+                }
+            }
+            return maxDoc;
+        case SORTED:
+            SortedDocValues sorted = r.getSortedDocValues(info.name);
+            if (sorted == null) {
+                return 0;
+            }
+            for (int doc = 0; doc < maxDoc; doc++) {
+                sorted.getOrd(doc);
+                if ((doc & 0xfff) == 0 && isExpired(deadline)) {
+                    return doc;
+                }
+            }
+            return maxDoc;
+        case SORTED_SET:
+            SortedSetDocValues sortedSet = r.getSortedSetDocValues(info.name);
+            if (sortedSet == null) {
+                return 0;
+            }
+            for (int doc = 0; doc < maxDoc; doc++) {
+                sortedSet.setDocument(doc);
+                while (sortedSet.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                    // just read
+                }
+                if ((doc & 0xfff) == 0 && isExpired(deadline)) {
+                    return doc;
+                }
+            }
+            return maxDoc;
+        default:
+            return 0;
+        }
+    }
+
+    private static long warmupNumeric(@Nullable NumericDocValues values, int maxDoc, long deadline) {
+        if (values == null) {
+            return 0;
+        }
+        for (int doc = 0; doc < maxDoc; doc++) {
+            values.get(doc);
+            if ((doc & 0xfff) == 0 && isExpired(deadline)) {
+                return doc;
+            }
+        }
+        return maxDoc;
+    }
+
+    private static boolean isExpired(long deadline) {
+        return System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Get the number of major page faults of this process (page faults that
+     * required reading from disk), if available.
+     *
+     * @return the number of major page faults, or -1 if not available (for
+     *         example, if this is not Linux)
+     */
+    static long getMajorPageFaults() {
+        if (!PAGE_FAULTS_AVAILABLE) {
+            return -1;
+        }
+        try {
+            String stat = Files.toString(PROC_SELF_STAT, StandardCharsets.UTF_8);
+            // the fields after the command name, which is in parentheses;
+            // majflt is the 12th field of the whole line
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[9]);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read the page fault count", e);
+            return -1;
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -65,6 +66,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.util.SuggestHelper;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexNode;
 import org.apache.jackrabbit.oak.plugins.index.search.PropertyDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.SizeEstimator;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.ReadAccessTokens;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.query.FulltextIndex;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.query.FulltextIndexPlanner.PlanResult;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.query.FulltextIndexPlanner.PropertyIndexResult;
@@ -87,6 +89,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexReader;
@@ -101,12 +104,14 @@ import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.queryparser.flexible.standard.config.StandardQueryConfigHandler;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
@@ -125,6 +130,7 @@ import org.apache.lucene.search.spell.SuggestWord;
 import org.apache.lucene.search.suggest.Lookup;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.Version;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -147,6 +153,7 @@ import static org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition.NAT
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newAncestorTerm;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newReadersTerm;
 import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newName;
 import static org.apache.jackrabbit.oak.spi.query.QueryConstants.JCR_PATH;
 import static org.apache.jackrabbit.oak.spi.query.QueryConstants.REP_EXCERPT;
@@ -198,6 +205,13 @@ public class LucenePropertyIndex extends FulltextIndex {
     public final static String CACHE_FACET_RESULTS_NAME = "oak.lucene.cacheFacetResults";
     private final boolean CACHE_FACET_RESULTS =
             Boolean.parseBoolean(System.getProperty(CACHE_FACET_RESULTS_NAME, "true"));
+    /**
+     * Whether to collect the ids of all matching documents in one pass for
+     * queries that don't need scores or sorting, instead of executing the
+     * query again for each batch.
+     */
+    public final static String STREAMING_QUERY_CONFIG_NAME = "oak.lucene.streamingQuery";
+    private static boolean STREAMING_QUERY = Boolean.getBoolean(STREAMING_QUERY_CONFIG_NAME);
 
     private static double MIN_COST = 2.1;
     private static boolean FLAG_CACHE_FACET_RESULTS_CHANGE = true;
@@ -221,13 +235,21 @@ public class LucenePropertyIndex extends FulltextIndex {
 
     private final IndexAugmentorFactory augmentorFactory;
 
+    private final LuceneQueryStats queryStats;
+
     public LucenePropertyIndex(IndexTracker tracker) {
         this(tracker,null);
     }
 
     public LucenePropertyIndex(IndexTracker tracker, IndexAugmentorFactory augmentorFactory) {
+        this(tracker, augmentorFactory, LuceneQueryStats.NOOP);
+    }
+
+    public LucenePropertyIndex(IndexTracker tracker, IndexAugmentorFactory augmentorFactory,
+                               LuceneQueryStats queryStats) {
         this.tracker = tracker;
         this.augmentorFactory = augmentorFactory;
+        this.queryStats = queryStats;
         logConfigsOnce();
     }
 
@@ -263,7 +285,14 @@ public class LucenePropertyIndex extends FulltextIndex {
             private final Deque<FulltextResultRow> queue = Queues.newArrayDeque();
             private final Set<String> seenPaths = Sets.newHashSet();
             private ScoreDoc lastDoc;
-            private int nextBatchSize = LUCENE_QUERY_BATCH_SIZE;
+            private final LuceneQueryBatchSize batchSize =
+                    new LuceneQueryBatchSize(LUCENE_QUERY_BATCH_SIZE, filter.getMaxEntryCount());
+            private final boolean streaming = STREAMING_QUERY && isStreamingPossible(plan, sort);
+            // the ids of all matching documents (only when streaming)
+            private FixedBitSet matchingDocs;
+            private int nextMatchingDoc;
+            private int batchCount;
+            private int executionCount;
             private boolean noDocs = false;
             private IndexSearcher indexSearcher;
             private int indexNodeId = -1;
@@ -276,6 +305,7 @@ public class LucenePropertyIndex extends FulltextIndex {
                     return queue.remove();
                 }
                 releaseSearcher();
+                queryStats.queryDone(batchCount, Math.max(0, executionCount - 1));
                 return endOfData();
             }
 
@@ -339,30 +369,54 @@ public class LucenePropertyIndex extends FulltextIndex {
                 checkState(indexNode != null);
                 try {
                     IndexSearcher searcher = getCurrentSearcher(indexNode);
-                    LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
+                    LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory,
+                            searcher.getIndexReader(), indexNode.getStaleReadAccessPaths(rootState));
                     if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
 
                         TopDocs docs;
                         long start = PERF_LOGGER.start();
                         while (true) {
-                            if (lastDoc != null) {
-                                LOG.debug("loading the next {} entries for query {}", nextBatchSize, query);
-                                if (sort == null) {
-                                    docs = searcher.searchAfter(lastDoc, query, nextBatchSize);
-                                } else {
-                                    docs = searcher.searchAfter(lastDoc, query, nextBatchSize, sort);
+                            int nextBatchSize = batchSize.getBatchSize();
+                            if (streaming) {
+                                if (matchingDocs == null) {
+                                    LOG.debug("collecting all matching documents for query {}", query);
+                                    matchingDocs = collectMatchingDocs(searcher, query);
+                                    nextMatchingDoc = 0;
+                                    executionCount++;
                                 }
+                                docs = nextMatchingDocs(nextBatchSize);
                             } else {
-                                LOG.debug("loading the first {} entries for query {}", nextBatchSize, query);
-                                if (sort == null) {
-                                    docs = searcher.search(query, nextBatchSize);
+                                LuceneResultCache resultCache = indexNode.getResultCache();
+                                docs = resultCache == null ? null
+                                        : resultCache.get(indexNodeId, query, sort, lastDoc, nextBatchSize);
+                                if (docs != null) {
+                                    LOG.debug("using the cached {} entries for query {}", nextBatchSize, query);
                                 } else {
-                                    docs = searcher.search(query, nextBatchSize, sort);
+                                    if (lastDoc != null) {
+                                        LOG.debug("loading the next {} entries for query {}", nextBatchSize, query);
+                                        if (sort == null) {
+                                            docs = searcher.searchAfter(lastDoc, query, nextBatchSize);
+                                        } else {
+                                            docs = searcher.searchAfter(lastDoc, query, nextBatchSize, sort);
+                                        }
+                                    } else {
+                                        LOG.debug("loading the first {} entries for query {}", nextBatchSize, query);
+                                        if (sort == null) {
+                                            docs = searcher.search(query, nextBatchSize);
+                                        } else {
+                                            docs = searcher.search(query, nextBatchSize, sort);
+                                        }
+                                    }
+                                    executionCount++;
+                                    if (resultCache != null) {
+                                        resultCache.put(indexNodeId, query, sort, lastDoc, nextBatchSize, docs);
+                                    }
                                 }
                             }
-                            PERF_LOGGER.end(start, -1, "{} ...", docs.scoreDocs.length);
-                            nextBatchSize = (int) Math.min(nextBatchSize * 2L, 100000);
+                            batchCount++;
+                            PERF_LOGGER.end(start, -1, "{} ... (batch {}, executions {})",
+                                    docs.scoreDocs.length, batchCount, executionCount);
 
                             if (facetProvider == null) {
                                 long f = PERF_LOGGER.start();
@@ -432,6 +486,7 @@ public class LucenePropertyIndex extends FulltextIndex {
                                 }
                             }
 
+                            int accepted = 0;
                             for (ScoreDoc doc : docs.scoreDocs) {
                                 Map<String, String> excerpts = null;
                                 if (addExcerpt) {
@@ -446,14 +501,23 @@ public class LucenePropertyIndex extends FulltextIndex {
                                 FulltextResultRow row = convertToRow(doc, searcher, excerpts, facetProvider, explanation);
                                 if (row != null) {
                                     queue.add(row);
+                                    accepted++;
                                 }
                                 lastDocToRecord = doc;
                             }
+                            batchSize.batchLoaded(docs.scoreDocs.length, accepted);
+                            queryStats.rejected(docs.scoreDocs.length - accepted);
 
                             if (earlyStop) {
                                 noDocs = true;
                                 break;
                             }
+                            if (docs.scoreDocs.length < nextBatchSize) {
+                                // all matching documents were loaded, so there is
+                                // no need to execute the query again
+                                noDocs = true;
+                                break;
+                            }
                             if (queue.isEmpty() && docs.scoreDocs.length > 0) {
                                 //queue is still empty but more results can be fetched
                                 //from Lucene so still continue
@@ -536,6 +600,55 @@ public class LucenePropertyIndex extends FulltextIndex {
                 return !queue.isEmpty();
             }
 
+            /**
+             * Collect the ids of all documents that match the query, in one
+             * pass over the index.
+             */
+            private FixedBitSet collectMatchingDocs(IndexSearcher searcher, Query query) throws IOException {
+                final FixedBitSet bits = new FixedBitSet(searcher.getIndexReader().maxDoc());
+                searcher.search(query, new Collector() {
+                    private int docBase;
+
+                    @Override
+                    public void setScorer(Scorer scorer) {
+                        // scores are not needed
+                    }
+
+                    @Override
+                    public void collect(int doc) {
+                        bits.set(docBase + doc);
+                    }
+
+                    @Override
+                    public void setNextReader(AtomicReaderContext context) {
+                        docBase = context.docBase;
+                    }
+
+                    @Override
+                    public boolean acceptsDocsOutOfOrder() {
+                        return true;
+                    }
+                });
+                return bits;
+            }
+
+            /**
+             * Get the next batch of the collected matching documents.
+             */
+            private TopDocs nextMatchingDocs(int count) {
+                List<ScoreDoc> list = new ArrayList<>(Math.min(count, LUCENE_QUERY_BATCH_SIZE));
+                while (list.size() < count && nextMatchingDoc < matchingDocs.length()) {
+                    int doc = matchingDocs.nextSetBit(nextMatchingDoc);
+                    if (doc < 0) {
+                        nextMatchingDoc = matchingDocs.length();
+                        break;
+                    }
+                    list.add(new ScoreDoc(doc, 1f));
+                    nextMatchingDoc = doc + 1;
+                }
+                return new TopDocs(list.size(), list.toArray(new ScoreDoc[0]), 1f);
+            }
+
             private IndexSearcher getCurrentSearcher(LuceneIndexNode indexNode) {
                 //The searcher once obtained is held till either cursor is finished
                 //or if the index gets updated. It needs to be ensured that
@@ -557,6 +670,7 @@ public class LucenePropertyIndex extends FulltextIndex {
                     indexSearcher = indexNode.getSearcher();
                     indexNodeId = indexNode.getIndexNodeId();
                     lastDoc = null;
+                    matchingDocs = null;
                 }
                 return indexSearcher;
             }
@@ -576,6 +690,31 @@ public class LucenePropertyIndex extends FulltextIndex {
         return new FulltextPathCursor(itr, rItr, plan, settings, sizeEstimator);
     }
 
+    /**
+     * Whether the matching documents can be collected in one pass, instead of
+     * executing the query for each batch. This is only possible if the
+     * result doesn't need to be sorted by a field or by relevance (fulltext
+     * conditions and functions such as similarity search need relevance),
+     * and no score explanation is needed.
+     */
+    private static boolean isStreamingPossible(IndexPlan plan, Sort sort) {
+        Filter filter = plan.getFilter();
+        if (sort != null || filter.getFullTextConstraint() != null
+                || !filter.getFulltextConditions().isEmpty()) {
+            return false;
+        }
+        PropertyRestriction explain = filter.getPropertyRestriction(QueryConstants.OAK_SCORE_EXPLANATION);
+        if (explain != null) {
+            return false;
+        }
+        IndexDefinition defn = getPlanResult(plan).indexDefinition;
+        return !defn.hasFunctionDefined() || filter.getPropertyRestriction(defn.getFunctionName()) == null;
+    }
+
+    static void setStreamingQuery(boolean streamingQuery) {
+        STREAMING_QUERY = streamingQuery;
+    }
+
     private static Query addDescendantClauseIfRequired(Query query, IndexPlan plan) {
         Filter filter = plan.getFilter();
 
@@ -738,7 +877,8 @@ public class LucenePropertyIndex extends FulltextIndex {
             checkState(indexNode != null);
             try {
                 IndexSearcher searcher = indexNode.getSearcher();
-                LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
+                // the estimate doesn't filter by read access tokens
+                LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader(), null);
                 if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                     Query query = (Query) luceneRequestFacade.getLuceneRequest();
                     TotalHitCountCollector collector = new TotalHitCountCollector();
@@ -764,7 +904,13 @@ public class LucenePropertyIndex extends FulltextIndex {
 
     @Override
     protected String getFulltextRequestString(IndexPlan plan, IndexNode indexNode) {
-        return getLuceneRequest(plan, augmentorFactory, null).toString();
+        return getLuceneRequest(plan, augmentorFactory, null, null).toString();
+    }
+
+    @Override
+    protected String getFulltextRequestString(IndexPlan plan, IndexNode indexNode, NodeState rootState) {
+        Set<String> staleReadAccessPaths = ((LuceneIndexNode) indexNode).getStaleReadAccessPaths(rootState);
+        return getLuceneRequest(plan, augmentorFactory, null, staleReadAccessPaths).toString();
     }
 
     private static Sort getSort(IndexPlan plan) {
@@ -846,7 +992,14 @@ public class LucenePropertyIndex extends FulltextIndex {
      * @param reader the Lucene reader
      * @return the Lucene query
      */
-    private static LuceneRequestFacade getLuceneRequest(IndexPlan plan, IndexAugmentorFactory augmentorFactory, IndexReader reader) {
+    /**
+     * Get the Lucene request for the plan.
+     *
+     * @param staleReadAccessPaths the subtrees with stale read access tokens,
+     *        or null if the tokens can't be used
+     */
+    private static LuceneRequestFacade getLuceneRequest(IndexPlan plan, IndexAugmentorFactory augmentorFactory, IndexReader reader,
+                                                        @Nullable Set<String> staleReadAccessPaths) {
         FulltextQueryTermsProvider augmentor = getIndexAgumentor(plan, augmentorFactory);
         List<Query> qs = new ArrayList<>();
         Filter filter = plan.getFilter();
@@ -940,14 +1093,64 @@ public class LucenePropertyIndex extends FulltextIndex {
             //For purely nodeType based queries all the documents would have to
             //be returned (if the index definition has a single rule)
             if (planResult.evaluateNodeTypeRestriction()) {
-                return new LuceneRequestFacade<Query>(new MatchAllDocsQuery());
+                Query readersQuery = getReadersQuery(defn, filter, staleReadAccessPaths);
+                return new LuceneRequestFacade<Query>(readersQuery != null ? readersQuery : new MatchAllDocsQuery());
             }
 
             throw new IllegalStateException("No query created for filter " + filter);
         }
+        Query readersQuery = getReadersQuery(defn, filter, staleReadAccessPaths);
+        if (readersQuery != null) {
+            qs.add(readersQuery);
+        }
         return performAdditionalWraps(qs);
     }
 
+    /**
+     * Get the query that only matches the documents the principals of the
+     * query session may read, if read access tokens are indexed. Documents
+     * without tokens, documents in the read paths (which are readable by
+     * everyone), and documents in subtrees whose tokens are not yet updated
+     * are matched as well.
+     *
+     * @param staleReadAccessPaths the subtrees with stale tokens, or null if
+     *        the tokens can't be used, because the access control entries
+     *        changed after the index was updated
+     * @return the query, or null if documents are not filtered
+     */
+    @Nullable
+    private static Query getReadersQuery(LuceneIndexDefinition defn, Filter filter,
+                                         @Nullable Set<String> staleReadAccessPaths) {
+        if (!defn.indexAccessTokens() || staleReadAccessPaths == null) {
+            return null;
+        }
+        Set<String> principalNames = filter.getPrincipalNames();
+        if (principalNames == null) {
+            return null;
+        }
+        Set<String> readablePaths = new HashSet<>(filter.getReadPaths());
+        readablePaths.addAll(staleReadAccessPaths);
+        if (readablePaths.contains(PathUtils.ROOT_PATH)
+                || principalNames.size() + 2 * readablePaths.size() >= BooleanQuery.getMaxClauseCount()) {
+            return null;
+        }
+        BooleanQuery readers = new BooleanQuery();
+        for (String name : principalNames) {
+            if (!ReadAccessTokens.INDEXED.equals(name)) {
+                readers.add(new TermQuery(newReadersTerm(name)), SHOULD);
+            }
+        }
+        for (String path : readablePaths) {
+            readers.add(new TermQuery(newPathTerm(path)), SHOULD);
+            readers.add(new PrefixQuery(newPathTerm(path + "/")), SHOULD);
+        }
+        BooleanQuery withoutTokens = new BooleanQuery();
+        withoutTokens.add(new MatchAllDocsQuery(), MUST);
+        withoutTokens.add(new TermQuery(newReadersTerm(ReadAccessTokens.INDEXED)), MUST_NOT);
+        readers.add(withoutTokens, SHOULD);
+        return readers;
+    }
+
     /**
      * Perform additional wraps on the list of queries to allow, for example, the NOT CONTAINS to
      * play properly when sent to lucene.
@@ -1767,6 +1970,16 @@ public class LucenePropertyIndex extends FulltextIndex {
             getIndexNode().refreshReadersOnWriteIfRequired();
         }
 
+        @Override
+        public @Nullable LuceneResultCache getResultCache() {
+            return getIndexNode().getResultCache();
+        }
+
+        @Override
+        public @Nullable Set<String> getStaleReadAccessPaths(NodeState root) {
+            return getIndexNode().getStaleReadAccessPaths(root);
+        }
+
     }
 
     static abstract class LuceneResultRowIterator extends AbstractIterator<FulltextResultRow> implements IteratorRewoundStateProvider {
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+/**
+ * Calculates the number of documents to load per batch in a Lucene query
+ * cursor.
+ * <p>
+ * The first batch is sized from the maximum number of entries the query is
+ * expected to read (the limit plus the offset of the query), if known.
+ * Following batches grow exponentially, and are additionally sized from the
+ * observed rate of rejected documents (for example, documents that do not
+ * match the path restriction), so that queries where most documents are
+ * rejected don't need to search the index many times.
+ */
+class LuceneQueryBatchSize {
+
+    /**
+     * The maximum batch size.
+     */
+    static final int MAX_BATCH_SIZE = 100000;
+
+    /**
+     * The maximum size of the first batch. The documents of a batch are
+     * loaded eagerly, so the first batch is kept small even for large limits,
+     * in case the caller stops reading early.
+     */
+    static final int MAX_FIRST_BATCH_SIZE = 1000;
+
+    private final long maxEntryCount;
+    private int batchSize;
+    private long loadedCount;
+    private long acceptedCount;
+
+    /**
+     * Create a new instance.
+     *
+     * @param defaultBatchSize the size of the first batch, if the maximum
+     *            entry count is unknown
+     * @param maxEntryCount the maximum number of entries the query is expected
+     *            to read, or Long.MAX_VALUE if unknown
+     */
+    LuceneQueryBatchSize(int defaultBatchSize, long maxEntryCount) {
+        this.maxEntryCount = maxEntryCount;
+        if (maxEntryCount < defaultBatchSize) {
+            batchSize = (int) Math.max(1, maxEntryCount);
+        } else if (maxEntryCount == Long.MAX_VALUE) {
+            batchSize = defaultBatchSize;
+        } else {
+            batchSize = (int) Math.min(maxEntryCount, MAX_FIRST_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Get the size of the next batch.
+     *
+     * @return the batch size
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Record a loaded batch, and calculate the size of the next batch.
+     *
+     * @param loaded the number of documents loaded
+     * @param accepted the number of documents that were not rejected
+     */
+    void batchLoaded(int loaded, int accepted) {
+        loadedCount += loaded;
+        acceptedCount += accepted;
+        long next;
+        if (acceptedCount == 0) {
+            // everything was rejected so far
+            next = batchSize * 4L;
+        } else {
+            double acceptRate = (double) acceptedCount / loadedCount;
+            long remaining = maxEntryCount - acceptedCount;
+            if (maxEntryCount != Long.MAX_VALUE && remaining > 0) {
+                // enough to (probably) reach the limit
+                next = (long) Math.ceil(remaining / acceptRate);
+            } else {
+                // double the number of accepted documents per batch
+                next = (long) Math.ceil(batchSize * 2 / acceptRate);
+            }
+        }
+        batchSize = (int) Math.max(1, Math.min(next, MAX_BATCH_SIZE));
+    }
+
+}
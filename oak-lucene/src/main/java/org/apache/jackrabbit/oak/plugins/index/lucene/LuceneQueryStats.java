@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import org.apache.jackrabbit.oak.stats.HistogramStats;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+
+/**
+ * Statistics about how Lucene query cursors load their results.
+ */
+public class LuceneQueryStats {
+
+    /**
+     * A histogram of the number of batches loaded per query.
+     */
+    static final String BATCH_COUNT = "LUCENE_QUERY_BATCH_COUNT";
+
+    /**
+     * A histogram of the number of times the query was executed again per
+     * query (to load a following batch).
+     */
+    static final String RE_EXECUTION_COUNT = "LUCENE_QUERY_RE_EXECUTION_COUNT";
+
+    /**
+     * The number of documents that were loaded, but rejected by the cursor
+     * (for example, due to path restrictions).
+     */
+    static final String REJECTED_DOCS = "LUCENE_QUERY_REJECTED_DOCS";
+
+    public static final LuceneQueryStats NOOP = new LuceneQueryStats(StatisticsProvider.NOOP);
+
+    private final HistogramStats batchCount;
+    private final HistogramStats reExecutionCount;
+    private final MeterStats rejectedDocs;
+
+    public LuceneQueryStats(StatisticsProvider statisticsProvider) {
+        this.batchCount = statisticsProvider.getHistogram(BATCH_COUNT, StatsOptions.METRICS_ONLY);
+        this.reExecutionCount = statisticsProvider.getHistogram(RE_EXECUTION_COUNT, StatsOptions.METRICS_ONLY);
+        this.rejectedDocs = statisticsProvider.getMeter(REJECTED_DOCS, StatsOptions.METRICS_ONLY);
+    }
+
+    void rejected(long count) {
+        if (count > 0) {
+            rejectedDocs.mark(count);
+        }
+    }
+
+    void queryDone(int batches, int reExecutions) {
+        batchCount.update(batches);
+        reExecutionCount.update(reExecutions);
+    }
+
+}
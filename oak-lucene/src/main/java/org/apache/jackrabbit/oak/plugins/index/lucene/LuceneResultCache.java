@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the results of the Lucene searches done for queries against an
+ * index, that is, the matching documents of a query (one batch, for a given
+ * sort order and position).
+ * <p>
+ * Results are only valid for one version of the index readers. The version
+ * is identified by the index node id (see
+ * {@link LuceneIndexNode#getIndexNodeId()}), which is part of the key; when
+ * the readers are refreshed, the cache is cleared, and results of older
+ * versions are not cached any longer. The memory used by the cache is estimated, and bounded by the
+ * configured size (see {@link LuceneIndexConstants#RESULT_CACHE_SIZE}).
+ * <p>
+ * The cached results are the raw search results: the path restrictions that
+ * are not part of the Lucene query, as well as access control, are checked
+ * for each query when the documents are converted to rows.
+ */
+public class LuceneResultCache {
+
+    private final long maxMemory;
+
+    private final AtomicLong memory = new AtomicLong();
+
+    private final Cache<Key, TopDocs> cache;
+
+    private volatile int generation;
+
+    LuceneResultCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxMemory)
+                .weigher(new Weigher<Key, TopDocs>() {
+                    @Override
+                    public int weigh(Key key, TopDocs value) {
+                        return getMemory(value);
+                    }
+                })
+                .removalListener(new RemovalListener<Key, TopDocs>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, TopDocs> notification) {
+                        memory.addAndGet(-getMemory(notification.getValue()));
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Set the version of the index readers, and clear the cache.
+     *
+     * @param generation the index node id of the new readers
+     */
+    void setGeneration(int generation) {
+        this.generation = generation;
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the cached result of a search.
+     *
+     * @param generation the index node id of the searcher
+     * @param query the query
+     * @param sort the sort order, or null
+     * @param after the last document of the previous batch, or null
+     * @param n the number of documents
+     * @return a copy of the result, or null if not cached
+     */
+    @Nullable
+    public TopDocs get(int generation, Query query, @Nullable Sort sort, @Nullable ScoreDoc after, int n) {
+        if (generation != this.generation) {
+            return null;
+        }
+        TopDocs docs = cache.getIfPresent(new Key(generation, query, sort, after, n));
+        return docs == null ? null : copy(docs);
+    }
+
+    /**
+     * Cache the result of a search. Results of older versions of the index
+     * readers are ignored.
+     *
+     * @param generation the index node id of the searcher
+     * @param query the query
+     * @param sort the sort order, or null
+     * @param after the last document of the previous batch, or null
+     * @param n the number of documents
+     * @param docs the result (a copy is cached)
+     */
+    public void put(int generation, Query query, @Nullable Sort sort, @Nullable ScoreDoc after, int n, TopDocs docs) {
+        if (generation != this.generation) {
+            return;
+        }
+        TopDocs copy = copy(docs);
+        memory.addAndGet(getMemory(copy));
+        // the generation may have changed concurrently: a result of an older
+        // generation is then not cleared, but it is never found either
+        cache.put(new Key(generation, query, sort, after, n), copy);
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Get the estimated memory used by the cached results.
+     *
+     * @return the memory, in bytes
+     */
+    public long getMemory() {
+        return memory.get();
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Copy the result, as the scores (and the list) of the documents may be
+     * changed by the caller, for example when re-ranking.
+     */
+    private static TopDocs copy(TopDocs docs) {
+        ScoreDoc[] scoreDocs = new ScoreDoc[docs.scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            ScoreDoc d = docs.scoreDocs[i];
+            if (d instanceof FieldDoc) {
+                scoreDocs[i] = new FieldDoc(d.doc, d.score, ((FieldDoc) d).fields, d.shardIndex);
+            } else {
+                scoreDocs[i] = new ScoreDoc(d.doc, d.score, d.shardIndex);
+            }
+        }
+        if (docs instanceof TopFieldDocs) {
+            return new TopFieldDocs(docs.totalHits, scoreDocs, ((TopFieldDocs) docs).fields, docs.getMaxScore());
+        }
+        return new TopDocs(docs.totalHits, scoreDocs, docs.getMaxScore());
+    }
+
+    private static int getMemory(TopDocs docs) {
+        int memory = 128;
+        for (ScoreDoc d : docs.scoreDocs) {
+            memory += 32;
+            if (d instanceof FieldDoc && ((FieldDoc) d).fields != null) {
+                // the sort values, estimated
+                memory += 16 + 48 * ((FieldDoc) d).fields.length;
+            }
+        }
+        return memory;
+    }
+
+    private static class Key {
+
+        private final int generation;
+        private final Query query;
+        private final Sort sort;
+        private final int afterDoc;
+        private final float afterScore;
+        private final int n;
+        private final int hash;
+
+        Key(int generation, Query query, @Nullable Sort sort, @Nullable ScoreDoc after, int n) {
+            this.generation = generation;
+            this.query = query;
+            this.sort = sort;
+            // within one version of the readers, the document id also
+            // defines the sort values of the document
+            this.afterDoc = after == null ? -1 : after.doc;
+            this.afterScore = after == null ? 0 : after.score;
+            this.n = n;
+            int h = 31 * generation + query.hashCode();
+            h = 31 * h + (sort == null ? 0 : sort.hashCode());
+            h = 31 * h + afterDoc;
+            h = 31 * h + Float.floatToIntBits(afterScore);
+            this.hash = 31 * h + n;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key o = (Key) obj;
+            return hash == o.hash && generation == o.generation && afterDoc == o.afterDoc
+                    && Float.floatToIntBits(afterScore) == Float.floatToIntBits(o.afterScore)
+                    && n == o.n && query.equals(o.query)
+                    && (sort == null ? o.sort == null : sort.equals(o.sort));
+        }
+
+    }
+
+}
@@ -53,6 +53,10 @@ public final class TermFactory {
         return new Term(FieldNames.ANCESTORS, preparePath(path));
     }
 
+    public static Term newReadersTerm(String principalName){
+        return new Term(FieldNames.READERS, principalName);
+    }
+
     public static Term newFulltextTerm(String ft) {
         return new Term(FieldNames.FULLTEXT, ft);
     }
@@ -209,11 +209,13 @@ public class ActiveDeletedBlobCollectorFactory {
             LOG.info("Starting purge of blobs deleted before {}", before);
             long numBlobsDeleted = 0;
             long numChunksDeleted = 0;
+            long numChunksSkipped = 0;
 
             File idTempDeleteFile = null;
             BufferedWriter idTempDeleteWriter = null;
             // If blob store support blob tracking
             boolean blobIdsTracked = blobStore instanceof BlobTrackingStore;
+            BlobTracker tracker = blobIdsTracked ? ((BlobTrackingStore) blobStore).getTracker() : null;
 
             if (blobIdsTracked) {
                 try {
@@ -274,6 +276,14 @@ public class ActiveDeletedBlobCollectorFactory {
                                     lastDeletedBlobTimestamp = Math.max(lastDeletedBlobTimestamp, blobDeletionTimestamp);
 
                                     List<String> chunkIds = Lists.newArrayList(blobStore.resolveChunks(deletedBlobId));
+                                    if (tracker != null && tracker.isSyncedBefore(blobDeletionTimestamp)) {
+                                        // Chunks not tracked don't need a round trip to the blob store,
+                                        // if they exist at all they are left to the blob garbage collection.
+                                        // This is only known once the ids of all cluster nodes were merged.
+                                        int count = chunkIds.size();
+                                        chunkIds.removeIf(id -> !tracker.mightContain(id));
+                                        numChunksSkipped += count - chunkIds.size();
+                                    }
                                     if (chunkIds.size() > 0) {
                                         long deleted = blobStore.countDeleteChunks(chunkIds, 0);
                                         if (deleted < 1) {
@@ -329,7 +339,6 @@ public class ActiveDeletedBlobCollectorFactory {
                 Closeables.close(idTempDeleteWriter, true);
 
                 if (blobIdsTracked && numBlobsDeleted > 0) {
-                    BlobTracker tracker = ((BlobTrackingStore) blobStore).getTracker();
                     if (tracker != null) {
                         tracker.remove(idTempDeleteFile, Options.ACTIVE_DELETION);
                     }
@@ -345,6 +354,10 @@ public class ActiveDeletedBlobCollectorFactory {
             }
             long end = clock.getTime();
             LOG.info("Deleted {} blobs contained in {} chunks in {} ms", numBlobsDeleted, numChunksDeleted, end - start);
+            if (numChunksSkipped > 0) {
+                LOG.info("Skipped {} chunks not tracked by the blob tracker, left to blob garbage collection",
+                        numChunksSkipped);
+            }
             writeOutLastCheckedBlobTimestamp(lastDeletedBlobTimestamp);
         }
 
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import org.apache.jackrabbit.oak.api.Blob;
+
+/**
+ * A cache for the data of the blobs that Lucene files are split into. The
+ * data is shared by all clones of an index input (which use the same blob
+ * instances), and returned as a read-only buffer, so that seeking within a
+ * blob doesn't require to read or copy the data again.
+ * <p>
+ * Blobs are compared by identity, and entries are removed once the blob is
+ * garbage collected, or if the cache is full.
+ */
+final class BlobChunkCache {
+
+    /**
+     * The maximum size of the shared cache, in MB. If 0 (the default), the
+     * cache is disabled.
+     */
+    private static final long CACHE_SIZE_MB = Long.getLong("oak.lucene.chunkCacheSizeMB", 0);
+
+    static final BlobChunkCache INSTANCE = new BlobChunkCache(CACHE_SIZE_MB * 1024 * 1024);
+
+    private final Cache<Blob, ByteBuffer> cache;
+
+    BlobChunkCache(long maxSizeInBytes) {
+        if (maxSizeInBytes <= 0) {
+            cache = null;
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .maximumWeight(maxSizeInBytes)
+                    .weigher((Weigher<Blob, ByteBuffer>) (blob, buffer) -> buffer.capacity())
+                    .recordStats()
+                    .build();
+        }
+    }
+
+    boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Get the data of the given blob.
+     *
+     * @param blob the blob
+     * @param length the number of bytes to read (the blob might be longer)
+     * @return a read-only buffer, positioned at 0, owned by the caller
+     */
+    ByteBuffer get(Blob blob, int length) throws IOException {
+        if (cache == null) {
+            return read(blob, ByteBuffer.allocate(length)).asReadOnlyBuffer();
+        }
+        try {
+            return cache.get(blob, () -> read(blob, ByteBuffer.allocate(length)).asReadOnlyBuffer())
+                    .duplicate();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    CacheStats getStats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Read the data of the blob into the given buffer, up to the limit of the buffer.
+     *
+     * @param blob the blob
+     * @param buffer the target (a heap buffer)
+     * @return the buffer
+     */
+    static ByteBuffer read(Blob blob, ByteBuffer buffer) throws IOException {
+        try (InputStream stream = blob.getNewStream()) {
+            ByteStreams.readFully(stream, buffer.array(), 0, buffer.limit());
+        }
+        return buffer;
+    }
+
+}
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import com.google.common.io.ByteStreams;
@@ -96,10 +97,24 @@ class OakBufferedIndexFile implements OakIndexFile {
     private int index = -1;
 
     /**
-     * The data of the currently loaded blob.
+     * The data of the currently loaded blob, for writing (null if no blob
+     * was loaded for writing yet).
      */
     private byte[] blob;
 
+    /**
+     * The index of the blob in the read buffer.
+     */
+    private int readIndex = -1;
+
+    /**
+     * The data of the blob that was last read, for reading. Unless the cache
+     * is disabled, the data is shared with clones.
+     */
+    private ByteBuffer readBuffer;
+
+    private final BlobChunkCache chunkCache;
+
     /**
      * The unique key that is used to make the content unique (to allow removing binaries from the blob store without risking to remove binaries that are still needed).
      */
@@ -117,13 +132,18 @@ class OakBufferedIndexFile implements OakIndexFile {
 
     public OakBufferedIndexFile(String name, NodeBuilder file, String dirDetails,
                                 @NotNull BlobFactory blobFactory) {
+        this(name, file, dirDetails, blobFactory, BlobChunkCache.INSTANCE);
+    }
+
+    OakBufferedIndexFile(String name, NodeBuilder file, String dirDetails,
+                         @NotNull BlobFactory blobFactory, BlobChunkCache chunkCache) {
         this.name = name;
         this.file = file;
         this.dirDetails = dirDetails;
         this.blobSize = determineBlobSize(file);
         this.uniqueKey = readUniqueKey(file);
-        this.blob = new byte[blobSize];
         this.blobFactory = checkNotNull(blobFactory);
+        this.chunkCache = chunkCache;
 
         PropertyState property = file.getProperty(JCR_DATA);
         if (property != null && property.getType() == BINARIES) {
@@ -148,7 +168,7 @@ class OakBufferedIndexFile implements OakIndexFile {
         this.dirDetails = that.dirDetails;
         this.blobSize = that.blobSize;
         this.uniqueKey = that.uniqueKey;
-        this.blob = new byte[blobSize];
+        this.chunkCache = that.chunkCache;
 
         this.position = that.position;
         this.length = that.length;
@@ -162,6 +182,9 @@ class OakBufferedIndexFile implements OakIndexFile {
         if (index != i) {
             flushBlob();
             checkState(!blobModified);
+            if (blob == null) {
+                blob = new byte[blobSize];
+            }
 
             int n = (int) Math.min(blobSize, length - (long)i * blobSize);
             InputStream stream = data.get(i).getNewStream();
@@ -192,9 +215,37 @@ class OakBufferedIndexFile implements OakIndexFile {
             }
             dataModified = true;
             blobModified = false;
+            if (readIndex == index) {
+                readIndex = -1;
+            }
         }
     }
 
+    /**
+     * Get the read buffer for the given blob.
+     *
+     * @param i the index of the blob
+     * @return the buffer
+     */
+    private ByteBuffer getReadBuffer(int i) throws IOException {
+        checkElementIndex(i, data.size());
+        if (readIndex != i) {
+            int n = (int) Math.min(blobSize, length - (long)i * blobSize);
+            if (chunkCache.isEnabled()) {
+                readBuffer = chunkCache.get(data.get(i), n);
+            } else {
+                // re-use the buffer
+                if (readBuffer == null) {
+                    readBuffer = ByteBuffer.allocate(blobSize);
+                }
+                readBuffer.clear().limit(n);
+                BlobChunkCache.read(data.get(i), readBuffer);
+            }
+            readIndex = i;
+        }
+        return readBuffer;
+    }
+
     @Override
     public OakIndexFile clone() {
         return new OakBufferedIndexFile(this);
@@ -213,12 +264,13 @@ class OakBufferedIndexFile implements OakIndexFile {
     @Override
     public void close() {
         this.blob = null;
+        this.readBuffer = null;
         this.data = null;
     }
 
     @Override
     public boolean isClosed() {
-        return blob == null && data == null;
+        return data == null;
     }
 
     @Override
@@ -248,10 +300,15 @@ class OakBufferedIndexFile implements OakIndexFile {
         int i = (int) (position / blobSize);
         int o = (int) (position % blobSize);
         while (len > 0) {
-            loadBlob(i);
-
             int l = Math.min(len, blobSize - o);
-            System.arraycopy(blob, o, b, offset, l);
+            if (i == index) {
+                // the blob that is loaded for writing
+                System.arraycopy(blob, o, b, offset, l);
+            } else {
+                ByteBuffer buffer = getReadBuffer(i);
+                buffer.position(o);
+                buffer.get(b, offset, l);
+            }
 
             offset += l;
             len -= l;
@@ -263,6 +320,20 @@ class OakBufferedIndexFile implements OakIndexFile {
         }
     }
 
+    @Override
+    public byte readByte() throws IOException {
+        if (position >= length) {
+            String msg = String.format("Invalid byte request for [%s][%s], " +
+                    "position: %d, file length: %d", dirDetails, name, position, length);
+            throw new IOException(msg);
+        }
+        int i = (int) (position / blobSize);
+        int o = (int) (position % blobSize);
+        byte b = i == index ? blob[o] : getReadBuffer(i).get(o);
+        position++;
+        return b;
+    }
+
     @Override
     public void writeBytes(byte[] b, int offset, int len)
             throws IOException {
@@ -283,6 +354,9 @@ class OakBufferedIndexFile implements OakIndexFile {
                     // and either: l is the blockSize, or
                     // we write at least to the end of the file
                     flushBlob();
+                    if (blob == null) {
+                        blob = new byte[blobSize];
+                    }
                     index = i;
                 }
             }
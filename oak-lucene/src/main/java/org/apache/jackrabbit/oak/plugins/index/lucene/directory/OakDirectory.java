@@ -31,6 +31,7 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PerfLogger;
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.InMemoryDataRecord;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.ActiveDeletedBlobCollectorFactory.BlobDeletionCallback;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
@@ -71,6 +72,8 @@ public class OakDirectory extends Directory {
     public static final String PROP_UNSAFE_FOR_ACTIVE_DELETION = "unsafeForActiveDeletion";
     static final int UNIQUE_KEY_SIZE = 16;
 
+    private static final Set<String> LARGE_FILE_EXTENSIONS = ImmutableSet.of("fdt", "doc", "pos", "pay", "tvd");
+
     private final static SecureRandom secureRandom = new SecureRandom();
 
     protected final NodeBuilder builder;
@@ -215,7 +218,7 @@ public class OakDirectory extends Directory {
         secureRandom.nextBytes(uniqueKey);
         String key = StringUtils.convertBytesToHex(uniqueKey);
         file.setProperty(PROP_UNIQUE_KEY, key);
-        file.setProperty(PROP_BLOB_SIZE, definition.getBlobSize());
+        file.setProperty(PROP_BLOB_SIZE, getBlobSize(definition, name));
         if (blobDeletionCallback.isMarkingForActiveDeletionUnsafe()) {
             file.setProperty(PROP_UNSAFE_FOR_ACTIVE_DELETION, true);
             LOG.debug("Setting {} under {} as unsafe for active deletion", name, indexName);
@@ -344,4 +347,24 @@ public class OakDirectory extends Directory {
         return result;
     }
 
+    /**
+     * Get the size of the blobs the given file is split into. Large files use
+     * larger blobs, if configured in the index definition (see
+     * {@link LuceneIndexConstants#LARGE_BLOB_SIZE}).
+     *
+     * @param definition the index definition
+     * @param fileName the file name
+     * @return the blob size
+     */
+    static int getBlobSize(LuceneIndexDefinition definition, String fileName) {
+        int blobSize = definition.getBlobSize();
+        int largeBlobSize = definition.getLargeBlobSize();
+        if (largeBlobSize > blobSize) {
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+            if (LARGE_FILE_EXTENSIONS.contains(extension)) {
+                return largeBlobSize;
+            }
+        }
+        return blobSize;
+    }
 }
@@ -99,6 +99,13 @@ public interface OakIndexFile {
     void readBytes(byte[] b, int offset, int len)
             throws IOException;
 
+    /**
+     * Read a single byte from underlying storage.
+     * @return the byte at the current location of access
+     * @throws IOException
+     */
+    byte readByte() throws IOException;
+
     /**
      * Writes {@code len} number of bytes from byte array {@code b}
      * starting at {@code offset} into the underlying storage
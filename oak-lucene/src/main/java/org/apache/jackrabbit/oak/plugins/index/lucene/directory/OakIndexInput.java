@@ -68,9 +68,7 @@ class OakIndexInput extends IndexInput {
     @Override
     public byte readByte() throws IOException {
         checkNotClosed();
-        byte[] b = new byte[1];
-        readBytes(b, 0, 1);
-        return b[0];
+        return file.readByte();
     }
 
     @Override
@@ -244,6 +244,28 @@ class OakStreamingIndexFile implements OakIndexFile, AutoCloseable {
         position += len;
     }
 
+    @Override
+    public byte readByte() throws IOException {
+        if (position >= length) {
+            String msg = String.format("Invalid byte request for [%s][%s], " +
+                    "position: %d, file length: %d", dirDetails, name, position, length);
+            releaseInputStream();
+            throw new IOException(msg);
+        }
+
+        setupInputStream();
+        int b = blobInputStream.read();
+        if (b < 0) {
+            String msg = String.format("Couldn't read byte for [%s][%s], " +
+                    "position: %d, file length: %d", dirDetails, name, position, length);
+            releaseInputStream();
+            throw new IOException(msg);
+        }
+
+        position++;
+        return (byte) b;
+    }
+
     @Override
     public void writeBytes(final byte[] b, final int offset, final int len)
             throws IOException {
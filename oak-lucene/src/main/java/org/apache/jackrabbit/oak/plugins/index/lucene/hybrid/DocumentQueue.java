@@ -24,16 +24,23 @@ import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Striped;
@@ -63,6 +70,8 @@ public class DocumentQueue implements Closeable, IndexingQueue {
     private final CounterStats queueSizeStats;
     private final MeterStats added;
     private final MeterStats dropped;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong delayedCount = new AtomicLong();
     private final Striped<Lock> locks = Striped.lock(64);
     private UncaughtExceptionHandler delegate = (t, e) -> {};
 
@@ -72,6 +81,12 @@ public class DocumentQueue implements Closeable, IndexingQueue {
      */
     private final int offerTimeMillis;
 
+    /**
+     * Maximum number of threads used to process the queued docs of
+     * different indexes in parallel
+     */
+    private final int workers;
+
     private volatile boolean stopped;
 
     /**
@@ -143,9 +158,15 @@ public class DocumentQueue implements Closeable, IndexingQueue {
     }
 
     public DocumentQueue(int maxQueueSize, IndexTracker tracker, Executor executor, StatisticsProvider sp) {
+        this(maxQueueSize, tracker, executor, sp, 1);
+    }
+
+    public DocumentQueue(int maxQueueSize, IndexTracker tracker, Executor executor, StatisticsProvider sp,
+                         int workers) {
         this.docsQueue = new LinkedBlockingDeque<>(maxQueueSize);
         this.tracker = tracker;
         this.executor = executor;
+        this.workers = Math.max(1, workers);
         this.offerTimeMillis = 100; //Wait for at most 100 mills while adding stuff to queue
         this.queueSizeStats = sp.getCounterStats("HYBRID_QUEUE_SIZE", StatsOptions.DEFAULT);
         this.added = sp.getMeter("HYBRID_ADDED", StatsOptions.DEFAULT);
@@ -168,11 +189,18 @@ public class DocumentQueue implements Closeable, IndexingQueue {
     @Override
     public boolean add(LuceneDoc doc){
         checkState(!stopped);
-        boolean added = false;
-        try {
-            added = docsQueue.offer(doc, offerTimeMillis, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        boolean added = docsQueue.offer(doc);
+        if (!added) {
+            //Queue is full. Wait for the background processing to catch up
+            scheduleQueuedDocsProcessing();
+            try {
+                added = docsQueue.offer(doc, offerTimeMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (added) {
+                delayedCount.incrementAndGet();
+            }
         }
         scheduleQueuedDocsProcessing();
 
@@ -183,6 +211,7 @@ public class DocumentQueue implements Closeable, IndexingQueue {
             }
         } else {
             dropped.mark();
+            droppedCount.incrementAndGet();
         }
         return added;
     }
@@ -208,27 +237,87 @@ public class DocumentQueue implements Closeable, IndexingQueue {
         this.delegate = delegate;
     }
 
+    /**
+     * Number of docs which could not be added to the queue as it was full,
+     * and were therefore not indexed locally
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Number of docs which were added to the queue only after waiting for
+     * space in the queue
+     */
+    public long getDelayedCount() {
+        return delayedCount.get();
+    }
+
+    public int getQueueSize() {
+        return docsQueue.size();
+    }
+
     private void addDocsToIndex(Map<String, Collection<LuceneDoc>> docsPerIndex, boolean docsFromQueue) {
-        //If required it can optimized by indexing diff indexes in parallel
-        //Something to consider if it becomes a bottleneck
+        if (docsFromQueue && workers > 1 && docsPerIndex.size() > 1) {
+            addDocsToIndexInParallel(docsPerIndex);
+            return;
+        }
         for (Map.Entry<String, Collection<LuceneDoc>> e : docsPerIndex.entrySet()) {
-            //In NRT case the indexing would be single threaded as it always happens via queue
-            //For sync case it can happen that indexing is requested by LocalIndexObserver and also
-            //via elements in queue. So we need to lock the indexing path
-            //Lock contention should not happen much as in most cases elements added
-            //to queue would get processed before observer is invoked
-            String indexPath = e.getKey();
-            Lock indexingLock = locks.get(indexPath);
-            indexingLock.lock();
-            try {
-                processDocs(indexPath, e.getValue(), docsFromQueue);
-            } finally {
-                indexingLock.unlock();
+            addDocsToIndex(e.getKey(), e.getValue(), docsFromQueue);
+        }
+    }
+
+    /**
+     * Indexes the docs of different indexes in parallel. The current thread
+     * takes part in the processing, and then waits for the docs of indexes
+     * taken up by other threads
+     */
+    private void addDocsToIndexInParallel(Map<String, Collection<LuceneDoc>> docsPerIndex) {
+        final Queue<Map.Entry<String, Collection<LuceneDoc>>> pending =
+                new ConcurrentLinkedQueue<>(docsPerIndex.entrySet());
+        final CountDownLatch done = new CountDownLatch(pending.size());
+        Runnable worker = () -> {
+            Map.Entry<String, Collection<LuceneDoc>> e;
+            while ((e = pending.poll()) != null) {
+                try {
+                    addDocsToIndex(e.getKey(), e.getValue(), true);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        int helpers = Math.min(workers, docsPerIndex.size()) - 1;
+        try {
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(worker);
             }
-            added.mark(e.getValue().size());
+        } catch (RejectedExecutionException e) {
+            log.debug("Processing queued docs in the current thread", e);
+        }
+        worker.run();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    private void addDocsToIndex(String indexPath, Collection<LuceneDoc> docs, boolean docsFromQueue) {
+        //In NRT case the indexing of an index is single threaded as it always happens via queue
+        //For sync case it can happen that indexing is requested by LocalIndexObserver and also
+        //via elements in queue. So we need to lock the indexing path
+        //Lock contention should not happen much as in most cases elements added
+        //to queue would get processed before observer is invoked
+        Lock indexingLock = locks.get(indexPath);
+        indexingLock.lock();
+        try {
+            processDocs(indexPath, docs, docsFromQueue);
+        } finally {
+            indexingLock.unlock();
+        }
+        added.mark(docs.size());
+    }
+
     List<LuceneDoc> getQueuedDocs(){
         List<LuceneDoc> docs = Lists.newArrayList();
         docs.addAll(docsQueue);
@@ -250,21 +339,15 @@ public class DocumentQueue implements Closeable, IndexingQueue {
 
         try{
             LuceneIndexWriter writer = indexNode.getLocalWriter();
+            if (writer == null) {
+                //IndexDefinition per LuceneIndexNode might have changed and local
+                //indexing is disabled. Ignore
+                log.debug("No local IndexWriter found for index [{}]. Skipping {} index " +
+                        "entries", indexPath, Iterables.size(docs));
+                return;
+            }
             boolean docAdded = false;
-            for (LuceneDoc doc : docs) {
-                if (writer == null) {
-                    //IndexDefinition per LuceneIndexNode might have changed and local
-                    //indexing is disabled. Ignore
-                    log.debug("No local IndexWriter found for index [{}]. Skipping index " +
-                            "entry for [{}]", indexPath, doc.docPath);
-                    return;
-                }
-                if (doc.isProcessed()){
-                    //Skip already processed doc entry
-                    continue;
-                } else {
-                    doc.markProcessed();
-                }
+            for (LuceneDoc doc : latestPerPath(docs)) {
                 if (doc.delete) {
                     writer.deleteDocuments(doc.docPath);
                 } else {
@@ -287,6 +370,25 @@ public class DocumentQueue implements Closeable, IndexingQueue {
         }
     }
 
+    /**
+     * Marks the docs as processed, and returns the unprocessed ones, with
+     * only the last doc of each path. As the local index only ever adds
+     * documents, earlier docs of the same path would only add duplicates
+     */
+    private static Collection<LuceneDoc> latestPerPath(Iterable<LuceneDoc> docs) {
+        Map<String, LuceneDoc> latest = new LinkedHashMap<>();
+        for (LuceneDoc doc : docs) {
+            if (doc.isProcessed()) {
+                //Skip already processed doc entry
+                continue;
+            }
+            doc.markProcessed();
+            latest.remove(doc.docPath);
+            latest.put(doc.docPath, doc);
+        }
+        return latest.values();
+    }
+
     @Override
     public void close() throws IOException {
         //Its fine to "drop" any entry in queue as
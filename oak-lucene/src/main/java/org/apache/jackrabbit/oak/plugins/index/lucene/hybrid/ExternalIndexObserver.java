@@ -25,6 +25,7 @@ import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexTracker;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneDocumentMaker;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.ReadAccessTokens;
 import org.apache.jackrabbit.oak.plugins.observation.Filter;
 import org.apache.jackrabbit.oak.spi.commit.CommitContext;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -101,6 +102,7 @@ class ExternalIndexObserver implements Observer, Filter {
         int indexedCount = 0;
         TimerStats.Context ctx = timer.time();
         Set<String> indexPaths = Sets.newHashSet();
+        ReadAccessTokens readAccessTokens = null;
         for (IndexedPathInfo indexData : indexedPaths) {
             String path = indexData.getPath();
             NodeState indexedNode = null;
@@ -132,7 +134,14 @@ class ExternalIndexObserver implements Observer, Filter {
                 }
                 indexPaths.add(indexPath);
                 try {
-                    Document doc = new LuceneDocumentMaker(defn, indexingRule, path).makeDocument(indexedNode);
+                    LuceneDocumentMaker documentMaker = new LuceneDocumentMaker(defn, indexingRule, path);
+                    if (defn.indexAccessTokens()) {
+                        if (readAccessTokens == null) {
+                            readAccessTokens = new ReadAccessTokens(after);
+                        }
+                        documentMaker.setReaders(readAccessTokens.getReaders(path));
+                    }
+                    Document doc = documentMaker.makeDocument(indexedNode);
 
                     if (doc != null) {
                         if (indexingQueue.add(LuceneDoc.forUpdate(indexPath, path, doc))) {
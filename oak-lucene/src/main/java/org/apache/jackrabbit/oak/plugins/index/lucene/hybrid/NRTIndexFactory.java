@@ -30,6 +30,7 @@ import com.google.common.collect.ListMultimap;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexCopier;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.update.DemandRefreshPolicy;
 import org.apache.jackrabbit.oak.plugins.index.search.update.IndexUpdateListener;
 import org.apache.jackrabbit.oak.plugins.index.search.update.RefreshOnWritePolicy;
 import org.apache.jackrabbit.oak.plugins.index.search.update.TimedRefreshPolicy;
@@ -53,11 +54,17 @@ public class NRTIndexFactory implements Closeable{
      */
     private static final int MAX_INDEX_COUNT = 3;
     private static final int REFRESH_DELTA_IN_SECS = Integer.getInteger("oak.lucene.refreshDeltaSecs", 1);
+    /**
+     * If set, the readers of nrt indexes are refreshed on demand (see
+     * {@link DemandRefreshPolicy}), after at most this number of pending docs
+     */
+    private static final long REFRESH_MAX_PENDING_DOCS = Long.getLong("oak.lucene.refreshMaxPendingDocs", 0);
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final ListMultimap<String, NRTIndex> indexes = LinkedListMultimap.create();
     private final IndexCopier indexCopier;
     private final Clock clock;
     private final long refreshDeltaInSecs;
+    private long refreshMaxPendingDocs = REFRESH_MAX_PENDING_DOCS;
     private final StatisticsProvider statisticsProvider;
     private NRTDirectoryFactory directoryFactory = DefaultNRTDirFactory.INSTANCE;
     private boolean assertAllResourcesClosed = Boolean.getBoolean("oak.lucene.assertAllResourcesClosed");
@@ -150,9 +157,23 @@ public class NRTIndexFactory implements Closeable{
             return new RefreshOnWritePolicy();
             //return new RefreshOnReadPolicy(clock, TimeUnit.SECONDS, refreshDeltaInSecs);
         }
+        if (refreshMaxPendingDocs > 0) {
+            return new DemandRefreshPolicy(clock, TimeUnit.SECONDS, refreshDeltaInSecs, refreshMaxPendingDocs);
+        }
         return new TimedRefreshPolicy(clock, TimeUnit.SECONDS, refreshDeltaInSecs);
     }
 
+    /**
+     * Sets the maximum number of docs added to an nrt index before its
+     * readers are refreshed. If positive, readers are otherwise only
+     * refreshed when the index is queried. If 0 (the default, unless the
+     * system property "oak.lucene.refreshMaxPendingDocs" is set), readers
+     * are refreshed at the refresh delta interval
+     */
+    public void setRefreshMaxPendingDocs(long refreshMaxPendingDocs) {
+        this.refreshMaxPendingDocs = refreshMaxPendingDocs;
+    }
+
     private enum DefaultNRTDirFactory implements NRTDirectoryFactory {
         INSTANCE;
 
@@ -0,0 +1,642 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.NoMergeScheduler;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterUtils.getIndexWriterConfig;
+
+/**
+ * Runs large segment merges of async indexes in the background, so that
+ * they don't block the indexing cycle.
+ * <p>
+ * While an index is updated, merges where the source segments are larger
+ * than the configured minimum size are not run by the index writer (which
+ * would wait for them when it is closed). Instead, once the writer is
+ * closed, the latest commit is copied to a local snapshot (using hard links
+ * if possible), and the merges are run on the snapshot using the executor.
+ * Each merge results in a standalone index with a single segment.
+ * <p>
+ * The merged segments are published in a subsequent indexing cycle, when the
+ * writer is opened: the source segments are removed, documents that were
+ * deleted from the source segments in the meantime are deleted from the
+ * merged segment, and the merged segment is added to the index. Merges where
+ * the source segments changed (for example because the index was reindexed)
+ * are discarded.
+ * <p>
+ * Adding the merged segment copies its files to the index directory, so
+ * publishing writes as many bytes as the merged segment has, in the indexing
+ * cycle. To bound this cost, at most {@code oak.lucene.backgroundMergeMaxPublishMB}
+ * (default 64) of merged segments are published per cycle (but at least one
+ * segment); the remaining ones are published in the following cycles.
+ */
+public class BackgroundMerger implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(BackgroundMerger.class);
+
+    private static final long MAX_PUBLISH_SIZE =
+            Long.getLong("oak.lucene.backgroundMergeMaxPublishMB", 64) * 1024 * 1024;
+
+    private final File workDir;
+    private final Executor executor;
+    private final long minMergeSize;
+    private final Set<String> deferred = Sets.newConcurrentHashSet();
+    private final ConcurrentMap<String, MergeTask> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong mergedBytes = new AtomicLong();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final MeterStats mergedBytesMeter;
+    private final TimerStats mergeTimer;
+    private final TimerStats publishTimer;
+    private final TimerStats closeTimer;
+    private volatile boolean closed;
+
+    /**
+     * Create a background merger.
+     *
+     * @param workDir the directory for snapshots and merged segments (any
+     *            existing content is removed)
+     * @param executor the executor used to run the merges
+     * @param statisticsProvider the statistics provider
+     * @param minMergeSize the minimum size of the source segments of a merge,
+     *            in bytes, to run it in the background
+     */
+    public BackgroundMerger(File workDir, Executor executor, StatisticsProvider statisticsProvider,
+                            long minMergeSize) throws IOException {
+        this.workDir = checkNotNull(workDir);
+        this.executor = checkNotNull(executor);
+        this.minMergeSize = minMergeSize;
+        FileUtils.deleteDirectory(workDir);
+        FileUtils.forceMkdir(workDir);
+        this.mergedBytesMeter = statisticsProvider.getMeter("LUCENE_BACKGROUND_MERGE_BYTES", StatsOptions.METRICS_ONLY);
+        this.mergeTimer = statisticsProvider.getTimer("LUCENE_BACKGROUND_MERGE_TIME", StatsOptions.METRICS_ONLY);
+        this.publishTimer = statisticsProvider.getTimer("LUCENE_BACKGROUND_MERGE_PUBLISH_TIME", StatsOptions.METRICS_ONLY);
+        this.closeTimer = statisticsProvider.getTimer("LUCENE_WRITER_CLOSE_TIME", StatsOptions.METRICS_ONLY);
+    }
+
+    /**
+     * Get the number of bytes (of source segments) merged in the background.
+     */
+    public long getMergedBytes() {
+        return mergedBytes.get();
+    }
+
+    /**
+     * Get the number of merged segments that were added to an index.
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Get the number of merged segments that were discarded, because the
+     * source segments changed.
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * Whether completed background merges are waiting to be published for
+     * the given index directory.
+     */
+    boolean isReady(String key) {
+        MergeTask task = tasks.get(key);
+        return task != null && task.done;
+    }
+
+    /**
+     * Wrap the merge policy of an index writer, so that large merges are not
+     * run by the writer.
+     *
+     * @param key the key of the index directory
+     * @param policy the merge policy
+     * @return the wrapped merge policy
+     */
+    MergePolicy wrap(String key, MergePolicy policy) {
+        return new DeferringMergePolicy(key, policy);
+    }
+
+    /**
+     * Record the time needed to close an index writer, during which the
+     * indexing cycle waits for merges.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    void closed(long nanos) {
+        closeTimer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedule the merges that were deferred while updating the index. This
+     * needs to be called after the index writer was closed, and before the
+     * directory is closed.
+     *
+     * @param key the key of the index directory
+     * @param definition the index definition
+     * @param writerConfig the writer configuration
+     * @param directory the index directory
+     */
+    void schedule(String key, LuceneIndexDefinition definition, LuceneIndexWriterConfig writerConfig,
+                  Directory directory) throws IOException {
+        if (!deferred.remove(key) || closed || tasks.containsKey(key)) {
+            return;
+        }
+        File dir = new File(workDir, UUID.randomUUID().toString());
+        MergeTask task = new MergeTask(key, dir, definition, writerConfig);
+        try {
+            snapshot(directory, task.snapshotDir);
+            tasks.put(key, task);
+            executor.execute(task);
+            log.debug("[{}] Scheduled background merge using {}", key, dir);
+        } catch (IOException | RejectedExecutionException e) {
+            tasks.remove(key, task);
+            task.delete();
+            log.warn("[{}] Could not schedule background merge", key, e);
+        }
+    }
+
+    /**
+     * Publish the merged segments of completed background merges. This needs
+     * to be called when the index writer was opened, before it is used.
+     *
+     * @param key the key of the index directory
+     * @param writer the index writer
+     * @return true if the index was changed
+     */
+    boolean publish(String key, IndexWriter writer) throws IOException {
+        MergeTask task = tasks.get(key);
+        if (task == null || !task.done) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean published = true;
+        try {
+            boolean changed = task.publish(writer, MAX_PUBLISH_SIZE);
+            published = task.merged.isEmpty();
+            return changed;
+        } finally {
+            // otherwise, the remaining segments are published in the next cycle
+            if (published) {
+                tasks.remove(key, task);
+                task.delete();
+            }
+            publishTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Discard the background merges for the given index directory, for
+     * example because the index is reindexed.
+     *
+     * @param key the key of the index directory
+     */
+    void discard(String key) {
+        deferred.remove(key);
+        MergeTask task = tasks.remove(key);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (String key : Lists.newArrayList(tasks.keySet())) {
+            discard(key);
+        }
+    }
+
+    private static void snapshot(Directory directory, File target) throws IOException {
+        SegmentInfos infos = new SegmentInfos();
+        infos.read(directory);
+        File local = getLocalDir(directory);
+        FileUtils.forceMkdir(target);
+        Directory targetDir = FSDirectory.open(target);
+        try {
+            for (String name : infos.files(directory, true)) {
+                // index files are never changed once written, so they can
+                // be shared using hard links
+                File file = local == null ? null : new File(local, name);
+                if (file != null && file.isFile() && file.length() == directory.fileLength(name)) {
+                    try {
+                        Files.createLink(new File(target, name).toPath(), file.toPath());
+                        continue;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        log.debug("Could not link {}, copying it", file, e);
+                    }
+                }
+                directory.copy(targetDir, name, name, IOContext.DEFAULT);
+            }
+        } finally {
+            targetDir.close();
+        }
+    }
+
+    @Nullable
+    private static File getLocalDir(Directory directory) {
+        while (directory instanceof FilterDirectory) {
+            directory = ((FilterDirectory) directory).getDelegate();
+        }
+        return directory instanceof FSDirectory ? ((FSDirectory) directory).getDirectory() : null;
+    }
+
+    private static long sizeOf(List<SegmentCommitInfo> segments) throws IOException {
+        long size = 0;
+        for (SegmentCommitInfo info : segments) {
+            size += info.sizeInBytes();
+        }
+        return size;
+    }
+
+    private static Map<String, SegmentReader> getSegments(IndexReader reader) {
+        Map<String, SegmentReader> segments = Maps.newHashMap();
+        for (AtomicReaderContext context : reader.leaves()) {
+            AtomicReader r = context.reader();
+            if (r instanceof SegmentReader) {
+                SegmentReader s = (SegmentReader) r;
+                segments.put(s.getSegmentName(), s);
+            }
+        }
+        return segments;
+    }
+
+    private static IndexWriterConfig newConfig(LuceneIndexDefinition definition,
+                                               LuceneIndexWriterConfig writerConfig) {
+        IndexWriterConfig config = getIndexWriterConfig(definition, false, writerConfig);
+        config.setMergePolicy(definition.getMergePolicy());
+        return config;
+    }
+
+    private class DeferringMergePolicy extends MergePolicy {
+        private final String key;
+        private final MergePolicy delegate;
+
+        DeferringMergePolicy(String key, MergePolicy delegate) {
+            this.key = key;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void setIndexWriter(IndexWriter writer) {
+            super.setIndexWriter(writer);
+            delegate.setIndexWriter(writer);
+        }
+
+        @Override
+        public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos infos) throws IOException {
+            MergeSpecification spec = delegate.findMerges(mergeTrigger, infos);
+            if (spec == null) {
+                return null;
+            }
+            MergeSpecification result = new MergeSpecification();
+            for (OneMerge merge : spec.merges) {
+                if (sizeOf(merge.segments) >= minMergeSize) {
+                    deferred.add(key);
+                } else {
+                    result.add(merge);
+                }
+            }
+            return result.merges.isEmpty() ? null : result;
+        }
+
+        @Override
+        public MergeSpecification findForcedMerges(SegmentInfos infos, int maxSegmentCount,
+                                                   Map<SegmentCommitInfo, Boolean> segmentsToMerge) throws IOException {
+            return delegate.findForcedMerges(infos, maxSegmentCount, segmentsToMerge);
+        }
+
+        @Override
+        public MergeSpecification findForcedDeletesMerges(SegmentInfos infos) throws IOException {
+            return delegate.findForcedDeletesMerges(infos);
+        }
+
+        @Override
+        public boolean useCompoundFile(SegmentInfos infos, SegmentCommitInfo mergedInfo) throws IOException {
+            return delegate.useCompoundFile(infos, mergedInfo);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        @Override
+        public String toString() {
+            return "Deferring(" + delegate + ")";
+        }
+    }
+
+    /**
+     * A merge that was run in the background.
+     */
+    private static class MergedSegment {
+        /**
+         * The names of the source segments. Segment names are not reused
+         * within an index (the index writer increments a counter).
+         */
+        final Set<String> sources;
+        final File dir;
+
+        MergedSegment(Set<String> sources, File dir) {
+            this.sources = sources;
+            this.dir = dir;
+        }
+
+        boolean isValid(Map<String, SegmentReader> current) {
+            return current.keySet().containsAll(sources);
+        }
+    }
+
+    private class MergeTask implements Runnable {
+        private final String key;
+        private final File dir;
+        private final File snapshotDir;
+        private final LuceneIndexDefinition definition;
+        private final LuceneIndexWriterConfig writerConfig;
+        private volatile List<MergedSegment> merged = Collections.emptyList();
+        private volatile boolean done;
+        private volatile boolean cancelled;
+
+        MergeTask(String key, File dir, LuceneIndexDefinition definition, LuceneIndexWriterConfig writerConfig) {
+            this.key = key;
+            this.dir = dir;
+            this.snapshotDir = new File(dir, "snapshot");
+            this.definition = definition;
+            this.writerConfig = writerConfig;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!cancelled) {
+                    merged = merge();
+                }
+            } catch (Throwable e) {
+                log.warn("[{}] Background merge failed", key, e);
+                merged = Collections.emptyList();
+            }
+            done = true;
+            if (cancelled) {
+                delete();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (done) {
+                delete();
+            }
+        }
+
+        void delete() {
+            FileUtils.deleteQuietly(dir);
+        }
+
+        private List<MergedSegment> merge() throws IOException {
+            List<MergedSegment> result = Lists.newArrayList();
+            Directory snapshot = FSDirectory.open(snapshotDir);
+            try {
+                SegmentInfos infos = new SegmentInfos();
+                infos.read(snapshot);
+                MergePolicy.MergeSpecification spec;
+                // the writer is only needed by the merge policy, to find the merges
+                IndexWriterConfig config = newConfig(definition, writerConfig);
+                config.setMergeScheduler(NoMergeScheduler.INSTANCE);
+                IndexWriter writer = new IndexWriter(snapshot, config);
+                try {
+                    spec = config.getMergePolicy().findMerges(MergePolicy.MergeTrigger.EXPLICIT, infos);
+                } finally {
+                    writer.rollback();
+                }
+                if (spec == null) {
+                    return result;
+                }
+                DirectoryReader reader = DirectoryReader.open(snapshot);
+                try {
+                    Map<String, SegmentReader> segments = getSegments(reader);
+                    for (MergePolicy.OneMerge merge : spec.merges) {
+                        long size = sizeOf(merge.segments);
+                        if (size < minMergeSize) {
+                            continue;
+                        }
+                        if (cancelled) {
+                            break;
+                        }
+                        result.add(merge(merge, segments, size, new File(dir, "merged-" + result.size())));
+                    }
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                snapshot.close();
+            }
+            return result;
+        }
+
+        private MergedSegment merge(MergePolicy.OneMerge merge, Map<String, SegmentReader> segments,
+                                    long size, File target) throws IOException {
+            long start = System.nanoTime();
+            Set<String> sources = Sets.newLinkedHashSet();
+            List<IndexReader> readers = Lists.newArrayList();
+            for (SegmentCommitInfo info : merge.segments) {
+                sources.add(info.info.name);
+                readers.add(checkNotNull(segments.get(info.info.name)));
+            }
+            Directory targetDir = FSDirectory.open(target);
+            try {
+                IndexWriter writer = new IndexWriter(targetDir, newConfig(definition, writerConfig));
+                try {
+                    writer.addIndexes(readers.toArray(new IndexReader[readers.size()]));
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                targetDir.close();
+            }
+            long nanos = System.nanoTime() - start;
+            mergedBytes.addAndGet(size);
+            mergedBytesMeter.mark(size);
+            mergeTimer.update(nanos, TimeUnit.NANOSECONDS);
+            log.debug("[{}] Merged segments {} ({} bytes) in {} ms", key, sources, size,
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+            return new MergedSegment(sources, target);
+        }
+
+        /**
+         * Publish the merged segments, until the given size is reached. The
+         * published and discarded segments are removed from the list.
+         */
+        boolean publish(IndexWriter writer, long maxSize) throws IOException {
+            if (merged.isEmpty()) {
+                return false;
+            }
+            boolean changed = false;
+            long publishedSize = 0;
+            DirectoryReader current = DirectoryReader.open(writer, true);
+            Directory snapshot = FSDirectory.open(snapshotDir);
+            DirectoryReader snapshotReader = null;
+            try {
+                snapshotReader = DirectoryReader.open(snapshot);
+                Map<String, SegmentReader> currentSegments = getSegments(current);
+                Map<String, SegmentReader> snapshotSegments = getSegments(snapshotReader);
+                List<MergedSegment> remaining = Lists.newArrayList(merged);
+                while (!remaining.isEmpty() && publishedSize < maxSize) {
+                    MergedSegment m = remaining.remove(0);
+                    merged = remaining;
+                    if (!m.isValid(currentSegments)) {
+                        discardedCount.incrementAndGet();
+                        log.debug("[{}] Discarding merged segment, as segments {} changed", key, m.sources);
+                        FileUtils.deleteQuietly(m.dir);
+                        continue;
+                    }
+                    Set<String> deletedPaths = getDeletedPaths(m, snapshotSegments, currentSegments);
+                    Directory mergedDir = FSDirectory.open(m.dir);
+                    try {
+                        if (!deletedPaths.isEmpty()) {
+                            IndexWriter w = new IndexWriter(mergedDir, newConfig(definition, writerConfig));
+                            try {
+                                for (String path : deletedPaths) {
+                                    w.deleteDocuments(newPathTerm(path));
+                                }
+                            } finally {
+                                w.close();
+                            }
+                        }
+                        // the deletes are applied before the merged segment is added
+                        writer.deleteDocuments(new ConstantScoreQuery(new SegmentFilter(m.sources)));
+                        writer.addIndexes(mergedDir);
+                        publishedSize += FileUtils.sizeOfDirectory(m.dir);
+                    } finally {
+                        mergedDir.close();
+                    }
+                    publishedCount.incrementAndGet();
+                    changed = true;
+                    FileUtils.deleteQuietly(m.dir);
+                    log.debug("[{}] Replaced segments {} with merged segment", key, m.sources);
+                }
+            } finally {
+                if (snapshotReader != null) {
+                    snapshotReader.close();
+                }
+                snapshot.close();
+                current.close();
+            }
+            return changed;
+        }
+
+        /**
+         * Get the paths of the documents that were deleted from the source
+         * segments after the snapshot was taken.
+         */
+        private Set<String> getDeletedPaths(MergedSegment m, Map<String, SegmentReader> snapshotSegments,
+                                            Map<String, SegmentReader> currentSegments) throws IOException {
+            Set<String> paths = Sets.newHashSet();
+            Set<String> fields = ImmutableSet.of(FieldNames.PATH);
+            for (String name : m.sources) {
+                SegmentReader before = checkNotNull(snapshotSegments.get(name));
+                Bits liveBefore = before.getLiveDocs();
+                Bits liveNow = currentSegments.get(name).getLiveDocs();
+                if (liveNow == null) {
+                    continue;
+                }
+                for (int i = 0; i < before.maxDoc(); i++) {
+                    if ((liveBefore == null || liveBefore.get(i)) && !liveNow.get(i)) {
+                        paths.add(before.document(i, fields).get(FieldNames.PATH));
+                    }
+                }
+            }
+            return paths;
+        }
+    }
+
+    /**
+     * Matches all documents of the given segments.
+     */
+    private static class SegmentFilter extends Filter {
+        private final Set<String> segments;
+
+        SegmentFilter(Set<String> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) {
+            AtomicReader reader = context.reader();
+            if (reader instanceof SegmentReader
+                    && segments.contains(((SegmentReader) reader).getSegmentName())) {
+                FixedBitSet bits = new FixedBitSet(reader.maxDoc());
+                bits.set(0, reader.maxDoc());
+                return BitsFilteredDocIdSet.wrap(bits, acceptDocs);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.lucene.index.IndexableField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A writer that hands the documents to a background thread, so that the
+ * analysis of the documents, and flushing of segments, of multiple indexes
+ * can run concurrently. The operations of one writer are applied in order,
+ * one at a time, using the shared executor. The number of pending
+ * operations is bounded: if the queue is full, the caller is blocked.
+ * <p>
+ * The underlying index writer (and directory) is opened, and closed (that
+ * is, committed), in the caller thread. Closing waits for all pending
+ * operations. If an operation fails, the remaining ones are skipped, and the
+ * failure is thrown on the next call, so that the indexing cycle fails.
+ */
+class ConcurrentIndexWriter implements LuceneIndexWriter {
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentIndexWriter.class);
+
+    private final DefaultIndexWriter writer;
+    private final Executor executor;
+    private final int queueSize;
+
+    private final Queue<IndexOperation> queue = new ArrayDeque<>();
+
+    /**
+     * Whether a task to process the queue was submitted to the executor, and
+     * didn't finish yet.
+     */
+    private boolean scheduled;
+
+    private boolean opened;
+
+    private Throwable failure;
+
+    private boolean aborted;
+
+    ConcurrentIndexWriter(DefaultIndexWriter writer, Executor executor, int queueSize) {
+        this.writer = writer;
+        this.executor = executor;
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    @Override
+    public void updateDocument(String path, Iterable<? extends IndexableField> doc) throws IOException {
+        add(() -> writer.updateDocument(path, doc));
+    }
+
+    @Override
+    public void deleteDocuments(String path) throws IOException {
+        add(() -> writer.deleteDocuments(path));
+    }
+
+    @Override
+    public boolean close(long timestamp) throws IOException {
+        synchronized (this) {
+            while (scheduled) {
+                awaitChange();
+            }
+            checkFailure();
+        }
+        return writer.close(timestamp);
+    }
+
+    /**
+     * Discard all pending operations, for example because the indexing cycle
+     * failed. The writer can not be used afterwards.
+     */
+    synchronized void abort() {
+        aborted = true;
+        queue.clear();
+        notifyAll();
+    }
+
+    private void add(IndexOperation op) throws IOException {
+        synchronized (this) {
+            checkFailure();
+            if (!opened) {
+                // the directory is opened in the caller thread, as this
+                // accesses the node builder
+                writer.getWriter();
+                opened = true;
+            }
+            while (queue.size() >= queueSize) {
+                awaitChange();
+                checkFailure();
+            }
+            queue.add(op);
+            if (!scheduled) {
+                try {
+                    executor.execute(this::processQueue);
+                } catch (RejectedExecutionException e) {
+                    queue.clear();
+                    throw new IOException("Could not schedule the index update", e);
+                }
+                scheduled = true;
+            }
+        }
+    }
+
+    private void processQueue() {
+        while (true) {
+            IndexOperation op;
+            synchronized (this) {
+                op = queue.poll();
+                notifyAll();
+                if (op == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                op.run();
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (!aborted) {
+                        log.debug("Index update failed, skipping {} pending updates", queue.size(), t);
+                    }
+                    failure = t;
+                    queue.clear();
+                }
+            }
+        }
+    }
+
+    private void awaitChange() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for index updates", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (aborted) {
+            throw new IOException("Index updates were aborted");
+        }
+        if (failure != null) {
+            if (failure instanceof IOException) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            throw new IOException("Index update failed", failure);
+        }
+    }
+
+    private interface IndexOperation {
+        void run() throws IOException;
+    }
+}
@@ -41,9 +41,11 @@ import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.store.Directory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +65,7 @@ class DefaultIndexWriter implements LuceneIndexWriter {
     private final String suggestDirName;
     private final boolean reindex;
     private final LuceneIndexWriterConfig writerConfig;
+    private BackgroundMerger backgroundMerger;
     private IndexWriter writer;
     private Directory directory;
     private long genAtStart = -1;
@@ -80,6 +83,17 @@ class DefaultIndexWriter implements LuceneIndexWriter {
         this.writerConfig = writerConfig;
     }
 
+    /**
+     * Set the background merger, which runs large merges outside of the
+     * indexing cycle. Only supported for local directories.
+     *
+     * @param backgroundMerger the background merger, or null to run all
+     *            merges in the writer
+     */
+    void setBackgroundMerger(@Nullable BackgroundMerger backgroundMerger) {
+        this.backgroundMerger = backgroundMerger;
+    }
+
     @Override
     public void updateDocument(String path, Iterable<? extends IndexableField> doc) throws IOException {
         Iterator<? extends IndexableField> f = doc.iterator();
@@ -132,6 +146,11 @@ class DefaultIndexWriter implements LuceneIndexWriter {
             getWriter();
         }
 
+        if (writer == null && !reindex && backgroundMerger != null && backgroundMerger.isReady(getMergeKey())) {
+            log.debug("Publishing background merges although no index changes were detected in current cycle");
+            getWriter();
+        }
+
         if (writer != null) {
             if (log.isTraceEnabled()) {
                 trackIndexSizeInfo(writer, definition, directory);
@@ -144,6 +163,7 @@ class DefaultIndexWriter implements LuceneIndexWriter {
                 PERF_LOGGER.end(start, -1, "Completed suggester for directory {}", definition);
             }
 
+            long closeStart = System.nanoTime();
             writer.close();
             PERF_LOGGER.end(start, -1, "Closed writer for directory {}", definition);
 
@@ -152,6 +172,11 @@ class DefaultIndexWriter implements LuceneIndexWriter {
                 indexUpdated = genAtEnd != genAtStart;
             }
 
+            if (backgroundMerger != null) {
+                backgroundMerger.closed(System.nanoTime() - closeStart);
+                backgroundMerger.schedule(getMergeKey(), definition, writerConfig, directory);
+            }
+
             directory.close();
             PERF_LOGGER.end(start, -1, "Closed directory for directory {}", definition);
         }
@@ -165,15 +190,30 @@ class DefaultIndexWriter implements LuceneIndexWriter {
             final long start = PERF_LOGGER.start();
             directory = directoryFactory.newInstance(definition, definitionBuilder, dirName, reindex);
             IndexWriterConfig config = getIndexWriterConfig(definition, directoryFactory.remoteDirectory(), writerConfig);
-            config.setMergePolicy(definition.getMergePolicy());
+            MergePolicy mergePolicy = definition.getMergePolicy();
+            if (backgroundMerger != null) {
+                if (reindex) {
+                    backgroundMerger.discard(getMergeKey());
+                } else {
+                    mergePolicy = backgroundMerger.wrap(getMergeKey(), mergePolicy);
+                }
+            }
+            config.setMergePolicy(mergePolicy);
             writer = new IndexWriter(directory, config);
             genAtStart = getLatestGeneration(directory);
+            if (backgroundMerger != null && !reindex) {
+                indexUpdated |= backgroundMerger.publish(getMergeKey(), writer);
+            }
             log.trace("IndexWriterConfig for index [{}] is {}", definition.getIndexPath(), config);
             PERF_LOGGER.end(start, -1, "Created IndexWriter for directory {}", definition);
         }
         return writer;
     }
 
+    private String getMergeKey() {
+        return definition.getIndexPath() + "/" + dirName;
+    }
+
     /**
      * eventually update suggest dictionary
      * @throws IOException if suggest dictionary update fails
@@ -19,7 +19,11 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import com.google.common.base.Preconditions;
+import org.apache.jackrabbit.oak.plugins.index.IndexCommitCallback;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexWriterFactory;
@@ -28,19 +32,54 @@ import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.jetbrains.annotations.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newCopyOnWriteArrayList;
+
+public class DefaultIndexWriterFactory implements LuceneIndexWriterFactory, IndexCommitCallback {
+    /**
+     * The maximum number of pending updates per index, if writing concurrently.
+     */
+    private static final int WRITER_QUEUE_SIZE = Integer.getInteger("oak.lucene.writerQueueSize", 100);
 
-public class DefaultIndexWriterFactory implements LuceneIndexWriterFactory {
     private final MountInfoProvider mountInfoProvider;
     private final DirectoryFactory directoryFactory;
     private final LuceneIndexWriterConfig writerConfig;
+    private final Executor writerExecutor;
+    private final List<ConcurrentIndexWriter> concurrentWriters = newCopyOnWriteArrayList();
+    private BackgroundMerger backgroundMerger;
 
     public DefaultIndexWriterFactory(MountInfoProvider mountInfoProvider,
                                      DirectoryFactory directoryFactory, LuceneIndexWriterConfig writerConfig) {
+        this(mountInfoProvider, directoryFactory, writerConfig, null);
+    }
+
+    /**
+     * Create a factory.
+     *
+     * @param writerExecutor if set, documents are written concurrently using
+     *            this executor (only if the directory is local, and there
+     *            are no mounts)
+     */
+    public DefaultIndexWriterFactory(MountInfoProvider mountInfoProvider,
+                                     DirectoryFactory directoryFactory, LuceneIndexWriterConfig writerConfig,
+                                     @Nullable Executor writerExecutor) {
         this.mountInfoProvider = checkNotNull(mountInfoProvider);
         this.directoryFactory = checkNotNull(directoryFactory);
         this.writerConfig = checkNotNull(writerConfig);
+        this.writerExecutor = writerExecutor;
+    }
+
+    /**
+     * Set the background merger, which runs large merges outside of the
+     * indexing cycle (only if the directory is local, and there are no
+     * mounts).
+     *
+     * @param backgroundMerger the background merger, or null
+     */
+    public void setBackgroundMerger(@Nullable BackgroundMerger backgroundMerger) {
+        this.backgroundMerger = backgroundMerger;
     }
 
     @Override
@@ -56,8 +95,30 @@ public class DefaultIndexWriterFactory implements LuceneIndexWriterFactory {
             return new MultiplexingIndexWriter(directoryFactory, mountInfoProvider, definition,
                 definitionBuilder, reindex, writerConfig);
         }
-        return new DefaultIndexWriter(definition, definitionBuilder, directoryFactory,
+        DefaultIndexWriter writer = new DefaultIndexWriter(definition, definitionBuilder, directoryFactory,
                 FulltextIndexConstants.INDEX_DATA_CHILD_NAME,
                 LuceneIndexConstants.SUGGEST_DATA_CHILD_NAME, reindex, writerConfig);
+        if (!directoryFactory.remoteDirectory()) {
+            writer.setBackgroundMerger(backgroundMerger);
+        }
+        // with a remote directory, segments are written to the node builder,
+        // which must not be done concurrently
+        if (writerExecutor != null && !directoryFactory.remoteDirectory()) {
+            ConcurrentIndexWriter concurrentWriter = new ConcurrentIndexWriter(writer, writerExecutor, WRITER_QUEUE_SIZE);
+            concurrentWriters.add(concurrentWriter);
+            return concurrentWriter;
+        }
+        return writer;
+    }
+
+    @Override
+    public void commitProgress(IndexProgress indexProgress) {
+        if (indexProgress != IndexProgress.COMMIT_SUCCEDED) {
+            // discard pending updates of writers that were not closed
+            for (ConcurrentIndexWriter writer : concurrentWriters) {
+                writer.abort();
+            }
+        }
+        concurrentWriters.clear();
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.jcr.GuestCredentials;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import javax.jcr.security.Privilege;
+
+import com.google.common.io.Closer;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.jcr.Jcr;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.lucene.util.IndexDefinitionBuilder;
+import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.commons.JcrUtils.getOrCreateByPath;
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider.compose;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexAccessTokensTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    private Closer closer;
+
+    private Session session;
+    private QueryManager adminQe;
+    private QueryManager anonQe;
+    private AsyncIndexUpdate asyncIndexUpdate;
+
+    @Before
+    public void setup() throws Exception {
+        closer = Closer.create();
+        createRepository();
+        createIndex();
+    }
+
+    @After
+    public void after() throws IOException {
+        closer.close();
+    }
+
+    private void createRepository() throws RepositoryException, IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        closer.register(new ExecutorCloser(executorService));
+        IndexCopier copier = new IndexCopier(executorService, temporaryFolder.getRoot());
+        LuceneIndexEditorProvider editorProvider = new LuceneIndexEditorProvider(copier);
+        LuceneIndexProvider queryIndexProvider = new LuceneIndexProvider(copier);
+        NodeStore nodeStore = new MemoryNodeStore(INITIAL_CONTENT);
+        queryIndexProvider.getTracker().setNodeStore(nodeStore);
+        asyncIndexUpdate = new AsyncIndexUpdate("async", nodeStore,
+                compose(Arrays.asList(editorProvider, new NodeCounterEditorProvider())));
+        Oak oak = new Oak(nodeStore)
+                .with((QueryIndexProvider) queryIndexProvider)
+                .with((Observer) queryIndexProvider)
+                .with(editorProvider);
+        Repository repository = new Jcr(oak).createRepository();
+
+        session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()), null);
+        closer.register(session::logout);
+        adminQe = session.getWorkspace().getQueryManager();
+
+        Session anonSession = repository.login(new GuestCredentials());
+        closer.register(anonSession::logout);
+        anonQe = anonSession.getWorkspace().getQueryManager();
+    }
+
+    private void createIndex() throws RepositoryException {
+        IndexDefinitionBuilder idxBuilder = new IndexDefinitionBuilder();
+        idxBuilder.evaluatePathRestrictions()
+                .indexRule("nt:base")
+                .property("foo")
+                .propertyIndex();
+        idxBuilder.getBuilderTree().setProperty(FulltextIndexConstants.INDEX_ACCESS_TOKENS, true);
+
+        Node indexNode = getOrCreateByPath("/oak:index", "nt:unstructured", session)
+                .addNode("index", INDEX_DEFINITIONS_NODE_TYPE);
+        idxBuilder.build(indexNode);
+        session.save();
+    }
+
+    @Test
+    public void filterByReaders() throws Exception {
+        Node content = getOrCreateByPath("/content", "oak:Unstructured", session);
+        Node readable = content.addNode("readable");
+        Node hidden = content.addNode("hidden");
+        for (int i = 0; i < 3; i++) {
+            readable.addNode("c" + i).setProperty("foo", "bar");
+            hidden.addNode("c" + i).setProperty("foo", "bar");
+        }
+        AccessControlUtils.allow(readable, "anonymous", Privilege.JCR_READ);
+        session.save();
+        asyncIndexUpdate.run();
+
+        String query = "select [jcr:path] from [nt:base] where [foo] = 'bar'";
+        assertEquals(6, getPaths(adminQe, query).size());
+        assertEquals(paths("/content/readable", 3), getPaths(anonQe, query));
+
+        String plan = getPlan(anonQe, query);
+        assertTrue(plan, plan.contains(":readers:anonymous"));
+        // the default read paths are readable by everyone
+        assertTrue(plan, plan.contains(":path:/jcr:system/jcr:nodeTypes"));
+        assertFalse(getPlan(adminQe, query).contains(":readers:"));
+
+        // until the index is updated, the tokens are not used
+        AccessControlUtils.allow(hidden, "everyone", Privilege.JCR_READ);
+        session.save();
+        Set<String> expected = paths("/content/readable", 3);
+        expected.addAll(paths("/content/hidden", 3));
+        assertEquals(expected, getPaths(anonQe, query));
+        assertFalse(getPlan(anonQe, query).contains(":readers:"));
+
+        // the next cycle updates the tokens of the subtree
+        asyncIndexUpdate.run();
+        assertEquals(expected, getPaths(anonQe, query));
+        assertTrue(getPlan(anonQe, query).contains(":readers:anonymous"));
+    }
+
+    @Test
+    public void revokeAccess() throws Exception {
+        Node content = getOrCreateByPath("/content", "oak:Unstructured", session);
+        Node readable = content.addNode("readable");
+        for (int i = 0; i < 3; i++) {
+            readable.addNode("c" + i).setProperty("foo", "bar");
+        }
+        AccessControlUtils.allow(readable, "anonymous", Privilege.JCR_READ);
+        session.save();
+        asyncIndexUpdate.run();
+
+        String query = "select [jcr:path] from [nt:base] where [foo] = 'bar'";
+        assertEquals(paths("/content/readable", 3), getPaths(anonQe, query));
+
+        AccessControlUtils.clear(readable, "anonymous");
+        session.save();
+        asyncIndexUpdate.run();
+        assertTrue(getPaths(anonQe, query).isEmpty());
+    }
+
+    private static Set<String> paths(String parent, int count) {
+        Set<String> paths = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            paths.add(parent + "/c" + i);
+        }
+        return paths;
+    }
+
+    private static Set<String> getPaths(QueryManager qe, String query) throws RepositoryException {
+        QueryResult result = qe.createQuery(query, Query.JCR_SQL2).execute();
+        Set<String> paths = new TreeSet<>();
+        for (RowIterator it = result.getRows(); it.hasNext(); ) {
+            paths.add(it.nextRow().getPath());
+        }
+        return paths;
+    }
+
+    private static String getPlan(QueryManager qe, String query) throws RepositoryException {
+        QueryResult result = qe.createQuery("explain " + query, Query.JCR_SQL2).execute();
+        Row row = result.getRows().nextRow();
+        return row.getValue("plan").getString();
+    }
+}
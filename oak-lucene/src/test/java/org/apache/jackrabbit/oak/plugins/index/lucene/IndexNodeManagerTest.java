@@ -40,6 +40,7 @@ import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.junit.After;
@@ -110,6 +111,49 @@ public class IndexNodeManagerTest {
         assertEquals(1, docs.totalHits);
     }
 
+    @Test
+    public void resultCache() throws Exception{
+        NodeState defn = createNRTIndex().builder()
+                .setProperty(LuceneIndexConstants.RESULT_CACHE_SIZE, 1024 * 1024L).getNodeState();
+        LuceneIndexNodeManager nodeManager = LuceneIndexNodeManager.open("/foo", root, defn, readerFactory, nrtFactory);
+        LuceneIndexNode node = nodeManager.acquire();
+        LuceneResultCache cache = node.getResultCache();
+        assertNotNull(cache);
+        TermQuery query = new TermQuery(new Term(PATH, "/content/en"));
+        int id = node.getIndexNodeId();
+        assertNull(cache.get(id, query, null, null, 100));
+        cache.put(id, query, null, null, 100, node.getSearcher().search(query, 100));
+        assertEquals(0, cache.get(id, query, null, null, 100).totalHits);
+        assertEquals(1, cache.getHitCount());
+        assertTrue(cache.getMemory() > 0);
+        node.release();
+
+        node = nodeManager.acquire();
+        node.getLocalWriter().updateDocument("/content/en", newDoc("/content/en"));
+        node.refreshReadersOnWriteIfRequired();
+        node.release();
+
+        node = nodeManager.acquire();
+        assertTrue(id != node.getIndexNodeId());
+        assertEquals(0, cache.getMemory());
+        assertNull(cache.get(id, query, null, null, 100));
+        assertNull(cache.get(node.getIndexNodeId(), query, null, null, 100));
+        // results of the old readers are not cached any longer
+        cache.put(id, query, null, null, 100, new TopDocs(0, new ScoreDoc[0], Float.NaN));
+        assertEquals(0, cache.getMemory());
+        node.release();
+        nodeManager.close();
+    }
+
+    @Test
+    public void noResultCache() throws Exception{
+        LuceneIndexNodeManager nodeManager = LuceneIndexNodeManager.open("/foo", root, createNRTIndex(), readerFactory, nrtFactory);
+        LuceneIndexNode node = nodeManager.acquire();
+        assertNull(node.getResultCache());
+        node.release();
+        nodeManager.close();
+    }
+
     @Test
     public void nullIndex_NonFreshIndex() throws Exception{
         NodeBuilder builder = createNRTIndex().builder();
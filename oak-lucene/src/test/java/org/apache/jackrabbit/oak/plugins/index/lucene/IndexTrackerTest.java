@@ -20,9 +20,12 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -288,6 +291,86 @@ public class IndexTrackerTest {
         assertEquals(indexNodeId, indexNodeId2);
     }
 
+    @Test
+    public void warmupInBackground() throws Exception{
+        final List<Runnable> tasks = Lists.newArrayList();
+        tracker.setIndexWarmer(new LuceneIndexWarmer(null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        }));
+
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        newLucenePropertyIndexDefinition(index, "lucene", ImmutableSet.of("foo"), "async")
+                .setProperty(LuceneIndexConstants.WARMUP, ImmutableSet.of(LuceneIndexWarmer.WARMUP_TERMS), Type.STRINGS);
+
+        NodeState before = builder.getNodeState();
+        builder.setProperty("foo", "bar");
+        NodeState after = builder.getNodeState();
+
+        NodeState indexed = hook.processCommit(before, after, CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        //A new index is used right away
+        LuceneIndexNode indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        assertEquals(1, indexNode.getSearcher().getIndexReader().numDocs());
+        indexNode.release();
+        runAll(tasks);
+
+        before = indexed;
+        builder = before.builder();
+        builder.child("a").setProperty("foo", "bar");
+        after = builder.getNodeState();
+
+        indexed = hook.processCommit(before, after, CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        //The old version is used until the new one is warmed up
+        assertEquals(1, tasks.size());
+        indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        assertEquals(1, indexNode.getSearcher().getIndexReader().numDocs());
+        indexNode.release();
+
+        runAll(tasks);
+        indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        assertEquals(2, indexNode.getSearcher().getIndexReader().numDocs());
+        indexNode.release();
+
+        //A version that is superseded while warming up is not used
+        before = indexed;
+        builder = before.builder();
+        builder.child("b").setProperty("foo", "bar");
+        after = builder.getNodeState();
+        indexed = hook.processCommit(before, after, CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        before = indexed;
+        builder = before.builder();
+        builder.child("c").setProperty("foo", "bar");
+        after = builder.getNodeState();
+        indexed = hook.processCommit(before, after, CommitInfo.EMPTY);
+        tracker.update(indexed);
+
+        assertEquals(2, tasks.size());
+        tasks.remove(1).run();
+        indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        assertEquals(4, indexNode.getSearcher().getIndexReader().numDocs());
+        indexNode.release();
+
+        runAll(tasks);
+        indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        assertEquals(4, indexNode.getSearcher().getIndexReader().numDocs());
+        indexNode.release();
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        tasks.clear();
+    }
+
     private NodeState corruptIndex(String indexPath) {
         NodeBuilder dir = TestUtil.child(builder, PathUtils.concat(indexPath, ":data"));
         for (String name : dir.getChildNodeNames()){
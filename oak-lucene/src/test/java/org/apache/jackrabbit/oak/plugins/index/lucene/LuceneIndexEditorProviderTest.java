@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.io.File;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang3.reflect.FieldUtils;
@@ -38,8 +40,11 @@ import org.apache.jackrabbit.oak.spi.mount.Mounts;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.lucene.document.Document;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.newLucenePropertyIndexDefinition;
@@ -50,6 +55,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class LuceneIndexEditorProviderTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
     private NodeState root = INITIAL_CONTENT;
     private NodeBuilder builder = root.builder();
 
@@ -118,6 +126,28 @@ public class LuceneIndexEditorProviderTest {
         assertNull(editor);
     }
 
+    @Test
+    public void concurrentWriterForAsync() throws Exception {
+        IndexCopier copier = new IndexCopier(sameThreadExecutor(), temporaryFolder.getRoot());
+        LuceneIndexEditorProvider editorProvider = new LuceneIndexEditorProvider(copier,
+                null,
+                null,
+                null,
+                Mounts.defaultMountInfoProvider());
+        editorProvider.setWriterExecutor(sameThreadExecutor());
+
+        IndexUpdateCallback callback = new TestCallback("/oak:index/fooIndex", newCommitInfo(), false, true);
+        NodeBuilder defnBuilder = createIndexDefinition("fooIndex").builder();
+        LuceneIndexEditor editor = (LuceneIndexEditor) editorProvider.getIndexEditor(TYPE_LUCENE, defnBuilder, root, callback);
+        assertEquals("ConcurrentIndexWriter", editor.getContext().getWriter().getClass().getSimpleName());
+
+        callback = new TestCallback("/oak:index/fooIndex", newCommitInfo(), false, false);
+        editorProvider.setWriterExecutor(null);
+        editor = (LuceneIndexEditor) editorProvider.getIndexEditor(TYPE_LUCENE, defnBuilder, root, callback);
+        assertEquals("DefaultIndexWriter", editor.getContext().getWriter().getClass().getSimpleName());
+        copier.close();
+    }
+
     private NodeState createIndexDefinition(String idxName) {
         NodeBuilder idx = newLucenePropertyIndexDefinition(builder.child("oak:index"),
                 idxName, ImmutableSet.of("foo"), "async");
@@ -48,6 +48,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.property.PropertyIndexClea
 import org.apache.jackrabbit.oak.plugins.index.lucene.reader.DefaultIndexReaderFactory;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.PersistentExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
@@ -189,6 +190,23 @@ public class LuceneIndexProviderServiceTest {
         MockOsgi.deactivate(service, context.bundleContext());
     }
 
+    @Test
+    public void writerThreads() {
+        Map<String,Object> config = getDefaultConfig();
+        config.put("enableCopyOnWriteSupport", true);
+        MockOsgi.activate(service, context.bundleContext(), config);
+        LuceneIndexEditorProvider editorProvider =
+                (LuceneIndexEditorProvider) context.getService(IndexEditorProvider.class);
+        assertNull(editorProvider.getWriterExecutor());
+        MockOsgi.deactivate(service, context.bundleContext());
+
+        config.put("writerThreads", 4);
+        MockOsgi.activate(service, context.bundleContext(), config);
+        editorProvider = (LuceneIndexEditorProvider) context.getService(IndexEditorProvider.class);
+        assertNotNull(editorProvider.getWriterExecutor());
+        MockOsgi.deactivate(service, context.bundleContext());
+    }
+
     // OAK-7357
     @Test
     public void disableCoRCoW() throws Exception {
@@ -274,6 +292,21 @@ public class LuceneIndexProviderServiceTest {
         assertNull(context.getService(CacheStatsMBean.class));
     }
 
+    @Test
+    public void extractedTextStore() {
+        Map<String,Object> config = getDefaultConfig();
+        MockOsgi.activate(service, context.bundleContext(), config);
+        assertNull(service.getExtractedTextCache().getPersistentStore());
+        MockOsgi.deactivate(service, context.bundleContext());
+
+        config.put("extractedTextStoreSizeInMB", 5);
+        MockOsgi.activate(service, context.bundleContext(), config);
+        PersistentExtractedTextStore store = service.getExtractedTextCache().getPersistentStore();
+        assertNotNull(store);
+        assertEquals(5 * FileUtils.ONE_MB, store.getMaxSize());
+        MockOsgi.deactivate(service, context.bundleContext());
+    }
+
     @Test
     public void preExtractedTextProvider() {
         MockOsgi.activate(service, context.bundleContext(), getDefaultConfig());
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LuceneIndexWarmerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void warmup() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(VERSION, LuceneIndexConstants.ANALYZER));
+        for (int i = 0; i < 100; i++) {
+            Document doc = new Document();
+            doc.add(new StringField(":path", "/n" + i, Field.Store.YES));
+            doc.add(new TextField(":fulltext", "hello world " + i, Field.Store.NO));
+            doc.add(new NumericDocValuesField("num", i));
+            doc.add(new SortedDocValuesField("sorted", new BytesRef("v" + i)));
+            writer.addDocument(doc);
+        }
+        writer.close();
+
+        IndexCopier stats = new IndexCopier(sameThreadExecutor(), folder.getRoot());
+        LuceneIndexWarmer warmer = new LuceneIndexWarmer(stats);
+        DirectoryReader reader = DirectoryReader.open(dir);
+        try {
+            // not configured
+            warmer.warmup(newDefinition(), reader);
+            assertEquals(0, stats.getWarmupCount());
+
+            warmer.warmup(newDefinition(LuceneIndexWarmer.WARMUP_TERMS,
+                    LuceneIndexWarmer.WARMUP_NORMS, LuceneIndexWarmer.WARMUP_DOC_VALUES), reader);
+            assertEquals(1, stats.getWarmupCount());
+            assertTrue(stats.getWarmupTime() >= 0);
+            assertTrue(stats.getWarmupPageFaultCount() >= 0);
+        } finally {
+            reader.close();
+            stats.close();
+        }
+    }
+
+    @Test
+    public void pageFaults() {
+        if (new File("/proc/self/stat").exists()) {
+            assertTrue(LuceneIndexWarmer.getMajorPageFaults() >= 0);
+        }
+    }
+
+    private static LuceneIndexDefinition newDefinition(String... warmup) {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty(LuceneIndexConstants.WARMUP, Arrays.asList(warmup), Type.STRINGS);
+        return new LuceneIndexDefinition(EMPTY_NODE, builder.getNodeState(), "/oak:index/test");
+    }
+
+}
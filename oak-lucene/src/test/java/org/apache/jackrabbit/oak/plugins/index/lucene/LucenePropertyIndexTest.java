@@ -1285,6 +1285,28 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
 
     }
 
+    @Test
+    public void resultCache() throws Exception {
+        Tree idx = createIndex("test1", of("propa"));
+        idx.setProperty(LuceneIndexConstants.RESULT_CACHE_SIZE, 1024 * 1024L);
+        root.commit();
+
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("propa", "x");
+        test.addChild("b").setProperty("propa", "y");
+        root.commit();
+
+        String query = "select [jcr:path] from [nt:base] where [propa] = 'x'";
+        assertQuery(query, asList("/test/a"));
+        assertQuery(query, asList("/test/a"));
+
+        // the cached result is not used for the new version of the index
+        test.addChild("c").setProperty("propa", "x");
+        root.commit();
+        assertQuery(query, asList("/test/a", "/test/c"));
+        assertQuery(query, asList("/test/a", "/test/c"));
+    }
+
     @Test
     public void indexDefinitionBelowRoot() throws Exception {
         Tree parent = root.getTree("/").addChild("test");
@@ -2053,6 +2075,56 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         assertEquals(0, testBlob.accessCount);
     }
 
+    @Test
+    public void prefetchBinaries() throws Exception{
+        Tree idx = createFulltextIndex(root.getTree("/"), "test");
+        TestUtil.useV2(idx);
+        root.commit();
+
+        ExtractedTextCache cache = editorProvider.getExtractedTextCache();
+        cache.setPrefetchThreads(2);
+        try {
+            List<AccessStateProvidingBlob> blobs = Lists.newArrayList();
+            List<String> paths = Lists.newArrayList();
+            Tree test = root.getTree("/").addChild("test");
+            for (int i = 0; i < 10; i++) {
+                AccessStateProvidingBlob blob = new AccessStateProvidingBlob("fox is jumping " + i, "id" + i);
+                blobs.add(blob);
+                createFileNode(test, "text" + i, blob, "text/plain");
+                paths.add("/test/text" + i + "/jcr:content");
+            }
+            root.commit();
+
+            assertQuery("select * from [nt:base] where CONTAINS(*, 'fox ')", paths);
+            for (AccessStateProvidingBlob blob : blobs) {
+                // extracted once, either in the background or by the editor
+                assertEquals(1, blob.accessCount);
+            }
+            assertEquals(0, cache.getStatsMBean().getPrefetchQueueSize());
+            String[] stats = cache.getStatsMBean().getMimeTypeStats();
+            assertEquals(1, stats.length);
+            assertTrue(stats[0], stats[0].startsWith("text/plain: 10 extracted"));
+
+            // files added to an existing node are prefetched as the diff reports them
+            test = root.getTree("/test");
+            for (int i = 10; i < 20; i++) {
+                AccessStateProvidingBlob blob = new AccessStateProvidingBlob("fox is jumping " + i, "id" + i);
+                blobs.add(blob);
+                createFileNode(test, "text" + i, blob, "text/plain");
+                paths.add("/test/text" + i + "/jcr:content");
+            }
+            root.commit();
+
+            assertQuery("select * from [nt:base] where CONTAINS(*, 'fox ')", paths);
+            for (AccessStateProvidingBlob blob : blobs) {
+                assertEquals(1, blob.accessCount);
+            }
+            assertEquals(0, cache.getStatsMBean().getPrefetchQueueSize());
+        } finally {
+            cache.setPrefetchThreads(0);
+        }
+    }
+
     @Test
     public void maxFieldLengthCheck() throws Exception{
         Tree idx = createFulltextIndex(root.getTree("/"), "test");
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LuceneQueryBatchSizeTest {
+
+    @Test
+    public void unknownLimit() {
+        LuceneQueryBatchSize size = new LuceneQueryBatchSize(50, Long.MAX_VALUE);
+        assertEquals(50, size.getBatchSize());
+        size.batchLoaded(50, 50);
+        assertEquals(100, size.getBatchSize());
+        // half of the documents are rejected: load twice as many
+        size.batchLoaded(100, 25);
+        assertEquals(100 * 2 * 150 / 75, size.getBatchSize());
+    }
+
+    @Test
+    public void allRejected() {
+        LuceneQueryBatchSize size = new LuceneQueryBatchSize(50, Long.MAX_VALUE);
+        size.batchLoaded(50, 0);
+        assertEquals(200, size.getBatchSize());
+        size.batchLoaded(200, 0);
+        assertEquals(800, size.getBatchSize());
+    }
+
+    @Test
+    public void limit() {
+        LuceneQueryBatchSize size = new LuceneQueryBatchSize(50, 10);
+        assertEquals(10, size.getBatchSize());
+        // 8 of 10 accepted: the remaining 2 need about 3 documents
+        size.batchLoaded(10, 8);
+        assertEquals(3, size.getBatchSize());
+
+        size = new LuceneQueryBatchSize(50, 500);
+        assertEquals(500, size.getBatchSize());
+        size = new LuceneQueryBatchSize(50, 100000);
+        assertEquals(LuceneQueryBatchSize.MAX_FIRST_BATCH_SIZE, size.getBatchSize());
+        size = new LuceneQueryBatchSize(50, 0);
+        assertEquals(1, size.getBatchSize());
+    }
+
+    @Test
+    public void limitReached() {
+        LuceneQueryBatchSize size = new LuceneQueryBatchSize(50, 10);
+        size.batchLoaded(10, 10);
+        // more entries are read than expected (for example, because the query
+        // engine filtered some): grow as if the limit was unknown
+        assertEquals(20, size.getBatchSize());
+    }
+
+    @Test
+    public void maxBatchSize() {
+        LuceneQueryBatchSize size = new LuceneQueryBatchSize(50, Long.MAX_VALUE);
+        for (int i = 0; i < 20; i++) {
+            size.batchLoaded(size.getBatchSize(), 1);
+        }
+        assertTrue(size.getBatchSize() <= LuceneQueryBatchSize.MAX_BATCH_SIZE);
+        assertEquals(LuceneQueryBatchSize.MAX_BATCH_SIZE, size.getBatchSize());
+    }
+
+}
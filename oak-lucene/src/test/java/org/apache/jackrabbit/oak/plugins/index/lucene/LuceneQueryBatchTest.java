@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.InitialContentHelper;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.lucene.util.IndexDefinitionBuilder;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.query.AbstractQueryTest;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests how Lucene query cursors load their results in batches.
+ */
+public class LuceneQueryBatchTest extends AbstractQueryTest {
+
+    private final RecordingQueryStats stats = new RecordingQueryStats();
+
+    @Override
+    protected void createTestIndexNode() throws Exception {
+        IndexDefinitionBuilder idxb = new IndexDefinitionBuilder().noAsync();
+        idxb.indexRule("nt:base").property("foo").propertyIndex();
+        idxb.build(root.getTree("/").addChild("oak:index").addChild("test"));
+        root.commit();
+    }
+
+    @Override
+    protected ContentRepository createRepository() {
+        LuceneIndexProvider provider = new LuceneIndexProvider() {
+            @Override
+            protected LucenePropertyIndex newLucenePropertyIndex() {
+                return new LucenePropertyIndex(tracker, null, stats);
+            }
+        };
+        return new Oak(new MemoryNodeStore(InitialContentHelper.INITIAL_CONTENT))
+                .with(new OpenSecurityProvider())
+                .with((QueryIndexProvider) provider)
+                .with((Observer) provider)
+                .with(new LuceneIndexEditorProvider())
+                .createContentRepository();
+    }
+
+    @After
+    public void after() {
+        LucenePropertyIndex.setStreamingQuery(false);
+    }
+
+    @Test
+    public void mostDocumentsRejected() throws Exception {
+        createContent();
+        List<String> expected = ImmutableList.of("/b/n0", "/b/n1", "/b/n2");
+        assertQuery("select [jcr:path] from [nt:base] where [foo] = 'x' and isdescendantnode('/b')", expected);
+        // the batch size grows by a factor of 4 while all documents are
+        // rejected: 50, 200, 800 (instead of 50, 100, 200, 400, 800)
+        assertEquals(3, stats.batches);
+        assertEquals(2, stats.reExecutions);
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        LucenePropertyIndex.setStreamingQuery(true);
+        createContent();
+        List<String> expected = ImmutableList.of("/b/n0", "/b/n1", "/b/n2");
+        assertQuery("select [jcr:path] from [nt:base] where [foo] = 'x' and isdescendantnode('/b')", expected);
+        // the query is only executed once
+        assertEquals(3, stats.batches);
+        assertEquals(0, stats.reExecutions);
+    }
+
+    private void createContent() throws Exception {
+        Tree a = root.getTree("/").addChild("a");
+        for (int i = 0; i < 1000; i++) {
+            a.addChild("n" + i).setProperty("foo", "x");
+        }
+        Tree b = root.getTree("/").addChild("b");
+        for (int i = 0; i < 3; i++) {
+            b.addChild("n" + i).setProperty("foo", "x");
+        }
+        root.commit();
+    }
+
+    private static class RecordingQueryStats extends LuceneQueryStats {
+        int batches;
+        int reExecutions;
+
+        RecordingQueryStats() {
+            super(StatisticsProvider.NOOP);
+        }
+
+        @Override
+        void queryDone(int batches, int reExecutions) {
+            this.batches = batches;
+            this.reExecutions = reExecutions;
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LuceneResultCacheTest {
+
+    private final LuceneResultCache cache = new LuceneResultCache(1024 * 1024);
+
+    @Test
+    public void keys() {
+        cache.setGeneration(1);
+        TermQuery query = new TermQuery(new Term("foo", "bar"));
+        Sort sort = new Sort(new SortField("foo", SortField.Type.STRING));
+        ScoreDoc after = new ScoreDoc(3, 1.0f);
+        cache.put(1, query, null, null, 10, newTopDocs(1, 2, 3));
+        cache.put(1, query, sort, null, 10, newTopDocs(3, 2, 1));
+        cache.put(1, query, null, after, 10, newTopDocs(4, 5));
+
+        assertEquals(2, cache.get(1, new TermQuery(new Term("foo", "bar")), null, null, 10).scoreDocs[1].doc);
+        assertEquals(3, cache.get(1, query, new Sort(new SortField("foo", SortField.Type.STRING)),
+                null, 10).scoreDocs[0].doc);
+        assertEquals(2, cache.get(1, query, null, new ScoreDoc(3, 1.0f), 10).totalHits);
+        assertNull(cache.get(1, query, null, null, 20));
+        assertNull(cache.get(1, query, null, new ScoreDoc(2, 1.0f), 10));
+        assertNull(cache.get(1, new TermQuery(new Term("foo", "baz")), null, null, 10));
+        assertNull(cache.get(2, query, null, null, 10));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void copies() {
+        cache.setGeneration(1);
+        TermQuery query = new TermQuery(new Term("foo", "bar"));
+        TopDocs docs = newTopDocs(1, 2);
+        cache.put(1, query, null, null, 10, docs);
+        docs.scoreDocs[0].score = 5;
+
+        TopDocs cached = cache.get(1, query, null, null, 10);
+        assertEquals(1.0f, cached.scoreDocs[0].score, 0);
+        cached.scoreDocs[0].score = 5;
+        cached.scoreDocs = new ScoreDoc[0];
+        cached = cache.get(1, query, null, null, 10);
+        assertEquals(2, cached.scoreDocs.length);
+        assertEquals(1.0f, cached.scoreDocs[0].score, 0);
+
+        SortField[] fields = new SortField[] {new SortField("foo", SortField.Type.STRING)};
+        ScoreDoc[] fieldDocs = new ScoreDoc[] {new FieldDoc(7, 1.0f, new Object[] {"x"})};
+        cache.put(1, query, new Sort(fields), null, 10, new TopFieldDocs(1, fieldDocs, fields, 1.0f));
+        cached = cache.get(1, query, new Sort(fields), null, 10);
+        assertTrue(cached instanceof TopFieldDocs);
+        assertTrue(cached.scoreDocs[0] instanceof FieldDoc);
+        assertEquals("x", ((FieldDoc) cached.scoreDocs[0]).fields[0]);
+    }
+
+    @Test
+    public void generation() {
+        cache.setGeneration(1);
+        TermQuery query = new TermQuery(new Term("foo", "bar"));
+        cache.put(1, query, null, null, 10, newTopDocs(1, 2));
+        assertTrue(cache.getMemory() > 0);
+
+        cache.setGeneration(2);
+        assertEquals(0, cache.getMemory());
+        assertNull(cache.get(1, query, null, null, 10));
+        cache.put(1, query, null, null, 10, newTopDocs(1, 2));
+        assertNull(cache.get(2, query, null, null, 10));
+        cache.put(2, query, null, null, 10, newTopDocs(1, 2));
+        assertNotNull(cache.get(2, query, null, null, 10));
+    }
+
+    @Test
+    public void maxMemory() {
+        LuceneResultCache cache = new LuceneResultCache(64 * 1024);
+        int[] ids = new int[100];
+        for (int i = 0; i < 1000; i++) {
+            cache.put(0, new TermQuery(new Term("foo", "bar" + i)), null, null, 100, newTopDocs(ids));
+        }
+        assertTrue(cache.getMemory() <= cache.getMaxMemory());
+        assertTrue(cache.getMemory() > 0);
+    }
+
+    private static TopDocs newTopDocs(int... ids) {
+        ScoreDoc[] docs = new ScoreDoc[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            docs[i] = new ScoreDoc(ids[i], 1.0f);
+        }
+        return new TopDocs(ids.length, docs, 1.0f);
+    }
+
+}
@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
 import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
@@ -43,9 +44,12 @@ import java.util.Arrays;
 import java.util.List;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.directory.OakDirectory.UNIQUE_KEY_SIZE;
+import static org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants.INDEX_DATA_CHILD_NAME;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -92,6 +96,83 @@ public class ChunkedOakDirectoryTest extends OakDirectoryTestBase {
         store.close();
     }
 
+    @Test
+    public void largeBlobsForLargeFiles() throws Exception {
+        // by default, the blob size is used for all files
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(INITIAL_CONTENT, builder.getNodeState(), "/foo");
+        assertEquals(defn.getBlobSize(), OakDirectory.getBlobSize(defn, "_0.fdt"));
+
+        int largeBlobSize = 4 * 1024 * 1024 - 1024;
+        builder.setProperty(LuceneIndexConstants.LARGE_BLOB_SIZE, largeBlobSize);
+        defn = new LuceneIndexDefinition(INITIAL_CONTENT, builder.getNodeState(), "/foo");
+        assertEquals(largeBlobSize, OakDirectory.getBlobSize(defn, "_0.fdt"));
+        assertEquals(largeBlobSize, OakDirectory.getBlobSize(defn, "_0_Lucene41_0.doc"));
+        assertEquals(defn.getBlobSize(), OakDirectory.getBlobSize(defn, "_0.tim"));
+        assertEquals(defn.getBlobSize(), OakDirectory.getBlobSize(defn, "segments_1"));
+
+        // not used if smaller than the blob size
+        builder.setProperty(FulltextIndexConstants.BLOB_SIZE, largeBlobSize + 1);
+        defn = new LuceneIndexDefinition(INITIAL_CONTENT, builder.getNodeState(), "/foo");
+        assertEquals(largeBlobSize + 1, OakDirectory.getBlobSize(defn, "_0.fdt"));
+    }
+
+    @Test
+    public void clonesShareChunks() throws Exception {
+        builder.setProperty(FulltextIndexConstants.BLOB_SIZE, 300);
+        Directory dir = createDir(builder, false, "/foo");
+        byte[] data = randomBytes(1000);
+        IndexOutput o = dir.createOutput("test.txt", IOContext.DEFAULT);
+        o.writeBytes(data, data.length);
+        o.close();
+
+        BlobChunkCache cache = new BlobChunkCache(1024 * 1024);
+        NodeBuilder file = builder.child(INDEX_DATA_CHILD_NAME).child("test.txt");
+        OakIndexFile input = new OakBufferedIndexFile("test.txt", file, "/foo",
+                BlobFactory.getNodeBuilderBlobFactory(builder), cache);
+        OakIndexFile clone = input.clone();
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], input.readByte());
+        }
+        // random access in the clone
+        for (int i = data.length - 1; i >= 0; i -= 7) {
+            clone.seek(i);
+            assertEquals(data[i], clone.readByte());
+        }
+        byte[] buff = new byte[500];
+        clone.seek(250);
+        clone.readBytes(buff, 0, buff.length);
+        assertArrayEquals(Arrays.copyOfRange(data, 250, 750), buff);
+        // each of the 4 blobs was read only once
+        assertEquals(4, cache.getStats().loadCount());
+        input.close();
+        clone.close();
+        dir.close();
+    }
+
+    @Test
+    public void readWithoutCache() throws Exception {
+        builder.setProperty(FulltextIndexConstants.BLOB_SIZE, 300);
+        Directory dir = createDir(builder, false, "/foo");
+        byte[] data = randomBytes(1000);
+        IndexOutput o = dir.createOutput("test.txt", IOContext.DEFAULT);
+        o.writeBytes(data, data.length);
+        o.flush();
+
+        NodeBuilder file = builder.child(INDEX_DATA_CHILD_NAME).child("test.txt");
+        OakBufferedIndexFile f = new OakBufferedIndexFile("test.txt", file, "/foo",
+                BlobFactory.getNodeBuilderBlobFactory(builder), new BlobChunkCache(0));
+        byte[] buff = new byte[1000];
+        f.readBytes(buff, 0, 400);
+        f.seek(100);
+        assertEquals(data[100], f.readByte());
+        f.seek(400);
+        f.readBytes(buff, 400, 600);
+        f.seek(0);
+        f.readBytes(buff, 0, 100);
+        assertArrayEquals(data, buff);
+        o.close();
+    }
+
     @Override
     void assertBlobSizeInWrite(PropertyState jcrData, int blobSize, int fileSize) {
         List<Blob> blobs = newArrayList(jcrData.getValue(BINARIES));
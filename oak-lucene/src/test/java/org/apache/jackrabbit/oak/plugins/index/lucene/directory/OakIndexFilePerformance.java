@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants.INDEX_DATA_CHILD_NAME;
+
+/**
+ * Compares the seek and read throughput of index files, with and without the
+ * shared chunk cache. Not run as part of the build; run it manually.
+ */
+public class OakIndexFilePerformance {
+
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int BLOB_SIZE = 32 * 1024;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void compare() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        builder.setProperty(FulltextIndexConstants.BLOB_SIZE, BLOB_SIZE);
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(INITIAL_CONTENT, builder.getNodeState(), "/foo");
+        OakDirectory dir = new OakDirectory(builder, INDEX_DATA_CHILD_NAME, defn, false);
+        byte[] data = new byte[FILE_SIZE];
+        new Random(1).nextBytes(data);
+        IndexOutput out = dir.createOutput("test.bin", IOContext.DEFAULT);
+        out.writeBytes(data, data.length);
+        out.close();
+        NodeBuilder file = builder.child(INDEX_DATA_CHILD_NAME).child("test.bin");
+        BlobFactory blobFactory = BlobFactory.getNodeBuilderBlobFactory(builder);
+
+        for (boolean cached : new boolean[] {false, true}) {
+            BlobChunkCache cache = new BlobChunkCache(cached ? 64 * 1024 * 1024 : 0);
+            OakIndexFile f = new OakBufferedIndexFile("test.bin", file, "/foo", blobFactory, cache);
+            String mode = cached ? "shared chunks" : "buffer per clone";
+            run(mode + ", sequential readBytes(1)", () -> {
+                OakIndexFile c = f.clone();
+                byte[] b = new byte[1];
+                for (int i = 0; i < FILE_SIZE; i++) {
+                    c.readBytes(b, 0, 1);
+                }
+                return FILE_SIZE;
+            });
+            run(mode + ", sequential readByte", () -> {
+                OakIndexFile c = f.clone();
+                for (int i = 0; i < FILE_SIZE; i++) {
+                    c.readByte();
+                }
+                return FILE_SIZE;
+            });
+            run(mode + ", clone, seek and read 64 bytes", () -> {
+                Random r = new Random(2);
+                byte[] b = new byte[64];
+                int ops = 100000;
+                for (int i = 0; i < ops; i++) {
+                    OakIndexFile c = f.clone();
+                    c.seek(r.nextInt(FILE_SIZE - b.length));
+                    c.readBytes(b, 0, b.length);
+                }
+                return ops;
+            });
+        }
+        dir.close();
+    }
+
+    private static void run(String name, Operation op) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            op.run();
+        }
+        long ops = 0;
+        long time = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ops += op.run();
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%-50s %,15.0f ops/s%n", name, ops * 1.0 * TimeUnit.SECONDS.toNanos(1) / time);
+    }
+
+    private interface Operation {
+        long run() throws Exception;
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -108,6 +109,9 @@ public class DocumentQueueTest {
 
         //3rd one would be dropped as queue size is 2
         assertFalse(queue.add(LuceneDoc.forDelete("foo", "bar")));
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(0, queue.getDelayedCount());
+        assertEquals(2, queue.getQueueSize());
     }
 
     @Test
@@ -245,6 +249,61 @@ public class DocumentQueueTest {
         assertEquals(3, td.totalHits);
     }
 
+    @Test
+    public void onlyLatestDocPerPath() throws Exception{
+        ListMultimap<String, LuceneDoc> docs = ArrayListMultimap.create();
+        tracker = createTracker();
+        NodeState indexed = createAndPopulateAsyncIndex(FulltextIndexConstants.IndexingMode.SYNC);
+        tracker.update(indexed);
+
+        DocumentQueue queue = new DocumentQueue(2, tracker, sameThreadExecutor());
+
+        docs.get("/oak:index/fooIndex").add(createDoc("/a/c", "bar"));
+        docs.get("/oak:index/fooIndex").add(createDoc("/a/c", "baz"));
+        docs.get("/oak:index/fooIndex").add(createDoc("/a/d", "bar"));
+        queue.addAllSynchronously(docs.asMap());
+
+        assertEquals(2, doSearch("bar").totalHits);
+        assertEquals(1, doSearch("baz").totalHits);
+        for (LuceneDoc doc : docs.values()) {
+            assertTrue(doc.isProcessed());
+        }
+    }
+
+    @Test
+    public void parallelWorkers() throws Exception{
+        tracker = createTracker();
+        createIndexDefinition("barIndex", FulltextIndexConstants.IndexingMode.SYNC);
+        NodeState indexed = createAndPopulateAsyncIndex(FulltextIndexConstants.IndexingMode.SYNC);
+        tracker.update(indexed);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DocumentQueue queue = new DocumentQueue(10, tracker, executor, StatisticsProvider.NOOP, 2);
+            for (String indexPath : new String[] {"/oak:index/fooIndex", "/oak:index/barIndex"}) {
+                for (String docPath : new String[] {"/a/c", "/a/d"}) {
+                    Document d = new Document();
+                    d.add(newPathField(docPath));
+                    d.add(new StringField("foo", "bar", Field.Store.NO));
+                    assertTrue(queue.addIfNotFullWithoutWait(LuceneDoc.forUpdate(indexPath, docPath, d)));
+                }
+            }
+            queue.scheduleQueuedDocsProcessing();
+
+            long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while ((doSearch("/oak:index/fooIndex", "bar").totalHits < 3
+                    || doSearch("/oak:index/barIndex", "bar").totalHits < 3)
+                    && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, doSearch("/oak:index/fooIndex", "bar").totalHits);
+            assertEquals(3, doSearch("/oak:index/barIndex", "bar").totalHits);
+            assertEquals(0, queue.getQueueSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     //@Test
     public void benchMarkIndexWriter() throws Exception{
         Executor executor = Executors.newFixedThreadPool(5);
@@ -302,7 +361,11 @@ public class DocumentQueueTest {
     }
 
     private TopDocs doSearch(String fooValue) throws IOException {
-        LuceneIndexNode indexNode = tracker.acquireIndexNode("/oak:index/fooIndex");
+        return doSearch("/oak:index/fooIndex", fooValue);
+    }
+
+    private TopDocs doSearch(String indexPath, String fooValue) throws IOException {
+        LuceneIndexNode indexNode = tracker.acquireIndexNode(indexPath);
         try {
             return indexNode.getSearcher().search(new TermQuery(new Term("foo", fooValue)), 10);
         } finally {
@@ -27,6 +27,9 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.lucene.TestUtil;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexEditorContext;
 import org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.search.update.DemandRefreshPolicy;
+import org.apache.jackrabbit.oak.plugins.index.search.update.RefreshOnWritePolicy;
+import org.apache.jackrabbit.oak.plugins.index.search.update.TimedRefreshPolicy;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
@@ -86,6 +89,20 @@ public class NRTIndexFactoryTest {
         assertEquals(1, indexFactory.getIndexes("/foo").size());
     }
 
+    @Test
+    public void refreshPolicy() throws Exception{
+        assertTrue(indexFactory.createIndex(getNRTIndexDefinition("/foo")).getRefreshPolicy()
+                instanceof TimedRefreshPolicy);
+        assertTrue(indexFactory.createIndex(getIndexDefinition("/bar", FulltextIndexConstants.IndexingMode.SYNC))
+                .getRefreshPolicy() instanceof RefreshOnWritePolicy);
+
+        indexFactory.setRefreshMaxPendingDocs(100);
+        assertTrue(indexFactory.createIndex(getNRTIndexDefinition("/baz")).getRefreshPolicy()
+                instanceof DemandRefreshPolicy);
+        assertTrue(indexFactory.createIndex(getIndexDefinition("/qux", FulltextIndexConstants.IndexingMode.SYNC))
+                .getRefreshPolicy() instanceof RefreshOnWritePolicy);
+    }
+
     @Test
     public void indexCreationAndCloser() throws Exception{
         LuceneIndexDefinition idxDefn = getNRTIndexDefinition("/foo");
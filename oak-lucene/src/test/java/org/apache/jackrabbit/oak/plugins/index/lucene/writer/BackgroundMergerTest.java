@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.FSDirectoryFactory;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.SUGGEST_DATA_CHILD_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants.INDEX_DATA_CHILD_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackgroundMergerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private NodeState root = INITIAL_CONTENT;
+
+    private NodeBuilder builder = EMPTY_NODE.builder();
+
+    private final List<Runnable> pending = Lists.newArrayList();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(@NotNull Runnable command) {
+            pending.add(command);
+        }
+    };
+
+    @Test
+    public void mergeInBackground() throws Exception {
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        FSDirectoryFactory dirFactory = new FSDirectoryFactory(folder.newFolder("index"));
+        BackgroundMerger merger = new BackgroundMerger(folder.newFolder("merge"), executor,
+                StatisticsProvider.NOOP, 1);
+
+        // one segment per cycle, until the merge policy wants to merge
+        int cycles = 0;
+        while (pending.isEmpty()) {
+            DefaultIndexWriter writer = createWriter(defn, dirFactory, merger);
+            for (int i = 0; i < 10; i++) {
+                writer.updateDocument("/c" + cycles + "/n" + i, newDoc("/c" + cycles + "/n" + i));
+            }
+            assertTrue(writer.close(0));
+            cycles++;
+            assertTrue(cycles < 100);
+        }
+        int segmentsBefore = getSegmentCount(defn, dirFactory);
+        assertTrue(segmentsBefore > 1);
+
+        // change documents of the source segments before the merge is published
+        DefaultIndexWriter writer = createWriter(defn, dirFactory, merger);
+        writer.deleteDocuments("/c0/n1");
+        writer.updateDocument("/c1/n2", newDoc("/c1/n2"));
+        assertTrue(writer.close(0));
+        assertFalse(merger.isReady("/foo/" + INDEX_DATA_CHILD_NAME));
+
+        for (Runnable r : pending) {
+            r.run();
+        }
+        assertTrue(merger.getMergedBytes() > 0);
+        assertTrue(merger.isReady("/foo/" + INDEX_DATA_CHILD_NAME));
+
+        // an idle cycle publishes the merged segment
+        writer = createWriter(defn, dirFactory, merger);
+        assertTrue(writer.close(0));
+        assertEquals(1, merger.getPublishedCount());
+        assertEquals(0, merger.getDiscardedCount());
+        assertTrue(getSegmentCount(defn, dirFactory) < segmentsBefore);
+
+        Directory dir = dirFactory.newInstance(defn, builder, INDEX_DATA_CHILD_NAME, false);
+        DirectoryReader reader = DirectoryReader.open(dir);
+        try {
+            assertEquals(cycles * 10 - 1, reader.numDocs());
+            IndexSearcher searcher = new IndexSearcher(reader);
+            assertEquals(0, searcher.search(new TermQuery(newPathTerm("/c0/n1")), 10).totalHits);
+            assertEquals(1, searcher.search(new TermQuery(newPathTerm("/c1/n2")), 10).totalHits);
+            for (int c = 0; c < cycles; c++) {
+                assertEquals(1, searcher.search(new TermQuery(newPathTerm("/c" + c + "/n5")), 10).totalHits);
+            }
+        } finally {
+            reader.close();
+            dir.close();
+        }
+        merger.close();
+    }
+
+    @Test
+    public void discardOnReindex() throws Exception {
+        LuceneIndexDefinition defn = new LuceneIndexDefinition(root, builder.getNodeState(), "/foo");
+        FSDirectoryFactory dirFactory = new FSDirectoryFactory(folder.newFolder("index"));
+        BackgroundMerger merger = new BackgroundMerger(folder.newFolder("merge"), executor,
+                StatisticsProvider.NOOP, 1);
+
+        int cycles = 0;
+        while (pending.isEmpty()) {
+            DefaultIndexWriter writer = createWriter(defn, dirFactory, merger);
+            writer.updateDocument("/c" + cycles, newDoc("/c" + cycles));
+            assertTrue(writer.close(0));
+            cycles++;
+            assertTrue(cycles < 100);
+        }
+        for (Runnable r : pending) {
+            r.run();
+        }
+        assertTrue(merger.isReady("/foo/" + INDEX_DATA_CHILD_NAME));
+
+        DefaultIndexWriter writer = new DefaultIndexWriter(defn, builder, dirFactory,
+                INDEX_DATA_CHILD_NAME, SUGGEST_DATA_CHILD_NAME, true, new LuceneIndexWriterConfig());
+        writer.setBackgroundMerger(merger);
+        writer.deleteAll();
+        assertTrue(writer.close(0));
+        assertFalse(merger.isReady("/foo/" + INDEX_DATA_CHILD_NAME));
+        assertEquals(0, merger.getPublishedCount());
+        merger.close();
+    }
+
+    private DefaultIndexWriter createWriter(LuceneIndexDefinition defn, FSDirectoryFactory dirFactory,
+                                            BackgroundMerger merger) {
+        DefaultIndexWriter writer = new DefaultIndexWriter(defn, builder, dirFactory,
+                INDEX_DATA_CHILD_NAME, SUGGEST_DATA_CHILD_NAME, false, new LuceneIndexWriterConfig());
+        writer.setBackgroundMerger(merger);
+        return writer;
+    }
+
+    private int getSegmentCount(LuceneIndexDefinition defn, FSDirectoryFactory dirFactory) throws Exception {
+        Directory dir = dirFactory.newInstance(defn, builder, INDEX_DATA_CHILD_NAME, false);
+        DirectoryReader reader = DirectoryReader.open(dir);
+        try {
+            return reader.leaves().size();
+        } finally {
+            reader.close();
+            dir.close();
+        }
+    }
+
+    private static Document newDoc(String path) {
+        Document doc = new Document();
+        doc.add(newPathField(path));
+        return doc;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.DefaultDirectoryFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.OakDirectory;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.newPathField;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.SUGGEST_DATA_CHILD_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants.INDEX_DATA_CHILD_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentIndexWriterTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final NodeBuilder builder = EMPTY_NODE.builder();
+
+    private final LuceneIndexDefinition defn = new LuceneIndexDefinition(INITIAL_CONTENT, builder.getNodeState(), "/foo");
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void updatesInOrder() throws Exception {
+        ConcurrentIndexWriter writer = createWriter(5);
+        for (int i = 0; i < 200; i++) {
+            writer.updateDocument("/a/n" + i, newDocument("/a/n" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            writer.deleteDocuments("/a/n" + i);
+        }
+        // updated again after the delete
+        writer.updateDocument("/a/n0", newDocument("/a/n0"));
+        assertTrue(writer.close(0));
+
+        assertEquals(191, numDocs());
+    }
+
+    @Test
+    public void failure() throws Exception {
+        ConcurrentIndexWriter writer = createWriter(5);
+        writer.updateDocument("/a", newDocument("/a"));
+        Iterable<IndexableField> broken = () -> {
+            throw new IllegalStateException("broken document");
+        };
+        writer.updateDocument("/b", broken);
+        try {
+            // with a bounded queue, the failure is reported before all
+            // documents are added
+            for (int i = 0; i < 100; i++) {
+                writer.updateDocument("/c" + i, newDocument("/c" + i));
+            }
+            fail("Expected the failure to be reported");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void failureOnClose() throws Exception {
+        ConcurrentIndexWriter writer = createWriter(100);
+        writer.updateDocument("/b", () -> {
+            throw new IllegalStateException("broken document");
+        });
+        writer.close(0);
+    }
+
+    @Test(expected = IOException.class)
+    public void abort() throws Exception {
+        ConcurrentIndexWriter writer = createWriter(5);
+        writer.updateDocument("/a", newDocument("/a"));
+        writer.abort();
+        writer.updateDocument("/b", newDocument("/b"));
+    }
+
+    private ConcurrentIndexWriter createWriter(int queueSize) {
+        DefaultIndexWriter writer = new DefaultIndexWriter(defn, builder,
+                new DefaultDirectoryFactory(null, null), INDEX_DATA_CHILD_NAME,
+                SUGGEST_DATA_CHILD_NAME, false, new LuceneIndexWriterConfig());
+        return new ConcurrentIndexWriter(writer, executor, queueSize);
+    }
+
+    private int numDocs() throws IOException {
+        Directory d = new OakDirectory(builder, INDEX_DATA_CHILD_NAME, defn, true);
+        DirectoryReader r = DirectoryReader.open(d);
+        try {
+            return r.numDocs();
+        } finally {
+            r.close();
+        }
+    }
+
+    private static Document newDocument(String path) {
+        Document document = new Document();
+        document.add(newPathField(path));
+        return document;
+    }
+
+}
@@ -179,6 +179,43 @@ public interface Filter {
      */
     boolean isAlwaysFalse();
 
+    /**
+     * Get the maximum number of entries the query is expected to read from
+     * the index, taking the limit and offset of the query into account. This
+     * is only a hint: the query engine may still read more entries, for
+     * example if some of the entries do not match all conditions.
+     *
+     * @return the maximum number of entries, or Long.MAX_VALUE if unknown
+     */
+    default long getMaxEntryCount() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the names of the principals of the user associated with the query
+     * session, so that indexes can skip entries that none of these principals
+     * may read. This is only an optimization: the access is still checked
+     * for each row.
+     *
+     * @return the principal names, or null if entries must not be filtered
+     *         by principal (for example for administrators)
+     */
+    @Nullable
+    default Set<String> getPrincipalNames() {
+        return null;
+    }
+
+    /**
+     * Get the paths of the trees that are readable by everyone (including all
+     * nodes below), if entries are filtered by principal (see
+     * {@link #getPrincipalNames()}).
+     *
+     * @return the read paths
+     */
+    default Set<String> getReadPaths() {
+        return Collections.emptySet();
+    }
+
     /**
      * A restriction for a property.
      */
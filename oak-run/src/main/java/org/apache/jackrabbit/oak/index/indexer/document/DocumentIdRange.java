@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+
+/**
+ * A range of document ids, from (exclusive) to (exclusive). The ranges are
+ * derived from the depth prefix of the ids (see
+ * {@link org.apache.jackrabbit.oak.plugins.document.util.Utils#getIdFromPath(String)}),
+ * so that the documents of a range can be read with an indexed range query.
+ */
+public final class DocumentIdRange {
+    private final String fromKey;
+    private final String toKey;
+
+    public DocumentIdRange(String fromKey, String toKey) {
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+    }
+
+    public String getFromKey() {
+        return fromKey;
+    }
+
+    public String getToKey() {
+        return toKey;
+    }
+
+    /**
+     * Splits the key space of the nodes collection into ranges that together
+     * cover all documents. There is one range per depth that exists in the
+     * store (the depths are found with one query each). Ranges of depth 2 and
+     * more are further split by the given top level node names, so that for
+     * example the documents below {@code /content} and {@code /libs} are in
+     * different ranges.
+     *
+     * @param store the document store
+     * @param topLevelNames the names of the child nodes of the root node
+     * @return the ranges, sorted by key
+     */
+    public static List<DocumentIdRange> split(DocumentStore store, Iterable<String> topLevelNames) {
+        List<DocumentIdRange> ranges = new ArrayList<>();
+        String fromKey = NodeDocument.MIN_ID_VALUE;
+        while (true) {
+            List<NodeDocument> docs = store.query(Collection.NODES, fromKey, NodeDocument.MAX_ID_VALUE, 1);
+            if (docs.isEmpty()) {
+                break;
+            }
+            String id = docs.get(0).getId();
+            int colon = id.indexOf(':');
+            String depth = colon > 0 ? id.substring(0, colon) : "";
+            if (depth.isEmpty() || !depth.chars().allMatch(Character::isDigit)) {
+                // not a depth prefixed id (foreign document): a range
+                // up to and including this id
+                ranges.add(new DocumentIdRange(fromKey, id + '\0'));
+                fromKey = id;
+                continue;
+            }
+            ranges.addAll(splitDepth(depth, Integer.parseInt(depth) >= 2 ? topLevelNames : null));
+            // ';' directly follows ':', so this is the first key after the depth
+            fromKey = depth + ';';
+        }
+        return ranges;
+    }
+
+    private static List<DocumentIdRange> splitDepth(String depth, Iterable<String> topLevelNames) {
+        TreeSet<String> keys = new TreeSet<>();
+        keys.add(depth + ':');
+        keys.add(depth + ';');
+        if (topLevelNames != null) {
+            for (String name : topLevelNames) {
+                // all descendants of /name: ["d:/name/", "d:/name0"), as '0' follows '/'
+                keys.add(depth + ":/" + name + '/');
+                keys.add(depth + ":/" + name + '0');
+            }
+        }
+        List<DocumentIdRange> ranges = new ArrayList<>();
+        String from = null;
+        for (String key : keys) {
+            if (from != null) {
+                ranges.add(new DocumentIdRange(from, key));
+            }
+            from = key;
+        }
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + fromKey + ", " + toKey + ")";
+    }
+}
@@ -20,16 +20,24 @@
 package org.apache.jackrabbit.oak.index.indexer.document;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.index.IndexHelper;
 import org.apache.jackrabbit.oak.index.IndexerSupport;
@@ -57,13 +65,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileNodeStoreBuilder.OAK_INDEXER_TRAVERSAL_THREADS;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 
 public class DocumentStoreIndexer implements Closeable{
+    /**
+     * The number of threads used for indexing. If larger than 1, the flat
+     * file store is kept in the binary format, and split into partitions
+     * that are indexed concurrently.
+     */
+    public static final String OAK_INDEXER_THREADS = "oak.indexer.threads";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final Logger traversalLog = LoggerFactory.getLogger(DocumentStoreIndexer.class.getName()+".traversal");
     private final Closer closer = Closer.create();
     private final IndexHelper indexHelper;
+    private final LuceneIndexerProvider luceneIndexerProvider;
     private final List<NodeStateIndexerProvider> indexerProviders;
     private final IndexerSupport indexerSupport;
     private final IndexingProgressReporter progressReporter =
@@ -73,6 +90,7 @@ public class DocumentStoreIndexer implements Closeable{
     public DocumentStoreIndexer(IndexHelper indexHelper, IndexerSupport indexerSupport) throws IOException {
         this.indexHelper = indexHelper;
         this.indexerSupport = indexerSupport;
+        this.luceneIndexerProvider = createLuceneIndexProvider();
         this.indexerProviders = createProviders();
     }
 
@@ -91,25 +109,26 @@ public class DocumentStoreIndexer implements Closeable{
 
         closer.register(indexer);
 
+        int threads = Integer.getInteger(OAK_INDEXER_THREADS, 1);
+        boolean parallel = threads > 1 && canIndexInParallel();
+        log.info("Indexing with {} threads", parallel ? threads : 1);
+
         //TODO How to ensure we can safely read from secondary
         DocumentNodeState rootDocumentState = (DocumentNodeState) checkpointedState;
         DocumentNodeStore nodeStore = (DocumentNodeStore) indexHelper.getNodeStore();
 
-        NodeStateEntryTraverser nsep =
-                new NodeStateEntryTraverser(rootDocumentState.getRootRevision(),
-                        nodeStore, getMongoDocumentStore())
-                        .withProgressCallback(this::reportDocumentRead)
-                        .withPathPredicate(indexer::shouldInclude);
-        closer.register(nsep);
-
         //As first traversal is for dumping change the message prefix
         progressReporter.setMessagePrefix("Dumping");
 
         //TODO Use flatFileStore only if we have relative nodes to be indexed
-        FlatFileStore flatFileStore = new FlatFileNodeStoreBuilder(nsep, indexHelper.getWorkDir())
+        FlatFileNodeStoreBuilder storeBuilder = createFlatFileNodeStoreBuilder(rootDocumentState, nodeStore, indexer)
                 .withBlobStore(indexHelper.getGCBlobStore())
-                .withPreferredPathElements(indexer.getRelativeIndexedNodeNames())
-                .build();
+                .withPreferredPathElements(indexer.getRelativeIndexedNodeNames());
+        if (parallel) {
+            //Partitions are read using the path index of the binary format
+            storeBuilder.withBinaryFormat(true);
+        }
+        FlatFileStore flatFileStore = storeBuilder.build();
         closer.register(flatFileStore);
 
         progressReporter.reset();
@@ -120,9 +139,13 @@ public class DocumentStoreIndexer implements Closeable{
         progressReporter.reindexingTraversalStart("/");
 
         Stopwatch indexerWatch = Stopwatch.createStarted();
-        for (NodeStateEntry entry : flatFileStore) {
-            reportDocumentRead(entry.getPath());
-            indexer.index(entry);
+        if (parallel) {
+            indexInParallel(flatFileStore, copyOnWriteStore.getRoot(), builder, threads);
+        } else {
+            for (NodeStateEntry entry : flatFileStore) {
+                reportDocumentRead(entry.getPath());
+                indexer.index(entry);
+            }
         }
 
         progressReporter.reindexingTraversalEnd();
@@ -134,6 +157,130 @@ public class DocumentStoreIndexer implements Closeable{
         indexerSupport.postIndexWork(copyOnWriteStore);
     }
 
+    private FlatFileNodeStoreBuilder createFlatFileNodeStoreBuilder(DocumentNodeState rootDocumentState,
+                                                                    DocumentNodeStore nodeStore,
+                                                                    CompositeIndexer indexer) {
+        MongoDocumentStore documentStore = getMongoDocumentStore();
+        int threads = Integer.getInteger(OAK_INDEXER_TRAVERSAL_THREADS, 1);
+        if (threads <= 1) {
+            NodeStateEntryTraverser nsep =
+                    new NodeStateEntryTraverser(rootDocumentState.getRootRevision(),
+                            nodeStore, documentStore)
+                            .withProgressCallback(this::reportDocumentRead)
+                            .withPathPredicate(indexer::shouldInclude);
+            closer.register(nsep);
+            return new FlatFileNodeStoreBuilder(nsep, indexHelper.getWorkDir());
+        }
+
+        List<DocumentIdRange> ranges = DocumentIdRange.split(documentStore, rootDocumentState.getChildNodeNames());
+        log.info("Traversing {} key ranges with {} threads", ranges.size(), threads);
+        List<NodeStateEntryTraverser> traversers = new ArrayList<>();
+        for (DocumentIdRange range : ranges) {
+            NodeStateEntryTraverser nsep =
+                    new NodeStateEntryTraverser(rootDocumentState.getRootRevision(),
+                            nodeStore, documentStore)
+                            .withRange(range)
+                            .withProgressCallback(this::reportDocumentRead)
+                            .withPathPredicate(indexer::shouldInclude);
+            closer.register(nsep);
+            traversers.add(nsep);
+        }
+        return new FlatFileNodeStoreBuilder(traversers, threads, indexHelper.getWorkDir());
+    }
+
+    private boolean canIndexInParallel() {
+        if (indexerPaths.isEmpty()) {
+            // custom indexers
+            return false;
+        }
+        if (indexHelper.getMountInfoProvider().hasNonDefaultMounts()) {
+            log.info("Parallel indexing is not supported with mounts");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Index the partitions of the flat file store concurrently. Each partition
+     * is indexed with its own indexers, which write separate Lucene indexes.
+     * These are then added to the indexes in partition order, so that the
+     * result is the same as when indexing sequentially.
+     */
+    private void indexInParallel(FlatFileStore flatFileStore, NodeState root, NodeBuilder builder, int threads)
+            throws IOException, CommitFailedException {
+        List<Iterable<NodeStateEntry>> partitions = flatFileStore.split(threads);
+        log.info("Indexing {} partitions with {} threads", partitions.size(), threads);
+        File partitionsDir = new File(indexHelper.getWorkDir(), "index-partitions");
+        NodeState base = builder.getNodeState();
+        List<LuceneIndexerProvider> providers = new ArrayList<>();
+        List<List<NodeStateIndexer>> partitionIndexers = new ArrayList<>();
+        Closer partitionCloser = Closer.create();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("oak-indexer-%d").setDaemon(true).build());
+        try {
+            for (int i = 0; i < partitions.size(); i++) {
+                LuceneIndexerProvider provider = luceneIndexerProvider.forPartition(new File(partitionsDir, String.valueOf(i)));
+                List<NodeStateIndexer> indexers = preparePartitionIndexers(root, base.builder(), provider);
+                indexers.forEach(partitionCloser::register);
+                providers.add(provider);
+                partitionIndexers.add(indexers);
+            }
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                Iterable<NodeStateEntry> partition = partitions.get(i);
+                CompositeIndexer indexer = new CompositeIndexer(partitionIndexers.get(i));
+                futures.add(executor.submit(() -> {
+                    indexPartition(partition, indexer);
+                    return null;
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof CommitFailedException) {
+                throw (CommitFailedException) e.getCause();
+            }
+            throw new IOException("Error while indexing", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            partitionCloser.close();
+        }
+
+        luceneIndexerProvider.addPartitions(providers);
+        FileUtils.deleteDirectory(partitionsDir);
+    }
+
+    private void indexPartition(Iterable<NodeStateEntry> partition, CompositeIndexer indexer)
+            throws IOException, CommitFailedException {
+        for (NodeStateEntry entry : partition) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Indexing was cancelled");
+            }
+            reportDocumentRead(entry.getPath());
+            indexer.index(entry);
+        }
+    }
+
+    private List<NodeStateIndexer> preparePartitionIndexers(NodeState root, NodeBuilder builder,
+                                                            NodeStateIndexerProvider indexerProvider) {
+        List<NodeStateIndexer> indexers = new ArrayList<>();
+        for (String indexPath : indexerPaths) {
+            NodeBuilder idxBuilder = IndexerSupport.childBuilder(builder, indexPath, false);
+            String type = idxBuilder.getString(TYPE_PROPERTY_NAME);
+            NodeStateIndexer indexer = indexerProvider.getIndexer(type, indexPath, idxBuilder, root, progressReporter);
+            if (indexer != null) {
+                indexers.add(indexer);
+            }
+        }
+        return indexers;
+    }
+
     private MongoDocumentStore getMongoDocumentStore() {
         return checkNotNull(indexHelper.getService(MongoDocumentStore.class));
     }
@@ -165,7 +312,7 @@ public class DocumentStoreIndexer implements Closeable{
         closer.close();
     }
 
-    private void reportDocumentRead(String id) {
+    private synchronized void reportDocumentRead(String id) {
         try {
             progressReporter.traversedNode(() -> id);
         } catch (CommitFailedException e) {
@@ -206,14 +353,14 @@ public class DocumentStoreIndexer implements Closeable{
 
     private List<NodeStateIndexerProvider> createProviders() throws IOException {
         List<NodeStateIndexerProvider> providers = ImmutableList.of(
-          createLuceneIndexProvider()
+          luceneIndexerProvider
         );
 
         providers.forEach(closer::register);
         return providers;
     }
 
-    private NodeStateIndexerProvider createLuceneIndexProvider() throws IOException {
+    private LuceneIndexerProvider createLuceneIndexProvider() throws IOException {
         return new LuceneIndexerProvider(indexHelper, indexerSupport);
     }
 
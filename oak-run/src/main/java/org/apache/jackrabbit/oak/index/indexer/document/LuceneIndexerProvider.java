@@ -19,41 +19,133 @@
 
 package org.apache.jackrabbit.oak.index.indexer.document;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Closer;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.index.IndexHelper;
 import org.apache.jackrabbit.oak.index.IndexerSupport;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexWriterFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.DirectoryFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.DirectoryUtils;
 import org.apache.jackrabbit.oak.plugins.index.lucene.directory.FSDirectoryFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.DefaultIndexWriterFactory;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterConfig;
 import org.apache.jackrabbit.oak.plugins.index.progress.IndexingProgressReporter;
 import org.apache.jackrabbit.oak.plugins.index.search.ExtractedTextCache;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.spi.binary.FulltextBinaryTextExtractor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.NoLockFactory;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterUtils.getIndexWriterConfig;
+import static org.apache.jackrabbit.oak.plugins.index.search.FulltextIndexConstants.INDEX_DATA_CHILD_NAME;
 
 public class LuceneIndexerProvider implements NodeStateIndexerProvider {
-    private final ExtractedTextCache textCache =
-            new ExtractedTextCache(FileUtils.ONE_MB * 5, TimeUnit.HOURS.toSeconds(5));
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ExtractedTextCache textCache;
     private final IndexHelper indexHelper;
     private final DirectoryFactory dirFactory;
+    private final LuceneIndexWriterConfig writerConfig;
     private final LuceneIndexWriterFactory indexWriterFactory;
+    private final File partitionDir;
+    private final Map<String, LuceneIndexDefinition> definitions = new LinkedHashMap<>();
+    private final Map<String, NodeBuilder> definitionBuilders = new HashMap<>();
+    private final Map<String, File> partitionIndexDirs = new HashMap<>();
 
     public LuceneIndexerProvider(IndexHelper indexHelper, IndexerSupport indexerSupport) throws IOException {
+        this.textCache = new ExtractedTextCache(FileUtils.ONE_MB * 5, TimeUnit.HOURS.toSeconds(5));
         this.indexHelper = indexHelper;
         this.dirFactory = new FSDirectoryFactory(indexerSupport.getLocalIndexDir());
+        this.writerConfig = indexHelper.getLuceneIndexHelper().getWriterConfigForReindex();
         this.indexWriterFactory = new DefaultIndexWriterFactory(indexHelper.getMountInfoProvider(),
-                dirFactory, indexHelper.getLuceneIndexHelper().getWriterConfigForReindex());
+                dirFactory, writerConfig);
+        this.partitionDir = null;
+    }
+
+    private LuceneIndexerProvider(LuceneIndexerProvider parent, File partitionDir) {
+        this.textCache = parent.textCache;
+        this.indexHelper = parent.indexHelper;
+        this.dirFactory = null;
+        this.writerConfig = parent.writerConfig;
+        this.indexWriterFactory = null;
+        this.partitionDir = partitionDir;
+    }
+
+    /**
+     * Create a provider for indexing one partition of the content, when
+     * reindexing in parallel. Its indexers write to separate directories
+     * below the given directory, which are added to the indexes of this
+     * provider using {@link #addPartitions(List)}.
+     *
+     * @param partitionDir the directory for the indexes of the partition
+     * @return the provider
+     */
+    public LuceneIndexerProvider forPartition(File partitionDir) {
+        checkState(this.partitionDir == null, "Already a partition provider");
+        return new LuceneIndexerProvider(this, partitionDir);
+    }
+
+    /**
+     * Add the indexes written by the given partition providers to the indexes
+     * created by this provider. The partitions are added in the given order,
+     * so that the documents are in the same order as if the partitions were
+     * indexed sequentially. This needs to be called before the indexers of
+     * this provider are closed.
+     *
+     * @param partitions the partition providers, whose indexers are closed
+     */
+    public void addPartitions(List<LuceneIndexerProvider> partitions) throws IOException {
+        for (Map.Entry<String, LuceneIndexDefinition> e : definitions.entrySet()) {
+            String indexPath = e.getKey();
+            LuceneIndexDefinition definition = e.getValue();
+            List<Directory> sources = new ArrayList<>();
+            Closer closer = Closer.create();
+            try {
+                for (LuceneIndexerProvider p : partitions) {
+                    File dir = p.partitionIndexDirs.get(indexPath);
+                    if (dir != null) {
+                        sources.add(closer.register(FSDirectory.open(dir, NoLockFactory.getNoLockFactory())));
+                    }
+                }
+                if (sources.isEmpty()) {
+                    continue;
+                }
+                Stopwatch w = Stopwatch.createStarted();
+                Directory target = closer.register(dirFactory.newInstance(definition,
+                        definitionBuilders.get(indexPath), INDEX_DATA_CHILD_NAME, true));
+                IndexWriterConfig config = getIndexWriterConfig(definition, false, writerConfig);
+                config.setMergePolicy(definition.getMergePolicy());
+                try (IndexWriter writer = new IndexWriter(target, config)) {
+                    writer.addIndexes(sources.toArray(new Directory[0]));
+                }
+                log.info("Added {} partitions to index {} in {}", sources.size(), indexPath, w);
+            } finally {
+                closer.close();
+            }
+        }
     }
 
     @Override
@@ -66,7 +158,20 @@ public class LuceneIndexerProvider implements NodeStateIndexerProvider {
 
         LuceneIndexDefinition idxDefinition = LuceneIndexDefinition.newBuilder(root, definition.getNodeState(), indexPath).reindex().build();
 
-        LuceneIndexWriter indexWriter = indexWriterFactory.newInstance(idxDefinition, definition, true);
+        LuceneIndexWriter indexWriter;
+        if (partitionDir == null) {
+            indexWriter = indexWriterFactory.newInstance(idxDefinition, definition, true);
+            definitions.put(indexPath, idxDefinition);
+            definitionBuilders.put(indexPath, definition);
+        } else {
+            try {
+                File dir = DirectoryUtils.createIndexDir(partitionDir, indexPath);
+                partitionIndexDirs.put(indexPath, dir);
+                indexWriter = new PartitionIndexWriter(idxDefinition, dir, writerConfig);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         FulltextBinaryTextExtractor textExtractor = new FulltextBinaryTextExtractor(textCache, idxDefinition, true);
         return new LuceneIndexer(
                 idxDefinition,
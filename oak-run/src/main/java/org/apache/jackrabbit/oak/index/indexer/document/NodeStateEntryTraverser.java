@@ -22,14 +22,17 @@ package org.apache.jackrabbit.oak.index.indexer.document;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.FluentIterable;
 import com.google.common.io.Closer;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Path;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
@@ -40,27 +43,39 @@ import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.jetbrains.annotations.NotNull;
 
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.transform;
+import static java.util.Collections.emptyIterator;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 
 public class NodeStateEntryTraverser implements Iterable<NodeStateEntry>, Closeable {
+    /**
+     * Number of documents read per query when traversing a key range
+     */
+    private static final int RANGE_BATCH_SIZE = Integer.getInteger("oak.indexer.rangeBatchSize", 1000);
     private final Closer closer = Closer.create();
     private final RevisionVector rootRevision;
     private final DocumentNodeStore documentNodeStore;
-    private final MongoDocumentStore documentStore;
+    private final DocumentStore documentStore;
 
     private Consumer<String> progressReporter = id -> {};
     private Predicate<String> pathPredicate = path -> true;
+    private DocumentIdRange range;
 
     public NodeStateEntryTraverser(DocumentNodeStore documentNodeStore,
                                    MongoDocumentStore documentStore) {
         this(documentNodeStore.getHeadRevision(), documentNodeStore, documentStore);
     }
 
+    /**
+     * Creates a traverser over all documents, or the documents of a key range
+     * (see {@link #withRange(DocumentIdRange)}). Traversing all documents is
+     * only supported for a {@link MongoDocumentStore}.
+     */
     public NodeStateEntryTraverser(RevisionVector rootRevision, DocumentNodeStore documentNodeStore,
-                                   MongoDocumentStore documentStore) {
+                                   DocumentStore documentStore) {
         this.rootRevision = rootRevision;
         this.documentNodeStore = documentNodeStore;
         this.documentStore = documentStore;
@@ -82,11 +97,32 @@ public class NodeStateEntryTraverser implements Iterable<NodeStateEntry>, Closea
         return this;
     }
 
+    /**
+     * Only traverse the documents with an id in the given range. For a
+     * {@link MongoDocumentStore}, the documents are read with a single cursor
+     * (see {@link MongoDocumentTraverser}), as when traversing all documents.
+     * Other document stores are read in batches using
+     * {@link DocumentStore#query}.
+     */
+    public NodeStateEntryTraverser withRange(DocumentIdRange range) {
+        this.range = range;
+        return this;
+    }
+
+    public DocumentIdRange getRange() {
+        return range;
+    }
+
     @Override
     public void close() throws IOException {
         closer.close();
     }
 
+    @Override
+    public String toString() {
+        return range != null ? range.toString() : "all documents";
+    }
+
     @SuppressWarnings("Guava")
     private Iterable<NodeStateEntry> getIncludedDocs() {
         return FluentIterable.from(getDocsFilteredByPath())
@@ -126,10 +162,46 @@ public class NodeStateEntryTraverser implements Iterable<NodeStateEntry>, Closea
     }
 
     private CloseableIterable<NodeDocument> findAllDocuments() {
-        return new MongoDocumentTraverser(documentStore)
+        if (range != null) {
+            return findDocumentsInRange();
+        }
+        checkState(documentStore instanceof MongoDocumentStore,
+                "Traversing all documents requires a MongoDocumentStore, use a range instead");
+        return new MongoDocumentTraverser((MongoDocumentStore) documentStore)
                 .getAllDocuments(Collection.NODES, id -> includeId(id));
     }
 
+    @SuppressWarnings("Guava")
+    private CloseableIterable<NodeDocument> findDocumentsInRange() {
+        if (documentStore instanceof MongoDocumentStore) {
+            return new MongoDocumentTraverser((MongoDocumentStore) documentStore)
+                    .getDocuments(Collection.NODES, range.getFromKey(), range.getToKey(), id -> includeId(id));
+        }
+        Iterable<NodeDocument> docs = () -> new AbstractIterator<NodeDocument>() {
+            private String lastKey = range.getFromKey();
+            private Iterator<NodeDocument> batch = emptyIterator();
+            private boolean done;
+
+            @Override
+            protected NodeDocument computeNext() {
+                while (!batch.hasNext()) {
+                    if (done) {
+                        return endOfData();
+                    }
+                    List<NodeDocument> result = documentStore.query(Collection.NODES,
+                            lastKey, range.getToKey(), RANGE_BATCH_SIZE);
+                    done = result.size() < RANGE_BATCH_SIZE;
+                    if (!result.isEmpty()) {
+                        lastKey = result.get(result.size() - 1).getId();
+                    }
+                    batch = result.iterator();
+                }
+                return batch.next();
+            }
+        };
+        return CloseableIterable.wrap(FluentIterable.from(docs).filter(doc -> includeId(doc.getId())));
+    }
+
     private boolean includeId(String id) {
         progressReporter.accept(id);
         //Cannot interpret long paths as they are hashed. So let them
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.index.indexer.document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterConfig;
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.NoLockFactory;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterUtils.getIndexWriterConfig;
+
+/**
+ * Writes the documents of one partition of the content to a local directory,
+ * when reindexing in parallel. The directories of all partitions are added
+ * to the index afterwards. Unlike the default writer, this writer doesn't
+ * update the suggester, which is only built for the complete index.
+ */
+class PartitionIndexWriter implements LuceneIndexWriter {
+    private final LuceneIndexDefinition definition;
+    private final Directory directory;
+    private final IndexWriter writer;
+
+    PartitionIndexWriter(LuceneIndexDefinition definition, File dir,
+                         LuceneIndexWriterConfig writerConfig) throws IOException {
+        this.definition = definition;
+        this.directory = FSDirectory.open(dir, NoLockFactory.getNoLockFactory());
+        IndexWriterConfig config = getIndexWriterConfig(definition, false, writerConfig);
+        config.setMergePolicy(definition.getMergePolicy());
+        this.writer = new IndexWriter(directory, config);
+    }
+
+    @Override
+    public void updateDocument(String path, Iterable<? extends IndexableField> doc) throws IOException {
+        // same as the default writer when reindexing: documents that only
+        // contain the path are not needed if a property regex is used
+        Iterator<? extends IndexableField> f = doc.iterator();
+        String fieldName = f.hasNext() ? f.next().name() : null;
+        boolean containsOnlyPath = FieldNames.PATH.equals(fieldName) && !f.hasNext();
+        if (containsOnlyPath && definition.getPropertyRegex() != null) {
+            return;
+        }
+        writer.addDocument(doc);
+    }
+
+    @Override
+    public void deleteDocuments(String path) throws IOException {
+        writer.deleteDocuments(newPathTerm(path));
+        writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+    }
+
+    @Override
+    public boolean close(long timestamp) throws IOException {
+        try {
+            writer.close();
+        } finally {
+            directory.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.jcr.PropertyType;
+
+import com.google.common.collect.AbstractIterator;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.plugins.blob.serializer.BlobIdSerializer;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.copyOf;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.commons.StringUtils.estimateMemoryUsage;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.BinaryFlatFileWriter.ARRAY_FLAG;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.BinaryFlatFileWriter.MAGIC;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.BinaryFlatFileWriter.VERSION;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+
+/**
+ * Reads a flat file store written by {@link BinaryFlatFileWriter}. Besides
+ * sequential iteration, the sparse path index allows to look up entries and
+ * to start iterating at arbitrary paths, for example to read the children of
+ * a node. Recently decoded blocks are cached. This class is thread-safe.
+ */
+public class BinaryFlatFileReader implements Iterable<NodeStateEntry>, Closeable {
+    static final String OAK_INDEXER_BINARY_BLOCK_CACHE_SIZE = "oak.indexer.binaryBlockCacheSize";
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final BlobIdSerializer blobDeserializer;
+    private final Set<String> preferredPathElements;
+    private final PathElementComparator comparator;
+    private final long[] blockOffsets;
+    private final int[] blockEntryCounts;
+    private final List<List<String>> firstPaths;
+    private final long entryCount;
+    private final int cacheSize = Integer.getInteger(OAK_INDEXER_BINARY_BLOCK_CACHE_SIZE, 16);
+    private final Map<Integer, List<NodeStateEntry>> cache =
+            new LinkedHashMap<Integer, List<NodeStateEntry>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<NodeStateEntry>> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    public BinaryFlatFileReader(File file, BlobStore blobStore) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = randomAccessFile.getChannel();
+        this.blobDeserializer = new BlobIdSerializer(blobStore);
+        try {
+            checkState(randomAccessFile.readInt() == MAGIC, "Not a binary flat file: %s", file);
+            byte version = randomAccessFile.readByte();
+            checkState(version == VERSION, "Unsupported version %s of binary flat file %s", version, file);
+            Set<String> preferred = new LinkedHashSet<>();
+            for (int i = randomAccessFile.readInt(); i > 0; i--) {
+                preferred.add(randomAccessFile.readUTF());
+            }
+            this.preferredPathElements = Collections.unmodifiableSet(preferred);
+            this.comparator = new PathElementComparator(preferred);
+
+            randomAccessFile.seek(randomAccessFile.length() - 20);
+            long indexOffset = randomAccessFile.readLong();
+            this.entryCount = randomAccessFile.readLong();
+            checkState(randomAccessFile.readInt() == MAGIC, "Binary flat file %s is incomplete", file);
+            randomAccessFile.seek(indexOffset);
+            int blockCount = randomAccessFile.readInt();
+            this.blockOffsets = new long[blockCount];
+            this.blockEntryCounts = new int[blockCount];
+            this.firstPaths = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = randomAccessFile.readLong();
+                blockEntryCounts[i] = randomAccessFile.readInt();
+                byte[] p = new byte[randomAccessFile.readInt()];
+                randomAccessFile.readFully(p);
+                firstPaths.add(copyOf(elements(new String(p, UTF_8))));
+            }
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether the given file is a binary flat file.
+     *
+     * @param file the file
+     * @return true if the file starts with the magic number of the binary format
+     */
+    public static boolean isBinaryFlatFile(File file) {
+        if (!file.isFile() || file.length() < 4) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public Set<String> getPreferredPathElements() {
+        return preferredPathElements;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<NodeStateEntry> iterator() {
+        return iterator(0, 0, blockOffsets.length);
+    }
+
+    /**
+     * Iterate over the entries, starting at the given path (or, if there is
+     * no entry for this path, at the next entry in sort order).
+     *
+     * @param path the path of the first entry
+     * @return the iterator
+     */
+    public Iterator<NodeStateEntry> iterator(String path) {
+        int[] position = locate(path);
+        return iterator(position[0], position[1], blockOffsets.length);
+    }
+
+    /**
+     * Split the entries into at most the given number of partitions of about
+     * the same size. Partitions start at block boundaries, and together
+     * contain all entries in sort order.
+     *
+     * @param count the maximum number of partitions
+     * @return the partitions
+     */
+    public List<Iterable<NodeStateEntry>> split(int count) {
+        List<Iterable<NodeStateEntry>> partitions = new ArrayList<>();
+        long entries = 0;
+        int start = 0;
+        for (int block = 0; block < blockOffsets.length; block++) {
+            entries += blockEntryCounts[block];
+            boolean last = block == blockOffsets.length - 1;
+            if (last || entries >= entryCount * (partitions.size() + 1) / count) {
+                int startBlock = start;
+                int endBlock = block + 1;
+                partitions.add(() -> iterator(startBlock, 0, endBlock));
+                start = endBlock;
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Get the entry for the given path.
+     *
+     * @param path the path
+     * @return the entry, or null if there is no entry for this path
+     */
+    @Nullable
+    public NodeStateEntry getEntry(String path) {
+        int[] position = locate(path);
+        if (position[0] >= blockOffsets.length) {
+            return null;
+        }
+        List<NodeStateEntry> entries = readBlock(position[0]);
+        if (position[1] < entries.size() && entries.get(position[1]).getPath().equals(path)) {
+            return entries.get(position[1]);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    private Iterator<NodeStateEntry> iterator(int startBlock, int startIndex, int endBlock) {
+        return new AbstractIterator<NodeStateEntry>() {
+            private int block = startBlock;
+            private int index = startIndex;
+            private List<NodeStateEntry> entries;
+
+            @Override
+            protected NodeStateEntry computeNext() {
+                while (block < endBlock) {
+                    if (entries == null) {
+                        entries = readBlock(block);
+                    }
+                    if (index < entries.size()) {
+                        return entries.get(index++);
+                    }
+                    block++;
+                    index = 0;
+                    entries = null;
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * Find the block and the index within the block of the first entry that
+     * is not smaller than the given path.
+     */
+    private int[] locate(String path) {
+        List<String> elements = copyOf(elements(path));
+        int low = 0;
+        int high = firstPaths.size() - 1;
+        int block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(firstPaths.get(mid), elements) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (blockOffsets.length == 0) {
+            return new int[] {0, 0};
+        }
+        List<NodeStateEntry> entries = readBlock(block);
+        low = 0;
+        high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(elements(entries.get(mid).getPath()), elements) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == entries.size()) {
+            return new int[] {block + 1, 0};
+        }
+        return new int[] {block, low};
+    }
+
+    private List<NodeStateEntry> readBlock(int block) {
+        synchronized (cache) {
+            List<NodeStateEntry> entries = cache.get(block);
+            if (entries != null) {
+                return entries;
+            }
+        }
+        List<NodeStateEntry> entries;
+        try {
+            entries = decodeBlock(block);
+        } catch (IOException | DataFormatException e) {
+            throw new RuntimeException("Error reading block " + block + " of file " + file, e);
+        }
+        synchronized (cache) {
+            cache.put(block, entries);
+        }
+        return entries;
+    }
+
+    private List<NodeStateEntry> decodeBlock(int block) throws IOException, DataFormatException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header, blockOffsets[block]);
+        header.flip();
+        int length = header.getInt();
+        ByteBuffer compressed = ByteBuffer.allocate(header.getInt());
+        readFully(compressed, blockOffsets[block] + 8);
+
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int len = 0;
+            while (len < length && !inflater.finished()) {
+                len += inflater.inflate(data, len, length - len);
+            }
+        } finally {
+            inflater.end();
+        }
+
+        RecordInput in = new RecordInput(data);
+        List<String> names = new ArrayList<>();
+        List<NodeStateEntry> entries = new ArrayList<>(blockEntryCounts[block]);
+        byte[] path = new byte[0];
+        for (int i = 0; i < blockEntryCounts[block]; i++) {
+            int start = in.pos;
+            int shared = in.readVarInt();
+            int suffix = in.readVarInt();
+            byte[] p = new byte[shared + suffix];
+            System.arraycopy(path, 0, p, 0, shared);
+            in.readFully(p, shared, suffix);
+            path = p;
+
+            NodeBuilder builder = EMPTY_NODE.builder();
+            for (int count = in.readVarInt(); count > 0; count--) {
+                int code = in.readVarInt();
+                String name;
+                if (code == 0) {
+                    name = in.readString();
+                    names.add(name);
+                } else {
+                    name = names.get(code - 1);
+                }
+                builder.setProperty(readProperty(in, name));
+            }
+            String pathString = new String(p, UTF_8);
+            long memUsage = estimateMemoryUsage(pathString) + 2L * (in.pos - start);
+            entries.add(new NodeStateEntry(builder.getNodeState(), pathString, memUsage));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of file " + file);
+            }
+        }
+    }
+
+    private PropertyState readProperty(RecordInput in, String name) {
+        int flags = in.readByte() & 0xff;
+        boolean array = (flags & ARRAY_FLAG) != 0;
+        int tag = flags & ~ARRAY_FLAG;
+        Type<?> type = Type.fromTag(tag, array);
+        if (!array) {
+            return PropertyStates.createProperty(name, readValue(in, tag), type);
+        }
+        int count = in.readVarInt();
+        List<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readValue(in, tag));
+        }
+        return PropertyStates.createProperty(name, values, type);
+    }
+
+    private Object readValue(RecordInput in, int tag) {
+        switch (tag) {
+            case PropertyType.LONG:
+                return in.readVarLong();
+            case PropertyType.DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case PropertyType.BOOLEAN:
+                return in.readByte() != 0;
+            case PropertyType.BINARY:
+                return blobDeserializer.deserialize(in.readString());
+            case PropertyType.DECIMAL:
+                return new BigDecimal(in.readString());
+            default:
+                return in.readString();
+        }
+    }
+
+    private static final class RecordInput {
+        private final byte[] data;
+        private int pos;
+
+        RecordInput(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            return data[pos++];
+        }
+
+        void readFully(byte[] b, int off, int len) {
+            System.arraycopy(data, pos, b, off, len);
+            pos += len;
+        }
+
+        int readVarInt() {
+            int x = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data[pos++];
+                x |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return x;
+                }
+            }
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                long b = data[pos++];
+                v |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+        }
+
+        long readLong() {
+            long x = 0;
+            for (int i = 0; i < 8; i++) {
+                x = (x << 8) | (data[pos++] & 0xff);
+            }
+            return x;
+        }
+
+        String readString() {
+            int len = readVarInt();
+            String s = new String(data, pos, len, UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
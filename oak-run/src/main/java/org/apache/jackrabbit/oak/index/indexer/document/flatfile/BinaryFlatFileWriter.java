@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.blob.serializer.BlobIdSerializer;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes a flat file store in a binary format, as an alternative to the
+ * line-oriented JSON format. Entries must be added in sorted order.
+ * <p>
+ * The file consists of a header, a sequence of blocks, a sparse path index
+ * and a trailer:
+ * <pre>
+ * header:  magic (int), version (byte), preferred path elements (int count, strings)
+ * block:   uncompressed length (int), compressed length (int), deflated records
+ * index:   block count (int), per block: offset (long), entry count (int), first path (string)
+ * trailer: index offset (long), entry count (long), magic (int)
+ * </pre>
+ * A record consists of the path (as the length of the prefix shared with the
+ * previous path of the block, and the remaining bytes), the number of
+ * properties, and the properties. Property names are dictionary coded per
+ * block: a name is written once per block, and afterwards referenced by
+ * number. Each block can be decoded independently, so that the sparse index
+ * allows to read entries at arbitrary paths.
+ */
+public class BinaryFlatFileWriter implements Closeable {
+    static final int MAGIC = 0x4f414b46;
+    static final byte VERSION = 1;
+    static final int ARRAY_FLAG = 0x80;
+    static final String OAK_INDEXER_BINARY_BLOCK_SIZE = "oak.indexer.binaryBlockSizeKB";
+    private static final String OAK_CHILD_ORDER = ":childOrder";
+
+    private final int blockSize = Integer.getInteger(OAK_INDEXER_BINARY_BLOCK_SIZE, 64) * 1024;
+    private final DataOutputStream out;
+    private final BlobIdSerializer blobSerializer;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final RecordOutput block = new RecordOutput();
+    private final Map<String, Integer> names = new HashMap<>();
+    private final List<long[]> blockInfos = new ArrayList<>();
+    private final List<String> firstPaths = new ArrayList<>();
+    private byte[] previousPath = new byte[0];
+    private int blockEntryCount;
+    private long entryCount;
+    private long position;
+    private byte[] compressed = new byte[0];
+
+    public BinaryFlatFileWriter(File file, BlobStore blobStore, Set<String> preferredPathElements) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        this.blobSerializer = new BlobIdSerializer(blobStore);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(preferredPathElements.size());
+        for (String e : preferredPathElements) {
+            out.writeUTF(e);
+        }
+        position = out.size();
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Add an entry. Entries must be added in the order of the flat file store.
+     *
+     * @param path the path
+     * @param state the node state (child nodes are ignored)
+     */
+    public void add(String path, NodeState state) throws IOException {
+        if (blockEntryCount == 0) {
+            firstPaths.add(path);
+        }
+        byte[] p = path.getBytes(UTF_8);
+        int shared = sharedPrefix(previousPath, p);
+        block.writeVarInt(shared);
+        block.writeVarInt(p.length - shared);
+        block.write(p, shared, p.length - shared);
+        previousPath = p;
+
+        List<PropertyState> properties = new ArrayList<>();
+        for (PropertyState ps : state.getProperties()) {
+            if (!OAK_CHILD_ORDER.equals(ps.getName())) {
+                properties.add(ps);
+            }
+        }
+        block.writeVarInt(properties.size());
+        for (PropertyState ps : properties) {
+            writeName(ps.getName());
+            writeProperty(ps);
+        }
+        blockEntryCount++;
+        entryCount++;
+        if (block.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    private void writeName(String name) {
+        Integer code = names.get(name);
+        if (code != null) {
+            block.writeVarInt(code);
+        } else {
+            block.writeVarInt(0);
+            block.writeString(name);
+            names.put(name, names.size() + 1);
+        }
+    }
+
+    private void writeProperty(PropertyState ps) {
+        Type<?> type = ps.getType();
+        int tag = type.tag();
+        int count = ps.count();
+        block.writeByte(type.isArray() ? tag | ARRAY_FLAG : tag);
+        if (type.isArray()) {
+            block.writeVarInt(count);
+        }
+        for (int i = 0; i < count; i++) {
+            switch (tag) {
+                case PropertyType.LONG:
+                    block.writeVarLong(ps.getValue(Type.LONG, i));
+                    break;
+                case PropertyType.DOUBLE:
+                    block.writeLong(Double.doubleToLongBits(ps.getValue(Type.DOUBLE, i)));
+                    break;
+                case PropertyType.BOOLEAN:
+                    block.writeByte(ps.getValue(Type.BOOLEAN, i) ? 1 : 0);
+                    break;
+                case PropertyType.BINARY:
+                    Blob blob = ps.getValue(Type.BINARY, i);
+                    block.writeString(blobSerializer.serialize(blob));
+                    break;
+                case PropertyType.DECIMAL:
+                    BigDecimal decimal = ps.getValue(Type.DECIMAL, i);
+                    block.writeString(decimal.toString());
+                    break;
+                default:
+                    block.writeString(ps.getValue(Type.STRING, i));
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockEntryCount == 0) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(block.buffer(), 0, block.size());
+        deflater.finish();
+        if (compressed.length < block.size() + 64) {
+            compressed = new byte[block.size() + block.size() / 8 + 64];
+        }
+        int len = 0;
+        while (!deflater.finished()) {
+            if (len == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            len += deflater.deflate(compressed, len, compressed.length - len);
+        }
+        blockInfos.add(new long[] {position, blockEntryCount});
+        out.writeInt(block.size());
+        out.writeInt(len);
+        out.write(compressed, 0, len);
+        position += 8 + len;
+
+        block.reset();
+        names.clear();
+        previousPath = new byte[0];
+        blockEntryCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            checkState(blockInfos.size() == firstPaths.size());
+            long indexOffset = position;
+            out.writeInt(blockInfos.size());
+            for (int i = 0; i < blockInfos.size(); i++) {
+                long[] info = blockInfos.get(i);
+                out.writeLong(info[0]);
+                out.writeInt((int) info[1]);
+                byte[] p = firstPaths.get(i).getBytes(UTF_8);
+                out.writeInt(p.length);
+                out.write(p);
+            }
+            out.writeLong(indexOffset);
+            out.writeLong(entryCount);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        int max = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < max && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * A growable buffer with variable length encoding of numbers.
+     */
+    static class RecordOutput {
+        private byte[] buffer = new byte[1024];
+        private int size;
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensureCapacity(int len) {
+            if (size + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + len));
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, size, len);
+            size += len;
+        }
+
+        void writeVarInt(int x) {
+            while ((x & ~0x7f) != 0) {
+                writeByte((x & 0x7f) | 0x80);
+                x >>>= 7;
+            }
+            writeByte(x);
+        }
+
+        void writeVarLong(long x) {
+            // zig-zag encoding, so that small negative numbers are short as well
+            long v = (x << 1) ^ (x >> 63);
+            while ((v & ~0x7fL) != 0) {
+                writeByte((int) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            writeByte((int) v);
+        }
+
+        void writeLong(long x) {
+            for (int i = 56; i >= 0; i -= 8) {
+                writeByte((int) (x >>> i));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] b = s.getBytes(UTF_8);
+            writeVarInt(b.length);
+            write(b, 0, b.length);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
 
 import java.util.Iterator;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.AbstractIterator;
@@ -46,11 +47,22 @@ class ChildNodeStateProvider {
     private final Iterable<NodeStateEntry> entries;
     private final String path;
     private final Set<String> preferredPathElements;
+    private final Function<String, NodeStateEntry> lookup;
 
     public ChildNodeStateProvider(Iterable<NodeStateEntry> entries, String path, Set<String> preferredPathElements) {
+        this(entries, path, preferredPathElements, null);
+    }
+
+    /**
+     * @param lookup if not null, used to look up a child node by path,
+     *               instead of scanning the entries
+     */
+    public ChildNodeStateProvider(Iterable<NodeStateEntry> entries, String path, Set<String> preferredPathElements,
+                                  Function<String, NodeStateEntry> lookup) {
         this.entries = entries;
         this.path = path;
         this.preferredPathElements = preferredPathElements;
+        this.lookup = lookup;
     }
 
     public boolean hasChildNode(@NotNull String name) {
@@ -59,6 +71,10 @@ class ChildNodeStateProvider {
 
     @NotNull
     public NodeState getChildNode(@NotNull String name) throws IllegalArgumentException {
+        if (lookup != null) {
+            NodeStateEntry e = lookup.apply(PathUtils.concat(path, name));
+            return e != null ? e.getNodeState() : MISSING_NODE;
+        }
         boolean isPreferred = preferredPathElements.contains(name);
         Optional<NodeStateEntry> o = Iterators.tryFind(children(isPreferred), p -> name.equals(name(p)));
         return o.isPresent() ? o.get().getNodeState() : MISSING_NODE;
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import com.google.common.base.Stopwatch;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.createReader;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.createWriter;
+
+/**
+ * Converts flat files between the text (JSON lines) and the binary format.
+ * Binaries are not read: blob ids are copied as they are.
+ */
+public class FlatFileConverter {
+    private static final Logger log = LoggerFactory.getLogger(FlatFileConverter.class);
+
+    private FlatFileConverter() {
+    }
+
+    /**
+     * Convert a sorted flat file from the text to the binary format.
+     *
+     * @param textFile the sorted text file
+     * @param compressed whether the text file is gzip compressed
+     * @param binaryFile the target file
+     * @param blobStore the blob store (may be null)
+     * @param preferredPathElements the preferred path elements used for sorting
+     * @return the number of entries
+     */
+    public static long toBinary(File textFile, boolean compressed, File binaryFile,
+                                BlobStore blobStore, Set<String> preferredPathElements) throws IOException {
+        Stopwatch w = Stopwatch.createStarted();
+        NodeStateEntryReader reader = new NodeStateEntryReader(blobStore);
+        long count;
+        try (BufferedReader in = createReader(textFile, compressed);
+             BinaryFlatFileWriter out = new BinaryFlatFileWriter(binaryFile, blobStore, preferredPathElements)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                NodeStateEntry e = reader.read(line);
+                out.add(e.getPath(), e.getNodeState());
+            }
+            count = out.getEntryCount();
+        }
+        log.info("Converted {} entries from {} ({}) to binary file {} ({}) in {}", count, textFile,
+                humanReadableByteCount(textFile.length()), binaryFile, humanReadableByteCount(binaryFile.length()), w);
+        return count;
+    }
+
+    /**
+     * Convert a flat file from the binary to the text format.
+     *
+     * @param binaryFile the binary file
+     * @param textFile the target file
+     * @param compressed whether to gzip compress the text file
+     * @param blobStore the blob store (may be null)
+     * @return the number of entries
+     */
+    public static long toText(File binaryFile, File textFile, boolean compressed,
+                              BlobStore blobStore) throws IOException {
+        Stopwatch w = Stopwatch.createStarted();
+        NodeStateEntryWriter entryWriter = new NodeStateEntryWriter(blobStore);
+        long count = 0;
+        try (BinaryFlatFileReader in = new BinaryFlatFileReader(binaryFile, blobStore);
+             BufferedWriter out = createWriter(textFile, compressed)) {
+            for (NodeStateEntry e : in) {
+                out.write(entryWriter.toString(e));
+                out.newLine();
+                count++;
+            }
+        }
+        log.info("Converted {} entries from binary file {} to {} in {}", count, binaryFile, textFile, w);
+        return count;
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.collect.Iterables;
@@ -35,12 +36,28 @@ import static java.util.Collections.unmodifiableSet;
 
 public class FlatFileNodeStoreBuilder {
     public static final String OAK_INDEXER_USE_ZIP = "oak.indexer.useZip";
+    /**
+     * Whether to convert the sorted file to the binary format (see
+     * {@link BinaryFlatFileWriter}) before indexing. The raw read throughput
+     * is only marginally better than with the text format, and the effect on
+     * the indexing throughput was not measured; the main difference is that
+     * child nodes are looked up using the path index instead of a buffer.
+     */
+    public static final String OAK_INDEXER_BINARY_FORMAT = "oak.indexer.binaryFormat";
     private static final String OAK_INDEXER_TRAVERSE_WITH_SORT = "oak.indexer.traverseWithSortStrategy";
     private static final String OAK_INDEXER_SORTED_FILE_PATH = "oak.indexer.sortedFilePath";
     static final String OAK_INDEXER_MAX_SORT_MEMORY_IN_GB = "oak.indexer.maxSortMemoryInGB";
     static final int OAK_INDEXER_MAX_SORT_MEMORY_IN_GB_DEFAULT = 2;
+    /**
+     * Number of threads used to traverse the document store. With more than
+     * one thread, the key space is split into ranges that are traversed
+     * concurrently.
+     */
+    public static final String OAK_INDEXER_TRAVERSAL_THREADS = "oak.indexer.traversalThreads";
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final Iterable<NodeStateEntry> nodeStates;
+    private final List<? extends Iterable<NodeStateEntry>> partitions;
+    private final int traversalThreads;
     private final File workDir;
     private Set<String> preferredPathElements = Collections.emptySet();
     private BlobStore blobStore;
@@ -50,9 +67,29 @@ public class FlatFileNodeStoreBuilder {
 
     private boolean useZip = Boolean.valueOf(System.getProperty(OAK_INDEXER_USE_ZIP, "true"));
     private boolean useTraverseWithSort = Boolean.valueOf(System.getProperty(OAK_INDEXER_TRAVERSE_WITH_SORT, "true"));
+    private boolean useBinaryFormat = Boolean.getBoolean(OAK_INDEXER_BINARY_FORMAT);
+    private boolean providedSortedFile;
 
     public FlatFileNodeStoreBuilder(Iterable<NodeStateEntry> nodeStates, File workDir) {
         this.nodeStates = nodeStates;
+        this.partitions = null;
+        this.traversalThreads = 1;
+        this.workDir = workDir;
+    }
+
+    /**
+     * Creates a builder that traverses the given partitions concurrently. The
+     * partitions must not overlap.
+     *
+     * @param partitions the partitions, for example key ranges of the document store
+     * @param traversalThreads the number of threads used for traversal
+     * @param workDir the work directory
+     */
+    public FlatFileNodeStoreBuilder(List<? extends Iterable<NodeStateEntry>> partitions,
+                                    int traversalThreads, File workDir) {
+        this.nodeStates = Iterables.concat(partitions);
+        this.partitions = partitions;
+        this.traversalThreads = traversalThreads;
         this.workDir = workDir;
     }
 
@@ -66,11 +103,28 @@ public class FlatFileNodeStoreBuilder {
         return this;
     }
 
+    public FlatFileNodeStoreBuilder withBinaryFormat(boolean useBinaryFormat) {
+        this.useBinaryFormat = useBinaryFormat;
+        return this;
+    }
+
     public FlatFileStore build() throws IOException {
         logFlags();
         comparator = new PathElementComparator(preferredPathElements);
         entryWriter = new NodeStateEntryWriter(blobStore);
-        FlatFileStore store = new FlatFileStore(blobStore, createdSortedStoreFile(), new NodeStateEntryReader(blobStore),
+        File sortedFile = createdSortedStoreFile();
+        if (BinaryFlatFileReader.isBinaryFlatFile(sortedFile)) {
+            return new FlatFileStore(blobStore, sortedFile, new BinaryFlatFileReader(sortedFile, blobStore));
+        }
+        if (useBinaryFormat) {
+            File binaryFile = new File(createStoreDir(), "store-sorted.bin");
+            FlatFileConverter.toBinary(sortedFile, useZip, binaryFile, blobStore, preferredPathElements);
+            if (!providedSortedFile) {
+                FileUtils.forceDelete(sortedFile);
+            }
+            return new FlatFileStore(blobStore, binaryFile, new BinaryFlatFileReader(binaryFile, blobStore));
+        }
+        FlatFileStore store = new FlatFileStore(blobStore, sortedFile, new NodeStateEntryReader(blobStore),
                 unmodifiableSet(preferredPathElements), useZip);
         if (entryCount > 0) {
             store.setEntryCount(entryCount);
@@ -85,6 +139,7 @@ public class FlatFileNodeStoreBuilder {
             if (sortedFile.exists() && sortedFile.isFile() && sortedFile.canRead()) {
                 log.info("Reading from provided sorted file [{}] (via system property '{}')",
                         sortedFile.getAbsolutePath(), OAK_INDEXER_SORTED_FILE_PATH);
+                providedSortedFile = true;
                 return sortedFile;
             } else {
                 String msg = String.format("Cannot read sorted file at [%s] configured via system property '%s'",
@@ -101,6 +156,11 @@ public class FlatFileNodeStoreBuilder {
     }
 
     private SortStrategy createSortStrategy(File dir){
+        if (partitions != null) {
+            log.info("Using ParallelTraverseWithSortStrategy");
+            return new ParallelTraverseWithSortStrategy(partitions, traversalThreads, comparator,
+                    () -> new NodeStateEntryWriter(blobStore), dir, useZip);
+        }
         if (useTraverseWithSort) {
             log.info("Using TraverseWithSortStrategy");
             return new TraverseWithSortStrategy(nodeStates, comparator, entryWriter, dir, useZip);
@@ -113,7 +173,12 @@ public class FlatFileNodeStoreBuilder {
     private void logFlags() {
         log.info("Preferred path elements are {}", Iterables.toString(preferredPathElements));
         log.info("Compression enabled while sorting : {} ({})", useZip, OAK_INDEXER_USE_ZIP);
+        log.info("Binary format : {} ({})", useBinaryFormat, OAK_INDEXER_BINARY_FORMAT);
 
+        if (partitions != null) {
+            log.info("Traversal threads : {} ({})", traversalThreads, OAK_INDEXER_TRAVERSAL_THREADS);
+            return;
+        }
         String strategy = useTraverseWithSort ?
                 TraverseWithSortStrategy.class.getSimpleName() : StoreAndSortStrategy.class.getSimpleName();
         log.info("Sort strategy : {} ({})", strategy, OAK_INDEXER_TRAVERSE_WITH_SORT);
@@ -22,15 +22,20 @@ package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.collect.AbstractIterator;
 import com.google.common.io.Closer;
+import com.google.common.collect.Iterators;
 import org.apache.commons.io.LineIterator;
 import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 
+import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.createReader;
 
 public class FlatFileStore implements Iterable<NodeStateEntry>, Closeable{
@@ -40,6 +45,7 @@ public class FlatFileStore implements Iterable<NodeStateEntry>, Closeable{
     private final NodeStateEntryReader entryReader;
     private final Set<String> preferredPathElements;
     private final boolean compressionEnabled;
+    private final BinaryFlatFileReader binaryReader;
     private long entryCount = -1;
 
     public FlatFileStore(BlobStore blobStore, File storeFile, NodeStateEntryReader entryReader, Set<String> preferredPathElements, boolean compressionEnabled) {
@@ -48,6 +54,23 @@ public class FlatFileStore implements Iterable<NodeStateEntry>, Closeable{
         this.entryReader = entryReader;
         this.preferredPathElements = preferredPathElements;
         this.compressionEnabled = compressionEnabled;
+        this.binaryReader = null;
+    }
+
+    /**
+     * Creates a store backed by a file in the binary format. Child nodes are
+     * read using the path index of the file, so that entries don't need to be
+     * buffered while iterating.
+     */
+    public FlatFileStore(BlobStore blobStore, File storeFile, BinaryFlatFileReader binaryReader) {
+        this.blobStore = blobStore;
+        this.storeFile = storeFile;
+        this.entryReader = null;
+        this.preferredPathElements = binaryReader.getPreferredPathElements();
+        this.compressionEnabled = false;
+        this.binaryReader = binaryReader;
+        this.entryCount = binaryReader.getEntryCount();
+        closer.register(binaryReader);
     }
 
     public long getEntryCount() {
@@ -60,10 +83,30 @@ public class FlatFileStore implements Iterable<NodeStateEntry>, Closeable{
 
     @Override
     public Iterator<NodeStateEntry> iterator() {
+        if (binaryReader != null) {
+            return Iterators.transform(binaryReader.iterator(), this::wrapBinaryEntry);
+        }
         String fileName = new File(storeFile.getParent(), "linkedList").getAbsolutePath();
         return new FlatFileStoreIterator(blobStore, fileName, createBaseIterator(), preferredPathElements);
     }
 
+    /**
+     * Split the store into at most the given number of partitions, which can
+     * be iterated concurrently. Child nodes of an entry are available even if
+     * they are in another partition. Only supported for the binary format.
+     *
+     * @param count the maximum number of partitions
+     * @return the partitions, in sort order
+     */
+    public List<Iterable<NodeStateEntry>> split(int count) {
+        checkState(binaryReader != null, "Splitting is only supported for the binary format");
+        List<Iterable<NodeStateEntry>> partitions = new ArrayList<>();
+        for (Iterable<NodeStateEntry> p : binaryReader.split(count)) {
+            partitions.add(() -> Iterators.transform(p.iterator(), this::wrapBinaryEntry));
+        }
+        return partitions;
+    }
+
     private Iterator<NodeStateEntry> createBaseIterator() {
         LineIterator itr = new LineIterator(createReader(storeFile, compressionEnabled));
         closer.register(itr::close);
@@ -81,6 +124,17 @@ public class FlatFileStore implements Iterable<NodeStateEntry>, Closeable{
         };
     }
 
+    private NodeStateEntry wrapBinaryEntry(NodeStateEntry e) {
+        if (e == null) {
+            return null;
+        }
+        String path = e.getPath();
+        Iterable<NodeStateEntry> entries = () -> Iterators.transform(binaryReader.iterator(path), this::wrapBinaryEntry);
+        NodeState state = new LazyChildrenNodeState(e.getNodeState(), new ChildNodeStateProvider(
+                entries, path, preferredPathElements, p -> wrapBinaryEntry(binaryReader.getEntry(p))));
+        return new NodeStateEntry(state, path, e.estimatedMemUsage());
+    }
+
     private NodeStateEntry convert(String line) {
         return entryReader.read(line);
     }
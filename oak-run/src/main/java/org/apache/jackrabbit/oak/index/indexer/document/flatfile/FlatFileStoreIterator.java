@@ -28,6 +28,7 @@ import java.util.Set;
 import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
 import org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList.FlatFileBufferLinkedList;
 import org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList.NodeStateEntryList;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList.OffHeapLinkedList;
 import org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList.PersistedLinkedList;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -44,20 +45,37 @@ class FlatFileStoreIterator extends AbstractIterator<NodeStateEntry> implements
     private final Set<String> preferredPathElements;
     private int maxBufferSize;
     static final String BUFFER_MEM_LIMIT_CONFIG_NAME = "oak.indexer.memLimitInMB";
+    /**
+     * If set, the serialized entries are buffered outside of the heap, in a
+     * memory mapped file of this size; entries that don't fit are spilled to
+     * a key-value store.
+     */
+    static final String OFF_HEAP_BUFFER_CONFIG_NAME = "oak.indexer.offHeapBufferInMB";
 
     // by default, use the PersistedLinkedList
     private static final int DEFAULT_BUFFER_MEM_LIMIT_IN_MB = 0;
 
     public FlatFileStoreIterator(BlobStore blobStore, String fileName, Iterator<NodeStateEntry> baseItr, Set<String> preferredPathElements) {
         this(blobStore, fileName, baseItr, preferredPathElements,
-                Integer.getInteger(BUFFER_MEM_LIMIT_CONFIG_NAME, DEFAULT_BUFFER_MEM_LIMIT_IN_MB));
+                Integer.getInteger(BUFFER_MEM_LIMIT_CONFIG_NAME, DEFAULT_BUFFER_MEM_LIMIT_IN_MB),
+                Integer.getInteger(OFF_HEAP_BUFFER_CONFIG_NAME, 0));
     }
 
     public FlatFileStoreIterator(BlobStore blobStore, String fileName, Iterator<NodeStateEntry> baseItr, Set<String> preferredPathElements, int memLimitConfig) {
+        this(blobStore, fileName, baseItr, preferredPathElements, memLimitConfig, 0);
+    }
+
+    public FlatFileStoreIterator(BlobStore blobStore, String fileName, Iterator<NodeStateEntry> baseItr, Set<String> preferredPathElements,
+                                 int memLimitConfig, int offHeapBufferConfig) {
         this.baseItr = baseItr;
         this.preferredPathElements = preferredPathElements;
 
-        if (memLimitConfig == 0) {
+        if (offHeapBufferConfig > 0) {
+            log.info("Using an off-heap buffer of {} MBs: {}", offHeapBufferConfig, fileName);
+            NodeStateEntryReader reader = new NodeStateEntryReader(blobStore);
+            NodeStateEntryWriter writer = new NodeStateEntryWriter(blobStore);
+            this.buffer = new OffHeapLinkedList(fileName, offHeapBufferConfig * 1024L * 1024L, writer, reader);
+        } else if (memLimitConfig == 0) {
             log.info("Using a key-value store buffer: {}", fileName);
             NodeStateEntryReader reader = new NodeStateEntryReader(blobStore);
             NodeStateEntryWriter writer = new NodeStateEntryWriter(blobStore);
@@ -85,6 +103,7 @@ class FlatFileStoreIterator extends AbstractIterator<NodeStateEntry> implements
         current = computeNextEntry();
         if (current == null) {
             log.info("Max buffer size in complete traversal is [{}]", maxBufferSize);
+            buffer.close();
             return endOfData();
         } else {
             return current;
@@ -129,15 +148,14 @@ class FlatFileStoreIterator extends AbstractIterator<NodeStateEntry> implements
                 if (qitr.hasNext()) {
                     return wrapIfNeeded(qitr.next());
                 }
-                buffer.close();
                 return endOfData();
             }
         };
     }
 
     private NodeStateEntry wrapIfNeeded(NodeStateEntry e) {
-        if (buffer instanceof PersistedLinkedList) {
-            // for the PersistedLinkedList, the entries from the iterators are
+        if (buffer instanceof PersistedLinkedList || buffer instanceof OffHeapLinkedList) {
+            // for the PersistedLinkedList and the OffHeapLinkedList, the entries from the iterators are
             // de-serialized and don't contain the LazyChildrenNodeState -
             // so we need to wrap them
             return wrap(e);
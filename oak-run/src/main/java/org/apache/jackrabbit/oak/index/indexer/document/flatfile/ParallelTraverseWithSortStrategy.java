@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.commons.sort.ExternalSort;
+import org.apache.jackrabbit.oak.index.indexer.document.DocumentStoreIndexer;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.commons.io.FileUtils.ONE_GB;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileNodeStoreBuilder.OAK_INDEXER_MAX_SORT_MEMORY_IN_GB;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileNodeStoreBuilder.OAK_INDEXER_MAX_SORT_MEMORY_IN_GB_DEFAULT;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.createWriter;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.getSortedStoreFileName;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStoreUtils.sizeOf;
+
+/**
+ * Traverses multiple partitions (for example key ranges of the document store)
+ * concurrently. Each worker thread takes the next partition that is not yet
+ * traversed, and writes its entries into sorted files whenever its share of
+ * the configured sort memory is used up. At the end, all sorted files are
+ * merged.
+ */
+class ParallelTraverseWithSortStrategy implements SortStrategy {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Logger traversalLog = LoggerFactory.getLogger(DocumentStoreIndexer.class.getName() + ".traversal");
+    private final List<? extends Iterable<NodeStateEntry>> partitions;
+    private final int threads;
+    private final Supplier<NodeStateEntryWriter> entryWriterFactory;
+    private final File storeDir;
+    private final boolean compressionEnabled;
+    private final Charset charset = UTF_8;
+    private final Comparator<NodeStateHolder> comparator;
+    private final int maxMemory = Integer.getInteger(OAK_INDEXER_MAX_SORT_MEMORY_IN_GB, OAK_INDEXER_MAX_SORT_MEMORY_IN_GB_DEFAULT);
+    private final long maxMemoryBytesPerWorker;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final List<File> sortedFiles = Collections.synchronizedList(new ArrayList<>());
+    private File sortWorkDir;
+
+    ParallelTraverseWithSortStrategy(List<? extends Iterable<NodeStateEntry>> partitions, int threads,
+                                     PathElementComparator pathComparator,
+                                     Supplier<NodeStateEntryWriter> entryWriterFactory,
+                                     File storeDir, boolean compressionEnabled) {
+        this.partitions = partitions;
+        this.threads = Math.max(1, Math.min(threads, partitions.size()));
+        this.entryWriterFactory = entryWriterFactory;
+        this.storeDir = storeDir;
+        this.compressionEnabled = compressionEnabled;
+        this.comparator = (e1, e2) -> pathComparator.compare(e1.getPathElements(), e2.getPathElements());
+        this.maxMemoryBytesPerWorker = maxMemory * ONE_GB / this.threads;
+    }
+
+    @Override
+    public File createSortedStoreFile() throws IOException {
+        log.info("Traversing {} partitions with {} threads, using up to {} of heap memory for sorting per thread",
+                partitions.size(), threads, humanReadableByteCount(maxMemoryBytesPerWorker));
+        sortWorkDir = new File(storeDir, "sort-work-dir");
+        FileUtils.forceMkdir(sortWorkDir);
+        writeToSortedFiles();
+        return sortStoreFile();
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount.get();
+    }
+
+    private void writeToSortedFiles() throws IOException {
+        Stopwatch w = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("oak-indexer-traversal-%d").setDaemon(true).build());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Worker(i)));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while traversing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while traversing", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("Dumped {} nodestates in json format with {} threads in {}", entryCount.get(), threads, w);
+        log.info("Created {} sorted files of size {} to merge",
+                sortedFiles.size(), humanReadableByteCount(sizeOf(sortedFiles)));
+    }
+
+    private File sortStoreFile() throws IOException {
+        log.info("Proceeding to perform merge of {} sorted files", sortedFiles.size());
+        Stopwatch w = Stopwatch.createStarted();
+        File sortedFile = new File(storeDir, getSortedStoreFileName(compressionEnabled));
+        try(BufferedWriter writer = createWriter(sortedFile, compressionEnabled)) {
+            Function<String, NodeStateHolder> func1 = (line) -> line == null ? null : new SimpleNodeStateHolder(line);
+            Function<NodeStateHolder, String> func2 = holder -> holder == null ? null : holder.getLine();
+            ExternalSort.mergeSortedFiles(sortedFiles,
+                    writer,
+                    comparator,
+                    charset,
+                    true, //distinct
+                    compressionEnabled, //useZip
+                    func2,
+                    func1
+            );
+        }
+        log.info("Merging of sorted files completed in {}", w);
+        return sortedFile;
+    }
+
+    private class Worker implements Callable<Void> {
+        private final int id;
+        private final NodeStateEntryWriter entryWriter = entryWriterFactory.get();
+        private final ArrayList<NodeStateHolder> entryBatch = new ArrayList<>();
+        private long memoryUsed;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            try {
+                traverse();
+                return null;
+            } catch (IOException | RuntimeException | Error e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        private void traverse() throws IOException {
+            Stopwatch w = Stopwatch.createStarted();
+            long count = 0;
+            int partitionCount = 0;
+            int i;
+            while (!failed.get() && (i = nextPartition.getAndIncrement()) < partitions.size()) {
+                Iterable<NodeStateEntry> partition = partitions.get(i);
+                Stopwatch pw = Stopwatch.createStarted();
+                long partitionEntries = 0;
+                for (NodeStateEntry e : partition) {
+                    addEntry(e);
+                    partitionEntries++;
+                }
+                entryCount.addAndGet(partitionEntries);
+                count += partitionEntries;
+                partitionCount++;
+                traversalLog.debug("Worker {} traversed partition {} with {} entries in {}",
+                        id, partition, partitionEntries, pw);
+            }
+            sortAndSaveBatch();
+            long millis = Math.max(1, w.elapsed(TimeUnit.MILLISECONDS));
+            traversalLog.info("Worker {} traversed {} partitions with {} entries in {} ({} entries/s)",
+                    id, partitionCount, count, w, count * 1000 / millis);
+        }
+
+        private void addEntry(NodeStateEntry e) throws IOException {
+            if (memoryUsed > maxMemoryBytesPerWorker) {
+                sortAndSaveBatch();
+            }
+            String jsonText = entryWriter.asJson(e.getNodeState());
+            NodeStateHolder h = new StateInBytesHolder(e.getPath(), jsonText);
+            entryBatch.add(h);
+            memoryUsed += h.getMemorySize();
+        }
+
+        private void sortAndSaveBatch() throws IOException {
+            if (entryBatch.isEmpty()) {
+                return;
+            }
+            entryBatch.sort(comparator);
+            File newtmpfile = File.createTempFile("sortInBatch", "flatfile", sortWorkDir);
+            try (BufferedWriter writer = createWriter(newtmpfile, compressionEnabled)) {
+                for (NodeStateHolder h : entryBatch) {
+                    //Here holder line only contains nodeState json
+                    writer.write(entryWriter.toString(h.getPathElements(), h.getLine()));
+                    writer.newLine();
+                }
+            }
+            log.debug("Worker {} sorted and stored batch of size {} with {} entries",
+                    id, humanReadableByteCount(newtmpfile.length()), entryBatch.size());
+            sortedFiles.add(newtmpfile);
+            entryBatch.clear();
+            memoryUsed = 0;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.NodeStateEntryReader;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.NodeStateEntryWriter;
+import org.apache.jackrabbit.oak.spi.state.AbstractNodeState;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+import static org.apache.jackrabbit.oak.commons.StringUtils.estimateMemoryUsage;
+
+/**
+ * A list that keeps the serialized entries outside of the heap, in a ring
+ * buffer that is backed by a memory mapped file. Entries are only decoded
+ * when they are read, and the node state of an entry is only parsed when it
+ * is accessed, so that looking for child nodes only needs the paths.
+ * <p>
+ * If the ring buffer is full, further entries are spilled to a key-value
+ * store (like in the {@link PersistedLinkedList}), until the list is empty
+ * again.
+ */
+public class OffHeapLinkedList implements NodeStateEntryList {
+
+    private final static Logger LOG = LoggerFactory.getLogger(OffHeapLinkedList.class);
+
+    private final NodeStateEntryWriter writer;
+    private final NodeStateEntryReader reader;
+    private final String spillFileName;
+    private final File bufferFile;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * The start offsets and lengths of the entries in the ring buffer,
+     * indexed by entry index modulo the array length.
+     */
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+
+    /**
+     * The index of the first entry.
+     */
+    private long headIndex;
+
+    /**
+     * The index of the next entry to add.
+     */
+    private long tailIndex;
+
+    /**
+     * The index after the last entry in the ring buffer. Entries from here
+     * on are spilled.
+     */
+    private long bufferEndIndex;
+
+    /**
+     * The offsets of the first and the next entry in the ring buffer. The
+     * physical position is the offset modulo the capacity.
+     */
+    private long headOffset;
+    private long tailOffset;
+
+    private MVStore spillStore;
+    private MVMap<Long, String> spillMap;
+
+    private long maxBufferBytes;
+    private long spilledEntries;
+    private long spilledBytes;
+    private boolean closed;
+
+    public OffHeapLinkedList(String fileName, long capacity, NodeStateEntryWriter writer,
+                             NodeStateEntryReader reader) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= Integer.MAX_VALUE,
+                "Unsupported capacity: %s", capacity);
+        this.writer = writer;
+        this.reader = reader;
+        this.spillFileName = fileName;
+        this.capacity = (int) capacity;
+        this.bufferFile = new File(fileName + ".buffer");
+        try {
+            FileUtils.deleteQuietly(new File(fileName));
+            try (RandomAccessFile file = new RandomAccessFile(bufferFile, "rw")) {
+                file.setLength(capacity);
+                // the mapping stays valid after the file is closed
+                this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        LOG.info("Using an off-heap buffer of {} in {}", humanReadableByteCount(capacity), bufferFile);
+    }
+
+    @Override
+    public void add(@NotNull NodeStateEntry item) {
+        Preconditions.checkArgument(item != null, "Can't add null to the list");
+        String s = writer.toString(item);
+        if (bufferEndIndex == tailIndex) {
+            byte[] data = s.getBytes(UTF_8);
+            if (tailOffset - headOffset + data.length <= capacity) {
+                addToBuffer(data);
+                return;
+            }
+            LOG.info("Off-heap buffer is full with {} entries ({}), spilling to {}",
+                    size(), humanReadableByteCount(tailOffset - headOffset), spillFileName);
+        }
+        if (spillMap == null) {
+            spillStore = MVStore.open(spillFileName);
+            spillMap = spillStore.openMap("list");
+        }
+        spillMap.put(tailIndex++, s);
+        spilledEntries++;
+        spilledBytes += s.length();
+    }
+
+    private void addToBuffer(byte[] data) {
+        if (bufferEndIndex - headIndex == offsets.length) {
+            grow();
+        }
+        int slot = slot(tailIndex);
+        offsets[slot] = tailOffset;
+        lengths[slot] = data.length;
+        int pos = (int) (tailOffset % capacity);
+        int first = Math.min(data.length, capacity - pos);
+        ByteBuffer b = buffer.duplicate();
+        b.position(pos);
+        b.put(data, 0, first);
+        if (first < data.length) {
+            b.position(0);
+            b.put(data, first, data.length - first);
+        }
+        tailOffset += data.length;
+        maxBufferBytes = Math.max(maxBufferBytes, tailOffset - headOffset);
+        tailIndex++;
+        bufferEndIndex = tailIndex;
+    }
+
+    private void grow() {
+        long[] newOffsets = new long[offsets.length * 2];
+        int[] newLengths = new int[lengths.length * 2];
+        for (long i = headIndex; i < bufferEndIndex; i++) {
+            int newSlot = (int) (i % newOffsets.length);
+            newOffsets[newSlot] = offsets[slot(i)];
+            newLengths[newSlot] = lengths[slot(i)];
+        }
+        offsets = newOffsets;
+        lengths = newLengths;
+    }
+
+    private int slot(long index) {
+        return (int) (index % offsets.length);
+    }
+
+    @Override
+    public NodeStateEntry remove() {
+        Preconditions.checkState(!isEmpty(), "Cannot remove item from empty list");
+        NodeStateEntry ret = get(headIndex);
+        if (headIndex < bufferEndIndex) {
+            headOffset += lengths[slot(headIndex)];
+        } else {
+            spillMap.remove(headIndex);
+        }
+        headIndex++;
+        if (isEmpty()) {
+            // start over with the ring buffer
+            bufferEndIndex = tailIndex;
+            headOffset = tailOffset = 0;
+            if (spillMap != null) {
+                spillMap.clear();
+            }
+        }
+        return ret;
+    }
+
+    private NodeStateEntry get(long index) {
+        String s;
+        if (index < bufferEndIndex) {
+            int slot = slot(index);
+            byte[] data = new byte[lengths[slot]];
+            int pos = (int) (offsets[slot] % capacity);
+            int first = Math.min(data.length, capacity - pos);
+            ByteBuffer b = buffer.duplicate();
+            b.position(pos);
+            b.get(data, 0, first);
+            if (first < data.length) {
+                b.position(0);
+                b.get(data, first, data.length - first);
+            }
+            s = new String(data, UTF_8);
+        } else {
+            s = spillMap.get(index);
+        }
+        String[] parts = NodeStateEntryWriter.getParts(s);
+        return new NodeStateEntry(new LazyNodeState(reader, s), parts[0], estimateMemoryUsage(s));
+    }
+
+    @Override
+    public long estimatedMemoryUsage() {
+        // the entries are not on the heap
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return (int) (tailIndex - headIndex);
+    }
+
+    @Override
+    public Iterator<NodeStateEntry> iterator() {
+        return new NodeIterator(headIndex);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return headIndex == tailIndex;
+    }
+
+    /**
+     * Get the maximum number of bytes used in the off-heap buffer.
+     */
+    public long getMaxBufferBytes() {
+        return maxBufferBytes;
+    }
+
+    /**
+     * Get the number of entries that were spilled, because the off-heap buffer
+     * was full.
+     */
+    public long getSpilledEntries() {
+        return spilledEntries;
+    }
+
+    /**
+     * Get the approximate size of the spilled entries, in bytes.
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LOG.info("Off-heap buffer: max usage {} of {}, spilled {} entries ({})",
+                humanReadableByteCount(maxBufferBytes), humanReadableByteCount(capacity),
+                spilledEntries, humanReadableByteCount(spilledBytes));
+        if (spillStore != null) {
+            spillStore.close();
+        }
+        if (!bufferFile.delete()) {
+            LOG.debug("Could not delete {}", bufferFile);
+        }
+    }
+
+    /**
+     * A node iterator over this list.
+     */
+    class NodeIterator implements Iterator<NodeStateEntry> {
+
+        private long index;
+
+        NodeIterator(long index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < tailIndex;
+        }
+
+        @Override
+        public NodeStateEntry next() {
+            if (index >= tailIndex) {
+                throw new NoSuchElementException();
+            }
+            Preconditions.checkState(index >= headIndex, "Can't call next from a removed node");
+            return get(index++);
+        }
+
+    }
+
+    /**
+     * A node state that is parsed when it is first accessed.
+     */
+    private static class LazyNodeState extends AbstractNodeState {
+
+        private final NodeStateEntryReader reader;
+        private String line;
+        private NodeState state;
+
+        LazyNodeState(NodeStateEntryReader reader, String line) {
+            this.reader = reader;
+            this.line = line;
+        }
+
+        private NodeState getState() {
+            if (state == null) {
+                state = reader.read(line).getNodeState();
+                line = null;
+            }
+            return state;
+        }
+
+        @Override
+        public boolean exists() {
+            return getState().exists();
+        }
+
+        @Override
+        public long getPropertyCount() {
+            return getState().getPropertyCount();
+        }
+
+        @Override
+        public PropertyState getProperty(@NotNull String name) {
+            return getState().getProperty(name);
+        }
+
+        @NotNull
+        @Override
+        public Iterable<? extends PropertyState> getProperties() {
+            return getState().getProperties();
+        }
+
+        @Override
+        public boolean hasChildNode(@NotNull String name) {
+            return getState().hasChildNode(name);
+        }
+
+        @NotNull
+        @Override
+        public NodeState getChildNode(@NotNull String name) {
+            return getState().getChildNode(name);
+        }
+
+        @NotNull
+        @Override
+        public Iterable<? extends ChildNodeEntry> getChildNodeEntries() {
+            return getState().getChildNodeEntries();
+        }
+
+        @NotNull
+        @Override
+        public NodeBuilder builder() {
+            return getState().builder();
+        }
+
+    }
+
+}
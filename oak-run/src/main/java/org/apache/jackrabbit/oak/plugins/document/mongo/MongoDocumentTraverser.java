@@ -24,12 +24,14 @@ import java.util.function.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.mongodb.BasicDBObject;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.util.CloseableIterable;
+import org.bson.conversions.Bson;
 
 import static com.google.common.base.Preconditions.checkState;
 
@@ -42,6 +44,22 @@ public class MongoDocumentTraverser {
     }
 
     public <T extends Document> CloseableIterable<T> getAllDocuments(Collection<T> collection, Predicate<String> filter) {
+        return getDocuments(collection, new BasicDBObject(), filter);
+    }
+
+    /**
+     * Returns the documents with an id in the given range (both exclusive),
+     * using a single cursor.
+     */
+    public <T extends Document> CloseableIterable<T> getDocuments(Collection<T> collection,
+                                                                  String fromKey, String toKey,
+                                                                  Predicate<String> filter) {
+        return getDocuments(collection,
+                Filters.and(Filters.gt(Document.ID, fromKey), Filters.lt(Document.ID, toKey)), filter);
+    }
+
+    private <T extends Document> CloseableIterable<T> getDocuments(Collection<T> collection, Bson query,
+                                                                   Predicate<String> filter) {
         if (!disableReadOnlyCheck) {
             checkState(mongoStore.isReadOnly(), "Traverser can only be used with readOnly store");
         }
@@ -51,7 +69,7 @@ public class MongoDocumentTraverser {
         //So caller must ensure that its safe to read from secondary
         Iterable<BasicDBObject> cursor = dbCollection
                 .withReadPreference(mongoStore.getConfiguredReadPreference(collection))
-                .find();
+                .find(query);
 
         CloseableIterable<BasicDBObject> closeableCursor = CloseableIterable.wrap(cursor);
         cursor = closeableCursor;
@@ -41,6 +41,7 @@ public final class AvailableModes {
             .put("datastorecheck", new DataStoreCheckCommand())
             .put("debug", new DebugCommand())
             .put("explore", new ExploreCommand())
+            .put(FlatFileCommand.NAME, new FlatFileCommand())
             .put(NodeStateExportCommand.NAME, new NodeStateExportCommand())
             .put("garbage", new GarbageCommand())
             .put("help", new HelpCommand())
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.run;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.BinaryFlatFileReader;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileConverter;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStore;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.NodeStateEntryReader;
+import org.apache.jackrabbit.oak.run.commons.Command;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+/**
+ * Converts sorted flat files (as created by the document traversal mode of the
+ * index command) between the text and the binary format, and measures the
+ * raw read throughput of both formats (which is not the indexing throughput).
+ */
+public class FlatFileCommand implements Command {
+    public static final String NAME = "flatfile";
+
+    @Override
+    public void execute(String... args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Void> helpOption = parser.accepts("help", "show help").forHelp();
+        OptionSpec<File> inputOption = parser.accepts("input", "Input flat file (text or binary)")
+                .withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> outputOption = parser.accepts("output", "Output flat file; the format is " +
+                "binary if the input is text, and text otherwise").withRequiredArg().ofType(File.class);
+        OptionSpec<Boolean> compressedOption = parser.accepts("compressed", "Whether the text file is gzip compressed")
+                .withRequiredArg().ofType(Boolean.class).defaultsTo(true);
+        OptionSpec<String> preferredOption = parser.accepts("preferred", "Preferred path elements that were " +
+                "used for sorting the text file").withRequiredArg().ofType(String.class)
+                .withValuesSeparatedBy(',').defaultsTo("jcr:content");
+        OptionSpec<Void> benchmarkOption = parser.accepts("benchmark", "Measure the raw read throughput " +
+                "(not the indexing throughput) of the input and the output file");
+
+        try {
+            OptionSet options = parser.parse(args);
+            if (options.has(helpOption)) {
+                System.err.println("Options:");
+                parser.printHelpOn(System.err);
+                System.exit(0);
+            }
+            File input = inputOption.value(options);
+            File output = outputOption.value(options);
+            boolean compressed = compressedOption.value(options);
+            Set<String> preferred = new LinkedHashSet<>(preferredOption.values(options));
+            boolean binaryInput = BinaryFlatFileReader.isBinaryFlatFile(input);
+
+            if (output != null) {
+                long count = binaryInput
+                        ? FlatFileConverter.toText(input, output, compressed, null)
+                        : FlatFileConverter.toBinary(input, compressed, output, null, preferred);
+                System.out.printf("Converted %d entries from %s to %s%n", count, input, output);
+            }
+            if (options.has(benchmarkOption)) {
+                benchmark(input, binaryInput, compressed, preferred);
+                if (output != null) {
+                    benchmark(output, !binaryInput, compressed, preferred);
+                }
+            }
+            System.exit(0);
+        } catch (joptsimple.OptionException ex) {
+            System.err.println(ex.getLocalizedMessage());
+            System.err.println(Arrays.toString(args));
+            System.err.println();
+            System.err.println("Options:");
+            parser.printHelpOn(System.err);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Iterates over all entries like the indexer does: reads all properties,
+     * and the child node names (which are needed for example for aggregation).
+     */
+    private static void benchmark(File file, boolean binary, boolean compressed, Set<String> preferred) throws Exception {
+        Stopwatch w = Stopwatch.createStarted();
+        long entries = 0;
+        long properties = 0;
+        long children = 0;
+        try (FlatFileStore store = binary
+                ? new FlatFileStore(null, file, new BinaryFlatFileReader(file, null))
+                : new FlatFileStore(null, file, new NodeStateEntryReader(null), preferred, compressed)) {
+            for (NodeStateEntry e : store) {
+                NodeState state = e.getNodeState();
+                properties += state.getPropertyCount();
+                for (ChildNodeEntry c : state.getChildNodeEntries()) {
+                    if (c.getNodeState().exists()) {
+                        children++;
+                    }
+                }
+                entries++;
+            }
+        }
+        long millis = Math.max(1, w.elapsed(TimeUnit.MILLISECONDS));
+        System.out.printf("%s (%s): %d entries, %d properties, %d children in %s (%d entries/s)%n",
+                file, binary ? "binary" : "text", entries, properties, children, w, entries * 1000 / millis);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Strings;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileNodeStoreBuilder;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentIdRangeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final MemoryDocumentStore store = new MemoryDocumentStore();
+    private DocumentNodeStore nodeStore;
+
+    @Before
+    public void setup() throws Exception {
+        nodeStore = new DocumentMK.Builder().setDocumentStore(store).setAsyncDelay(0).getNodeStore();
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        for (String top : new String[] {"content", "content-x", "libs", "a"}) {
+            NodeBuilder n = builder.child(top);
+            for (int i = 0; i < 5; i++) {
+                NodeBuilder c = n.child("c" + i);
+                c.setProperty("foo", "bar" + i);
+                for (int j = 0; j < 12; j++) {
+                    c.child("d" + j).child("jcr:content").setProperty("x", j);
+                }
+            }
+        }
+        // a path with a hashed id
+        builder.child("content").child(Strings.repeat("long", 100)).child("child");
+        builder.child(":hidden").child("x");
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    @After
+    public void tearDown() {
+        nodeStore.dispose();
+    }
+
+    @Test
+    public void rangesCoverAllDocuments() throws Exception {
+        DocumentNodeState root = nodeStore.getRoot();
+        List<DocumentIdRange> ranges = DocumentIdRange.split(store, root.getChildNodeNames());
+        assertTrue(ranges.size() > 10);
+
+        List<String> paths = new ArrayList<>();
+        for (DocumentIdRange range : ranges) {
+            try (NodeStateEntryTraverser traverser = new NodeStateEntryTraverser(
+                    root.getRootRevision(), nodeStore, store).withRange(range)) {
+                for (NodeStateEntry e : traverser) {
+                    paths.add(e.getPath());
+                }
+            }
+        }
+        List<String> expected = getPaths(root);
+        Collections.sort(paths);
+        assertEquals(expected, paths);
+        assertTrue(Utils.isIdFromLongPath(Utils.getIdFromPath(
+                "/content/" + Strings.repeat("long", 100) + "/child")));
+    }
+
+    @Test
+    public void parallelFlatFileStore() throws Exception {
+        DocumentNodeState root = nodeStore.getRoot();
+        List<NodeStateEntryTraverser> traversers = new ArrayList<>();
+        for (DocumentIdRange range : DocumentIdRange.split(store, root.getChildNodeNames())) {
+            traversers.add(new NodeStateEntryTraverser(root.getRootRevision(), nodeStore, store)
+                    .withRange(range)
+                    .withPathPredicate(path -> !path.startsWith("/libs")));
+        }
+        List<String> paths = new ArrayList<>();
+        try (FlatFileStore flatFileStore = new FlatFileNodeStoreBuilder(traversers, 4, folder.getRoot())
+                .withBlobStore(new MemoryBlobStore())
+                .build()) {
+            for (NodeStateEntry e : flatFileStore) {
+                paths.add(e.getPath());
+                if (e.getPath().equals("/content/c3")) {
+                    assertEquals("bar3", e.getNodeState().getString("foo"));
+                }
+            }
+            assertEquals(paths.size(), flatFileStore.getEntryCount());
+        }
+        List<String> expected = new ArrayList<>(getPaths(root));
+        expected.removeIf(path -> path.startsWith("/libs"));
+        List<String> sorted = new ArrayList<>(paths);
+        Collections.sort(sorted);
+        assertEquals(expected, sorted);
+        // parents come before their children
+        for (int i = 1; i < paths.size(); i++) {
+            assertTrue(paths.indexOf(PathUtils.getParentPath(paths.get(i))) < i);
+        }
+    }
+
+    private static List<String> getPaths(NodeState root) {
+        List<String> paths = new ArrayList<>();
+        collectPaths("/", root, paths);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static void collectPaths(String path, NodeState state, List<String> paths) {
+        paths.add(path);
+        for (ChildNodeEntry e : state.getChildNodeEntries()) {
+            if (!NodeStateUtils.isHidden(e.getName())) {
+                collectPaths(PathUtils.concat(path, e.getName()), e.getNodeState(), paths);
+            }
+        }
+    }
+}
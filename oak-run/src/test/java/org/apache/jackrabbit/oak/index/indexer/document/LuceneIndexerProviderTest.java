@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FalseFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.jackrabbit.oak.index.IndexHelper;
+import org.apache.jackrabbit.oak.index.IndexerSupport;
+import org.apache.jackrabbit.oak.index.LuceneIndexHelper;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileNodeStoreBuilder;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.FlatFileStore;
+import org.apache.jackrabbit.oak.plugins.index.lucene.util.IndexDefinitionBuilder;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterConfig;
+import org.apache.jackrabbit.oak.plugins.index.progress.IndexingProgressReporter;
+import org.apache.jackrabbit.oak.plugins.index.search.FieldNames;
+import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.spi.mount.Mounts;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.oak.InitialContentHelper.INITIAL_CONTENT;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LuceneIndexerProviderTest {
+    private static final String INDEX_PATH = "/oak:index/fooIndex";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void partitionsSameAsSequential() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        IndexDefinitionBuilder idxb = new IndexDefinitionBuilder(
+                builder.child("oak:index").child("fooIndex"));
+        idxb.indexRule("nt:base").property("foo").propertyIndex().analyzed();
+        idxb.build();
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder c = builder.child("content" + i);
+            for (int j = 0; j < 50 * (i % 3 + 1); j++) {
+                c.child("n" + j).setProperty("foo", "value " + i + " " + j);
+            }
+        }
+        NodeState root = builder.getNodeState();
+
+        List<NodeStateEntry> entries = new ArrayList<>();
+        collect(root, "/", entries);
+        System.setProperty("oak.indexer.binaryBlockSizeKB", "1");
+        FlatFileStore store;
+        try {
+            store = new FlatFileNodeStoreBuilder(entries, folder.newFolder())
+                    .withBlobStore(new MemoryBlobStore())
+                    .withBinaryFormat(true)
+                    .build();
+        } finally {
+            System.clearProperty("oak.indexer.binaryBlockSizeKB");
+        }
+
+        List<String> sequential;
+        List<String> partitioned;
+        try {
+            File dir = folder.newFolder();
+            LuceneIndexerProvider provider = createProvider(dir);
+            try (NodeStateIndexer indexer = getIndexer(provider, root)) {
+                for (NodeStateEntry e : store) {
+                    indexer.index(e);
+                }
+            }
+            sequential = getIndexedPaths(dir);
+
+            dir = folder.newFolder();
+            provider = createProvider(dir);
+            NodeStateIndexer indexer = getIndexer(provider, root);
+            List<Iterable<NodeStateEntry>> partitions = store.split(4);
+            assertEquals(4, partitions.size());
+            List<LuceneIndexerProvider> partitionProviders = new ArrayList<>();
+            // index the partitions in reverse order, to check they are
+            // added in partition order anyway
+            for (int i = partitions.size() - 1; i >= 0; i--) {
+                LuceneIndexerProvider p = provider.forPartition(folder.newFolder());
+                partitionProviders.add(0, p);
+                try (NodeStateIndexer partitionIndexer = getIndexer(p, root)) {
+                    for (NodeStateEntry e : partitions.get(i)) {
+                        partitionIndexer.index(e);
+                    }
+                }
+            }
+            provider.addPartitions(partitionProviders);
+            indexer.close();
+            partitioned = getIndexedPaths(dir);
+        } finally {
+            store.close();
+        }
+
+        assertEquals(950, sequential.size());
+        assertEquals(sequential, partitioned);
+    }
+
+    private static void collect(NodeState state, String path, List<NodeStateEntry> entries) {
+        entries.add(new NodeStateEntry(state, path));
+        for (ChildNodeEntry e : state.getChildNodeEntries()) {
+            collect(e.getNodeState(), concat(path, e.getName()), entries);
+        }
+    }
+
+    private static LuceneIndexerProvider createProvider(File localIndexDir) throws Exception {
+        IndexHelper indexHelper = mock(IndexHelper.class);
+        LuceneIndexHelper luceneIndexHelper = mock(LuceneIndexHelper.class);
+        when(luceneIndexHelper.getWriterConfigForReindex()).thenReturn(new LuceneIndexWriterConfig());
+        when(indexHelper.getLuceneIndexHelper()).thenReturn(luceneIndexHelper);
+        when(indexHelper.getMountInfoProvider()).thenReturn(Mounts.defaultMountInfoProvider());
+        IndexerSupport indexerSupport = mock(IndexerSupport.class);
+        when(indexerSupport.getLocalIndexDir()).thenReturn(localIndexDir);
+        return new LuceneIndexerProvider(indexHelper, indexerSupport);
+    }
+
+    private static NodeStateIndexer getIndexer(LuceneIndexerProvider provider, NodeState root) {
+        NodeBuilder definition = root.builder().getChildNode("oak:index").getChildNode("fooIndex");
+        return provider.getIndexer("lucene", INDEX_PATH, definition, root, mock(IndexingProgressReporter.class));
+    }
+
+    private static List<String> getIndexedPaths(File localIndexDir) throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (File dir : FileUtils.listFilesAndDirs(localIndexDir,
+                FalseFileFilter.FALSE,
+                TrueFileFilter.TRUE)) {
+            if (!dir.getName().equals("data")) {
+                continue;
+            }
+            try (Directory directory = FSDirectory.open(dir);
+                 DirectoryReader reader = DirectoryReader.open(directory)) {
+                for (int i = 0; i < reader.maxDoc(); i++) {
+                    paths.add(reader.document(i).get(FieldNames.PATH));
+                }
+            }
+        }
+        return paths;
+    }
+}
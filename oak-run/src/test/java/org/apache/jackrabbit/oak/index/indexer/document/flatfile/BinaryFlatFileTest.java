@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.index.indexer.document.flatfile.BinaryFlatFileWriter.OAK_INDEXER_BINARY_BLOCK_SIZE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class BinaryFlatFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final Set<String> preferred = ImmutableSet.of("jcr:content");
+
+    private final MemoryBlobStore blobStore = new MemoryBlobStore();
+
+    @Before
+    public void before() {
+        // use the in-memory buffer for the text format, which is much faster
+        // than the persisted one
+        System.setProperty(FlatFileStoreIterator.BUFFER_MEM_LIMIT_CONFIG_NAME, "100");
+    }
+
+    @After
+    public void after() {
+        System.clearProperty(OAK_INDEXER_BINARY_BLOCK_SIZE);
+        System.clearProperty(FlatFileStoreIterator.BUFFER_MEM_LIMIT_CONFIG_NAME);
+    }
+
+    @Test
+    public void sameContentAsText() throws Exception {
+        // small blocks, so that there are many
+        System.setProperty(OAK_INDEXER_BINARY_BLOCK_SIZE, "1");
+        List<NodeStateEntry> entries = createEntries(200);
+        List<String> text = read(entries, false);
+        List<String> binary = read(entries, true);
+
+        assertEquals(entries.size(), binary.size());
+        assertEquals(text, binary);
+    }
+
+    @Test
+    public void lookup() throws Exception {
+        System.setProperty(OAK_INDEXER_BINARY_BLOCK_SIZE, "1");
+        List<NodeStateEntry> entries = createEntries(100);
+        File file = folder.newFile();
+        try (BinaryFlatFileWriter writer = new BinaryFlatFileWriter(file, blobStore, preferred)) {
+            for (NodeStateEntry e : entries) {
+                writer.add(e.getPath(), e.getNodeState());
+            }
+        }
+        try (BinaryFlatFileReader reader = new BinaryFlatFileReader(file, blobStore)) {
+            assertEquals(entries.size(), reader.getEntryCount());
+            assertEquals(preferred, reader.getPreferredPathElements());
+            for (NodeStateEntry e : entries) {
+                assertEquals(e.getPath(), reader.getEntry(e.getPath()).getPath());
+                assertEquals(e.getPath(), reader.iterator(e.getPath()).next().getPath());
+            }
+            assertNull(reader.getEntry("/n5/missing"));
+            assertNull(reader.getEntry("/zzz"));
+            // the next entry in sort order
+            assertEquals("/n5/child0", reader.iterator("/n5/a").next().getPath());
+            assertFalse(reader.iterator("/zzz").hasNext());
+        }
+
+        FlatFileStore store = new FlatFileStore(blobStore, file, new BinaryFlatFileReader(file, blobStore));
+        NodeState n7 = getEntry(store, "/n7").getNodeState();
+        assertTrue(n7.hasChildNode("child1"));
+        assertFalse(n7.hasChildNode("child9"));
+        assertEquals(7, n7.getChildNode("jcr:content").getProperty("count").getValue(Type.LONG).longValue());
+        assertEquals(3, n7.getChildNodeCount(10));
+        store.close();
+    }
+
+    @Test
+    public void split() throws Exception {
+        System.setProperty(OAK_INDEXER_BINARY_BLOCK_SIZE, "1");
+        List<NodeStateEntry> entries = createEntries(100);
+        try (FlatFileStore store = build(entries, true)) {
+            List<String> all = new ArrayList<>();
+            for (NodeStateEntry e : store) {
+                all.add(e.getPath());
+            }
+            List<Iterable<NodeStateEntry>> partitions = store.split(3);
+            assertEquals(3, partitions.size());
+            List<String> split = new ArrayList<>();
+            for (Iterable<NodeStateEntry> p : partitions) {
+                List<String> paths = new ArrayList<>();
+                for (NodeStateEntry e : p) {
+                    paths.add(e.getPath());
+                }
+                assertTrue(paths.size() > all.size() / 5);
+                split.addAll(paths);
+            }
+            assertEquals(all, split);
+
+            // children in other partitions are available
+            NodeStateEntry root = partitions.get(0).iterator().next();
+            assertEquals("/", root.getPath());
+            assertEquals(100, root.getNodeState().getChildNodeCount(1000));
+            assertTrue(root.getNodeState().hasChildNode("n99"));
+            assertEquals(1, store.split(1).size());
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean("flatFileBenchmark"));
+        List<NodeStateEntry> entries = createEntries(100000);
+        try (FlatFileStore text = build(entries, false);
+             FlatFileStore binary = build(entries, true)) {
+            for (int i = 0; i < 3; i++) {
+                for (FlatFileStore store : asList(text, binary)) {
+                    Stopwatch w = Stopwatch.createStarted();
+                    int count = read(store).size();
+                    System.out.printf("%s: %d entries in %s (%d entries/s)%n", store == binary ? "binary" : "text",
+                            count, w, count * 1000L / Math.max(1, w.elapsed(TimeUnit.MILLISECONDS)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read all entries and their children, like an indexer would.
+     *
+     * @return a description of each entry
+     */
+    private List<String> read(List<NodeStateEntry> entries, boolean binary) throws Exception {
+        try (FlatFileStore store = build(entries, binary)) {
+            return read(store);
+        }
+    }
+
+    private FlatFileStore build(List<NodeStateEntry> entries, boolean binary) throws Exception {
+        return new FlatFileNodeStoreBuilder(entries, folder.newFolder())
+                .withBlobStore(blobStore)
+                .withPreferredPathElements(preferred)
+                .withBinaryFormat(binary)
+                .build();
+    }
+
+    private static List<String> read(FlatFileStore store) {
+        List<String> result = new ArrayList<>();
+        for (NodeStateEntry e : store) {
+            NodeState state = e.getNodeState();
+            List<String> description = new ArrayList<>();
+            description.addAll(describe(state));
+            description.add(0, e.getPath());
+            if (e.getPath().equals("/")) {
+                // the text format scans all entries for each child of the root
+                result.add(description.toString());
+                continue;
+            }
+            for (String name : state.getChildNodeNames()) {
+                description.add(name + "=" + describe(state.getChildNode(name)));
+            }
+            description.add(String.valueOf(state.getChildNode("jcr:content").getString("title")));
+            result.add(description.toString());
+        }
+        return result;
+    }
+
+    private static List<String> describe(NodeState state) {
+        List<String> properties = new ArrayList<>();
+        for (PropertyState ps : state.getProperties()) {
+            // added by the JSON deserializer
+            if (!ps.getName().equals(":childOrder")) {
+                properties.add(ps + " (" + ps.getType() + ")");
+            }
+        }
+        Collections.sort(properties);
+        return properties;
+    }
+
+    private static NodeStateEntry getEntry(Iterable<NodeStateEntry> store, String path) {
+        for (NodeStateEntry e : store) {
+            if (e.getPath().equals(path)) {
+                return e;
+            }
+        }
+        throw new AssertionError(path);
+    }
+
+    private List<NodeStateEntry> createEntries(int count) throws Exception {
+        List<NodeStateEntry> entries = new ArrayList<>();
+        entries.add(new NodeStateEntry(EMPTY_NODE, "/"));
+        String blobId = blobStore.writeBlob(new ByteArrayInputStream(new byte[100]));
+        for (int i = 0; i < count; i++) {
+            String path = "/n" + i;
+            NodeBuilder b = EMPTY_NODE.builder();
+            b.setProperty("jcr:primaryType", "nt:unstructured", Type.NAME);
+            b.setProperty("title", "Title " + i + " äöü €");
+            b.setProperty("count", (long) i - 50);
+            b.setProperty("ratio", i / 3.0);
+            b.setProperty("flag", i % 2 == 0);
+            b.setProperty("amount", new BigDecimal("12.5" + i));
+            b.setProperty("tags", asList("a", "b" + i), Type.STRINGS);
+            b.setProperty("numbers", asList(1L, -2L, Long.MAX_VALUE), Type.LONGS);
+            b.setProperty(PropertyStates.createProperty("created", "2020-01-01T00:00:00.000Z", Type.DATE));
+            b.setProperty(PropertyStates.createProperty("ref", "/n" + (i / 2), Type.PATH));
+            b.setProperty(PropertyStates.createProperty("data", new BlobStoreBlob(blobStore, blobId), Type.BINARY));
+            b.setProperty("inline", new ArrayBasedBlob(new byte[] {1, 2, 3}));
+            b.setProperty("empty", Collections.<String>emptyList(), Type.STRINGS);
+            entries.add(new NodeStateEntry(b.getNodeState(), path));
+
+            NodeBuilder content = EMPTY_NODE.builder();
+            content.setProperty("title", "Content " + i);
+            content.setProperty("count", (long) i);
+            entries.add(new NodeStateEntry(content.getNodeState(), path + "/jcr:content"));
+            for (int j = 0; j < 2; j++) {
+                NodeBuilder child = EMPTY_NODE.builder();
+                child.setProperty("index", (long) j);
+                entries.add(new NodeStateEntry(child.getNodeState(), path + "/child" + j));
+            }
+        }
+        entries.sort((e1, e2) -> new PathElementComparator(preferred).compare(
+                elements(e1.getPath()), elements(e2.getPath())));
+        return entries;
+    }
+}
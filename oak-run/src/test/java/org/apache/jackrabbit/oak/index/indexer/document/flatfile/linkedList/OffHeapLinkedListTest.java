@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.index.indexer.document.flatfile.linkedList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.jackrabbit.oak.index.indexer.document.NodeStateEntry;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.NodeStateEntryReader;
+import org.apache.jackrabbit.oak.index.indexer.document.flatfile.NodeStateEntryWriter;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapLinkedListTest extends FlatFileBufferLinkedListTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final BlobStore blobStore = new MemoryBlobStore();
+
+    @Before
+    public void setup() throws IOException {
+        list = newList(1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        list.close();
+    }
+
+    @Test
+    @Override
+    public void memUsage() {
+        // the entries are not on the heap
+    }
+
+    @Test
+    public void spill() throws IOException {
+        list.close();
+        OffHeapLinkedList offHeap = newList(1000);
+        list = offHeap;
+        for (int i = 0; i < 100; i++) {
+            list.add(testNode("/n" + i));
+        }
+        assertEquals(100, list.size());
+        assertTrue(offHeap.getSpilledEntries() > 0);
+        assertTrue(offHeap.getSpilledEntries() < 100);
+        assertTrue(offHeap.getMaxBufferBytes() <= 1000);
+        Iterator<NodeStateEntry> it = list.iterator();
+        for (int i = 0; i < 100; i++) {
+            NodeStateEntry e = it.next();
+            assertEquals("/n" + i, e.getPath());
+            assertEquals(i, e.getNodeState().getLong("count"));
+        }
+        assertFalse(it.hasNext());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("/n" + i, list.remove().getPath());
+        }
+        assertTrue(list.isEmpty());
+
+        // once empty, the buffer is used again
+        long spilled = offHeap.getSpilledEntries();
+        list.add(testNode("/x"));
+        assertEquals(spilled, offHeap.getSpilledEntries());
+        assertEquals("/x", list.remove().getPath());
+    }
+
+    @Test
+    public void wrapAround() throws IOException {
+        list.close();
+        OffHeapLinkedList offHeap = newList(500);
+        list = offHeap;
+        int added = 0;
+        int removed = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 3; i++) {
+                list.add(testNode("/n" + added++));
+            }
+            for (int i = 0; i < 2; i++) {
+                NodeStateEntry e = list.remove();
+                assertEquals("/n" + removed, e.getPath());
+                assertEquals(removed, e.getNodeState().getLong("count"));
+                removed++;
+            }
+            if (offHeap.getSpilledEntries() > 0) {
+                // drain, so that the buffer is used again
+                while (!list.isEmpty()) {
+                    assertEquals("/n" + removed++, list.remove().getPath());
+                }
+            }
+        }
+        assertEquals(added - removed, list.size());
+    }
+
+    private OffHeapLinkedList newList(long capacity) throws IOException {
+        String fileName = folder.newFile().getAbsolutePath();
+        NodeStateEntryReader reader = new NodeStateEntryReader(blobStore);
+        NodeStateEntryWriter writer = new NodeStateEntryWriter(blobStore);
+        return new OffHeapLinkedList(fileName, capacity, writer, reader);
+    }
+
+    private static NodeStateEntry testNode(String path) {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty("count", path.startsWith("/n") ? Long.parseLong(path.substring(2)) : 0);
+        builder.setProperty("title", "Title of " + path + " äöü");
+        return new NodeStateEntry(builder.getNodeState(), path);
+    }
+
+}
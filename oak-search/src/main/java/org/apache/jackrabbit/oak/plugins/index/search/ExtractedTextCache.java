@@ -23,23 +23,30 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.IOUtils;
@@ -70,11 +77,16 @@ public class ExtractedTextCache {
             Boolean.getBoolean("oak.extraction.inCallerThread");
     private static final boolean EXTRACT_FORGET_TIMEOUT =
             Boolean.getBoolean("oak.extraction.forgetTimeout");
+    private static final int EXTRACTION_PREFETCH_THREADS =
+            Integer.getInteger("oak.extraction.prefetchThreads", 0);
+    private static final int EXTRACTION_PREFETCH_QUEUE_SIZE =
+            Integer.getInteger("oak.extraction.prefetchQueueSize", 100);
 
     private static final String TIMEOUT_MAP = "textExtractionTimeout.properties";
     private static final String EMPTY_STRING = "";
     private static final Logger log = LoggerFactory.getLogger(ExtractedTextCache.class);
     private volatile PreExtractedTextProvider extractedTextProvider;
+    private volatile PersistentExtractedTextStore persistentStore;
     private int textExtractionCount;
     private long totalBytesRead;
     private long totalTextSize;
@@ -86,12 +98,20 @@ public class ExtractedTextCache {
     private final Cache<String, String> cache;
 
     private final ConcurrentHashMap<String, String> timeoutMap;
+
+    // binaries that are extracted ahead of the indexer. key: content id
+    private final ConcurrentHashMap<String, PrefetchTask> prefetchMap = new ConcurrentHashMap<>();
+
+    // key: mime type, value: count, time in millis, bytes read
+    private final ConcurrentHashMap<String, long[]> mimeTypeStats = new ConcurrentHashMap<>();
     private final File indexDir;
     private final CacheStats cacheStats;
     private final boolean alwaysUsePreExtractedCache;
     private volatile ExecutorService executorService;
+    private volatile ExecutorService prefetchExecutorService;
     private volatile int timeoutCount;
     private long extractionTimeoutMillis = EXTRACTION_TIMEOUT_SECONDS * 1000;
+    private int prefetchThreads = EXTRACTION_PREFETCH_THREADS;
 
     public ExtractedTextCache(long maxWeight, long expiryTimeInSecs){
         this(maxWeight, expiryTimeInSecs, false, null);
@@ -152,6 +172,13 @@ public class ExtractedTextCache {
         if (cache != null && id != null && result == null) {
             result = cache.getIfPresent(id);
         }
+        PersistentExtractedTextStore store = persistentStore;
+        if (result == null && id != null && store != null) {
+            result = store.get(id);
+            if (result != null && cache != null) {
+                cache.put(id, result);
+            }
+        }
         if (result == null && id != null) {
             result = timeoutMap.get(id);
         }
@@ -166,6 +193,12 @@ public class ExtractedTextCache {
                 cache.put(id, getText(extractedText));
             }
         }
+        PersistentExtractedTextStore store = persistentStore;
+        if (store != null && id != null
+                && extractedText.getExtractionResult() == ExtractionResult.SUCCESS) {
+            // errors are not persisted, so that extraction is retried later on
+            store.put(id, getText(extractedText));
+        }
     }
 
     public void putTimeout(@NotNull Blob blob, @NotNull ExtractedText extractedText) {
@@ -180,6 +213,152 @@ public class ExtractedTextCache {
         }
     }
 
+    /**
+     * Check whether the text of binaries can be extracted ahead of the
+     * indexer, in background threads. This requires the cache to be enabled,
+     * as the extracted text is passed to the indexer via the cache.
+     *
+     * @return {@code true} if enabled
+     */
+    public boolean isPrefetchEnabled() {
+        return prefetchThreads > 0 && cache != null;
+    }
+
+    /**
+     * Check whether the maximum number of binaries are waiting to be
+     * extracted in the background.
+     *
+     * @return {@code true} if no more binaries are accepted
+     */
+    public boolean isPrefetchQueueFull() {
+        return prefetchMap.size() >= EXTRACTION_PREFETCH_QUEUE_SIZE;
+    }
+
+    /**
+     * Extract the text of the given binary in a background thread. The
+     * extractor is expected to put the result in this cache. The binary is
+     * skipped if its text is already known or being extracted, or if the
+     * queue is full.
+     *
+     * @param blob the binary
+     * @param extractor the extractor, which returns the extracted text
+     * @return {@code true} if the extraction was scheduled
+     */
+    public boolean prefetch(@NotNull Blob blob, @NotNull Callable<String> extractor) {
+        if (!isPrefetchEnabled() || isPrefetchQueueFull()) {
+            return false;
+        }
+        String id = blob.getContentIdentity();
+        if (id == null || cache.getIfPresent(id) != null || timeoutMap.containsKey(id)) {
+            return false;
+        }
+        PersistentExtractedTextStore store = persistentStore;
+        if (store != null && store.contains(id)) {
+            return false;
+        }
+        PrefetchTask task = new PrefetchTask(id, extractor);
+        if (prefetchMap.putIfAbsent(id, task) != null) {
+            return false;
+        }
+        try {
+            getPrefetchExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            prefetchMap.remove(id);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the text of a binary that is extracted in the background, waiting
+     * for the extraction to complete if needed. If the extraction did not
+     * start yet, it is cancelled, so that the caller can extract the text
+     * itself instead of waiting for the queue. The timeout only applies to
+     * the time the extraction is running; an extraction that times out is
+     * cancelled.
+     *
+     * @param blob the binary
+     * @return the extracted text, or null if the binary was not extracted in
+     *         the background
+     * @throws TimeoutException if the extraction did not complete in time
+     */
+    @Nullable
+    public String getPrefetched(@NotNull Blob blob) throws TimeoutException {
+        String id = blob.getContentIdentity();
+        if (id == null || cache == null) {
+            return null;
+        }
+        PrefetchTask task = prefetchMap.get(id);
+        if (task == null) {
+            // the extraction might have completed just now
+            return cache.getIfPresent(id);
+        }
+        if (task.claim()) {
+            // still queued: the caller is faster extracting it itself
+            prefetchMap.remove(id, task);
+            task.cancel(false);
+            return null;
+        }
+        long startTime = task.startTime;
+        long remaining = startTime == 0 ? extractionTimeoutMillis
+                : extractionTimeoutMillis - (System.currentTimeMillis() - startTime);
+        try {
+            return task.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCount++;
+            task.cancel(true);
+            throw e;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.debug("Background text extraction failed for blob {}", id, e.getCause());
+            return null;
+        }
+    }
+
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * A background extraction. It is either started by a prefetch thread, or
+     * claimed (and then cancelled) by the indexer before it started.
+     */
+    private class PrefetchTask extends FutureTask<String> {
+
+        private final String id;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        // the time the extraction started, or 0 if it did not start
+        private volatile long startTime;
+
+        PrefetchTask(String id, Callable<String> extractor) {
+            super(extractor);
+            this.id = id;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (!claim()) {
+                return;
+            }
+            startTime = System.currentTimeMillis();
+            try {
+                super.run();
+            } finally {
+                prefetchMap.remove(id, this);
+            }
+        }
+    }
+
     private static String getText(ExtractedText text) {
         switch (text.getExtractionResult()) {
         case SUCCESS:
@@ -199,6 +378,16 @@ public class ExtractedTextCache {
         this.totalTextSize += textLength;
     }
 
+    public void addMimeTypeStats(String mimeType, long timeInMillis, long bytesRead) {
+        mimeTypeStats.compute(String.valueOf(mimeType), (k, v) -> {
+            long[] stats = v == null ? new long[3] : v;
+            stats[0]++;
+            stats[1] += timeInMillis;
+            stats[2] += bytesRead;
+            return stats;
+        });
+    }
+
     public StatisticsProvider getStatisticsProvider() {
         return statisticsProvider;
     }
@@ -244,6 +433,48 @@ public class ExtractedTextCache {
             public int getTimeoutCount() {
                 return timeoutCount;
             }
+
+            @Override
+            public int getPrefetchQueueSize() {
+                return prefetchMap.size();
+            }
+
+            @Override
+            public int getPrefetchThreads() {
+                return isPrefetchEnabled() ? prefetchThreads : 0;
+            }
+
+            @Override
+            public long getPersistentStoreHitCount() {
+                PersistentExtractedTextStore store = persistentStore;
+                return store == null ? 0 : store.getHitCount();
+            }
+
+            @Override
+            public long getPersistentStoreMissCount() {
+                PersistentExtractedTextStore store = persistentStore;
+                return store == null ? 0 : store.getMissCount();
+            }
+
+            @Override
+            public String getPersistentStoreSize() {
+                PersistentExtractedTextStore store = persistentStore;
+                return store == null ? "" : IOUtils.humanReadableByteCount(store.getSize());
+            }
+
+            @Override
+            public String[] getMimeTypeStats() {
+                List<String> list = Lists.newArrayList();
+                for (Entry<String, long[]> e : mimeTypeStats.entrySet()) {
+                    long[] stats = e.getValue();
+                    long bytesPerSecond = stats[1] == 0 ? 0 : stats[2] * 1000 / stats[1];
+                    list.add(String.format("%s: %d extracted, %s read in %d ms (%s/s)",
+                            e.getKey(), stats[0],
+                            IOUtils.humanReadableByteCount(stats[2]), stats[1],
+                            IOUtils.humanReadableByteCount(bytesPerSecond)));
+                }
+                return list.toArray(new String[0]);
+            }
         };
     }
 
@@ -260,6 +491,21 @@ public class ExtractedTextCache {
         return extractedTextProvider;
     }
 
+    /**
+     * Set the persistent store, which is consulted if the text is not in the
+     * in-memory cache, and where successfully extracted text is stored.
+     *
+     * @param persistentStore the store, or null to not use a persistent store
+     */
+    public void setPersistentStore(@Nullable PersistentExtractedTextStore persistentStore) {
+        this.persistentStore = persistentStore;
+    }
+
+    @Nullable
+    public PersistentExtractedTextStore getPersistentStore() {
+        return persistentStore;
+    }
+
     public void resetCache(){
         if (cache != null){
             cache.invalidateAll();
@@ -300,6 +546,7 @@ public class ExtractedTextCache {
         // don't clean the persistent map on purpose, so we don't re-try
         // after restarting the service or so
         closeExecutorService();
+        closePrefetchExecutorService();
     }
 
     public void process(String name, Callable<Void> callable) throws Throwable {
@@ -349,7 +596,30 @@ public class ExtractedTextCache {
         log.debug("ExtractedTextCache createExecutor " + this);
         ThreadPoolExecutor executor = new ThreadPoolExecutor(1, EXTRACTION_MAX_THREADS,
                 60L, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(), new ThreadFactory() {
+            new LinkedBlockingQueue<>(), newThreadFactory("oak binary text extractor"));
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+        executorService = executor;
+    }
+
+    private ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutorService == null) {
+            createPrefetchExecutor();
+        }
+        return prefetchExecutorService;
+    }
+
+    private synchronized void createPrefetchExecutor() {
+        if (prefetchExecutorService != null) {
+            return;
+        }
+        log.debug("ExtractedTextCache createPrefetchExecutor with {} threads", prefetchThreads);
+        prefetchExecutorService = Executors.newFixedThreadPool(prefetchThreads,
+                newThreadFactory("oak binary text prefetcher"));
+    }
+
+    private static ThreadFactory newThreadFactory(String name) {
+        return new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger();
             private final Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
                 @Override
@@ -368,12 +638,18 @@ public class ExtractedTextCache {
 
             private String createName() {
                 int index = counter.getAndIncrement();
-                return "oak binary text extractor" + (index == 0 ? "" : " " + index);
+                return name + (index == 0 ? "" : " " + index);
             }
-        });
-        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
-        executor.allowCoreThreadTimeOut(true);
-        executorService = executor;
+        };
+    }
+
+    private synchronized void closePrefetchExecutorService() {
+        if (prefetchExecutorService != null) {
+            log.debug("ExtractedTextCache closePrefetchExecutorService " + this);
+            prefetchExecutorService.shutdownNow();
+            prefetchMap.clear();
+            prefetchExecutorService = null;
+        }
     }
 
     private synchronized void closeExecutorService() {
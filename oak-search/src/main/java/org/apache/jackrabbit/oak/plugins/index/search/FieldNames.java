@@ -105,6 +105,12 @@ public final class FieldNames {
      * Name of the field that contains the node name
      */
     public static final String NODE_NAME = ":nodeName";
+
+    /**
+     * Name of the field that contains the names of the principals that may
+     * read the node
+     */
+    public static final String READERS = ":readers";
     
     /**
      * Suffix of the fields that contains function values
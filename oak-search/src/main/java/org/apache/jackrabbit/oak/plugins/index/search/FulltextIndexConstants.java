@@ -153,6 +153,17 @@ public interface FulltextIndexConstants {
 
     String EVALUATE_PATH_RESTRICTION = "evaluatePathRestrictions";
 
+    /**
+     * Boolean property in index definition to index the names of the principals
+     * that may read a node (the principals of the access control entries that
+     * grant read access on the node or its ancestors). If set, queries of
+     * users without admin rights only read the documents that the principals
+     * of the user may read. The access of each result is still checked by the
+     * query engine. Only supported for async indexes. Changing it requires a
+     * reindex.
+     */
+    String INDEX_ACCESS_TOKENS = "indexAccessTokens";
+
     /**
      * The property name to specify a regular expression for property value in index definition. If this property is present
      * in index definition, then only those properties would be added to index whose value matches the regex defined by
@@ -208,6 +208,8 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
 
     private final boolean evaluatePathRestrictions;
 
+    private final boolean indexAccessTokens;
+
     private final Map<String, Aggregate> aggregates;
 
     private final String scorerProviderName;
@@ -376,6 +378,8 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
 
             this.fullTextEnabled = hasFulltextEnabledIndexRule(definedIndexRules);
             this.evaluatePathRestrictions = getOptionalValue(defn, EVALUATE_PATH_RESTRICTION, false);
+            this.indexAccessTokens = getOptionalValue(defn, FulltextIndexConstants.INDEX_ACCESS_TOKENS, false)
+                    && hasAsyncLane(defn);
             if (defn.hasProperty(PROP_VALUE_REGEX)) {
                 this.propertyRegex = Pattern.compile(getOptionalValue(defn, PROP_VALUE_REGEX, ""));
             } else {
@@ -553,6 +557,17 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
         return evaluatePathRestrictions;
     }
 
+    /**
+     * Whether the names of the principals that may read a node are indexed.
+     * This requires an async index, as a change of the access control entries
+     * of a node updates the documents of the whole subtree.
+     *
+     * @return true if enabled (see {@link FulltextIndexConstants#INDEX_ACCESS_TOKENS})
+     */
+    public boolean indexAccessTokens() {
+        return indexAccessTokens;
+    }
+
     public boolean hasCustomTikaConfig(){
         return hasCustomTikaConfig;
     }
@@ -1793,6 +1808,23 @@ public class IndexDefinition implements Aggregate.AggregateMapper {
         return supportsIndexingMode(defn, INDEXING_MODE_NRT) || supportsIndexingMode(defn, INDEXING_MODE_SYNC);
     }
 
+    /**
+     * Whether the index is updated by an async indexing lane (possibly in
+     * addition to NRT or sync indexing).
+     */
+    private static boolean hasAsyncLane(NodeState defn) {
+        PropertyState async = defn.getProperty(IndexConstants.ASYNC_PROPERTY_NAME);
+        if (async == null) {
+            return false;
+        }
+        for (String lane : async.getValue(Type.STRINGS)) {
+            if (!INDEXING_MODE_NRT.equals(lane) && !INDEXING_MODE_SYNC.equals(lane)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean supportsIndexingMode(NodeBuilder defn, String mode) {
         PropertyState async = defn.getProperty(IndexConstants.ASYNC_PROPERTY_NAME);
         if (async == null){
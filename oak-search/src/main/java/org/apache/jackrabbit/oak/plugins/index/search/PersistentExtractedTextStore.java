@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.search;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent store for extracted text, keyed by the content identity of the
+ * binary. Unlike the in-memory cache, the text is kept across reindexing and
+ * restarts, and is shared by all indexes, so that the text of a binary only
+ * needs to be extracted once.
+ * <p>
+ * Each text is stored as a compressed file. If the total size exceeds the
+ * limit, the least recently used files are removed. The size of the existing
+ * files is computed in a background thread when the store is opened; until
+ * that is done, no files are evicted.
+ */
+public class PersistentExtractedTextStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistentExtractedTextStore.class);
+
+    private static final String FILE_EXTENSION = "gz";
+
+    /**
+     * The percentage of the maximum size that is kept when evicting files.
+     */
+    private static final int EVICTION_TARGET_PERCENT = 80;
+
+    private final File directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Whether the size of the existing files is still being computed.
+     */
+    private volatile boolean scanning = true;
+
+    /**
+     * Counted down once the size of the existing files is known, and files
+     * were evicted if needed.
+     */
+    private final CountDownLatch sizeKnown = new CountDownLatch(1);
+
+    /**
+     * The files that were written while the size of the existing files was
+     * computed, so that they are not counted twice.
+     */
+    private final Set<File> writtenDuringScan = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Open (or create) a store.
+     *
+     * @param directory the directory
+     * @param maxSize the maximum size in bytes of all files
+     * @throws IOException if the directory could not be created
+     */
+    public PersistentExtractedTextStore(@NotNull File directory, long maxSize) throws IOException {
+        FileUtils.forceMkdir(directory);
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Thread t = new Thread(this::computeSize, "oak-extracted-text-store-size");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void computeSize() {
+        long total = 0;
+        try {
+            for (File f : listFiles()) {
+                if (!writtenDuringScan.contains(f)) {
+                    total += f.length();
+                }
+            }
+        } finally {
+            size.addAndGet(total);
+            scanning = false;
+            writtenDuringScan.clear();
+        }
+        log.info("Using {} to store extracted text, size {} of at most {} bytes",
+                directory.getAbsolutePath(), size.get(), maxSize);
+        try {
+            evict();
+        } finally {
+            sizeKnown.countDown();
+        }
+    }
+
+    /**
+     * Wait until the size of the files that existed when the store was opened
+     * is known.
+     */
+    void awaitInitialSize() throws InterruptedException {
+        sizeKnown.await();
+    }
+
+    /**
+     * Get the stored text of a binary.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @return the text, or null if not stored
+     */
+    @Nullable
+    public String get(@NotNull String contentIdentity) {
+        File file = getFile(contentIdentity);
+        if (!file.exists()) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            String text = IOUtils.toString(in, StandardCharsets.UTF_8);
+            // the last modified time is used as the access time for eviction
+            file.setLastModified(System.currentTimeMillis());
+            hitCount.incrementAndGet();
+            return text;
+        } catch (IOException e) {
+            // possibly evicted concurrently
+            log.debug("Could not read the extracted text of {} from {}", contentIdentity, file, e);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the text of a binary is stored, without updating the
+     * statistics.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @return {@code true} if stored
+     */
+    public boolean contains(@NotNull String contentIdentity) {
+        return getFile(contentIdentity).exists();
+    }
+
+    /**
+     * Store the text of a binary. Errors are logged and otherwise ignored.
+     *
+     * @param contentIdentity the content identity of the binary
+     * @param text the extracted text
+     */
+    public void put(@NotNull String contentIdentity, @NotNull String text) {
+        File file = getFile(contentIdentity);
+        if (file.exists()) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            tempFile = File.createTempFile("text", ".tmp", file.getParentFile());
+            try (Writer writer = new OutputStreamWriter(
+                    new GZIPOutputStream(new FileOutputStream(tempFile)), StandardCharsets.UTF_8)) {
+                writer.write(text);
+            }
+            long length = tempFile.length();
+            if (scanning) {
+                // before the rename, so that the scan either skips the
+                // file or doesn't see it
+                writtenDuringScan.add(file);
+            }
+            if (!tempFile.renameTo(file)) {
+                FileUtils.deleteQuietly(tempFile);
+                return;
+            }
+            writeCount.incrementAndGet();
+            if (size.addAndGet(length) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            log.warn("Could not store the extracted text of {} in {}", contentIdentity, directory, e);
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (size %d of %d bytes, %d hits, %d misses, %d writes, %d evictions)",
+                directory.getAbsolutePath(), getSize(), maxSize,
+                getHitCount(), getMissCount(), getWriteCount(), getEvictionCount());
+    }
+
+    /**
+     * Remove the least recently used files, until the total size is below the
+     * eviction target.
+     */
+    synchronized void evict() {
+        if (size.get() <= maxSize || scanning) {
+            return;
+        }
+        Collection<File> files = listFiles();
+        final Map<File, Long> lastModified = Maps.newHashMapWithExpectedSize(files.size());
+        for (File f : files) {
+            lastModified.put(f, f.lastModified());
+        }
+        List<File> list = Lists.newArrayList(files);
+        list.sort((a, b) -> Long.compare(lastModified.get(a), lastModified.get(b)));
+        long target = maxSize / 100 * EVICTION_TARGET_PERCENT;
+        int count = 0;
+        for (File f : list) {
+            if (size.get() <= target) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                // concurrent writes are added to the size as well
+                size.addAndGet(-length);
+                count++;
+            }
+        }
+        evictionCount.addAndGet(count);
+        log.debug("Evicted {} files from {}, size now {} bytes", count, directory, size.get());
+    }
+
+    private Collection<File> listFiles() {
+        return FileUtils.listFiles(directory, new String[] {FILE_EXTENSION}, true);
+    }
+
+    /**
+     * Get the file for the given content identity. The content identity is
+     * hashed, as it might contain characters that are not allowed in file
+     * names, and two levels of directories are used to avoid having too many
+     * files in one directory.
+     */
+    private File getFile(String contentIdentity) {
+        String hash = Hashing.sha256().hashString(contentIdentity, StandardCharsets.UTF_8).toString();
+        File dir = new File(new File(directory, hash.substring(0, 2)), hash.substring(2, 4));
+        return new File(dir, hash + "." + FILE_EXTENSION);
+    }
+
+}
@@ -79,4 +79,41 @@ public interface TextExtractionStatsMBean {
      * @return timeout count
      */
     int getTimeoutCount();
+
+    /**
+     * Number of binaries that are waiting to be extracted in the background
+     * @return the prefetch queue size
+     */
+    int getPrefetchQueueSize();
+
+    /**
+     * Number of threads used to extract binaries in the background
+     * @return the number of threads, or 0 if disabled
+     */
+    int getPrefetchThreads();
+
+    /**
+     * Number of binaries where the text was found in the persistent store
+     * @return the hit count, or 0 if no persistent store is configured
+     */
+    long getPersistentStoreHitCount();
+
+    /**
+     * Number of binaries where the text was not found in the persistent store
+     * @return the miss count, or 0 if no persistent store is configured
+     */
+    long getPersistentStoreMissCount();
+
+    /**
+     * Size of the persistent store
+     * @return the size, or an empty string if no persistent store is configured
+     */
+    String getPersistentStoreSize();
+
+    /**
+     * Text extraction statistics per mime type: number of binaries, bytes
+     * read, time taken and throughput
+     * @return one entry per mime type
+     */
+    String[] getMimeTypeStats();
 }
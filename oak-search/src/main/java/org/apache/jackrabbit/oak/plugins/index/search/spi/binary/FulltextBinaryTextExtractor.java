@@ -18,8 +18,10 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.search.spi.binary;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.util.Collections;
 import java.util.List;
@@ -94,7 +96,6 @@ public class FulltextBinaryTextExtractor {
   public List<String> newBinary(
       PropertyState property, NodeState state, String path) {
     List<String> values = Lists.newArrayList();
-    Metadata metadata = new Metadata();
 
     //jcr:mimeType is mandatory for a binary to be indexed
     String type = state.getString(JcrConstants.JCR_MIMETYPE);
@@ -107,14 +108,7 @@ public class FulltextBinaryTextExtractor {
       return values;
     }
 
-    metadata.set(Metadata.CONTENT_TYPE, type);
-    if (JCR_DATA.equals(property.getName())) {
-      String encoding = state.getString(JcrConstants.JCR_ENCODING);
-      if (encoding != null) { // not mandatory
-        metadata.set(Metadata.CONTENT_ENCODING, encoding);
-      }
-    }
-
+    Metadata metadata = newMetadata(property, state, type);
     for (Blob v : property.getValue(Type.BINARIES)) {
       String value = parseStringValue(v, metadata, path, property.getName());
       if (value == null){
@@ -126,24 +120,94 @@ public class FulltextBinaryTextExtractor {
     return values;
   }
 
+  /**
+   * Check whether the text of binaries can be extracted ahead of time, in
+   * background threads (see {@link #prefetch(PropertyState, NodeState, String)}).
+   *
+   * @return {@code true} if enabled
+   */
+  public boolean isPrefetchEnabled() {
+    return extractedTextCache.isPrefetchEnabled();
+  }
+
+  /**
+   * Check whether no more binaries can be extracted in the background right
+   * now, because the queue is full.
+   *
+   * @return {@code true} if the queue is full
+   */
+  public boolean isPrefetchQueueFull() {
+    return extractedTextCache.isPrefetchQueueFull();
+  }
+
+  /**
+   * Start extracting the text of the given binary property in the
+   * background, so that it is already available when the property is
+   * indexed via {@link #newBinary(PropertyState, NodeState, String)}.
+   *
+   * @param property the binary property
+   * @param state the node state that contains the property
+   * @param path the path of the property (for logging)
+   */
+  public void prefetch(PropertyState property, NodeState state, String path) {
+    if (extractedTextCache.getExtractedTextProvider() != null
+        && (reindex || extractedTextCache.isAlwaysUsePreExtractedCache())) {
+      // pre extracted text is used instead
+      return;
+    }
+    String type = definition.getTikaMappedMimeType(state.getString(JcrConstants.JCR_MIMETYPE));
+    if (type == null || !isSupportedMediaType(type)) {
+      return;
+    }
+    for (Blob v : property.getValue(Type.BINARIES)) {
+      Metadata metadata = newMetadata(property, state, type);
+      extractedTextCache.prefetch(v, () -> parseStringValue0(v, metadata, path, true));
+    }
+  }
+
+  private static Metadata newMetadata(PropertyState property, NodeState state, String type) {
+    Metadata metadata = new Metadata();
+    metadata.set(Metadata.CONTENT_TYPE, type);
+    if (JCR_DATA.equals(property.getName())) {
+      String encoding = state.getString(JcrConstants.JCR_ENCODING);
+      if (encoding != null) { // not mandatory
+        metadata.set(Metadata.CONTENT_ENCODING, encoding);
+      }
+    }
+    return metadata;
+  }
+
     private String parseStringValue(Blob v, Metadata metadata, String path, String propertyName) {
         String text = extractedTextCache.get(path, propertyName, v, reindex);
+        if (text == null) {
+            try {
+                text = extractedTextCache.getPrefetched(v);
+            } catch (TimeoutException t) {
+                log.warn(
+                        "[{}] Failed to extract text from a binary property due to timeout: {}.",
+                        getIndexName(), path);
+                extractedTextCache.put(v, ExtractedText.ERROR);
+                extractedTextCache.putTimeout(v, ExtractedText.ERROR);
+                return TEXT_EXTRACTION_ERROR;
+            }
+        }
         if (text == null) {
             StatisticsProvider stats = extractedTextCache.getStatisticsProvider();
             if (stats != null) {
                 TimerStats textExtractionTimerMetricStats = stats
                         .getTimer(TEXT_EXTRACTION_TIMER_METRIC_NAME, StatsOptions.METRICS_ONLY);
                 TimerStats.Context context = textExtractionTimerMetricStats.time();
-                text = parseStringValue0(v, metadata, path);
+                text = parseStringValue0(v, metadata, path, false);
                 context.stop();
             } else {
-                text = parseStringValue0(v, metadata, path);
+                text = parseStringValue0(v, metadata, path, false);
             }
         }
         return text;
     }
 
-  private String parseStringValue0(Blob v, Metadata metadata, String path) {
+  private String parseStringValue0(Blob v, Metadata metadata, String path, boolean inCallerThread) {
+    String type = metadata.get(Metadata.CONTENT_TYPE);
     WriteOutContentHandler handler = new WriteOutContentHandler(definition.getMaxExtractLength());
     long start = System.currentTimeMillis();
     long bytesRead = 0;
@@ -152,9 +216,14 @@ public class FulltextBinaryTextExtractor {
       log.debug("Extracting {}, {} bytes, id {}", path, length, v.getContentIdentity());
     }
     try {
-      CountingInputStream stream = new CountingInputStream(new LazyInputStream(() -> v.getNewStream()));
+      InputStream in = new LazyInputStream(() -> v.getNewStream());
+      if (inCallerThread) {
+        // a background extraction that timed out is cancelled by interrupting it
+        in = new InterruptibleInputStream(in);
+      }
+      CountingInputStream stream = new CountingInputStream(in);
       try {
-        if (length > SMALL_BINARY) {
+        if (length > SMALL_BINARY && !inCallerThread) {
           String name = "Extracting " + path + ", " + length + " bytes";
           extractedTextCache.process(name, new Callable<Void>() {
             @Override
@@ -209,7 +278,7 @@ public class FulltextBinaryTextExtractor {
     if (bytesRead > 0) {
       long time = System.currentTimeMillis() - start;
       int len = result.length();
-      recordTextExtractionStats(time, bytesRead, len);
+      recordTextExtractionStats(type, time, bytesRead, len);
       if (log.isDebugEnabled()) {
         log.debug("Extracting {} took {} ms, {} bytes read, {} text size",
             path, time, bytesRead, len);
@@ -219,8 +288,9 @@ public class FulltextBinaryTextExtractor {
     return result;
   }
 
-  private void recordTextExtractionStats(long timeInMillis, long bytesRead, int textLength) {
+  private void recordTextExtractionStats(String type, long timeInMillis, long bytesRead, int textLength) {
     textExtractionStats.addStats(timeInMillis, bytesRead, textLength);
+    extractedTextCache.addMimeTypeStats(type, timeInMillis, bytesRead);
   }
 
   private String getIndexName() {
@@ -339,6 +409,35 @@ public class FulltextBinaryTextExtractor {
     return new AutoDetectParser();
   }
 
+  /**
+   * A stream that fails when the reading thread was interrupted, so that a
+   * cancelled extraction stops at the next read.
+   */
+  private static final class InterruptibleInputStream extends FilterInputStream {
+
+    InterruptibleInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      checkInterrupted();
+      return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkInterrupted();
+      return super.read(b, off, len);
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Text extraction was cancelled");
+      }
+    }
+  }
+
   private static final class TikaConfigHolder{
     final TikaConfig config;
     final String sourceInfo;
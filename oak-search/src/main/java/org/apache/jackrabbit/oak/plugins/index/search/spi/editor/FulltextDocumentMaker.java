@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
@@ -66,6 +67,7 @@ public abstract class FulltextDocumentMaker<D> implements DocumentMaker<D> {
     protected final IndexDefinition.IndexingRule indexingRule;
     protected final String path;
     private final int logWarnStringSizeThreshold;
+    private Set<String> readers;
 
     public FulltextDocumentMaker(@Nullable FulltextBinaryTextExtractor textExtractor,
                                @NotNull IndexDefinition definition,
@@ -113,6 +115,26 @@ public abstract class FulltextDocumentMaker<D> implements DocumentMaker<D> {
 
     protected abstract void indexNodeName(D doc, String value);
 
+    /**
+     * Index the names of the principals that may read the node. Not supported
+     * by default.
+     *
+     * @param doc the document
+     * @param readers the principal names
+     */
+    protected void indexReaders(D doc, Set<String> readers) {
+    }
+
+    /**
+     * Set the names of the principals that may read the node (see
+     * {@link ReadAccessTokens}), so that they are indexed.
+     *
+     * @param readers the principal names, or null to not index them
+     */
+    public void setReaders(@Nullable Set<String> readers) {
+        this.readers = readers;
+    }
+
     protected void logLargeStringProperties(String propertyName, String value) {
         if (value.length() > logWarnStringSizeThreshold) {
             log.warn("String length: {} for property: {} at Node: {} is greater than configured value {}",
@@ -201,6 +223,10 @@ public abstract class FulltextDocumentMaker<D> implements DocumentMaker<D> {
             indexAncestors(document, path);
         }
 
+        if (readers != null) {
+            indexReaders(document, readers);
+        }
+
         return finalizeDoc(document, dirty, facet);
     }
 
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -28,20 +29,26 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.search.Aggregate;
 import org.apache.jackrabbit.oak.plugins.index.search.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.PropertyDefinition;
 import org.apache.jackrabbit.oak.plugins.index.search.PropertyUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.search.spi.binary.FulltextBinaryTextExtractor;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.filter.PathFilter;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.apache.jackrabbit.JcrConstants.JCR_MIMETYPE;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_POLICY;
 
 /**
  * Generic implementation of an {@link IndexEditor} which supports index time aggregation.
@@ -53,6 +60,12 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
 
   public static final String TEXT_EXTRACTION_ERROR = "TextExtractionError";
 
+  /**
+   * The depth of the subtree below a changed child node where binaries are
+   * extracted ahead of time (for example jcr:content of an nt:file node).
+   */
+  private static final int PREFETCH_DEPTH = 2;
+
   private final FulltextIndexEditorContext<D> context;
 
   /* Name of this node, or {@code null} for the root node. */
@@ -66,6 +79,9 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
 
   private boolean propertiesChanged = false;
 
+  /* Whether the access control entries of this node changed. */
+  private boolean policyChanged = false;
+
   private final List<PropertyState> propertiesModified = Lists.newArrayList();
 
   /*
@@ -81,6 +97,13 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
 
   private final PathFilter.Result pathFilterResult;
 
+  /* The state and names of the added child nodes that were not yet looked at for binaries to prefetch. */
+  private NodeState prefetchState;
+  private Iterator<String> prefetchNames;
+
+  /* Whether binaries of changed child nodes are prefetched as the diff reports them. */
+  private boolean prefetchChanged;
+
   public FulltextIndexEditor(FulltextIndexEditorContext<D> context) {
     this.parent = null;
     this.name = null;
@@ -129,6 +152,22 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
         currentMatchers = indexingRule.getAggregate().createMatchers(this);
       }
     }
+
+    FulltextBinaryTextExtractor extractor = context.getTextExtractor();
+    if (extractor != null && extractor.isPrefetchEnabled()) {
+      if (parent != null) {
+        parent.prefetchBinaries(extractor);
+      }
+      if (after.exists() && !before.exists()) {
+        // all child nodes are new: look ahead over them
+        prefetchState = after;
+        prefetchNames = after.getChildNodeNames().iterator();
+        prefetchBinaries(extractor);
+      } else {
+        // only the diff knows which child nodes changed
+        prefetchChanged = after.exists();
+      }
+    }
   }
 
   @Override
@@ -144,11 +183,29 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
       }
     }
 
+    if (policyChanged && before.exists() && after.exists() && context.isAsyncIndexing()
+        && context.getReadAccessTokenUpdates() != null) {
+      // the read access tokens of the whole subtree changed; the documents
+      // are updated in batches, after the changes of this cycle
+      context.getReadAccessTokenUpdates().add(getPath());
+    }
+
     for (Aggregate.Matcher m : matcherState.affectedMatchers){
       m.markRootDirty();
     }
 
     if (parent == null) {
+      ReadAccessTokenUpdates updates = context.getReadAccessTokenUpdates();
+      if (updates != null && context.isAsyncIndexing()) {
+        if (context.isReindex()) {
+          // all documents got the current tokens
+          updates.clear();
+        } else {
+          updateReadAccessTokens(updates, after);
+        }
+        updates.write();
+      }
+
       PropertyUpdateCallback callback = context.getPropertyUpdateCallback();
       if (callback != null) {
         callback.done();
@@ -193,8 +250,10 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
 
   @Override
   public Editor childNodeAdded(String name, NodeState after) {
+    markPolicyChanged(name);
     PathFilter.Result filterResult = getPathFilterResult(name);
     if (filterResult != PathFilter.Result.EXCLUDE) {
+      prefetchChildBinaries(name, after);
       return new FulltextIndexEditor<>(this, name, getMatcherState(name, after), filterResult, false);
     }
     return null;
@@ -203,8 +262,10 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
   @Override
   public Editor childNodeChanged(
       String name, NodeState before, NodeState after) {
+    markPolicyChanged(name);
     PathFilter.Result filterResult = getPathFilterResult(name);
     if (filterResult != PathFilter.Result.EXCLUDE) {
+      prefetchChildBinaries(name, after);
       return new FulltextIndexEditor<>(this, name, getMatcherState(name, after), filterResult, false);
     }
     return null;
@@ -213,6 +274,7 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
   @Override
   public Editor childNodeDeleted(String name, NodeState before)
       throws CommitFailedException {
+    markPolicyChanged(name);
     PathFilter.Result filterResult = getPathFilterResult(name);
     if (filterResult == PathFilter.Result.EXCLUDE) {
       return null;
@@ -241,14 +303,149 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
     return null; // no need to recurse down the removed subtree
   }
 
+  //~-------------------------------------------------------< Prefetch >
+
+  /*
+   * Extract the text of binaries in the added child nodes ahead of time, in
+   * the background, until the prefetch queue is full. This is called whenever
+   * a child node is entered, so that the prefetched nodes stay ahead of the
+   * nodes being indexed.
+   */
+  private void prefetchBinaries(FulltextBinaryTextExtractor extractor) {
+    if (prefetchNames == null) {
+      return;
+    }
+    while (!extractor.isPrefetchQueueFull() && prefetchNames.hasNext()) {
+      String name = prefetchNames.next();
+      if (NodeStateUtils.isHidden(name)) {
+        continue;
+      }
+      prefetchBinaries(extractor, concat(getPath(), name), prefetchState.getChildNode(name), indexingRule, 1);
+    }
+    if (!prefetchNames.hasNext()) {
+      prefetchNames = null;
+      prefetchState = null;
+    }
+  }
+
+  /*
+   * Extract the text of binaries in a child node of a changed node, as
+   * reported by the diff, in the background. The child node is not entered
+   * yet, so this mainly helps for binaries in its subtree (such as
+   * jcr:content of an nt:file node), which are extracted in parallel.
+   */
+  private void prefetchChildBinaries(String name, NodeState after) {
+    if (!prefetchChanged || NodeStateUtils.isHidden(name)) {
+      return;
+    }
+    FulltextBinaryTextExtractor extractor = context.getTextExtractor();
+    if (extractor != null && !extractor.isPrefetchQueueFull()) {
+      prefetchBinaries(extractor, concat(getPath(), name), after, indexingRule, 1);
+    }
+  }
+
+  private void prefetchBinaries(FulltextBinaryTextExtractor extractor, String path, NodeState state,
+                                IndexDefinition.IndexingRule parentRule, int depth) {
+    if (getDefinition().getPathFilter().filter(path) == PathFilter.Result.EXCLUDE) {
+      return;
+    }
+    IndexDefinition.IndexingRule rule = getDefinition().getApplicableIndexingRule(state);
+    if (state.hasProperty(JCR_MIMETYPE)) {
+      // binaries of aggregated nodes (such as nt:file/jcr:content) are indexed
+      // as part of the parent
+      boolean aggregated = parentRule != null && parentRule.getAggregate().hasNodeAggregates();
+      for (PropertyState p : state.getProperties()) {
+        if (p.getType().tag() == Type.BINARY.tag()
+            && (aggregated || (rule != null && rule.isIndexed(p.getName())))) {
+          extractor.prefetch(p, state, path + "@" + p.getName());
+        }
+      }
+    }
+    if (depth < PREFETCH_DEPTH) {
+      for (ChildNodeEntry e : state.getChildNodeEntries()) {
+        if (extractor.isPrefetchQueueFull()) {
+          break;
+        }
+        if (NodeStateUtils.isHidden(e.getName())) {
+          continue;
+        }
+        prefetchBinaries(extractor, concat(path, e.getName()), e.getNodeState(), rule, depth + 1);
+      }
+    }
+  }
+
+  //~-------------------------------------------------------< Access tokens >
+
+  private void markPolicyChanged(String name) {
+    if (REP_POLICY.equals(name)) {
+      policyChanged = true;
+    }
+  }
+
+  /*
+   * Update the documents of the queued subtrees whose read access tokens
+   * changed, up to the maximum number of nodes per cycle. This is needed even
+   * if the nodes didn't change.
+   */
+  private void updateReadAccessTokens(ReadAccessTokenUpdates updates, NodeState root)
+      throws CommitFailedException {
+    int budget = ReadAccessTokenUpdates.BATCH_SIZE;
+    String path;
+    while (budget > 0 && (path = updates.poll()) != null) {
+      NodeState state = NodeStateUtils.getNode(root, path);
+      if (state.exists()) {
+        budget = updateReadAccessTokens(updates, path, state, budget);
+      }
+    }
+  }
+
+  /*
+   * Update the documents of the given subtree, depth first. Once the budget
+   * is used up, the remaining child nodes are queued.
+   */
+  private int updateReadAccessTokens(ReadAccessTokenUpdates updates, String path, NodeState state, int budget)
+      throws CommitFailedException {
+    PathFilter.Result filterResult = getDefinition().getPathFilter().filter(path);
+    if (filterResult == PathFilter.Result.EXCLUDE) {
+      return budget;
+    }
+    if (filterResult == PathFilter.Result.INCLUDE) {
+      IndexDefinition.IndexingRule rule = getDefinition().getApplicableIndexingRule(state);
+      if (rule != null) {
+        addOrUpdate(path, state, rule, false, Collections.<PropertyState>emptyList());
+      }
+    }
+    budget--;
+    for (ChildNodeEntry e : state.getChildNodeEntries()) {
+      if (NodeStateUtils.isHidden(e.getName())) {
+        continue;
+      }
+      String childPath = concat(path, e.getName());
+      if (budget > 0) {
+        budget = updateReadAccessTokens(updates, childPath, e.getNodeState(), budget);
+      } else {
+        updates.queue(childPath);
+      }
+    }
+    return budget;
+  }
+
   public FulltextIndexEditorContext<D> getContext() {
     return context;
   }
 
   private boolean addOrUpdate(String path, NodeState state, boolean isUpdate)
       throws CommitFailedException {
+    if (!isIndexable()) {
+      return false;
+    }
+    return addOrUpdate(path, state, indexingRule, isUpdate, propertiesModified);
+  }
+
+  private boolean addOrUpdate(String path, NodeState state, IndexDefinition.IndexingRule rule,
+                              boolean isUpdate, List<PropertyState> modified) throws CommitFailedException {
     try {
-      D d = makeDocument(path, state, isUpdate);
+      D d = context.newDocumentMaker(rule, path).makeDocument(state, isUpdate, modified);
       if (d != null) {
         if (log.isTraceEnabled()) {
           log.trace("[{}] Indexed document for {} is {}", getIndexName(), path, d);
@@ -269,13 +466,6 @@ public class FulltextIndexEditor<D> implements IndexEditor, Aggregate.AggregateR
     return false;
   }
 
-  private D makeDocument(String path, NodeState state, boolean isUpdate) throws IOException {
-    if (!isIndexable()) {
-      return null;
-    }
-    return context.newDocumentMaker(indexingRule, path).makeDocument(state, isUpdate, propertiesModified);
-  }
-
 
   //~-------------------------------------------------------< Aggregate >
 
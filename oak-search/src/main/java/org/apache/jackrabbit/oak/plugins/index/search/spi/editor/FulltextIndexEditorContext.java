@@ -96,6 +96,10 @@ public abstract class FulltextIndexEditorContext<D> {
 
   private PropertyUpdateCallback propertyUpdateCallback;
 
+  private ReadAccessTokens readAccessTokens;
+
+  private ReadAccessTokenUpdates readAccessTokenUpdates;
+
   protected FulltextIndexEditorContext(NodeState root, NodeBuilder definition,
                                        @Nullable IndexDefinition indexDefinition,
                                        IndexUpdateCallback updateCallback,
@@ -151,6 +155,40 @@ public abstract class FulltextIndexEditorContext<D> {
     this.propertyUpdateCallback = propertyUpdateCallback;
   }
 
+  /**
+   * Get the read access tokens of the indexed nodes, if enabled for this index
+   * (see {@link IndexDefinition#indexAccessTokens()}).
+   *
+   * @return the read access tokens, or null if not enabled
+   */
+  @Nullable
+  public ReadAccessTokens getReadAccessTokens() {
+    if (!definition.indexAccessTokens()) {
+      return null;
+    }
+    if (readAccessTokens == null) {
+      readAccessTokens = new ReadAccessTokens(root);
+    }
+    return readAccessTokens;
+  }
+
+  /**
+   * Get the subtrees whose read access tokens need to be updated, if read
+   * access tokens are enabled for this index.
+   *
+   * @return the pending updates, or null if not enabled
+   */
+  @Nullable
+  public ReadAccessTokenUpdates getReadAccessTokenUpdates() {
+    if (!definition.indexAccessTokens()) {
+      return null;
+    }
+    if (readAccessTokenUpdates == null) {
+      readAccessTokenUpdates = new ReadAccessTokenUpdates(definitionBuilder);
+    }
+    return readAccessTokenUpdates;
+  }
+
   /**
    * close writer if it's not null
    */
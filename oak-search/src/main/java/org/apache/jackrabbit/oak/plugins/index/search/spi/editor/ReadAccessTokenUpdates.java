@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The subtrees whose read access tokens (see {@link ReadAccessTokens}) need to
+ * be updated, because access control entries changed. The async indexer
+ * updates the documents of these subtrees in batches of at most
+ * {@link #BATCH_SIZE} nodes per cycle, so that an access control change on a
+ * large subtree doesn't reindex all of it in one cycle.
+ * <p>
+ * The state is stored in the hidden child node {@value #NODE_NAME} of the
+ * index definition: the roots of the subtrees whose tokens may be stale
+ * (property {@value #STALE_PATHS}), and the queue of the subtrees that still
+ * need to be updated, in chunks. Queries don't filter the documents of stale
+ * subtrees by token. Instances are not thread-safe.
+ */
+public class ReadAccessTokenUpdates {
+
+    public static final String NODE_NAME = ":readAccessTokens";
+
+    public static final String STALE_PATHS = "stalePaths";
+
+    /**
+     * The maximum number of nodes whose tokens are updated per indexing cycle.
+     */
+    public static final int BATCH_SIZE = Integer.getInteger("oak.indexer.accessTokensBatchSize", 10000);
+
+    private static final String PATHS = "paths";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final NodeBuilder definition;
+
+    private Set<String> stalePaths;
+
+    private Deque<String> queue;
+
+    private boolean modified;
+
+    public ReadAccessTokenUpdates(NodeBuilder definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * Get the roots of the subtrees whose read access tokens may be stale.
+     *
+     * @param definition the index definition node
+     * @return the paths
+     */
+    public static Set<String> getStalePaths(NodeState definition) {
+        return ImmutableSet.copyOf(definition.getChildNode(NODE_NAME).getStrings(STALE_PATHS));
+    }
+
+    /**
+     * Mark the tokens of the given subtree as stale, and queue it for update.
+     *
+     * @param path the root of the subtree
+     */
+    public void add(String path) {
+        load();
+        boolean covered = false;
+        for (Iterator<String> it = stalePaths.iterator(); it.hasNext(); ) {
+            String p = it.next();
+            if (p.equals(path) || PathUtils.isAncestor(p, path)) {
+                covered = true;
+            } else if (PathUtils.isAncestor(path, p)) {
+                it.remove();
+            }
+        }
+        if (!covered) {
+            stalePaths.add(path);
+        }
+        // even if the subtree is already stale, parts of it may have been
+        // updated with the previous tokens
+        queue.add(path);
+        modified = true;
+    }
+
+    /**
+     * Queue a subtree for update, that is below one of the stale paths.
+     *
+     * @param path the root of the subtree
+     */
+    void queue(String path) {
+        load();
+        queue.add(path);
+        modified = true;
+    }
+
+    /**
+     * Take the next subtree to update from the queue.
+     *
+     * @return the root of the subtree, or null if the queue is empty
+     */
+    @Nullable
+    String poll() {
+        load();
+        String path = queue.poll();
+        if (path != null) {
+            modified = true;
+        }
+        return path;
+    }
+
+    /**
+     * Remove all entries, for example because the index is rebuilt.
+     */
+    void clear() {
+        load();
+        if (!stalePaths.isEmpty() || !queue.isEmpty()) {
+            stalePaths.clear();
+            queue.clear();
+            modified = true;
+        }
+    }
+
+    /**
+     * Store the state in the index definition. Once the queue is empty, no
+     * tokens are stale any longer.
+     */
+    void write() {
+        if (!modified) {
+            return;
+        }
+        if (queue.isEmpty()) {
+            stalePaths.clear();
+        }
+        if (definition.hasChildNode(NODE_NAME)) {
+            definition.getChildNode(NODE_NAME).remove();
+        }
+        if (!stalePaths.isEmpty()) {
+            NodeBuilder node = definition.child(NODE_NAME);
+            node.setProperty(STALE_PATHS, stalePaths, Type.STRINGS);
+            int i = 0;
+            for (List<String> chunk : Iterables.partition(queue, CHUNK_SIZE)) {
+                node.child(String.valueOf(i++)).setProperty(PATHS, chunk, Type.STRINGS);
+            }
+        }
+        modified = false;
+    }
+
+    private void load() {
+        if (queue != null) {
+            return;
+        }
+        NodeState node = definition.getChildNode(NODE_NAME).getNodeState();
+        stalePaths = new TreeSet<>(Lists.newArrayList(node.getStrings(STALE_PATHS)));
+        queue = new ArrayDeque<>();
+        for (int i = 0; node.hasChildNode(String.valueOf(i)); i++) {
+            Iterables.addAll(queue, node.getChildNode(String.valueOf(i)).getStrings(PATHS));
+        }
+    }
+}
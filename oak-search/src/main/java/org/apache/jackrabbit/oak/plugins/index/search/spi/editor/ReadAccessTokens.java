@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.jetbrains.annotations.Nullable;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.NT_REP_GRANT_ACE;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_POLICY;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_PRINCIPAL_NAME;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_PRIVILEGES;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.JCR_ALL;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.JCR_READ;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.PRIVILEGES_PATH;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.REP_AGGREGATES;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.REP_READ_NODES;
+
+/**
+ * Computes the read access tokens of nodes: the names of the principals that
+ * may read a node. These are the principals of the access control entries
+ * (stored in the {@code rep:policy} child node) of the node and its ancestors
+ * that grant read access.
+ * <p>
+ * The result is a superset of the principals that can actually read the node:
+ * deny entries and restrictions are ignored, so that filtering by these
+ * tokens never removes a readable node. The access is still checked for each
+ * result by the query engine. Instances are not thread-safe.
+ * <p>
+ * Nodes below {@code /jcr:system} don't get tokens, as the access to the
+ * version storage depends on the versionable node. Documents without tokens
+ * always match. The paths that are readable by everyone are configurable, so
+ * they are not known here: queries match the documents of these paths as well.
+ */
+public class ReadAccessTokens {
+
+    /**
+     * A token that is added to each document that contains read access tokens,
+     * so that documents without tokens (indexed before the tokens were
+     * enabled, or by indexers that don't support them) can be found as well.
+     * Principal names can not be empty.
+     */
+    public static final String INDEXED = "";
+
+    private static final Set<String> READ_PRIVILEGES = ImmutableSet.of(JCR_READ, JCR_ALL, REP_READ_NODES);
+
+    private static final int CACHE_SIZE = 1000;
+
+    private static final String SYSTEM_PATH = "/" + JCR_SYSTEM;
+
+    private final NodeState root;
+
+    /* Whether a privilege (possibly a custom aggregate) includes read access. */
+    private final Map<String, Boolean> readPrivileges = new HashMap<>();
+
+    private final Map<String, Set<String>> cache = new LinkedHashMap<String, Set<String>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Set<String>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public ReadAccessTokens(NodeState root) {
+        this.root = root;
+    }
+
+    /**
+     * Get the names of the principals that may read the node at the given path.
+     *
+     * @param path the path of the node
+     * @return the principal names (may be empty), or null if the read access
+     *         of the node is not (only) based on access control entries
+     */
+    @Nullable
+    public Set<String> getReaders(String path) {
+        if (SYSTEM_PATH.equals(path) || PathUtils.isAncestor(SYSTEM_PATH, path)) {
+            return null;
+        }
+        Set<String> readers = cache.get(path);
+        if (readers == null) {
+            Set<String> parent = PathUtils.denotesRoot(path) ? Collections.emptySet()
+                    : getReaders(PathUtils.getParentPath(path));
+            Set<String> granted = getGrantedReaders(NodeStateUtils.getNode(root, path));
+            if (granted.isEmpty() || parent.containsAll(granted)) {
+                readers = parent;
+            } else {
+                readers = ImmutableSet.<String>builder().addAll(parent).addAll(granted).build();
+            }
+            cache.put(path, readers);
+        }
+        return readers;
+    }
+
+    /**
+     * Get the names of the principals that are granted read access by the
+     * access control entries of the given node.
+     *
+     * @param node the node
+     * @return the principal names
+     */
+    Set<String> getGrantedReaders(NodeState node) {
+        NodeState policy = node.getChildNode(REP_POLICY);
+        if (!policy.exists()) {
+            return Collections.emptySet();
+        }
+        ImmutableSet.Builder<String> readers = ImmutableSet.builder();
+        for (ChildNodeEntry e : policy.getChildNodeEntries()) {
+            NodeState ace = e.getNodeState();
+            if (!NT_REP_GRANT_ACE.equals(ace.getName(JCR_PRIMARYTYPE))) {
+                continue;
+            }
+            PropertyState principal = ace.getProperty(REP_PRINCIPAL_NAME);
+            PropertyState privileges = ace.getProperty(REP_PRIVILEGES);
+            if (principal == null || privileges == null) {
+                continue;
+            }
+            for (String privilege : privileges.getValue(Type.NAMES)) {
+                if (isReadPrivilege(privilege, 0)) {
+                    readers.add(principal.getValue(Type.STRING));
+                    break;
+                }
+            }
+        }
+        return readers.build();
+    }
+
+    private boolean isReadPrivilege(String name, int depth) {
+        if (READ_PRIVILEGES.contains(name)) {
+            return true;
+        }
+        Boolean result = readPrivileges.get(name);
+        if (result == null) {
+            result = false;
+            NodeState privilege = NodeStateUtils.getNode(root, PRIVILEGES_PATH).getChildNode(name);
+            // aggregates can't be cyclic, but be defensive
+            if (depth < 10) {
+                for (String aggregate : privilege.getNames(REP_AGGREGATES)) {
+                    if (isReadPrivilege(aggregate, depth + 1)) {
+                        result = true;
+                        break;
+                    }
+                }
+            }
+            readPrivileges.put(name, result);
+        }
+        return result;
+    }
+}
@@ -87,6 +87,14 @@ public abstract class FulltextIndex implements AdvancedQueryIndex, QueryIndex, N
     protected abstract Predicate<NodeState> getIndexDefinitionPredicate();
 
     protected abstract String getFulltextRequestString(IndexPlan plan, IndexNode indexNode);
+
+    /**
+     * Get the fulltext request string for the plan description, for a query
+     * that reads the given revision.
+     */
+    protected String getFulltextRequestString(IndexPlan plan, IndexNode indexNode, NodeState root) {
+        return getFulltextRequestString(plan, indexNode);
+    }
     
     /**
      * Whether replaced indexes (that is, if a new version of the index is
@@ -150,7 +158,7 @@ public abstract class FulltextIndex implements AdvancedQueryIndex, QueryIndex, N
                     .append("(")
                     .append(path)
                     .append(") ");
-            sb.append(getFulltextRequestString(plan, index));
+            sb.append(getFulltextRequestString(plan, index, root));
             if (plan.getSortOrder() != null && !plan.getSortOrder().isEmpty()) {
                 sb.append(" ordering:").append(plan.getSortOrder());
             }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.search.update;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+
+/**
+ * This policy refreshes the index (if changed) depending on the query demand,
+ * and on the number of documents added since the last refresh.
+ *
+ * <ul>
+ * <li>Upon read the readers are refreshed if the index was changed and
+ * refreshDelta time has elapsed (same as {@link TimedRefreshPolicy})</li>
+ * <li>Upon write the readers are refreshed only if the index was read since
+ * the last refresh and refreshDelta time has elapsed, or if the number of
+ * pending documents reached the configured maximum</li>
+ * </ul>
+ *
+ * <p>
+ * So indexes which are updated frequently, but not queried, are not
+ * refreshed on every write (which is costly when there are many writes),
+ * while the work left for the next refresh is bounded.
+ */
+public class DemandRefreshPolicy implements ReaderRefreshPolicy, IndexUpdateListener {
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicBoolean read = new AtomicBoolean();
+    private final Clock clock;
+    private final long refreshDelta;
+    private final long maxPending;
+    private volatile long lastRefreshTime;
+
+    public DemandRefreshPolicy(Clock clock, TimeUnit unit, long refreshDelta, long maxPending) {
+        this.clock = clock;
+        this.refreshDelta = unit.toMillis(refreshDelta);
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void refreshOnReadIfRequired(Runnable refreshCallback) {
+        read.set(true);
+        if (pending.get() > 0 && clock.getTime() - lastRefreshTime > refreshDelta) {
+            refresh(refreshCallback);
+        }
+    }
+
+    @Override
+    public void refreshOnWriteIfRequired(Runnable refreshCallback) {
+        long count = pending.get();
+        if (count >= maxPending
+                || (count > 0 && read.get() && clock.getTime() - lastRefreshTime > refreshDelta)) {
+            refresh(refreshCallback);
+        }
+    }
+
+    @Override
+    public void updated() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Number of documents added since the last refresh.
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    private void refresh(Runnable refreshCallback) {
+        long count = pending.get();
+        //Only one of the concurrent callers does the refresh
+        if (count > 0 && pending.compareAndSet(count, 0)) {
+            lastRefreshTime = clock.getTime();
+            read.set(false);
+            refreshCallback.run();
+        }
+    }
+}
@@ -29,10 +29,15 @@ import org.apache.jackrabbit.oak.plugins.index.search.spi.editor.FulltextIndexEd
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -198,6 +203,133 @@ public class ExtractedTextCacheTest {
             cache.get("/a", "foo", b, false));
     }
 
+    @Test
+    public void prefetch() throws Exception {
+        ExtractedTextCache cache = new ExtractedTextCache(10 * FileUtils.ONE_MB, 100);
+        Blob b = new IdBlob("hello", "a");
+        assertFalse(cache.isPrefetchEnabled());
+        assertFalse(cache.prefetch(b, () -> "ignored"));
+        assertNull(cache.getPrefetched(b));
+
+        cache.setPrefetchThreads(2);
+        assertTrue(cache.isPrefetchEnabled());
+        assertEquals(2, cache.getStatsMBean().getPrefetchThreads());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(cache.prefetch(b, () -> {
+            started.countDown();
+            latch.await();
+            cache.put(b, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+            return "test hello";
+        }));
+        // already being extracted
+        assertFalse(cache.prefetch(b, () -> "ignored"));
+        assertEquals(1, cache.getStatsMBean().getPrefetchQueueSize());
+        started.await();
+        latch.countDown();
+        assertEquals("test hello", cache.getPrefetched(b));
+        assertEquals("test hello", cache.get("/a", "foo", b, false));
+        // already extracted
+        assertFalse(cache.prefetch(b, () -> "ignored"));
+        cache.close();
+    }
+
+    @Test
+    public void prefetchTimeout() throws Exception {
+        ExtractedTextCache cache = new ExtractedTextCache(10 * FileUtils.ONE_MB, 100);
+        cache.setPrefetchThreads(1);
+        cache.setExtractionTimeoutMillis(10);
+        Blob b = new IdBlob("hello", "a");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        assertTrue(cache.prefetch(b, () -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+            }
+            return "test hello";
+        }));
+        started.await();
+        try {
+            cache.getPrefetched(b);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertEquals(1, cache.getStatsMBean().getTimeoutCount());
+        // the extraction is cancelled, freeing the thread
+        assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+        cache.close();
+    }
+
+    @Test
+    public void prefetchNotStarted() throws Exception {
+        ExtractedTextCache cache = new ExtractedTextCache(10 * FileUtils.ONE_MB, 100);
+        cache.setPrefetchThreads(1);
+        cache.setExtractionTimeoutMillis(10);
+        Blob a = new IdBlob("hello", "a");
+        Blob b = new IdBlob("world", "b");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(cache.prefetch(a, () -> {
+            started.countDown();
+            latch.await();
+            // like the text extractor, that also caches the text
+            cache.put(a, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+            return "test hello";
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        AtomicBoolean extracted = new AtomicBoolean();
+        assertTrue(cache.prefetch(b, () -> {
+            extracted.set(true);
+            return "test world";
+        }));
+        // queued behind the first binary: not a timeout, the caller extracts it
+        assertNull(cache.getPrefetched(b));
+        assertEquals(0, cache.getStatsMBean().getTimeoutCount());
+        latch.countDown();
+        assertEquals("test hello", cache.getPrefetched(a));
+        assertFalse(extracted.get());
+        cache.close();
+    }
+
+    @Test
+    public void mimeTypeStats() throws Exception {
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        cache.addMimeTypeStats("text/plain", 1000, 2048);
+        cache.addMimeTypeStats("text/plain", 1000, 2048);
+        String[] stats = cache.getStatsMBean().getMimeTypeStats();
+        assertEquals(1, stats.length);
+        assertEquals("text/plain: 2 extracted, 4.1 kB read in 2000 ms (2.0 kB/s)", stats[0]);
+    }
+
+    @Test
+    public void persistentStore() throws Exception {
+        File dir = new File("target", "extracted-text-" + System.nanoTime());
+        try {
+            PersistentExtractedTextStore store = new PersistentExtractedTextStore(dir, FileUtils.ONE_MB);
+            ExtractedTextCache cache = new ExtractedTextCache(FileUtils.ONE_MB, 100);
+            cache.setPersistentStore(store);
+            Blob b = new IdBlob("hello", "a");
+            cache.put(b, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+            cache.put(new IdBlob("hello", "b"), ExtractedText.ERROR);
+            assertTrue(store.contains("a"));
+            assertFalse(store.contains("b"));
+
+            // a new cache, for example after a restart
+            cache = new ExtractedTextCache(FileUtils.ONE_MB, 100);
+            cache.setPersistentStore(store);
+            assertEquals("test hello", cache.get("/a", "foo", b, false));
+            assertEquals(1, cache.getStatsMBean().getPersistentStoreHitCount());
+            assertNull(cache.get("/a", "foo", new IdBlob("hello", "b"), false));
+            assertEquals(1, cache.getStatsMBean().getPersistentStoreMissCount());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
     private static class IdBlob extends ArrayBasedBlob {
         final String id;
 
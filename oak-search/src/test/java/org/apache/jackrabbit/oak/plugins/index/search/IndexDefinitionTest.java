@@ -77,6 +77,16 @@ public class IndexDefinitionTest {
         assertFalse(idxDefn.hasSyncPropertyDefinitions());
     }
 
+    @Test
+    public void indexAccessTokensRequireAsyncLane() throws Exception{
+        builder.setProperty(FulltextIndexConstants.INDEX_ACCESS_TOKENS, true);
+        assertFalse(new IndexDefinition(root, builder.getNodeState(), "/foo").indexAccessTokens());
+        builder.setProperty(createProperty(IndexConstants.ASYNC_PROPERTY_NAME, of("nrt"), STRINGS));
+        assertFalse(new IndexDefinition(root, builder.getNodeState(), "/foo").indexAccessTokens());
+        builder.setProperty(createProperty(IndexConstants.ASYNC_PROPERTY_NAME, of("async", "nrt"), STRINGS));
+        assertTrue(new IndexDefinition(root, builder.getNodeState(), "/foo").indexAccessTokens());
+    }
+
     @Test
     public void fullTextEnabled() throws Exception{
         IndexDefinition idxDefn = new IndexDefinition(root, builder.getNodeState(), "/foo");
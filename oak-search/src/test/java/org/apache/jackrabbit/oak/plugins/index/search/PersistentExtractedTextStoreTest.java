@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentExtractedTextStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void putGet() throws Exception {
+        PersistentExtractedTextStore store = new PersistentExtractedTextStore(folder.getRoot(), FileUtils.ONE_MB);
+        store.awaitInitialSize();
+        assertNull(store.get("a"));
+        assertFalse(store.contains("a"));
+        store.put("a", "hello world");
+        store.put("b/c:d", "");
+        assertTrue(store.contains("a"));
+        assertEquals("hello world", store.get("a"));
+        assertEquals("", store.get("b/c:d"));
+        assertEquals(2, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+        assertEquals(2, store.getWriteCount());
+        assertTrue(store.getSize() > 0);
+
+        // re-open
+        PersistentExtractedTextStore store2 = new PersistentExtractedTextStore(folder.getRoot(), FileUtils.ONE_MB);
+        store2.awaitInitialSize();
+        assertEquals(store.getSize(), store2.getSize());
+        assertEquals("hello world", store2.get("a"));
+    }
+
+    @Test
+    public void evict() throws Exception {
+        PersistentExtractedTextStore store = new PersistentExtractedTextStore(folder.getRoot(), 1000);
+        store.awaitInitialSize();
+        int count = 0;
+        while (store.getEvictionCount() == 0) {
+            store.put("id" + count, "text " + count);
+            count++;
+        }
+        assertTrue(store.getSize() <= 1000 * 80 / 100);
+        int stored = 0;
+        for (int i = 0; i < count; i++) {
+            if (store.contains("id" + i)) {
+                stored++;
+            }
+        }
+        assertEquals(count - store.getEvictionCount(), stored);
+    }
+
+    @Test
+    public void evictOnOpen() throws Exception {
+        PersistentExtractedTextStore store = new PersistentExtractedTextStore(folder.getRoot(), FileUtils.ONE_MB);
+        store.awaitInitialSize();
+        for (int i = 0; i < 20; i++) {
+            store.put("id" + i, "text " + i);
+        }
+        long size = store.getSize();
+
+        // re-open with a smaller limit
+        PersistentExtractedTextStore store2 = new PersistentExtractedTextStore(folder.getRoot(), size / 2);
+        store2.awaitInitialSize();
+        assertTrue(store2.getEvictionCount() > 0);
+        assertTrue(store2.getSize() <= size / 2);
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.search.spi.editor;
+
+import java.util.Collections;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.NT_REP_DENY_ACE;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.NT_REP_GRANT_ACE;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_POLICY;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_PRINCIPAL_NAME;
+import static org.apache.jackrabbit.oak.spi.security.authorization.accesscontrol.AccessControlConstants.REP_PRIVILEGES;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.JCR_READ;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.JCR_WRITE;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.REP_AGGREGATES;
+import static org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants.REP_READ_NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ReadAccessTokensTest {
+
+    @Test
+    public void inherited() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        ace(root, "allow", NT_REP_GRANT_ACE, "everyone", JCR_READ);
+        ace(root.child("content"), "allow", NT_REP_GRANT_ACE, "editors", JCR_READ);
+        root.child("content").child("a").child("b");
+        ReadAccessTokens tokens = new ReadAccessTokens(root.getNodeState());
+
+        assertEquals(ImmutableSet.of("everyone"), tokens.getReaders("/"));
+        assertEquals(ImmutableSet.of("everyone", "editors"), tokens.getReaders("/content"));
+        assertEquals(ImmutableSet.of("everyone", "editors"), tokens.getReaders("/content/a/b"));
+        assertEquals(Collections.emptySet(), new ReadAccessTokens(EMPTY_NODE).getReaders("/content"));
+    }
+
+    @Test
+    public void denyAndNonReadEntriesIgnored() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        NodeBuilder content = root.child("content");
+        ace(content, "allow0", NT_REP_GRANT_ACE, "writers", JCR_WRITE);
+        ace(content, "deny0", NT_REP_DENY_ACE, "guests", JCR_READ);
+        ace(content, "allow1", NT_REP_GRANT_ACE, "readers", REP_READ_NODES);
+        ReadAccessTokens tokens = new ReadAccessTokens(root.getNodeState());
+
+        assertEquals(ImmutableSet.of("readers"), tokens.getReaders("/content"));
+    }
+
+    @Test
+    public void customAggregatePrivilege() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        root.child("jcr:system").child("rep:privileges").child("custom:view")
+                .setProperty(REP_AGGREGATES, asList("custom:other", JCR_READ), Type.NAMES);
+        root.child("jcr:system").child("rep:privileges").child("custom:edit")
+                .setProperty(REP_AGGREGATES, asList(JCR_WRITE), Type.NAMES);
+        NodeBuilder content = root.child("content");
+        ace(content, "allow0", NT_REP_GRANT_ACE, "viewers", "custom:view");
+        ace(content, "allow1", NT_REP_GRANT_ACE, "editors", "custom:edit");
+        ReadAccessTokens tokens = new ReadAccessTokens(root.getNodeState());
+
+        assertEquals(ImmutableSet.of("viewers"), tokens.getReaders("/content"));
+    }
+
+    @Test
+    public void noTokensBelowSystem() {
+        NodeBuilder root = EMPTY_NODE.builder();
+        ace(root, "allow", NT_REP_GRANT_ACE, "everyone", JCR_READ);
+        root.child("jcr:system").child("jcr:versionStorage").child("a");
+        ReadAccessTokens tokens = new ReadAccessTokens(root.getNodeState());
+
+        assertNull(tokens.getReaders("/jcr:system"));
+        assertNull(tokens.getReaders("/jcr:system/jcr:versionStorage/a"));
+        assertEquals(ImmutableSet.of("everyone"), tokens.getReaders("/jcr:systemx"));
+    }
+
+    @Test
+    public void pendingUpdates() {
+        NodeBuilder definition = EMPTY_NODE.builder();
+        ReadAccessTokenUpdates updates = new ReadAccessTokenUpdates(definition);
+        updates.add("/content/a");
+        updates.add("/content");
+        updates.add("/content/b");
+        updates.write();
+        assertEquals(ImmutableSet.of("/content"), ReadAccessTokenUpdates.getStalePaths(definition.getNodeState()));
+
+        updates = new ReadAccessTokenUpdates(definition);
+        assertEquals("/content/a", updates.poll());
+        for (int i = 0; i < 1500; i++) {
+            updates.queue("/content/a/c" + i);
+        }
+        updates.write();
+
+        // the queue is stored in chunks
+        updates = new ReadAccessTokenUpdates(definition);
+        assertEquals("/content", updates.poll());
+        assertEquals("/content/b", updates.poll());
+        for (int i = 0; i < 1500; i++) {
+            assertEquals("/content/a/c" + i, updates.poll());
+        }
+        assertNull(updates.poll());
+        updates.write();
+        assertEquals(Collections.emptySet(), ReadAccessTokenUpdates.getStalePaths(definition.getNodeState()));
+        assertFalse(definition.hasChildNode(ReadAccessTokenUpdates.NODE_NAME));
+    }
+
+    private static void ace(NodeBuilder node, String name, String type, String principal, String privilege) {
+        node.child(REP_POLICY).child(name)
+                .setProperty(JCR_PRIMARYTYPE, type, Type.NAME)
+                .setProperty(REP_PRINCIPAL_NAME, principal)
+                .setProperty(REP_PRIVILEGES, asList(privilege), Type.NAMES);
+    }
+}
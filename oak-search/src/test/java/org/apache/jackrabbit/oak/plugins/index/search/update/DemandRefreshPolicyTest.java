@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.search.update;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.stats.Clock;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DemandRefreshPolicyTest {
+    private final Clock clock = new Clock.Virtual();
+    private final RecordingRunnable refreshCallback = new RecordingRunnable();
+
+    @Test
+    public void noRefreshOnWriteWithoutRead() throws Exception{
+        clock.waitUntil(System.currentTimeMillis());
+        DemandRefreshPolicy policy = new DemandRefreshPolicy(clock, TimeUnit.SECONDS, 1, 100);
+
+        policy.updated();
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+        assertEquals(1, policy.getPendingCount());
+
+        policy.refreshOnReadIfRequired(refreshCallback);
+        refreshCallback.assertInvokedAndReset();
+        assertEquals(0, policy.getPendingCount());
+
+        policy.refreshOnReadIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+    }
+
+    @Test
+    public void refreshOnWriteAfterRead() throws Exception{
+        clock.waitUntil(System.currentTimeMillis());
+        DemandRefreshPolicy policy = new DemandRefreshPolicy(clock, TimeUnit.SECONDS, 1, 100);
+        long refreshDelta = TimeUnit.SECONDS.toMillis(1) + 1;
+
+        policy.updated();
+        policy.refreshOnReadIfRequired(refreshCallback);
+        refreshCallback.assertInvokedAndReset();
+
+        //Read since the last refresh, but time not elapsed
+        policy.refreshOnReadIfRequired(refreshCallback);
+        policy.updated();
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+
+        clock.waitUntil(clock.getTime() + refreshDelta);
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertInvokedAndReset();
+
+        //No read since the last refresh
+        policy.updated();
+        clock.waitUntil(clock.getTime() + refreshDelta);
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+    }
+
+    @Test
+    public void refreshOnMaxPending() throws Exception{
+        clock.waitUntil(System.currentTimeMillis());
+        DemandRefreshPolicy policy = new DemandRefreshPolicy(clock, TimeUnit.SECONDS, 1, 3);
+
+        policy.updated();
+        policy.updated();
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+
+        policy.updated();
+        policy.refreshOnWriteIfRequired(refreshCallback);
+        refreshCallback.assertInvokedAndReset();
+        assertEquals(0, policy.getPendingCount());
+
+        //Time not elapsed since the last refresh
+        policy.updated();
+        policy.refreshOnReadIfRequired(refreshCallback);
+        refreshCallback.assertNotInvokedAndReset();
+    }
+}
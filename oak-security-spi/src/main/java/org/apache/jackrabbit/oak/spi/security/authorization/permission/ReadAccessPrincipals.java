@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.security.authorization.permission;
+
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Optional extension of a {@link PermissionProvider} whose read access is
+ * only granted by the access control entries of the principals of the subject,
+ * and by a set of paths that are readable by everyone. Query indexes can use
+ * this to skip index entries that none of the principals can read. The access
+ * is still checked for each result.
+ */
+public interface ReadAccessPrincipals {
+
+    /**
+     * Returns the names of the principals whose access control entries grant
+     * read access to the subject.
+     *
+     * @return the principal names, or {@code null} if read access is not only
+     * granted by the access control entries of these principals (for example
+     * for administrators and system sessions)
+     */
+    @Nullable
+    Set<String> getPrincipalNames();
+
+    /**
+     * Returns the paths of the trees that are readable by everyone, including
+     * all items below.
+     *
+     * @return the read paths
+     */
+    @NotNull
+    Set<String> getReadPaths();
+}
@@ -14,7 +14,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-@Version("4.2.0")
+@Version("4.3.0")
 package org.apache.jackrabbit.oak.spi.security.authorization.permission;
 
 import org.osgi.annotation.versioning.Version;
@@ -19,7 +19,12 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static com.google.common.collect.Lists.transform;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
@@ -41,5 +46,17 @@ public class SegmentBlobReferenceRetriever implements BlobReferenceRetriever {
     public void collectReferences(final ReferenceCollector collector) throws IOException {
         store.collectBlobReferences(s -> collector.addReference(s, null));
     }
+
+    /**
+     * Collects the references with one collector per partition of the tar
+     * files.
+     */
+    @Override
+    public void collectReferences(List<? extends ReferenceCollector> collectors, Executor executor)
+            throws IOException {
+        List<Consumer<String>> consumers = transform(collectors,
+            collector -> s -> collector.addReference(s, null));
+        store.collectBlobReferences(consumers, executor);
+    }
 }
 
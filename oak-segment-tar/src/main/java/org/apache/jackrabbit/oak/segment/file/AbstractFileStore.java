@@ -25,8 +25,10 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
@@ -304,4 +306,16 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
      * @param collector  reference collector called back for each blob reference found
      */
     public abstract void collectBlobReferences(Consumer<String> collector) throws IOException;
+
+    /**
+     * Same as {@link #collectBlobReferences(Consumer)}, but the tar files are
+     * split into one partition per collector, which are traversed concurrently
+     * by tasks submitted to the given executor. Each collector is only called
+     * by the task of its partition. This method returns once all partitions
+     * are traversed.
+     * @param collectors  reference collectors, one per partition
+     * @param executor    the executor used to traverse the partitions
+     */
+    public abstract void collectBlobReferences(List<? extends Consumer<String>> collectors, Executor executor)
+            throws IOException;
 }
@@ -29,9 +29,11 @@ import static org.apache.jackrabbit.oak.stats.StatsOptions.DEFAULT;
 import static org.apache.jackrabbit.oak.stats.StatsOptions.METRICS_ONLY;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -439,6 +441,13 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    @Override
+    public void collectBlobReferences(List<? extends Consumer<String>> collectors, Executor executor) throws IOException {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            garbageCollector.collectBlobReferences(collectors, executor);
+        }
+    }
+
     /**
      * Cancel a running revision garbage collection compaction process as soon as possible.
      * Does nothing if gc is not running.
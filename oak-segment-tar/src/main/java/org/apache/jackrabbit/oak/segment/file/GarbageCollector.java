@@ -25,6 +25,7 @@ import static org.apache.jackrabbit.oak.segment.file.Reclaimers.newOldReclaimer;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -324,6 +325,21 @@ class GarbageCollector {
             newOldReclaimer(lastCompactionType, getGcGeneration(), gcOptions.getRetainedGenerations()));
     }
 
+    /**
+     * Same as {@link #collectBlobReferences(Consumer)}, but the tar files are
+     * traversed concurrently, with one collector per partition.
+     *
+     * @param collectors reference collectors, one per partition
+     * @param executor   the executor used to traverse the partitions
+     */
+    synchronized void collectBlobReferences(List<? extends Consumer<String>> collectors, Executor executor)
+            throws IOException {
+        segmentWriter.flush();
+        tarFiles.collectBlobReferences(collectors,
+            newOldReclaimer(lastCompactionType, getGcGeneration(), gcOptions.getRetainedGenerations()),
+            executor);
+    }
+
     void cancel() {
         cancelRequested = true;
     }
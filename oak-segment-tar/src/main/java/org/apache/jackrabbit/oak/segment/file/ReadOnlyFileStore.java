@@ -29,6 +29,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import com.google.common.io.Closer;
@@ -178,4 +179,11 @@ public class ReadOnlyFileStore extends AbstractFileStore {
         tarFiles.collectBlobReferences(collector,
             newOldReclaimer(SegmentGCOptions.GCType.FULL, revisions.getHead().getSegmentId().getGcGeneration(), gcRetainedGenerations));
     }
+
+    @Override
+    public void collectBlobReferences(List<? extends Consumer<String>> collectors, Executor executor) throws IOException {
+        tarFiles.collectBlobReferences(collectors,
+            newOldReclaimer(SegmentGCOptions.GCType.FULL, revisions.getHead().getSegmentId().getGcGeneration(), gcRetainedGenerations),
+            executor);
+    }
 }
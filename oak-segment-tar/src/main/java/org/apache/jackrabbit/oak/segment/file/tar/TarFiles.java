@@ -28,6 +28,7 @@ import static java.util.Collections.emptySet;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,6 +41,9 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
@@ -47,6 +51,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
@@ -803,20 +808,79 @@ public class TarFiles implements Closeable {
     }
 
     public void collectBlobReferences(Consumer<String> collector, Predicate<GCGeneration> reclaim) throws IOException {
-        Node head;
+        for (TarReader reader : iterable(newWriterForBlobReferences())) {
+            reader.collectBlobReferences(collector, reclaim);
+        }
+    }
+
+    /**
+     * Same as {@link #collectBlobReferences(Consumer, Predicate)}, but the tar
+     * files are split into one partition per collector, with about the same
+     * total size. Each partition is traversed by a task submitted to the given
+     * executor. This method returns once all partitions are traversed.
+     *
+     * @param collectors the collectors, one per partition
+     * @param reclaim    the generations to skip
+     * @param executor   the executor used to traverse the partitions
+     */
+    public void collectBlobReferences(List<? extends Consumer<String>> collectors, Predicate<GCGeneration> reclaim,
+            Executor executor) throws IOException {
+        List<TarReader> sorted = newArrayList(iterable(newWriterForBlobReferences()));
+        sorted.sort((a, b) -> Long.compare(b.size(), a.size()));
+
+        // assign the largest remaining file to the smallest partition
+        List<List<TarReader>> partitions = new ArrayList<>();
+        long[] sizes = new long[collectors.size()];
+        for (int i = 0; i < collectors.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (TarReader reader : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < sizes.length; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            partitions.get(smallest).add(reader);
+            sizes[smallest] += reader.size();
+        }
+
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < collectors.size(); i++) {
+            List<TarReader> partition = partitions.get(i);
+            Consumer<String> collector = collectors.get(i);
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                for (TarReader reader : partition) {
+                    reader.collectBlobReferences(collector, reclaim);
+                }
+                return null;
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+        for (FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while collecting blob references");
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new IOException("Error collecting blob references", e.getCause());
+            }
+        }
+    }
+
+    private Node newWriterForBlobReferences() throws IOException {
         lock.writeLock().lock();
         try {
             if (writer != null) {
                 internalNewWriter();
             }
-            head = readers;
+            return readers;
         } finally {
             lock.writeLock().unlock();
         }
-
-        for (TarReader reader : iterable(head)) {
-            reader.collectBlobReferences(collector, reclaim);
-        }
     }
 
     public Iterable<UUID> getSegmentIds() {
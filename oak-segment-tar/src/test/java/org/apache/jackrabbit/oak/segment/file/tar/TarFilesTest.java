@@ -39,6 +39,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.jackrabbit.oak.commons.Buffer;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles.CleanupResult;
@@ -277,6 +279,29 @@ public class TarFilesTest {
         assertEquals(references, new HashSet<>(asList("a", "b", "c")));
     }
 
+    @Test
+    public void testCollectBlobReferencesPartitioned() throws Exception {
+        writeSegmentWithBinaryReferences(randomUUID(), "a");
+        tarFiles.newWriter();
+        writeSegmentWithBinaryReferences(randomUUID(), "b", "c");
+        tarFiles.newWriter();
+        writeSegmentWithBinaryReferences(randomUUID(), "d");
+
+        Set<String> first = new HashSet<>();
+        Set<String> second = new HashSet<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            tarFiles.collectBlobReferences(asList(first::add, second::add), gen -> false, executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse(first.isEmpty());
+        assertFalse(second.isEmpty());
+        Set<String> references = new HashSet<>(first);
+        references.addAll(second);
+        assertEquals(new HashSet<>(asList("a", "b", "c", "d")), references);
+    }
+
     @Test
     public void testCollectBlobReferencesWithGenerationFilter() throws Exception {
         GCGeneration ok = newGCGeneration(1, 1, false);
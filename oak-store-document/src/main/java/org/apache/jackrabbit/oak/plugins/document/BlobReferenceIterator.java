@@ -38,12 +38,28 @@ public class BlobReferenceIterator extends AbstractIterator<ReferencedBlob> impl
     private final DocumentStore documentStore;
     private final BlobCollector blobCollector;
     private final Queue<ReferencedBlob> blobs = Queues.newArrayDeque();
+    private final String fromId;
+    private final String toId;
 
     private Iterator<NodeDocument> iterator;
 
     public BlobReferenceIterator(DocumentNodeStore nodeStore) {
+        this(nodeStore, NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE);
+    }
+
+    /**
+     * Creates an iterator over the binaries referenced by the documents with
+     * an id within the given range.
+     *
+     * @param nodeStore the node store
+     * @param fromId the lower bound of the id range (exclusive)
+     * @param toId the upper bound of the id range (exclusive)
+     */
+    public BlobReferenceIterator(DocumentNodeStore nodeStore, String fromId, String toId) {
         this.documentStore = nodeStore.getDocumentStore();
         this.blobCollector = new BlobCollector(nodeStore);
+        this.fromId = fromId;
+        this.toId = toId;
     }
 
     @Override
@@ -80,8 +96,8 @@ public class BlobReferenceIterator extends AbstractIterator<ReferencedBlob> impl
      */
     public Iterator<NodeDocument> getIteratorOverDocsWithBinaries() {
         int batchSize = 1000;
-        return Utils.getSelectedDocuments(documentStore, NodeDocument.HAS_BINARY_FLAG, NodeDocument.HAS_BINARY_VAL, batchSize)
-                .iterator();
+        return Utils.getSelectedDocuments(documentStore, NodeDocument.HAS_BINARY_FLAG, NodeDocument.HAS_BINARY_VAL,
+                fromId, toId, batchSize).iterator();
     }
 
     @Override
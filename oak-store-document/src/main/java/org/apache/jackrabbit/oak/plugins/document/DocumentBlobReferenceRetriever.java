@@ -18,7 +18,19 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
@@ -33,6 +45,13 @@ import org.slf4j.LoggerFactory;
  * Implementation of {@link BlobReferenceRetriever} for the DocumentNodeStore.
  */
 public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
+
+    /**
+     * The documents of each depth up to this depth are iterated as a separate
+     * id range, when collecting the references concurrently.
+     */
+    private static final int MAX_RANGE_DEPTH = 30;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final DocumentNodeStore nodeStore;
 
@@ -42,10 +61,72 @@ public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
 
     @Override
     public void collectReferences(ReferenceCollector collector) {
+        int referencesFound = collect(nodeStore.getReferencedBlobsIterator(), collector);
+        log.debug("Total blob references found (including chunk resolution) [{}]", referencesFound);
+    }
+
+    /**
+     * Collects the references with one task per collector. The document ids
+     * start with the depth of the path, and the tasks take turns in iterating
+     * over the documents of one depth.
+     */
+    @Override
+    public void collectReferences(List<? extends ReferenceCollector> collectors, Executor executor)
+            throws IOException {
+        Queue<String[]> ranges = new ConcurrentLinkedQueue<>(getIdRanges());
+        List<FutureTask<Integer>> tasks = Lists.newArrayList();
+        for (ReferenceCollector collector : collectors) {
+            FutureTask<Integer> task = new FutureTask<>(() -> {
+                int referencesFound = 0;
+                String[] range;
+                while ((range = ranges.poll()) != null) {
+                    referencesFound += collect(new BlobReferenceIterator(nodeStore, range[0], range[1]), collector);
+                }
+                return referencesFound;
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+        int referencesFound = 0;
+        for (FutureTask<Integer> task : tasks) {
+            try {
+                referencesFound += task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while collecting blob references");
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new IOException("Error collecting blob references", e.getCause());
+            }
+        }
+        log.debug("Total blob references found (including chunk resolution) [{}] using {} tasks",
+                referencesFound, collectors.size());
+    }
+
+    /**
+     * Splits the id space into ranges, one per depth up to
+     * {@link #MAX_RANGE_DEPTH}, and the remaining ids.
+     *
+     * @return the id ranges, as pairs of exclusive lower and upper bounds
+     */
+    static List<String[]> getIdRanges() {
+        List<String> bounds = Lists.newArrayList();
+        for (int depth = 1; depth <= MAX_RANGE_DEPTH; depth++) {
+            bounds.add(depth + ":");
+        }
+        Collections.sort(bounds);
+        bounds.add(0, NodeDocument.MIN_ID_VALUE);
+        bounds.add(NodeDocument.MAX_ID_VALUE);
+        List<String[]> ranges = Lists.newArrayList();
+        for (int i = 1; i < bounds.size(); i++) {
+            ranges.add(new String[] {bounds.get(i - 1), bounds.get(i)});
+        }
+        return ranges;
+    }
+
+    private static int collect(Iterator<ReferencedBlob> blobIterator, ReferenceCollector collector) {
         int referencesFound = 0;
-        Iterator<ReferencedBlob> blobIterator = null;
         try {
-            blobIterator = nodeStore.getReferencedBlobsIterator();
             while (blobIterator.hasNext()) {
                 ReferencedBlob refBlob = blobIterator.next();
                 Blob blob = refBlob.getBlob();
@@ -67,7 +148,7 @@ public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
         } finally {
             Utils.closeIfCloseable(blobIterator);
         }
-        log.debug("Total blob references found (including chunk resolution) [{}]", referencesFound);
+        return referencesFound;
     }
 }
 
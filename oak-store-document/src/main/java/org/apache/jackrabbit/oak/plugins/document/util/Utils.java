@@ -644,7 +644,8 @@ public class Utils {
      * @return an {@link Iterable} over all documents in the store.
      */
     public static Iterable<NodeDocument> getAllDocuments(final DocumentStore store) {
-        return internalGetSelectedDocuments(store, null, 0, DEFAULT_BATCH_SIZE);
+        return internalGetSelectedDocuments(store, null, 0,
+                NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE, DEFAULT_BATCH_SIZE);
     }
 
     /**
@@ -686,7 +687,21 @@ public class Utils {
      */
     public static Iterable<NodeDocument> getSelectedDocuments(
             DocumentStore store, String indexedProperty, long startValue, int batchSize) {
-        return internalGetSelectedDocuments(store, indexedProperty, startValue, batchSize);
+        return internalGetSelectedDocuments(store, indexedProperty, startValue,
+                NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE, batchSize);
+    }
+
+    /**
+     * Like {@link #getSelectedDocuments(DocumentStore, String, long, int)},
+     * but only for documents with an id within the given range.
+     *
+     * @param fromId the lower bound of the id range (exclusive).
+     * @param toId the upper bound of the id range (exclusive).
+     */
+    public static Iterable<NodeDocument> getSelectedDocuments(
+            DocumentStore store, String indexedProperty, long startValue,
+            String fromId, String toId, int batchSize) {
+        return internalGetSelectedDocuments(store, indexedProperty, startValue, fromId, toId, batchSize);
     }
 
     /**
@@ -695,12 +710,14 @@ public class Utils {
      */
     public static Iterable<NodeDocument> getSelectedDocuments(
             DocumentStore store, String indexedProperty, long startValue) {
-        return internalGetSelectedDocuments(store, indexedProperty, startValue, DEFAULT_BATCH_SIZE);
+        return internalGetSelectedDocuments(store, indexedProperty, startValue,
+                NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE, DEFAULT_BATCH_SIZE);
     }
 
     private static Iterable<NodeDocument> internalGetSelectedDocuments(
             final DocumentStore store, final String indexedProperty,
-            final long startValue, final int batchSize) {
+            final long startValue, final String fromId, final String toId,
+            final int batchSize) {
         if (batchSize < 2) {
             throw new IllegalArgumentException("batchSize must be > 1");
         }
@@ -709,7 +726,7 @@ public class Utils {
             public Iterator<NodeDocument> iterator() {
                 return new AbstractIterator<NodeDocument>() {
 
-                    private String startId = NodeDocument.MIN_ID_VALUE;
+                    private String startId = fromId;
 
                     private Iterator<NodeDocument> batch = nextBatch();
 
@@ -733,8 +750,8 @@ public class Utils {
 
                     private Iterator<NodeDocument> nextBatch() {
                         List<NodeDocument> result = indexedProperty == null ? store.query(Collection.NODES, startId,
-                                NodeDocument.MAX_ID_VALUE, batchSize) : store.query(Collection.NODES, startId,
-                                NodeDocument.MAX_ID_VALUE, indexedProperty, startValue, batchSize);
+                                toId, batchSize) : store.query(Collection.NODES, startId,
+                                toId, indexedProperty, startValue, batchSize);
                         return result.iterator();
                     }
                 };
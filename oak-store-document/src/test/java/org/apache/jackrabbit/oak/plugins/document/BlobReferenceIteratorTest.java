@@ -22,12 +22,17 @@ package org.apache.jackrabbit.oak.plugins.document;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.mongodb.ReadPreference;
 
 import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoTestUtils;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -103,4 +108,41 @@ public class BlobReferenceIteratorTest {
         assertEquals(blobs.size(), collectedBlobs.size());
         assertEquals(new HashSet<>(blobs), new HashSet<>(collectedBlobs));
     }
+
+    @Test
+    public void testPartitionedRetriever() throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        for (int i = 0; i < 12; i++) {
+            NodeBuilder child = builder;
+            for (int depth = 0; depth <= i; depth++) {
+                child = child.child("n" + depth);
+            }
+            child.setProperty("b", store.createBlob(randomStream(i, 4096)));
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        DocumentBlobReferenceRetriever retriever = new DocumentBlobReferenceRetriever(store);
+        Set<String> expected = Sets.newHashSet();
+        retriever.collectReferences((reference, nodeId) -> expected.add(reference));
+        assertEquals(12, expected.size());
+
+        List<Set<String>> partitions = Lists.newArrayList();
+        List<ReferenceCollector> collectors = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            Set<String> partition = Sets.newHashSet();
+            partitions.add(partition);
+            collectors.add((reference, nodeId) -> partition.add(reference));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            retriever.collectReferences(collectors, executor);
+        } finally {
+            executor.shutdown();
+        }
+        Set<String> collected = Sets.newHashSet();
+        for (Set<String> partition : partitions) {
+            collected.addAll(partition);
+        }
+        assertEquals(expected, collected);
+    }
 }